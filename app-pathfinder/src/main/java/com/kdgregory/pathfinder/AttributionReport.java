@@ -0,0 +1,133 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.Map;
+
+import com.kdgregory.pathfinder.core.Destination;
+import com.kdgregory.pathfinder.core.InvocationOptions;
+import com.kdgregory.pathfinder.core.PathRepo;
+import com.kdgregory.pathfinder.core.WarMachine;
+import com.kdgregory.pathfinder.output.OutputUtil;
+import com.kdgregory.pathfinder.util.AccessLogAttributor;
+
+
+/**
+ *  Inspects a single WAR, then attributes the requests in one or more access
+ *  logs to the discovered paths (see {@link AccessLogAttributor}).
+ */
+public class AttributionReport
+{
+    private PrintWriter out;
+    private Map<InvocationOptions,Boolean> options;
+    private WarMachine machine;
+
+
+    /**
+     *  @param  options The invocation options.
+     *  @param  machine The WAR. It's not closed.
+     *  @param  out     The destination for output. It's flushed but not closed.
+     */
+    public AttributionReport(Map<InvocationOptions,Boolean> options, WarMachine machine, PrintStream out)
+    {
+        this.options = options;
+        this.machine = machine;
+        this.out = OutputUtil.createWriter(out);
+    }
+
+
+//----------------------------------------------------------------------------
+//  Public methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Returns the explicit context path if there is one, otherwise follows the
+     *  servlet container convention: the WAR's name without extension, with "#"
+     *  separating nested paths, and "ROOT" as the root context.
+     */
+    public static String getContextPath(String explicit, String warName)
+    {
+        if (explicit != null)
+            return explicit;
+
+        String name = new File(warName).getName();
+        if (name.toLowerCase().endsWith(".war"))
+            name = name.substring(0, name.length() - 4);
+        return name.equals("ROOT") ? "" : "/" + name.replace('#', '/');
+    }
+
+
+    /**
+     *  Invokes the inspectors, then attributes the requests in the passed access
+     *  logs (which may be gzipped). Reports the number of hits for each destination,
+     *  and the paths that were never requested.
+     *
+     *  @param  contextPath The path that the WAR is deployed under; it must prefix
+     *                      every request that's attributed. Empty for the root
+     *                      context.
+     *  @param  logs        The access logs, in Common or Combined Log Format.
+     */
+    public void attribute(String contextPath, File... logs)
+    throws Exception
+    {
+        PathRepo snapshot = new Inspection(options, machine).inspect();
+        AccessLogAttributor attributor = new AccessLogAttributor(snapshot, contextPath);
+        dumpAttribution(attributor.attribute(logs));
+        out.flush();
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    private void dumpAttribution(AccessLogAttributor.Result result)
+    {
+        out.println("Requests: " + result.getLineCount());
+        out.println("    attributed:          " + result.getAttributedCount());
+        out.println("    unmatched:           " + result.getUnmatchedCount());
+        out.println("    outside context:     " + result.getOutsideContextCount());
+        out.println("    unsupported method:  " + result.getUnsupportedMethodCount());
+        out.println("    malformed:           " + result.getMalformedCount());
+
+        out.println();
+        out.println("Hits by destination:");
+        for (Map.Entry<Destination,Long> entry : result.getDestinationCounts().entrySet())
+        {
+            Destination dest = entry.getKey();
+            if (dest.isDisplayed(options) && (entry.getValue().longValue() > 0))
+                out.format("    %12d  %s\n", entry.getValue(), dest.toString(options));
+        }
+
+        List<AccessLogAttributor.RouteHits> unused = result.getUnusedRoutes();
+        int urlWidth = 16;
+        for (AccessLogAttributor.RouteHits route : unused)
+            urlWidth = Math.max(urlWidth, route.getUrl().length());
+        String format = "    %-" + urlWidth + "s  %-6s  %s\n";
+
+        out.println();
+        out.println("Never requested:");
+        for (AccessLogAttributor.RouteHits route : unused)
+        {
+            Destination dest = route.getDestination();
+            if (dest.isDisplayed(options))
+                out.format(format, route.getUrl(), route.getMethod(), dest.toString(options));
+        }
+    }
+}
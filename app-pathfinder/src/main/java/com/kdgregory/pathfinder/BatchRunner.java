@@ -0,0 +1,293 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.log4j.Logger;
+
+import net.sf.kdgcommons.io.IOUtil;
+
+import com.kdgregory.pathfinder.core.InvocationOptions;
+import com.kdgregory.pathfinder.core.impl.ArchiveIndexCache;
+import com.kdgregory.pathfinder.core.impl.WarMachineImpl;
+
+
+/**
+ *  Inspects many WARs in a single JVM, so that they share class loading, JIT
+ *  compilation, and the cache of library JAR contents. WARs are inspected
+ *  concurrently, using a fixed number of threads, and each WAR's paths are
+ *  written to its own file in an output directory. Each WAR is inspected on a
+ *  single thread (see {@link Inspection#setConcurrent}), so the number of threads
+ *  doing inspection is the same as the number of WARs inspected at once.
+ *  <p>
+ *  A failure (eg, a file that isn't a WAR) only affects that WAR: it's reported
+ *  in the summary, and the other WARs are still inspected. The summary lists
+ *  each WAR in the order given, and is written both to the summary stream and
+ *  to <code>summary.txt</code> in the output directory.
+ */
+public class BatchRunner
+{
+    public final static String SUMMARY_FILE = "summary.txt";
+
+    private Logger logger = Logger.getLogger(getClass());
+
+    private Map<InvocationOptions,Boolean> options;
+    private String format;
+    private int numThreads;
+
+
+    public BatchRunner(Map<InvocationOptions,Boolean> options, String format, int numThreads)
+    {
+        this.options = options;
+        this.format = format;
+        this.numThreads = numThreads;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Public methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Expands the passed paths into a list of files: directories are replaced
+     *  by the WARs that they contain (sorted by name), other paths are retained
+     *  as-is (even if they don't exist, so that they're reported as failures).
+     *  A directory that can't be listed is also retained, to be reported as a
+     *  failure.
+     */
+    public static List<File> expand(String... paths)
+    {
+        List<File> result = new ArrayList<File>();
+        for (String path : paths)
+        {
+            File file = new File(path);
+            if (!file.isDirectory())
+            {
+                result.add(file);
+                continue;
+            }
+
+            File[] wars = file.listFiles(new FilenameFilter()
+            {
+                @Override
+                public boolean accept(File dir, String name)
+                {
+                    return name.toLowerCase().endsWith(".war");
+                }
+            });
+            if (wars == null)
+            {
+                // an unreadable directory is retained, and reported as a failure
+                result.add(file);
+                continue;
+            }
+            Arrays.sort(wars);
+            result.addAll(Arrays.asList(wars));
+        }
+        return result;
+    }
+
+
+    /**
+     *  Inspects the passed WARs, writing their paths to the output directory (which
+     *  is created if necessary), and writing a summary. Returns the number of WARs
+     *  that couldn't be inspected.
+     */
+    public int run(List<File> wars, File outputDir, PrintStream summary)
+    throws Exception
+    {
+        if (!outputDir.isDirectory() && !outputDir.mkdirs())
+            throw new IllegalArgumentException("unable to create output directory: " + outputDir);
+
+        long start = System.currentTimeMillis();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(numThreads, wars.size())));
+        List<Future<Result>> futures = new ArrayList<Future<Result>>(wars.size());
+        try
+        {
+            Set<String> outputNames = new HashSet<String>();
+            for (File war : wars)
+            {
+                File output = new File(outputDir, outputName(war, outputNames));
+                futures.add(executor.submit(new WarTask(war, output)));
+            }
+
+            List<String> lines = new ArrayList<String>(wars.size() + 2);
+            int failures = 0;
+            for (Future<Result> future : futures)
+            {
+                Result result = future.get();
+                if (result.error != null)
+                    failures++;
+                lines.add(result.toString());
+            }
+
+            ArchiveIndexCache cache = ArchiveIndexCache.getShared();
+            lines.add("");
+            lines.add(wars.size() + " WARs, " + failures + " failed, "
+                      + (System.currentTimeMillis() - start) + " ms; "
+                      + cache.getHitCount() + " library JARs reused, "
+                      + cache.getMissCount() + " read");
+
+            writeSummary(lines, summary, new File(outputDir, SUMMARY_FILE));
+            return failures;
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    /**
+     *  Returns the WAR's filename, with an extension for the output format, and
+     *  a numeric suffix if a WAR with the same name has already been seen.
+     */
+    private String outputName(File war, Set<String> used)
+    {
+        String base = war.getName().replaceFirst("(?i)\\.war$", "");
+        String ext = format.equals("text") ? ".txt" : "." + format;
+        String name = base + ext;
+        for (int ii = 2 ; !used.add(name) ; ii++)
+            name = base + "-" + ii + ext;
+        return name;
+    }
+
+
+    private void writeSummary(List<String> lines, PrintStream summary, File summaryFile)
+    throws Exception
+    {
+        PrintStream out = new PrintStream(new FileOutputStream(summaryFile), false, "UTF-8");
+        try
+        {
+            for (String line : lines)
+            {
+                out.println(line);
+                summary.println(line);
+            }
+        }
+        finally
+        {
+            IOUtil.closeQuietly(out);
+        }
+    }
+
+
+//----------------------------------------------------------------------------
+//  Supporting classes
+//----------------------------------------------------------------------------
+
+    /**
+     *  Inspects a single WAR, and writes its paths. Failures, including Errors other
+     *  than <code>VirtualMachineError</code>, are returned, not thrown.
+     */
+    private class WarTask
+    implements Callable<Result>
+    {
+        private File war;
+        private File output;
+
+        public WarTask(File war, File output)
+        {
+            this.war = war;
+            this.output = output;
+        }
+
+        @Override
+        public Result call()
+        {
+            long start = System.currentTimeMillis();
+            PrintStream out = null;
+            WarMachineImpl machine = null;
+            try
+            {
+                if (war.isDirectory())
+                    throw new IllegalArgumentException("unable to list directory");
+
+                out = new PrintStream(new BufferedOutputStream(new FileOutputStream(output), 65536), false, "UTF-8");
+                machine = new WarMachineImpl(war);
+                WarReport report = new WarReport(options, machine, out);
+                report.setFormat(format);
+                report.setConcurrent(false);
+                report.run();
+                out.close();
+                return new Result(war, output, report.getUrlCount(), System.currentTimeMillis() - start, null);
+            }
+            catch (Throwable ex)
+            {
+                // Errors such as NoClassDefFoundError or StackOverflowError come from
+                // a single WAR's content; only a failing JVM should stop the batch
+                logger.warn("unable to inspect " + war, ex);
+                IOUtil.closeQuietly(out);
+                output.delete();
+                if (ex instanceof VirtualMachineError)
+                    throw (VirtualMachineError)ex;
+                return new Result(war, output, 0, System.currentTimeMillis() - start, ex);
+            }
+            finally
+            {
+                IOUtil.closeQuietly(machine);
+            }
+        }
+    }
+
+
+    /**
+     *  The outcome of inspecting a single WAR; its string value is a summary line.
+     */
+    private static class Result
+    {
+        public File war;
+        public File output;
+        public int urlCount;
+        public long elapsed;
+        public Throwable error;
+
+        public Result(File war, File output, int urlCount, long elapsed, Throwable error)
+        {
+            this.war = war;
+            this.output = output;
+            this.urlCount = urlCount;
+            this.elapsed = elapsed;
+            this.error = error;
+        }
+
+        @Override
+        public String toString()
+        {
+            if (error != null)
+                return String.format("FAILED  %s: %s", war, (error.getMessage() != null) ? error.getMessage() : error.toString());
+            return String.format("OK      %s -> %s (%d URLs, %d ms)", war, output.getName(), urlCount, elapsed);
+        }
+    }
+}
@@ -0,0 +1,301 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.log4j.Logger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import com.kdgregory.pathfinder.core.InvocationOptions;
+import com.kdgregory.pathfinder.core.PathRepo;
+import com.kdgregory.pathfinder.output.RouteWriter;
+import com.kdgregory.pathfinder.query.RouteIndex;
+
+
+/**
+ *  A long-running server that inspects WARs on request, and caches the results
+ *  (see {@link RouteCache}) so that repeated requests for the same WAR don't
+ *  repeat the inspection. It listens on the loopback interface only, and
+ *  supports these requests:
+ *  <ul>
+ *  <li> <code>GET /routes?war=PATH</code>: the WAR's paths.
+ *  <li> <code>GET /query?war=PATH&amp;term=FIELD%3DVALUE...</code>: the paths that
+ *       match all terms (see {@link RouteIndex}).
+ *  <li> <code>GET /stats</code>: the cache's size and hit counts.
+ *  </ul>
+ *  The <code>routes</code> and <code>query</code> requests also accept
+ *  <code>format</code> (as for <code>--format</code>), and <code>opt</code>,
+ *  which may be repeated, for invocation options (eg, <code>opt=--showStatic</code>).
+ *  Paths are resolved by the daemon, so should be absolute.
+ *  <p>
+ *  Invalid requests get a 400 response with a plain-text message; requests that
+ *  fail get a 500 response. Only <code>GET</code> is supported, and requests must
+ *  have a <code>Host</code> header of <code>localhost</code> or <code>127.0.0.1</code>
+ *  (to reject pages that use DNS rebinding to reach the daemon from a browser).
+ */
+public class Daemon
+{
+    private Logger logger = Logger.getLogger(getClass());
+
+    private RouteCache cache;
+    private HttpServer server;
+    private ExecutorService executor;
+
+
+    /**
+     *  @param  port        The loopback port to listen on; 0 picks a free port.
+     *  @param  cacheBytes  The estimated memory that may be used for cached paths.
+     *  @param  numThreads  The number of requests handled at once.
+     */
+    public Daemon(int port, long cacheBytes, int numThreads)
+    throws IOException
+    {
+        cache = new RouteCache(cacheBytes);
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), port), 0);
+        server.createContext("/routes", new RequestHandler());
+        server.createContext("/query", new RequestHandler());
+        server.createContext("/stats", new RequestHandler());
+        executor = Executors.newFixedThreadPool(numThreads);
+        server.setExecutor(executor);
+    }
+
+
+//----------------------------------------------------------------------------
+//  Public methods
+//----------------------------------------------------------------------------
+
+    public void start()
+    {
+        server.start();
+        logger.info("listening on port " + getPort());
+    }
+
+
+    public void stop()
+    {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+
+    /**
+     *  Registers a shutdown hook that stops the daemon when the JVM exits.
+     */
+    public void stopOnShutdown()
+    {
+        Runtime.getRuntime().addShutdownHook(new Thread()
+        {
+            @Override
+            public void run()
+            {
+                stop();
+            }
+        });
+    }
+
+
+    /**
+     *  Returns the port that the daemon is listening on.
+     */
+    public int getPort()
+    {
+        return server.getAddress().getPort();
+    }
+
+
+    public RouteCache getCache()
+    {
+        return cache;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    /**
+     *  Handles a single request, returning the response body.
+     *
+     *  @throws IllegalArgumentException if the request is invalid.
+     */
+    private String handle(String path, Map<String,List<String>> params)
+    throws Exception
+    {
+        if (path.equals("/stats"))
+        {
+            return "entries: " + cache.getEntryCount() + "\n"
+                 + "estimatedBytes: " + cache.getByteCount() + "\n"
+                 + "hits: " + cache.getHitCount() + "\n"
+                 + "misses: " + cache.getMissCount() + "\n";
+        }
+
+        String war = getParam(params, "war", null);
+        if (war == null)
+            throw new IllegalArgumentException("missing parameter: war");
+        String format = getParam(params, "format", "text");
+        if (!RouteWriter.FORMATS.contains(format))
+            throw new IllegalArgumentException("unsupported format: " + format);
+
+        List<String> opts = params.containsKey("opt") ? params.get("opt") : new ArrayList<String>();
+        Map<InvocationOptions,Boolean> options = InvocationOptions.parseCli(opts.toArray(new String[opts.size()]));
+        options.put(InvocationOptions.STREAM, Boolean.FALSE);
+
+        PathRepo result;
+        if (path.equals("/query"))
+        {
+            List<String> termList = params.containsKey("term") ? params.get("term") : new ArrayList<String>();
+            String[] terms = termList.toArray(new String[termList.size()]);
+            RouteIndex.validate(terms);
+            options = QueryRunner.queryOptions(options, terms);
+            result = cache.get(new File(war), options).getIndex().query(terms);
+        }
+        else
+        {
+            result = cache.get(new File(war), options).getPaths();
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Writer writer = new BufferedWriter(new OutputStreamWriter(bytes, "UTF-8"));
+        RouteWriter.forFormat(format, writer, options).write(result);
+        return new String(bytes.toByteArray(), "UTF-8");
+    }
+
+
+    /**
+     *  Determines whether a request's Host header names the loopback interface. A
+     *  web page that re-binds its own hostname to 127.0.0.1 can send requests to
+     *  the daemon, but they carry that hostname, so are rejected.
+     */
+    private static boolean isLoopbackHost(String host)
+    {
+        if (host == null)
+            return false;
+
+        int colon = host.lastIndexOf(':');
+        String hostname = (colon < 0) ? host : host.substring(0, colon);
+        return hostname.equalsIgnoreCase("localhost") || hostname.equals("127.0.0.1");
+    }
+
+
+    private static String getParam(Map<String,List<String>> params, String name, String defaultValue)
+    {
+        List<String> values = params.get(name);
+        return ((values == null) || values.isEmpty()) ? defaultValue : values.get(0);
+    }
+
+
+    private static Map<String,List<String>> parseQuery(String query)
+    throws IOException
+    {
+        Map<String,List<String>> result = new HashMap<String,List<String>>();
+        if (query == null)
+            return result;
+
+        for (String pair : query.split("&"))
+        {
+            if (pair.length() == 0)
+                continue;
+            int eq = pair.indexOf('=');
+            String name = URLDecoder.decode((eq < 0) ? pair : pair.substring(0, eq), "UTF-8");
+            String value = (eq < 0) ? "" : URLDecoder.decode(pair.substring(eq + 1), "UTF-8");
+            List<String> values = result.get(name);
+            if (values == null)
+            {
+                values = new ArrayList<String>();
+                result.put(name, values);
+            }
+            values.add(value);
+        }
+        return result;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Supporting classes
+//----------------------------------------------------------------------------
+
+    private class RequestHandler
+    implements HttpHandler
+    {
+        @Override
+        public void handle(HttpExchange exchange)
+        throws IOException
+        {
+            long start = System.nanoTime();
+            int status = 200;
+            String body;
+            try
+            {
+                String host = exchange.getRequestHeaders().getFirst("Host");
+                if (!exchange.getRequestMethod().equals("GET"))
+                {
+                    status = 405;
+                    body = "unsupported method: " + exchange.getRequestMethod() + "\n";
+                    exchange.getResponseHeaders().set("Allow", "GET");
+                }
+                else if (!isLoopbackHost(host))
+                {
+                    status = 403;
+                    body = "invalid Host header: " + host + "\n";
+                }
+                else
+                {
+                    String path = exchange.getRequestURI().getPath();
+                    body = Daemon.this.handle(path, parseQuery(exchange.getRequestURI().getRawQuery()));
+                }
+            }
+            catch (IllegalArgumentException ex)
+            {
+                status = 400;
+                body = ex.getMessage() + "\n";
+            }
+            catch (Throwable ex)
+            {
+                // includes Errors (eg, a class that BCEL can't parse): the client must
+                // always get a response, or it will wait forever
+                logger.warn("request failed: " + exchange.getRequestURI(), ex);
+                status = 500;
+                body = ex.getClass().getName() + ": " + ex.getMessage() + "\n";
+            }
+
+            byte[] bytes = body.getBytes("UTF-8");
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+            exchange.sendResponseHeaders(status, bytes.length);
+            OutputStream out = exchange.getResponseBody();
+            out.write(bytes);
+            out.close();
+            logger.debug(exchange.getRequestURI() + ": " + status + " in " + (System.nanoTime() - start) / 1000000 + " ms");
+        }
+    }
+}
@@ -0,0 +1,211 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import net.sf.kdgcommons.io.IOUtil;
+
+import com.kdgregory.pathfinder.core.InvocationOptions;
+import com.kdgregory.pathfinder.core.impl.WarMachineImpl;
+import com.kdgregory.pathfinder.output.DiffWriter;
+import com.kdgregory.pathfinder.output.OutputUtil;
+import com.kdgregory.pathfinder.util.RouteDiff;
+import com.kdgregory.pathfinder.util.RouteSnapshot;
+
+
+/**
+ *  Compares two versions of an application, writing the paths that were added
+ *  or removed, and those whose destination changed. Each version may be a WAR,
+ *  which is inspected, or a snapshot written with <code>--snapshot</code>. The
+ *  comparison is a single pass over both sets of paths, in sorted order; snapshots
+ *  are read as the comparison proceeds.
+ *  <p>
+ *  Destinations are compared by their description, so options that change the
+ *  description (such as <code>--showRequestParams</code>) should be the same as
+ *  when any snapshot was written.
+ */
+public class DiffRunner
+{
+    private Map<InvocationOptions,Boolean> options;
+    private boolean asJson;
+
+
+    /**
+     *  @param  options The invocation options, used when inspecting a WAR.
+     *  @param  asJson  If <code>true</code>, differences are written as JSON;
+     *                  otherwise as text.
+     */
+    public DiffRunner(Map<InvocationOptions,Boolean> options, boolean asJson)
+    {
+        this.options = options;
+        this.asJson = asJson;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Public methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Writes the differences between the two files. The output stream is
+     *  flushed but not closed.
+     *
+     *  @throws SnapshotException if a snapshot is malformed or truncated. Since
+     *          snapshots are read as the comparison proceeds, some differences
+     *          may already have been written.
+     */
+    public void diff(File oldFile, File newFile, PrintStream out)
+    throws Exception
+    {
+        List<Closeable> toClose = new ArrayList<Closeable>();
+        try
+        {
+            Iterator<RouteSnapshot.Entry> oldRoutes = openRoutes(oldFile, toClose);
+            Iterator<RouteSnapshot.Entry> newRoutes = openRoutes(newFile, toClose);
+            DiffWriter diffWriter = DiffWriter.forFormat(asJson, OutputUtil.createWriter(out));
+            RouteDiff.diff(oldRoutes, newRoutes, diffWriter);
+            diffWriter.finish();
+        }
+        finally
+        {
+            for (Closeable closeable : toClose)
+                IOUtil.closeQuietly(closeable);
+        }
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    /**
+     *  Returns the routes from one side of a diff: if the file is a WAR (a ZIP
+     *  file) it's inspected, otherwise it's read as a snapshot.
+     */
+    private Iterator<RouteSnapshot.Entry> openRoutes(File file, List<Closeable> toClose)
+    throws Exception
+    {
+        InputStream in = new FileInputStream(file);
+        toClose.add(in);
+        byte[] magic = new byte[4];
+        int count = in.read(magic);
+        in.close();
+
+        if ((count == 4) && (magic[0] == 'P') && (magic[1] == 'K') && (magic[2] == 3) && (magic[3] == 4))
+        {
+            WarMachineImpl machine = new WarMachineImpl(file);
+            toClose.add(machine);
+            return RouteSnapshot.iterate(new Inspection(options, machine).inspect(), options);
+        }
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        toClose.add(reader);
+        try
+        {
+            return new SnapshotIterator(file, RouteSnapshot.read(reader));
+        }
+        catch (IllegalArgumentException ex)
+        {
+            throw new SnapshotException(file, ex);
+        }
+    }
+
+
+//----------------------------------------------------------------------------
+//  Supporting classes
+//----------------------------------------------------------------------------
+
+    /**
+     *  Thrown when a snapshot can't be read, identifying the file.
+     */
+    public static class SnapshotException
+    extends IllegalArgumentException
+    {
+        private static final long serialVersionUID = 1L;
+
+        private File file;
+
+        public SnapshotException(File file, IllegalArgumentException cause)
+        {
+            super(cause.getMessage(), cause);
+            this.file = file;
+        }
+
+        public File getFile()
+        {
+            return file;
+        }
+    }
+
+
+    /**
+     *  Identifies the file when reading a snapshot entry fails.
+     */
+    private static class SnapshotIterator
+    implements Iterator<RouteSnapshot.Entry>
+    {
+        private File file;
+        private Iterator<RouteSnapshot.Entry> delegate;
+
+        public SnapshotIterator(File file, Iterator<RouteSnapshot.Entry> delegate)
+        {
+            this.file = file;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            try
+            {
+                return delegate.hasNext();
+            }
+            catch (IllegalArgumentException ex)
+            {
+                throw new SnapshotException(file, ex);
+            }
+        }
+
+        @Override
+        public RouteSnapshot.Entry next()
+        {
+            try
+            {
+                return delegate.next();
+            }
+            catch (IllegalArgumentException ex)
+            {
+                throw new SnapshotException(file, ex);
+            }
+        }
+
+        @Override
+        public void remove()
+        {
+            throw new UnsupportedOperationException("snapshots are read-only");
+        }
+    }
+}
@@ -0,0 +1,113 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+
+import com.kdgregory.pathfinder.output.OutputUtil;
+import com.kdgregory.pathfinder.util.RouteHistory;
+import com.kdgregory.pathfinder.util.RouteSnapshot;
+
+
+/**
+ *  Reports from a history store (see {@link RouteHistory}), without inspecting
+ *  a WAR.
+ */
+public class HistoryReport
+{
+    private RouteHistory history;
+    private PrintWriter out;
+
+
+    /**
+     *  @param  history The history store.
+     *  @param  out     The destination for output. It's flushed but not closed.
+     */
+    public HistoryReport(RouteHistory history, PrintStream out)
+    {
+        this.history = history;
+        this.out = OutputUtil.createWriter(out);
+    }
+
+
+//----------------------------------------------------------------------------
+//  Public methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Lists the builds in the store, with their timestamps and change counts.
+     */
+    public void listBuilds()
+    {
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+        for (RouteHistory.Build build : history.getBuilds())
+        {
+            out.format("%-20s  %s  %6d changes\n", build.getLabel(),
+                       dateFormat.format(new Date(build.getTimestamp())), Integer.valueOf(build.getChangeCount()));
+        }
+        out.flush();
+    }
+
+
+    /**
+     *  Shows every change to a URL.
+     */
+    public void showLifetime(String url)
+    throws IOException
+    {
+        out.println(url);
+        for (RouteHistory.Event event : history.getLifetime(url))
+        {
+            RouteSnapshot.Entry entry = event.getEntry();
+            out.format("    %-20s  %-8s  %-6s  %s\n", event.getBuild().getLabel(), event.getType(),
+                       entry.getMethod(), entry.getDestination());
+        }
+        out.flush();
+    }
+
+
+    /**
+     *  Shows the paths as of a build.
+     *
+     *  @throws IllegalArgumentException if the build label isn't in the store.
+     */
+    public void showTable(String buildLabel)
+    throws IOException
+    {
+        RouteHistory.Build build = history.getBuild(buildLabel);
+        if (build == null)
+            throw new IllegalArgumentException("no such build: " + buildLabel);
+
+        List<RouteSnapshot.Entry> entries = new ArrayList<RouteSnapshot.Entry>();
+        int urlWidth = 16;
+        for (Iterator<RouteSnapshot.Entry> itx = history.getTable(build) ; itx.hasNext() ; )
+        {
+            RouteSnapshot.Entry entry = itx.next();
+            entries.add(entry);
+            urlWidth = Math.max(urlWidth, entry.getUrl().length());
+        }
+        String format = "%-" + urlWidth + "s  %-6s  %s\n";
+        for (RouteSnapshot.Entry entry : entries)
+            out.format(format, entry.getUrl(), entry.getMethod(), entry.getDestination());
+        out.flush();
+    }
+}
@@ -0,0 +1,204 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.log4j.Logger;
+
+import com.kdgregory.pathfinder.core.Destination;
+import com.kdgregory.pathfinder.core.HttpMethod;
+import com.kdgregory.pathfinder.core.Inspector;
+import com.kdgregory.pathfinder.core.InvocationOptions;
+import com.kdgregory.pathfinder.core.PathRepo;
+import com.kdgregory.pathfinder.core.WarMachine;
+import com.kdgregory.pathfinder.core.impl.ConcurrentPathRepo;
+import com.kdgregory.pathfinder.embed.PathFinder;
+import com.kdgregory.pathfinder.util.EmbeddedManifest;
+
+
+/**
+ *  Runs the standard inspectors (see {@link PathFinder#createInspectors}) against
+ *  a single WAR. This is shared by the entry points that need a WAR's paths; it
+ *  doesn't write output, and doesn't close the WAR.
+ *  <p>
+ *  By default the inspectors run concurrently. Each writes through its own view
+ *  of the repository, ordered so that the result is the same as if they ran one
+ *  after the other (eg, the Spring inspector replaces the servlet inspector's
+ *  dispatcher mappings).
+ */
+public class Inspection
+{
+    private Logger logger = Logger.getLogger(getClass());
+
+    private Map<InvocationOptions,Boolean> options;
+    private WarMachine machine;
+    private ConcurrentPathRepo repo = new ConcurrentPathRepo();
+    private boolean concurrent = true;
+
+
+    public Inspection(Map<InvocationOptions,Boolean> options, WarMachine machine)
+    {
+        this.options = options;
+        this.machine = machine;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Public methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Controls whether the inspectors run concurrently (the default). If not, the
+     *  inspectors, and the Spring inspector's dispatchers, run one after the other
+     *  on the calling thread.
+     */
+    public void setConcurrent(boolean concurrent)
+    {
+        this.concurrent = concurrent;
+    }
+
+
+    /**
+     *  Returns the views of the repository that the inspectors write through, in
+     *  the order of the inspectors.
+     */
+    public List<PathRepo> getViews()
+    {
+        int count = PathFinder.createInspectors(options).size();
+        List<PathRepo> views = new ArrayList<PathRepo>(count);
+        for (int ii = 0 ; ii < count ; ii++)
+            views.add(repo.writer(ii));
+        return views;
+    }
+
+
+    /**
+     *  Invokes the inspectors (or loads an embedded manifest), and returns a
+     *  snapshot of the paths.
+     */
+    public PathRepo inspect()
+    throws Exception
+    {
+        return inspect(getViews());
+    }
+
+
+    /**
+     *  Invokes the inspectors, each writing through the corresponding passed view,
+     *  and returns a snapshot of the result. The views must wrap (or be) those
+     *  returned by {@link #getViews}.
+     *  <p>
+     *  If the WAR has a usable embedded manifest, its paths are written through
+     *  the first view instead, and the inspectors aren't run. This isn't done
+     *  when analyzing, because analysis needs the inspectors' operations.
+     */
+    public PathRepo inspect(List<? extends PathRepo> views)
+    throws Exception
+    {
+        if (InvocationOptions.USE_MANIFEST.isEnabled(options) && !InvocationOptions.ANALYZE.isEnabled(options))
+        {
+            PathRepo embedded = EmbeddedManifest.load(machine, options);
+            if (embedded != null)
+            {
+                logger.debug("loaded paths from embedded manifest");
+                for (String url : embedded)
+                {
+                    for (Map.Entry<HttpMethod,Destination> entry : embedded.get(url).entrySet())
+                        views.get(0).put(url, entry.getKey(), entry.getValue());
+                }
+                repo.finishWriters();
+                return repo.freeze();
+            }
+        }
+
+        if (concurrent)
+        {
+            runConcurrently(PathFinder.createInspectors(options), views);
+        }
+        else
+        {
+            List<Inspector> inspectors = PathFinder.createInspectors(options, 1);
+            for (int ii = 0 ; ii < inspectors.size() ; ii++)
+                inspectors.get(ii).inspect(machine, views.get(ii));
+        }
+
+        repo.finishWriters();
+        return repo.freeze();
+    }
+
+
+    /**
+     *  Returns the number of URLs found by the last inspection.
+     */
+    public int getUrlCount()
+    {
+        return repo.urlCount();
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    /**
+     *  Runs the last inspector on the calling thread, and the others on a pool.
+     */
+    private void runConcurrently(List<Inspector> inspectors, List<? extends PathRepo> views)
+    throws Exception
+    {
+        int last = inspectors.size() - 1;
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, last));
+        try
+        {
+            List<Future<Void>> futures = new ArrayList<Future<Void>>(last);
+            for (int ii = 0 ; ii < last ; ii++)
+            {
+                final Inspector inspector = inspectors.get(ii);
+                final PathRepo view = views.get(ii);
+                futures.add(executor.submit(new Callable<Void>()
+                {
+                    @Override
+                    public Void call()
+                    {
+                        inspector.inspect(machine, view);
+                        return null;
+                    }
+                }));
+            }
+            inspectors.get(last).inspect(machine, views.get(last));
+            for (Future<Void> future : futures)
+                future.get();
+        }
+        catch (ExecutionException ex)
+        {
+            Throwable cause = ex.getCause();
+            if (cause instanceof Error)
+                throw (Error)cause;
+            throw (cause instanceof Exception) ? (Exception)cause : ex;
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+}
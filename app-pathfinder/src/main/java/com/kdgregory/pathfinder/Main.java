@@ -15,7 +15,7 @@
 package com.kdgregory.pathfinder;
 
 import java.io.File;
-import java.io.PrintStream;
+import java.util.Arrays;
 import java.util.Map;
 
 import org.apache.log4j.ConsoleAppender;
@@ -23,130 +23,329 @@ import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
 import org.apache.log4j.PatternLayout;
 
+import net.sf.kdgcommons.io.IOUtil;
 import net.sf.kdgcommons.lang.UnreachableCodeException;
 
-import com.kdgregory.pathfinder.core.Destination;
-import com.kdgregory.pathfinder.core.HttpMethod;
 import com.kdgregory.pathfinder.core.InvocationOptions;
-import com.kdgregory.pathfinder.core.PathRepo;
 import com.kdgregory.pathfinder.core.WarMachine;
-import com.kdgregory.pathfinder.core.impl.PathRepoImpl;
 import com.kdgregory.pathfinder.core.impl.WarMachineImpl;
-import com.kdgregory.pathfinder.servlet.ServletInspector;
-import com.kdgregory.pathfinder.spring.SpringInspector;
+import com.kdgregory.pathfinder.output.RouteWriter;
+import com.kdgregory.pathfinder.query.RouteIndex;
+import com.kdgregory.pathfinder.util.RouteHistory;
 
 
 /**
- *  PathFinder driver program.
+ *  PathFinder driver program: parses the command line, and hands off to the
+ *  class that implements the selected mode.
  */
 public class Main
 {
+    private final static String CONTEXT_PATH_ARG = "--contextPath=";
+    private final static String FORMAT_ARG = "--format=";
+    private final static String HISTORY_ARG = "--history=";
+    private final static String BUILD_ARG = "--build=";
+    private final static String ROUTE_HISTORY_ARG = "--routeHistory=";
+    private final static String TABLE_AT_ARG = "--tableAt=";
+    private final static String MANIFEST_ARG = "--manifest=";
+    private final static String QUERY_COMMAND = "query";
+    private final static String BATCH_COMMAND = "batch";
+    private final static String THREADS_ARG = "--threads=";
+    private final static String DAEMON_COMMAND = "daemon";
+    private final static String PORT_ARG = "--port=";
+    private final static String CACHE_MB_ARG = "--cacheMB=";
+    private final static String INTERVAL_ARG = "--interval=";
+
+
     public static void main(String[] argv)
     throws Exception
     {
         Map<InvocationOptions, Boolean> options = InvocationOptions.parseCli(argv);
-        WarMachine machine = openWarOrDie(InvocationOptions.removeInvocationArguments(argv));
+        configureLogging(options);
+
+        String[] files = InvocationOptions.removeInvocationArguments(argv);
+        String format = getArgValue(argv, FORMAT_ARG, "text");
+        if (!RouteWriter.FORMATS.contains(format))
+            exitWithUsage("unsupported format: " + format);
 
-        if (InvocationOptions.DEBUG.isEnabled(options) || InvocationOptions.VERBOSE.isEnabled(options))
+        if (InvocationOptions.DIFF.isEnabled(options))
         {
-            // we can't get access to the appenders in the log4j.properties file,
-            // so we have to construct appender and layout ourselves ... yuck
-
-            PatternLayout layout = new PatternLayout("%-5p - %c{1} - %m%n");
-            ConsoleAppender appender = new ConsoleAppender(layout, "System.err");
-            Logger logger = Logger.getLogger("com.kdgregory.pathfinder");
-            logger.removeAllAppenders();
-            logger.addAppender(appender);
-            logger.setLevel(Level.DEBUG);
-            if (InvocationOptions.VERBOSE.isEnabled(options))
-                logger.setLevel(Level.TRACE);
+            if (files.length != 2)
+                exitWithUsage("--diff requires two files");
+            if (!format.equals("text") && !format.equals("json"))
+                exitWithUsage("--diff only supports text and json formats");
+            try
+            {
+                new DiffRunner(options, format.equals("json")).diff(new File(files[0]), new File(files[1]), System.out);
+            }
+            catch (DiffRunner.SnapshotException ex)
+            {
+                System.out.flush();
+                System.err.println("unable to read snapshot " + ex.getFile() + ": " + ex.getMessage());
+                System.exit(1);
+            }
+            return;
         }
 
-        new Main(options, machine, System.out).run();
-    }
+        if (InvocationOptions.WATCH.isEnabled(options))
+        {
+            if (files.length != 1)
+                exitWithUsage("--watch requires a single WARFILE");
+            if (!format.equals("text") && !format.equals("json"))
+                exitWithUsage("--watch only supports text and json formats");
+            new Watcher(new File(files[0]), options).run(System.out, format.equals("json"),
+                                                          getNumericArg(argv, INTERVAL_ARG, 1000, 1, Long.MAX_VALUE));
+            return;
+        }
 
+        boolean textOutput = format.equals("text") && !InvocationOptions.SNAPSHOT.isEnabled(options);
+        if (!textOutput && (InvocationOptions.SHOW_FILTERS.isEnabled(options) || InvocationOptions.ANALYZE.isEnabled(options)))
+            exitWithUsage("--showFilters and --analyze only apply to text output");
 
-//----------------------------------------------------------------------------
-//  Implementation -- instantiable so that we can test
-//----------------------------------------------------------------------------
+        if ((files.length > 0) && files[0].equals(BATCH_COMMAND))
+        {
+            if (files.length < 3)
+                exitWithUsage("batch requires an output directory and at least one WARFILE or directory");
+            BatchRunner batch = new BatchRunner(options, format, getThreads(argv));
+            int failures = batch.run(BatchRunner.expand(Arrays.copyOfRange(files, 2, files.length)),
+                                     new File(files[1]), System.out);
+            if (failures > 0)
+                System.exit(1);
+            return;
+        }
+
+        if ((files.length > 0) && files[0].equals(DAEMON_COMMAND))
+        {
+            Daemon daemon = new Daemon((int)getNumericArg(argv, PORT_ARG, 7070, 0, 65535),
+                                       getNumericArg(argv, CACHE_MB_ARG, 256, 1, Integer.MAX_VALUE) * 1024 * 1024,
+                                       getThreads(argv));
+            daemon.stopOnShutdown();
+            daemon.start();
+            System.err.println("pathfinder daemon listening on 127.0.0.1:" + daemon.getPort());
+            return;
+        }
+
+        if ((files.length > 0) && files[0].equals(QUERY_COMMAND))
+        {
+            if (files.length < 2)
+                exitWithUsage("query requires a WARFILE");
+            String[] terms = Arrays.copyOfRange(files, 2, files.length);
+            try
+            {
+                RouteIndex.validate(terms);
+            }
+            catch (IllegalArgumentException ex)
+            {
+                exitWithUsage(ex.getMessage());
+            }
+
+            WarMachine machine = openWarOrDie(new String[] { files[1] });
+            try
+            {
+                QueryRunner query = new QueryRunner(QueryRunner.queryOptions(options, terms), machine, System.out);
+                query.setFormat(format);
+                query.query(terms);
+            }
+            finally
+            {
+                IOUtil.closeQuietly(machine);
+            }
+            return;
+        }
+
+        String historyDir = getArgValue(argv, HISTORY_ARG, null);
+        if (InvocationOptions.STREAM.isEnabled(options))
+        {
+            if (files.length != 1)
+                exitWithUsage("--stream requires a single WARFILE");
+            if (!format.equals("text") && !format.equals("ndjson"))
+                exitWithUsage("--stream always writes ndjson, so can't be combined with " + FORMAT_ARG + format);
+            if ((historyDir != null) || (getArgValue(argv, MANIFEST_ARG, null) != null))
+                exitWithUsage("--stream can't be combined with " + HISTORY_ARG + " or " + MANIFEST_ARG);
+        }
 
-    private PrintStream out;
-    private Map<InvocationOptions, Boolean> options;
-    private WarMachine machine;
-    private PathRepo repo;
+        if ((historyDir != null) && (files.length == 0))
+        {
+            HistoryReport report = new HistoryReport(new RouteHistory(new File(historyDir)), System.out);
+            String url = getArgValue(argv, ROUTE_HISTORY_ARG, null);
+            String buildLabel = getArgValue(argv, TABLE_AT_ARG, null);
+            if (url != null)
+                report.showLifetime(url);
+            else if (buildLabel != null)
+                report.showTable(buildLabel);
+            else
+                report.listBuilds();
+            return;
+        }
 
+        WarMachine machine = openWarOrDie(files);
+        try
+        {
+            if (files.length > 1)
+            {
+                File[] logs = new File[files.length - 1];
+                for (int ii = 1 ; ii < files.length ; ii++)
+                    logs[ii - 1] = new File(files[ii]);
+                String contextPath = AttributionReport.getContextPath(getArgValue(argv, CONTEXT_PATH_ARG, null), files[0]);
+                new AttributionReport(options, machine, System.out).attribute(contextPath, logs);
+                return;
+            }
 
-    public Main(Map<InvocationOptions, Boolean> options, WarMachine machine, PrintStream out)
-    {
-        this.options = options;
-        this.machine = machine;
-        this.out = out;
-        repo = new PathRepoImpl();
+            WarReport report = new WarReport(options, machine, System.out);
+            report.setFormat(format);
+            String manifest = getArgValue(argv, MANIFEST_ARG, null);
+            if (manifest != null)
+                report.setManifest(new File(manifest));
+            if (historyDir != null)
+            {
+                report.setHistory(new RouteHistory(new File(historyDir)),
+                                  getArgValue(argv, BUILD_ARG, new File(files[0]).getName()));
+            }
+            report.run();
+        }
+        finally
+        {
+            IOUtil.closeQuietly(machine);
+        }
     }
 
 
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
     /**
-     *  Invokes the inspectors and dumps the repository. You can call multiple
-     *  times, but it's a bit pointless: the inspectors will overwrite whatever
-     *  is already in the path repository.
-     *  <p>
-     *  Note: not only can this throw exceptions, it will also call System.exit
-     *  directly.
+     *  Configures log4j programmatically, before any logger is created. Unless
+     *  we're debugging, logging is turned off entirely: we don't want to pay for
+     *  log4j to find and parse a configuration file (or for our log statements
+     *  to build messages) on every invocation.
      */
-    public void run()
-    throws Exception
+    private static void configureLogging(Map<InvocationOptions, Boolean> options)
     {
-        new ServletInspector().inspect(machine, repo);
-        new SpringInspector().inspect(machine, repo);
-        dumpRepo();
+        System.setProperty("log4j.defaultInitOverride", "true");
+        Logger.getRootLogger().setLevel(Level.OFF);
+
+        boolean debug = InvocationOptions.DEBUG.isEnabled(options);
+        boolean verbose = InvocationOptions.VERBOSE.isEnabled(options);
+        if (!debug && !verbose)
+            return;
+
+        PatternLayout layout = new PatternLayout("%-5p - %c{1} - %m%n");
+        ConsoleAppender appender = new ConsoleAppender(layout, "System.err");
+        Logger logger = Logger.getLogger("com.kdgregory.pathfinder");
+        logger.addAppender(appender);
+        logger.setLevel(verbose ? Level.TRACE : Level.DEBUG);
     }
 
 
-//----------------------------------------------------------------------------
-//  Internals
-//----------------------------------------------------------------------------
+    private static void exitWithUsage(String message)
+    {
+        System.err.println();
+        if (message != null)
+            System.err.println(message);
+        System.err.println("invocation: Main [OPTIONS] WARFILE [ACCESSLOG ...]");
+        System.err.println("            Main [OPTIONS] --diff OLD NEW");
+        System.err.println("            Main --history=DIR [--routeHistory=URL | --tableAt=BUILD]");
+        System.err.println("            Main [OPTIONS] query WARFILE [FIELD=VALUE ...]");
+        System.err.println("            Main [OPTIONS] batch OUTDIR WARFILE|DIR ...");
+        System.err.println("            Main daemon [--port=N] [--cacheMB=N] [--threads=N]");
+        System.err.println("            Main [OPTIONS] --watch [--interval=MILLIS] WARFILE");
+        System.err.println();
+        System.err.println("    " + FORMAT_ARG + "text|json|ndjson|csv selects the format for paths; --diff");
+        System.err.println("    supports text and json. " + MANIFEST_ARG + "FILE also writes the paths to a binary");
+        System.err.println("    manifest, which may be memory-mapped by other tools.");
+        System.err.println();
+        System.err.println("    If access logs are given, reports the requests that each destination");
+        System.err.println("    received, and the paths that were never requested. Use " + CONTEXT_PATH_ARG + "PATH");
+        System.err.println("    if the WAR isn't deployed under its own name (ROOT.war is deployed as \"\").");
+        System.err.println();
+        System.err.println("    With " + HISTORY_ARG + "DIR and a WARFILE, appends the WAR's paths to a history");
+        System.err.println("    store, as " + BUILD_ARG + "LABEL (default: the WAR's filename). Without a WARFILE,");
+        System.err.println("    lists the stored builds, the changes to a URL, or the paths as of a build.");
+        System.err.println();
+        System.err.println("    A query lists the paths that match all terms; fields are " + RouteIndex.FIELDS + ".");
+        System.err.println();
+        System.err.println("    A batch writes each WAR's paths to its own file in OUTDIR, plus a summary;");
+        System.err.println("    " + THREADS_ARG + "N sets the number of WARs inspected at once (default: one per CPU);");
+        System.err.println("    each WAR is inspected on a single thread.");
+        System.err.println();
+        System.err.println("    A daemon listens on the loopback interface (" + PORT_ARG + "N, default 7070) for");
+        System.err.println("    GET /routes?war=PATH, /query?war=PATH&term=FIELD%3DVALUE, and /stats, and");
+        System.err.println("    caches inspected WARs, up to " + CACHE_MB_ARG + "N megabytes (default 256).");
+        System.err.println();
+        System.err.println("    With --watch, checks the WAR every " + INTERVAL_ARG + "MILLIS (default 1000), and");
+        System.err.println("    writes the paths that changed whenever it's rebuilt.");
+        InvocationOptions.dump(System.err);
+        System.exit(1);
+    }
+
 
-    private static WarMachine openWarOrDie(String[] warName)
+    private static WarMachine openWarOrDie(String[] files)
     {
-        if (warName.length != 1)
-        {
-            System.err.println();
-            System.err.println("invocation: Main [OPTIONS] WARFILE");
-            InvocationOptions.dump(System.err);
-            System.exit(1);
-        }
+        if (files.length < 1)
+            exitWithUsage(null);
 
         try
         {
-            return new WarMachineImpl(new File(warName[0]));
+            return new WarMachineImpl(new File(files[0]));
         }
         catch (Exception ex)
         {
             System.err.println("unable to open WARFILE: " + ex.getMessage());
             System.exit(1);
-            throw new UnreachableCodeException("The compiler[ doesn't know that exit() doesn't return");
+            throw new UnreachableCodeException("The compiler doesn't know that exit() doesn't return");
         }
     }
 
 
-    private void dumpRepo()
+    /**
+     *  Returns the value of a "--name=value" argument, the default if it's not
+     *  present.
+     */
+    private static String getArgValue(String[] argv, String prefix, String defaultValue)
     {
-        int urlWidth = 16;
-        for (String url : repo)
-            urlWidth = Math.max(urlWidth, url.length());
+        for (String arg : argv)
+        {
+            if (arg.startsWith(prefix))
+                return arg.substring(prefix.length());
+        }
+        return defaultValue;
+    }
 
-        String format = "%-" + urlWidth + "s  %-6s  %s\n";
 
-        for (String url : repo)
+    /**
+     *  Returns the value of a numeric "--name=value" argument, the default if it's
+     *  not present. Exits with usage if the value isn't a number, or is outside the
+     *  given bounds (inclusive).
+     */
+    private static long getNumericArg(String[] argv, String prefix, long defaultValue, long min, long max)
+    {
+        String value = getArgValue(argv, prefix, null);
+        if (value == null)
+            return defaultValue;
+
+        try
         {
-            Map<HttpMethod,Destination> destMap = repo.get(url);
-            for (HttpMethod method : destMap.keySet())
-            {
-                Destination dest = destMap.get(method);
-                if (!dest.isDisplayed(options))
-                    continue;
-                out.format(format, url, method, dest.toString(options));
-            }
+            long result = Long.parseLong(value);
+            if ((result >= min) && (result <= max))
+                return result;
         }
+        catch (NumberFormatException ignored)
+        {
+            // fall through to report the error
+        }
+        String range = (max >= Integer.MAX_VALUE) ? "at least " + min : "from " + min + " to " + max;
+        exitWithUsage("invalid value for " + prefix.substring(0, prefix.length() - 1) + ": " + value
+                      + " (must be " + range + ")");
+        throw new UnreachableCodeException("The compiler doesn't know that exit() doesn't return");
+    }
+
+
+    /**
+     *  Returns the number of threads for a batch or daemon: one per CPU unless
+     *  overridden.
+     */
+    private static int getThreads(String[] argv)
+    {
+        return (int)getNumericArg(argv, THREADS_ARG, Runtime.getRuntime().availableProcessors(), 1, Integer.MAX_VALUE);
     }
 }
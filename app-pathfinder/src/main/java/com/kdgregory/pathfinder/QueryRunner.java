@@ -0,0 +1,115 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder;
+
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+import com.kdgregory.pathfinder.core.InvocationOptions;
+import com.kdgregory.pathfinder.core.PathRepo;
+import com.kdgregory.pathfinder.core.WarMachine;
+import com.kdgregory.pathfinder.output.OutputUtil;
+import com.kdgregory.pathfinder.output.RouteWriter;
+import com.kdgregory.pathfinder.query.RouteIndex;
+
+
+/**
+ *  Inspects a single WAR, and writes the paths that match all of a set of query
+ *  terms (see {@link RouteIndex}).
+ */
+public class QueryRunner
+{
+    private Logger logger = Logger.getLogger(getClass());
+
+    private PrintWriter out;
+    private Map<InvocationOptions,Boolean> options;
+    private WarMachine machine;
+    private String format = "text";
+
+
+    /**
+     *  @param  options The invocation options; these should have been adjusted
+     *                  by {@link #queryOptions}.
+     *  @param  machine The WAR. It's not closed.
+     *  @param  out     The destination for output. It's flushed but not closed.
+     */
+    public QueryRunner(Map<InvocationOptions,Boolean> options, WarMachine machine, PrintStream out)
+    {
+        this.options = options;
+        this.machine = machine;
+        this.out = OutputUtil.createWriter(out);
+    }
+
+
+//----------------------------------------------------------------------------
+//  Public methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Queries need the destinations' details, so can't use an embedded manifest,
+     *  and parameter queries need request parameters. Updates and returns the
+     *  passed options.
+     */
+    public static Map<InvocationOptions,Boolean> queryOptions(Map<InvocationOptions,Boolean> options, String[] terms)
+    {
+        options.put(InvocationOptions.USE_MANIFEST, Boolean.FALSE);
+        for (String term : terms)
+        {
+            if (term.startsWith("param="))
+                options.put(InvocationOptions.SHOW_REQUEST_PARAMS, Boolean.TRUE);
+        }
+        return options;
+    }
+
+
+    /**
+     *  Sets the format used to write paths: one of the names in {@link
+     *  RouteWriter#FORMATS}. The default is "text".
+     *
+     *  @throws IllegalArgumentException if the format isn't supported.
+     */
+    public void setFormat(String format)
+    {
+        if (!RouteWriter.FORMATS.contains(format))
+            throw new IllegalArgumentException("unsupported format: " + format);
+        this.format = format;
+    }
+
+
+    /**
+     *  Invokes the inspectors, then writes the paths that match all of the passed
+     *  query terms in the configured format.
+     *
+     *  @throws IllegalArgumentException if a term is invalid.
+     */
+    public void query(String... terms)
+    throws Exception
+    {
+        PathRepo snapshot = new Inspection(options, machine).inspect();
+
+        long start = System.nanoTime();
+        RouteIndex index = new RouteIndex(snapshot, options);
+        long indexed = System.nanoTime();
+        PathRepo result = index.query(terms);
+        logger.debug("indexed " + index.size() + " routes in " + (indexed - start) / 1000000 + " ms, "
+                     + "query selected " + result.urlCount() + " URLs in " + (System.nanoTime() - indexed) / 1000000 + " ms");
+
+        RouteWriter.forFormat(format, out, options).write(result);
+        out.flush();
+    }
+}
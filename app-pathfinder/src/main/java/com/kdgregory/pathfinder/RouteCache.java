@@ -0,0 +1,314 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+import net.sf.kdgcommons.io.IOUtil;
+
+import com.kdgregory.pathfinder.core.Destination;
+import com.kdgregory.pathfinder.core.InvocationOptions;
+import com.kdgregory.pathfinder.core.PathRepo;
+import com.kdgregory.pathfinder.core.WarMachine;
+import com.kdgregory.pathfinder.core.impl.ParsedClassCache;
+import com.kdgregory.pathfinder.core.impl.WarMachineImpl;
+import com.kdgregory.pathfinder.query.RouteIndex;
+import com.kdgregory.pathfinder.util.EmbeddedManifest;
+
+
+/**
+ *  Holds the paths (and, once queried, the index) for recently inspected WARs,
+ *  keyed by the WAR's canonical path and the invocation options. The cache is
+ *  bounded by an estimate of the memory used by each entry, including its index
+ *  once built, and discards the least recently used entries to stay under that
+ *  bound.
+ *  <p>
+ *  An entry is valid as long as the WAR's size and modification time haven't
+ *  changed. If they have, the WAR's content digest (see {@link
+ *  WarMachine#getContentDigest}) is compared to the digest when the entry was
+ *  created: if the same (eg, the WAR was rebuilt without change), the entry is
+ *  retained; if not, the WAR is inspected again. Inspections share a cache of
+ *  parsed classes (see {@link ParsedClassCache}), so re-inspecting a rebuilt WAR
+ *  only parses the classes that changed.
+ *  <p>
+ *  The bound covers paths and indexes only. The parsed class cache is bounded
+ *  by its own class count, and library JAR file lists are held in the shared
+ *  {@link com.kdgregory.pathfinder.core.impl.ArchiveIndexCache}, which is
+ *  bounded by its JAR count; neither counts toward this cache's estimated size.
+ *  <p>
+ *  May be used by concurrent threads. Two threads that request the same WAR at
+ *  the same time may both inspect it; the last to finish replaces the other's
+ *  entry.
+ */
+public class RouteCache
+{
+    private Logger logger = Logger.getLogger(getClass());
+
+    private long maxBytes;
+    private long currentBytes;
+    private long hits;
+    private long misses;
+    private ParsedClassCache classCache = new ParsedClassCache(ParsedClassCache.DEFAULT_CAPACITY);
+    private LinkedHashMap<String,Entry> entries = new LinkedHashMap<String,Entry>(16, 0.75f, true);
+
+
+    public RouteCache(long maxBytes)
+    {
+        this.maxBytes = maxBytes;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Public methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Returns the cache entry for a WAR, inspecting it if there's no valid entry.
+     *
+     *  @throws IllegalArgumentException if the file doesn't exist or isn't a WAR.
+     */
+    public Entry get(File war, Map<InvocationOptions,Boolean> options)
+    throws Exception
+    {
+        if (!war.isFile())
+            throw new IllegalArgumentException("no such file: " + war);
+
+        String key = war.getCanonicalPath() + " " + options;
+        Entry entry = lookup(key);
+        if ((entry != null) && (entry.size == war.length()) && (entry.lastModified == war.lastModified()))
+        {
+            recordHit();
+            return entry;
+        }
+
+        long size = war.length();
+        long lastModified = war.lastModified();
+        WarMachineImpl machine = new WarMachineImpl(war);
+        machine.setClassCache(classCache);
+        try
+        {
+            String digest = machine.getContentDigest(EmbeddedManifest.ENTRY_PREFIX);
+            if ((entry != null) && entry.digest.equals(digest))
+            {
+                logger.debug("WAR touched but not changed: " + war);
+                entry.size = size;
+                entry.lastModified = lastModified;
+                recordHit();
+                return entry;
+            }
+
+            recordMiss();
+            PathRepo repo = new Inspection(options, machine).inspect();
+            entry = new Entry(this, key, size, lastModified, digest, repo, options);
+            store(key, entry);
+            logger.debug("inspected " + war + ": " + repo.urlCount() + " URLs, estimated " + entry.bytes + " bytes");
+            return entry;
+        }
+        finally
+        {
+            IOUtil.closeQuietly(machine);
+        }
+    }
+
+
+    public synchronized int getEntryCount()
+    {
+        return entries.size();
+    }
+
+
+    public synchronized long getByteCount()
+    {
+        return currentBytes;
+    }
+
+
+    public synchronized long getHitCount()
+    {
+        return hits;
+    }
+
+
+    public synchronized long getMissCount()
+    {
+        return misses;
+    }
+
+
+    /**
+     *  Returns the cache of parsed classes that's shared by inspections.
+     */
+    public ParsedClassCache getClassCache()
+    {
+        return classCache;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    private synchronized Entry lookup(String key)
+    {
+        return entries.get(key);
+    }
+
+
+    private synchronized void store(String key, Entry entry)
+    {
+        Entry old = entries.put(key, entry);
+        if (old != null)
+            currentBytes -= old.bytes;
+        currentBytes += entry.bytes;
+        evict(entry);
+    }
+
+
+    /**
+     *  Called when an entry builds its index, which adds to its size. Ignored if
+     *  the entry has already been evicted or replaced.
+     */
+    private synchronized void indexBuilt(Entry entry, long indexBytes)
+    {
+        entry.bytes += indexBytes;
+        if (entries.get(entry.key) != entry)
+            return;
+        currentBytes += indexBytes;
+        evict(entry);
+    }
+
+
+    /**
+     *  Discards least-recently-used entries until the cache is under its limit.
+     *  The passed entry is always kept, even if it's larger than the limit.
+     */
+    private void evict(Entry keep)
+    {
+        for (Iterator<Map.Entry<String,Entry>> itx = entries.entrySet().iterator() ;
+             (currentBytes > maxBytes) && (entries.size() > 1) && itx.hasNext() ; )
+        {
+            Map.Entry<String,Entry> eldest = itx.next();
+            if (eldest.getValue() == keep)
+                continue;
+            logger.debug("evicting " + eldest.getKey());
+            currentBytes -= eldest.getValue().bytes;
+            itx.remove();
+        }
+    }
+
+
+    private synchronized void recordHit()
+    {
+        hits++;
+    }
+
+
+    private synchronized void recordMiss()
+    {
+        misses++;
+    }
+
+
+    /**
+     *  Estimates an entry's memory use from its strings: two bytes per character,
+     *  plus a fixed overhead per URL and destination (for map entries, headers,
+     *  and the index).
+     */
+    private static long estimateBytes(PathRepo repo, Map<InvocationOptions,Boolean> options)
+    {
+        long bytes = 0;
+        for (String url : repo)
+        {
+            bytes += 64 + 2 * url.length();
+            for (Destination dest : repo.get(url).values())
+                bytes += 96 + 2 * dest.toString(options).length();
+        }
+        return bytes;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Supporting classes
+//----------------------------------------------------------------------------
+
+    /**
+     *  The cached paths for a WAR and set of options.
+     */
+    public static class Entry
+    {
+        private RouteCache cache;
+        private String key;
+        private volatile long size;
+        private volatile long lastModified;
+        private String digest;
+        private PathRepo repo;
+        private Map<InvocationOptions,Boolean> options;
+        private RouteIndex index;
+        private volatile long bytes;
+
+        private Entry(RouteCache cache, String key, long size, long lastModified, String digest,
+                      PathRepo repo, Map<InvocationOptions,Boolean> options)
+        {
+            this.cache = cache;
+            this.key = key;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.digest = digest;
+            this.repo = repo;
+            this.options = options;
+            this.bytes = estimateBytes(repo, options);
+        }
+
+        public PathRepo getPaths()
+        {
+            return repo;
+        }
+
+        /**
+         *  Returns the index for this entry's paths, building it on first use.
+         *  Once built, the index counts toward the entry's (and the cache's)
+         *  estimated size.
+         */
+        public RouteIndex getIndex()
+        {
+            RouteIndex result;
+            boolean built = false;
+            synchronized (this)
+            {
+                if (index == null)
+                {
+                    index = new RouteIndex(repo, options);
+                    built = true;
+                }
+                result = index;
+            }
+
+            // outside our lock, so that we never hold it while waiting for the cache
+            if (built)
+                cache.indexBuilt(this, result.getEstimatedBytes());
+            return result;
+        }
+
+        public long getEstimatedBytes()
+        {
+            return bytes;
+        }
+    }
+}
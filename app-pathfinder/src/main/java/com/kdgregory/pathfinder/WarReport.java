@@ -0,0 +1,294 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+import com.kdgregory.pathfinder.core.Destination;
+import com.kdgregory.pathfinder.core.HttpMethod;
+import com.kdgregory.pathfinder.core.Inspector;
+import com.kdgregory.pathfinder.core.InvocationOptions;
+import com.kdgregory.pathfinder.core.PathRepo;
+import com.kdgregory.pathfinder.core.WarMachine;
+import com.kdgregory.pathfinder.core.WarMachine.Dispatcher;
+import com.kdgregory.pathfinder.core.WarMachine.FilterMapping;
+import com.kdgregory.pathfinder.core.impl.RecordingPathRepo;
+import com.kdgregory.pathfinder.embed.PathFinder;
+import com.kdgregory.pathfinder.output.OutputUtil;
+import com.kdgregory.pathfinder.output.RouteWriter;
+import com.kdgregory.pathfinder.output.StreamingPathRepo;
+import com.kdgregory.pathfinder.util.EmbeddedManifest;
+import com.kdgregory.pathfinder.util.FilterChainResolver;
+import com.kdgregory.pathfinder.util.RouteAnalyzer;
+import com.kdgregory.pathfinder.util.RouteHistory;
+import com.kdgregory.pathfinder.util.RouteManifest;
+import com.kdgregory.pathfinder.util.RouteSnapshot;
+
+
+/**
+ *  Inspects a single WAR and writes its paths: the default mode of {@link Main},
+ *  and the per-WAR task of {@link BatchRunner}. Depending on the invocation
+ *  options, also writes its filter chains and an analysis of its routes.
+ */
+public class WarReport
+{
+    private Logger logger = Logger.getLogger(getClass());
+
+    private PrintWriter out;
+    private Map<InvocationOptions,Boolean> options;
+    private WarMachine machine;
+    private Inspection inspection;
+    private RouteHistory history;
+    private String buildLabel;
+    private String format = "text";
+    private File manifestFile;
+    private boolean concurrent = true;
+
+
+    /**
+     *  @param  options The invocation options.
+     *  @param  machine The WAR. It's not closed.
+     *  @param  out     The destination for output. It's flushed but not closed.
+     */
+    public WarReport(Map<InvocationOptions,Boolean> options, WarMachine machine, PrintStream out)
+    {
+        this.options = options;
+        this.machine = machine;
+        this.out = OutputUtil.createWriter(out);
+        inspection = new Inspection(options, machine);
+    }
+
+
+//----------------------------------------------------------------------------
+//  Public methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Sets the format used by {@link #run} to write paths: one of the names in
+     *  {@link RouteWriter#FORMATS}. The default is "text".
+     *
+     *  @throws IllegalArgumentException if the format isn't supported.
+     */
+    public void setFormat(String format)
+    {
+        if (!RouteWriter.FORMATS.contains(format))
+            throw new IllegalArgumentException("unsupported format: " + format);
+        this.format = format;
+    }
+
+
+    /**
+     *  Configures this instance to write the paths found by {@link #run} to a
+     *  binary manifest file (see {@link RouteManifest}), as well as to output.
+     */
+    public void setManifest(File manifestFile)
+    {
+        this.manifestFile = manifestFile;
+    }
+
+
+    /**
+     *  Configures this instance to append the paths found by {@link #run} to
+     *  a history store, as the build with the given label.
+     */
+    public void setHistory(RouteHistory history, String buildLabel)
+    {
+        this.history = history;
+        this.buildLabel = buildLabel;
+    }
+
+
+    /**
+     *  Controls whether the WAR is inspected using multiple threads (the default);
+     *  see {@link Inspection#setConcurrent}.
+     */
+    public void setConcurrent(boolean concurrent)
+    {
+        inspection.setConcurrent(concurrent);
+        this.concurrent = concurrent;
+    }
+
+
+    /**
+     *  Returns the number of URLs found by the last inspection.
+     */
+    public int getUrlCount()
+    {
+        return inspection.getUrlCount();
+    }
+
+
+    /**
+     *  Invokes the inspectors (see {@link Inspection}) and writes the paths.
+     *  You can call multiple times, but it's a bit pointless: the inspectors
+     *  will overwrite whatever is already in the path repository.
+     *  <p>
+     *  If a history store has been configured, the paths are appended to it. If a
+     *  manifest file has been configured, the paths are written to it.
+     *  <p>
+     *  Filter chains (<code>--showFilters</code>) and analysis (<code>--analyze</code>)
+     *  are only written with the text format; they're ignored when writing a snapshot
+     *  or structured output.
+     *  <p>
+     *  With <code>--stream</code>, the paths are instead written by {@link #stream},
+     *  and the format, history, and manifest are ignored.
+     */
+    public void run()
+    throws Exception
+    {
+        if (InvocationOptions.STREAM.isEnabled(options))
+        {
+            stream();
+            return;
+        }
+
+        // the filter chains, analysis, and history summary are text, so would corrupt
+        // structured output
+        boolean textOutput = !InvocationOptions.SNAPSHOT.isEnabled(options) && format.equals("text");
+
+        // when analyzing, we record every write, including those that are overwritten
+        boolean analyze = textOutput && InvocationOptions.ANALYZE.isEnabled(options);
+        List<RecordingPathRepo> recorders = new ArrayList<RecordingPathRepo>();
+        for (PathRepo view : inspection.getViews())
+            recorders.add(new RecordingPathRepo(view));
+
+        PathRepo snapshot = analyze ? inspection.inspect(recorders)
+                                    : inspection.inspect();
+        if (InvocationOptions.SNAPSHOT.isEnabled(options))
+            RouteSnapshot.write(snapshot, options, out);
+        else
+            RouteWriter.forFormat(format, out, options).write(snapshot);
+        if (textOutput && InvocationOptions.SHOW_FILTERS.isEnabled(options))
+            dumpFilterChains(snapshot);
+        if (analyze)
+        {
+            RouteAnalyzer analyzer = new RouteAnalyzer();
+            for (RecordingPathRepo recorder : recorders)
+                analyzer.addOperations(recorder.getOperations());
+            dumpAnalysis(analyzer.analyze(snapshot));
+        }
+        if (manifestFile != null)
+            RouteManifest.write(snapshot, options, manifestFile);
+        if (history != null)
+        {
+            RouteHistory.Build build = history.append(buildLabel, snapshot, options);
+            if (textOutput)
+            {
+                out.println();
+                out.println("Recorded build " + build.getLabel() + ": " + build.getChangeCount()
+                            + " changes from previous build");
+            }
+        }
+        out.flush();
+    }
+
+
+    /**
+     *  Writes paths as they're found, as records from a {@link StreamingPathRepo},
+     *  without storing them. The inspectors run one after the other, so that each
+     *  inspector's updates follow those of its predecessors.
+     */
+    public void stream()
+    throws Exception
+    {
+        StreamingPathRepo sink = new StreamingPathRepo(out, options);
+
+        PathRepo embedded = InvocationOptions.USE_MANIFEST.isEnabled(options)
+                          ? EmbeddedManifest.load(machine, options)
+                          : null;
+        if (embedded != null)
+        {
+            logger.debug("streaming paths from embedded manifest");
+            for (String url : embedded)
+            {
+                for (Map.Entry<HttpMethod,Destination> entry : embedded.get(url).entrySet())
+                    sink.put(url, entry.getKey(), entry.getValue());
+            }
+        }
+        else
+        {
+            List<Inspector> inspectors = concurrent ? PathFinder.createInspectors(options)
+                                                    : PathFinder.createInspectors(options, 1);
+            for (Inspector inspector : inspectors)
+            {
+                inspector.inspect(machine, sink);
+                sink.flush();
+            }
+        }
+        sink.flush();
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    private void dumpFilterChains(PathRepo snapshot)
+    {
+        FilterChainResolver resolver = new FilterChainResolver(machine);
+        Map<String,List<FilterMapping>> chains = resolver.getChains(snapshot, Dispatcher.REQUEST);
+
+        int urlWidth = 16;
+        for (String url : chains.keySet())
+            urlWidth = Math.max(urlWidth, url.length());
+        String format = "    %-" + urlWidth + "s  %s\n";
+
+        out.println();
+        out.println("Filter chains:");
+        for (Map.Entry<String,List<FilterMapping>> entry : chains.entrySet())
+        {
+            if (entry.getValue().isEmpty() || !isDisplayed(snapshot, entry.getKey()))
+                continue;
+
+            StringBuilder sb = new StringBuilder();
+            for (FilterMapping filter : entry.getValue())
+            {
+                if (sb.length() > 0)
+                    sb.append(" -> ");
+                sb.append(filter.getFilterName());
+            }
+            out.format(format, entry.getKey(), sb);
+        }
+    }
+
+
+    private boolean isDisplayed(PathRepo snapshot, String url)
+    {
+        for (Destination dest : snapshot.get(url).values())
+        {
+            if (dest.isDisplayed(options))
+                return true;
+        }
+        return false;
+    }
+
+
+    private void dumpAnalysis(List<RouteAnalyzer.Finding> findings)
+    {
+        out.println();
+        out.println("Route analysis: " + findings.size() + ((findings.size() == 1) ? " finding" : " findings"));
+        for (RouteAnalyzer.Finding finding : findings)
+        {
+            out.println("    " + finding);
+        }
+    }
+}
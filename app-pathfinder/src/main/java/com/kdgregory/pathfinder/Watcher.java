@@ -0,0 +1,244 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.apache.log4j.Logger;
+
+import net.sf.kdgcommons.io.IOUtil;
+
+import com.kdgregory.pathfinder.core.InvocationOptions;
+import com.kdgregory.pathfinder.core.PathRepo;
+import com.kdgregory.pathfinder.core.impl.ParsedClassCache;
+import com.kdgregory.pathfinder.core.impl.PathRepoImpl;
+import com.kdgregory.pathfinder.core.impl.WarMachineImpl;
+import com.kdgregory.pathfinder.output.DiffWriter;
+import com.kdgregory.pathfinder.output.OutputUtil;
+import com.kdgregory.pathfinder.util.EmbeddedManifest;
+import com.kdgregory.pathfinder.util.RouteDiff;
+import com.kdgregory.pathfinder.util.RouteSnapshot;
+
+
+/**
+ *  Re-inspects a WAR each time it's rebuilt, and reports the paths that changed.
+ *  The caller calls {@link #poll} periodically (or {@link #run}, which polls
+ *  until the JVM is stopped); it checks the WAR's size and
+ *  modification time, and if either has changed compares each entry's signature
+ *  (see {@link com.kdgregory.pathfinder.core.WarMachine#getEntrySignatures}) to
+ *  the previous version. If no entries changed, the WAR isn't inspected.
+ *  <p>
+ *  Inspection reuses parsed classes from the previous versions (see {@link
+ *  ParsedClassCache}), so only classes that changed are parsed again, and library
+ *  JARs are only read when they change (see {@link
+ *  com.kdgregory.pathfinder.core.impl.ArchiveIndexCache}).
+ *  <p>
+ *  Not thread-safe.
+ */
+public class Watcher
+{
+    private Logger logger = Logger.getLogger(getClass());
+
+    private File war;
+    private Map<InvocationOptions,Boolean> options;
+    private ParsedClassCache classCache = new ParsedClassCache(ParsedClassCache.DEFAULT_CAPACITY);
+
+    private long size = -1;
+    private long lastModified = -1;
+    private SortedMap<String,String> signatures = new TreeMap<String,String>();
+    private PathRepo previousPaths = new PathRepoImpl();
+    private PathRepo currentPaths = new PathRepoImpl();
+
+    private int changedEntryCount;
+    private long parsedClassCount;
+    private long elapsed;
+
+
+    public Watcher(File war, Map<InvocationOptions,Boolean> options)
+    {
+        this.war = war;
+        this.options = options;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Public methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Checks whether the WAR has changed, and re-inspects it if yes. Returns
+     *  <code>true</code> if the WAR was inspected, in which case {@link #diff}
+     *  reports the changes. The first call always inspects the WAR (unless it
+     *  doesn't exist).
+     *
+     *  @throws IllegalArgumentException if the WAR can't be opened (eg, because
+     *          it's being written). The next call will retry if the WAR's size
+     *          or modification time has changed again.
+     */
+    public boolean poll()
+    throws Exception
+    {
+        if (!war.isFile())
+            return false;
+
+        long newSize = war.length();
+        long newLastModified = war.lastModified();
+        if ((newSize == size) && (newLastModified == lastModified))
+            return false;
+
+        size = newSize;
+        lastModified = newLastModified;
+
+        long start = System.currentTimeMillis();
+        WarMachineImpl machine = new WarMachineImpl(war);
+        try
+        {
+            SortedMap<String,String> newSignatures = machine.getEntrySignatures(EmbeddedManifest.ENTRY_PREFIX);
+            changedEntryCount = countChanges(signatures, newSignatures);
+            if (changedEntryCount == 0)
+            {
+                logger.debug("WAR touched but not changed: " + war);
+                return false;
+            }
+
+            long parsedBefore = classCache.getMissCount();
+            machine.setClassCache(classCache);
+            PathRepo paths = new Inspection(options, machine).inspect();
+
+            signatures = newSignatures;
+            previousPaths = currentPaths;
+            currentPaths = paths;
+            parsedClassCount = classCache.getMissCount() - parsedBefore;
+        }
+        finally
+        {
+            IOUtil.closeQuietly(machine);
+        }
+
+        elapsed = System.currentTimeMillis() - start;
+        logger.debug("inspected " + war + ": " + changedEntryCount + " changed entries, "
+                     + parsedClassCount + " classes parsed, " + elapsed + " ms");
+        return true;
+    }
+
+
+    /**
+     *  Polls the WAR every <code>interval</code> milliseconds, and writes the paths
+     *  that changed each time it's rebuilt; statistics and failures are written to
+     *  <code>System.err</code>. Runs until the JVM is stopped.
+     */
+    public void run(PrintStream out, boolean asJson, long interval)
+    throws InterruptedException
+    {
+        Writer writer = OutputUtil.createWriter(out);
+        while (true)
+        {
+            try
+            {
+                if (poll())
+                {
+                    DiffWriter diffWriter = DiffWriter.forFormat(asJson, writer);
+                    diff(diffWriter);
+                    diffWriter.finish();
+                    System.err.println(changedEntryCount + " entries changed, "
+                                       + parsedClassCount + " classes parsed, "
+                                       + elapsed + " ms");
+                }
+            }
+            catch (Exception ex)
+            {
+                // most likely the WAR is being written; the next change retries
+                System.err.println("unable to inspect " + war + ": " + ex.getMessage());
+            }
+            Thread.sleep(interval);
+        }
+    }
+
+
+    /**
+     *  Reports the differences between the paths found by the last two inspections
+     *  (for the first inspection, all paths are reported as added). Returns the
+     *  number of differences.
+     */
+    public int diff(RouteDiff.Listener listener)
+    {
+        return RouteDiff.diff(RouteSnapshot.iterate(previousPaths, options),
+                              RouteSnapshot.iterate(currentPaths, options),
+                              listener);
+    }
+
+
+    /**
+     *  Returns the paths found by the last inspection.
+     */
+    public PathRepo getPaths()
+    {
+        return currentPaths;
+    }
+
+
+    /**
+     *  Returns the number of entries that were added, removed, or changed as of
+     *  the last call to {@link #poll} that opened the WAR.
+     */
+    public int getChangedEntryCount()
+    {
+        return changedEntryCount;
+    }
+
+
+    /**
+     *  Returns the number of classes that were parsed by the last inspection.
+     */
+    public long getParsedClassCount()
+    {
+        return parsedClassCount;
+    }
+
+
+    /**
+     *  Returns the time taken by the last inspection, in milliseconds.
+     */
+    public long getElapsed()
+    {
+        return elapsed;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    private static int countChanges(SortedMap<String,String> oldSignatures, SortedMap<String,String> newSignatures)
+    {
+        int count = 0;
+        for (Map.Entry<String,String> entry : newSignatures.entrySet())
+        {
+            if (!entry.getValue().equals(oldSignatures.get(entry.getKey())))
+                count++;
+        }
+        for (String name : oldSignatures.keySet())
+        {
+            if (!newSignatures.containsKey(name))
+                count++;
+        }
+        return count;
+    }
+}
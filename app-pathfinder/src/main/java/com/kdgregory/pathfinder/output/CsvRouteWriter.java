@@ -0,0 +1,79 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.output;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+
+import com.kdgregory.pathfinder.core.Destination;
+import com.kdgregory.pathfinder.core.HttpMethod;
+import com.kdgregory.pathfinder.core.InvocationOptions;
+import com.kdgregory.pathfinder.core.PathRepo;
+import com.kdgregory.pathfinder.spring.SpringDestination;
+
+
+/**
+ *  Writes CSV (RFC 4180) with a header row. Columns are URL, method name,
+ *  destination description, and (for Spring destinations; otherwise empty)
+ *  bean id, bean class, and handler method.
+ */
+public class CsvRouteWriter
+extends RouteWriter
+{
+    public final static String HEADER = "url,method,destination,bean,class,handlerMethod";
+
+
+    public CsvRouteWriter(Writer out, Map<InvocationOptions,Boolean> options)
+    {
+        super(out, options);
+    }
+
+
+    @Override
+    protected void start(PathRepo repo)
+    throws IOException
+    {
+        out.write(HEADER);
+        out.write("\r\n");
+    }
+
+
+    @Override
+    protected void writeRoute(String url, HttpMethod method, Destination dest)
+    throws IOException
+    {
+        OutputUtil.appendCsv(out, url);
+        out.write(',');
+        out.write(method.name());
+        out.write(',');
+        OutputUtil.appendCsv(out, dest.toString(options));
+        if (dest instanceof SpringDestination)
+        {
+            SpringDestination spring = (SpringDestination)dest;
+            out.write(',');
+            OutputUtil.appendCsv(out, spring.getBeanId());
+            out.write(',');
+            OutputUtil.appendCsv(out, spring.getBeanClass());
+            out.write(',');
+            OutputUtil.appendCsv(out, spring.getMethodName());
+        }
+        else
+        {
+            out.write(",,,");
+        }
+        out.write("\r\n");
+    }
+}
@@ -0,0 +1,150 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.output;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import com.kdgregory.pathfinder.util.RouteDiff;
+import com.kdgregory.pathfinder.util.RouteSnapshot;
+
+
+/**
+ *  Writes the differences reported by {@link RouteDiff}, as they're reported.
+ *  Subclasses implement a specific format; they write directly to the destination
+ *  <code>Writer</code>, which should be buffered. Since the listener methods can't
+ *  throw <code>IOException</code>, write failures are reported as
+ *  <code>IllegalStateException</code>.
+ */
+public abstract class DiffWriter
+implements RouteDiff.Listener
+{
+    /**
+     *  Returns a writer for either JSON or text output.
+     */
+    public static DiffWriter forFormat(boolean asJson, Writer out)
+    {
+        return asJson ? new JsonDiffWriter(out) : new TextDiffWriter(out);
+    }
+
+
+//----------------------------------------------------------------------------
+//  Instance variables and constructor
+//----------------------------------------------------------------------------
+
+    protected Writer out;
+    protected int added;
+    protected int removed;
+    protected int changed;
+
+
+    protected DiffWriter(Writer out)
+    {
+        this.out = out;
+    }
+
+
+//----------------------------------------------------------------------------
+//  RouteDiff.Listener
+//----------------------------------------------------------------------------
+
+    @Override
+    public void added(RouteSnapshot.Entry newEntry)
+    {
+        added++;
+        try
+        {
+            writeAdded(newEntry);
+        }
+        catch (IOException ex)
+        {
+            throw new IllegalStateException("unable to write differences", ex);
+        }
+    }
+
+
+    @Override
+    public void removed(RouteSnapshot.Entry oldEntry)
+    {
+        removed++;
+        try
+        {
+            writeRemoved(oldEntry);
+        }
+        catch (IOException ex)
+        {
+            throw new IllegalStateException("unable to write differences", ex);
+        }
+    }
+
+
+    @Override
+    public void changed(RouteSnapshot.Entry oldEntry, RouteSnapshot.Entry newEntry)
+    {
+        changed++;
+        try
+        {
+            writeChanged(oldEntry, newEntry);
+        }
+        catch (IOException ex)
+        {
+            throw new IllegalStateException("unable to write differences", ex);
+        }
+    }
+
+
+//----------------------------------------------------------------------------
+//  Public Methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Writes the summary and flushes the output. Does not close the output.
+     */
+    public void finish()
+    throws IOException
+    {
+        writeSummary();
+        out.flush();
+    }
+
+
+    /**
+     *  Returns the total number of differences that have been written.
+     */
+    public int getChangeCount()
+    {
+        return added + removed + changed;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Subclass hooks -- counts are updated before these are called
+//----------------------------------------------------------------------------
+
+    protected abstract void writeAdded(RouteSnapshot.Entry newEntry)
+    throws IOException;
+
+
+    protected abstract void writeRemoved(RouteSnapshot.Entry oldEntry)
+    throws IOException;
+
+
+    protected abstract void writeChanged(RouteSnapshot.Entry oldEntry, RouteSnapshot.Entry newEntry)
+    throws IOException;
+
+
+    protected abstract void writeSummary()
+    throws IOException;
+}
@@ -0,0 +1,97 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.output;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import com.kdgregory.pathfinder.util.RouteSnapshot;
+
+
+/**
+ *  Writes a single JSON object, with an array of changes followed by counts.
+ *  Changes are written as they're reported.
+ */
+public class JsonDiffWriter
+extends DiffWriter
+{
+    private boolean started;
+
+
+    public JsonDiffWriter(Writer out)
+    {
+        super(out);
+    }
+
+
+    @Override
+    protected void writeAdded(RouteSnapshot.Entry newEntry)
+    throws IOException
+    {
+        startChange("added", newEntry);
+        out.write(",\"destination\":");
+        OutputUtil.appendJson(out, newEntry.getDestination());
+        out.write('}');
+    }
+
+
+    @Override
+    protected void writeRemoved(RouteSnapshot.Entry oldEntry)
+    throws IOException
+    {
+        startChange("removed", oldEntry);
+        out.write(",\"destination\":");
+        OutputUtil.appendJson(out, oldEntry.getDestination());
+        out.write('}');
+    }
+
+
+    @Override
+    protected void writeChanged(RouteSnapshot.Entry oldEntry, RouteSnapshot.Entry newEntry)
+    throws IOException
+    {
+        startChange("changed", newEntry);
+        out.write(",\"oldDestination\":");
+        OutputUtil.appendJson(out, oldEntry.getDestination());
+        out.write(",\"newDestination\":");
+        OutputUtil.appendJson(out, newEntry.getDestination());
+        out.write('}');
+    }
+
+
+    @Override
+    protected void writeSummary()
+    throws IOException
+    {
+        if (!started)
+            out.write("{\"changes\":[");
+        out.write("\n],\"added\":" + added + ",\"removed\":" + removed + ",\"changed\":" + changed + "}\n");
+    }
+
+
+    private void startChange(String type, RouteSnapshot.Entry entry)
+    throws IOException
+    {
+        out.write(started ? ",\n" : "{\"changes\":[\n");
+        started = true;
+        out.write("{\"change\":\"");
+        out.write(type);
+        out.write("\",\"url\":");
+        OutputUtil.appendJson(out, entry.getUrl());
+        out.write(",\"method\":\"");
+        out.write(entry.getMethod().name());
+        out.write('"');
+    }
+}
@@ -0,0 +1,148 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.output;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+
+import net.sf.kdgcommons.lang.StringUtil;
+
+import com.kdgregory.pathfinder.core.Destination;
+import com.kdgregory.pathfinder.core.HttpMethod;
+import com.kdgregory.pathfinder.core.InvocationOptions;
+import com.kdgregory.pathfinder.core.PathRepo;
+import com.kdgregory.pathfinder.spring.SpringDestination;
+import com.kdgregory.pathfinder.spring.SpringDestination.RequestParameter;
+
+
+/**
+ *  Writes one JSON object per route, with the URL, method (as its name, so "ALL"
+ *  rather than blank), and destination description. Spring destinations also
+ *  have the bean id and class, the handler method (if known), and any request
+ *  parameters (which are only collected with <code>--showRequestParams</code>).
+ *  <p>
+ *  The objects are either written as the array "routes" in a single object, or
+ *  (for newline-delimited JSON) as one object per line.
+ */
+public class JsonRouteWriter
+extends RouteWriter
+{
+    private boolean delimited;
+    private boolean first;
+
+
+    /**
+     *  @param  delimited   If <code>true</code>, writes newline-delimited JSON;
+     *                      if <code>false</code>, a single object.
+     */
+    public JsonRouteWriter(Writer out, Map<InvocationOptions,Boolean> options, boolean delimited)
+    {
+        super(out, options);
+        this.delimited = delimited;
+    }
+
+
+    @Override
+    protected void start(PathRepo repo)
+    throws IOException
+    {
+        first = true;
+        if (!delimited)
+            out.write("{\"routes\":[");
+    }
+
+
+    @Override
+    protected void writeRoute(String url, HttpMethod method, Destination dest)
+    throws IOException
+    {
+        if (!delimited)
+            out.write(first ? "\n" : ",\n");
+        first = false;
+
+        out.write('{');
+        writeFields(out, options, url, method, dest);
+        out.write('}');
+
+        if (delimited)
+            out.write('\n');
+    }
+
+
+    @Override
+    protected void finish()
+    throws IOException
+    {
+        if (!delimited)
+            out.write("\n]}\n");
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    /**
+     *  Writes the fields of a route's object, without the enclosing braces.
+     */
+    protected static void writeFields(Writer out, Map<InvocationOptions,Boolean> options, String url, HttpMethod method, Destination dest)
+    throws IOException
+    {
+        out.write("\"url\":");
+        OutputUtil.appendJson(out, url);
+        out.write(",\"method\":\"");
+        out.write(method.name());
+        out.write("\",\"destination\":");
+        OutputUtil.appendJson(out, dest.toString(options));
+        if (dest instanceof SpringDestination)
+            writeSpringDetails(out, (SpringDestination)dest);
+    }
+
+
+    private static void writeSpringDetails(Writer out, SpringDestination dest)
+    throws IOException
+    {
+        out.write(",\"bean\":");
+        OutputUtil.appendJson(out, dest.getBeanId());
+        out.write(",\"class\":");
+        OutputUtil.appendJson(out, dest.getBeanClass());
+        if (!StringUtil.isBlank(dest.getMethodName()))
+        {
+            out.write(",\"handlerMethod\":");
+            OutputUtil.appendJson(out, dest.getMethodName());
+        }
+
+        out.write(",\"params\":[");
+        boolean firstParam = true;
+        for (RequestParameter param : dest.getParams().values())
+        {
+            if (!firstParam)
+                out.write(',');
+            firstParam = false;
+
+            out.write("{\"name\":");
+            OutputUtil.appendJson(out, param.getName());
+            out.write(",\"type\":");
+            OutputUtil.appendJson(out, param.getType());
+            out.write(",\"required\":");
+            out.write(param.isRequired() ? "true" : "false");
+            out.write(",\"default\":");
+            OutputUtil.appendJson(out, param.getDefaultValue());
+            out.write('}');
+        }
+        out.write(']');
+    }
+}
@@ -0,0 +1,160 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.output;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+
+
+/**
+ *  Static methods for writing output. The methods that write escaped values
+ *  write unchanged values in a single call, and only examine individual
+ *  characters when they must.
+ */
+public class OutputUtil
+{
+    private final static char[] HEX = "0123456789abcdef".toCharArray();
+    private final static String SPACES = "                                                                ";
+
+
+    /**
+     *  Wraps an output stream in a buffered UTF-8 writer. Callers flush the writer
+     *  when they're done, but don't close it, as they don't own the stream.
+     */
+    public static PrintWriter createWriter(OutputStream out)
+    {
+        return new PrintWriter(new BufferedWriter(new OutputStreamWriter(out, Charset.forName("UTF-8")), 65536));
+    }
+
+
+    /**
+     *  Writes a value as a quoted JSON string, or as <code>null</code>.
+     */
+    public static void appendJson(Appendable out, String value)
+    throws IOException
+    {
+        if (value == null)
+        {
+            out.append("null");
+            return;
+        }
+
+        out.append('"');
+        int start = 0;
+        for (int ii = 0 ; ii < value.length() ; ii++)
+        {
+            char c = value.charAt(ii);
+            if ((c >= 0x20) && (c != '"') && (c != '\\'))
+                continue;
+
+            out.append(value, start, ii);
+            start = ii + 1;
+            switch (c)
+            {
+                case '"' :
+                case '\\' :
+                    out.append('\\').append(c);
+                    break;
+                case '\n' :
+                    out.append("\\n");
+                    break;
+                case '\r' :
+                    out.append("\\r");
+                    break;
+                case '\t' :
+                    out.append("\\t");
+                    break;
+                default :
+                    out.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xF]);
+            }
+        }
+        out.append(value, start, value.length());
+        out.append('"');
+    }
+
+
+    /**
+     *  Returns a value as a quoted JSON string, or as <code>null</code>.
+     */
+    public static String quoteJson(String value)
+    {
+        StringBuilder sb = new StringBuilder((value == null) ? 4 : value.length() + 2);
+        try
+        {
+            appendJson(sb, value);
+        }
+        catch (IOException ex)
+        {
+            throw new IllegalStateException("StringBuilder threw IOException", ex);
+        }
+        return sb.toString();
+    }
+
+
+    /**
+     *  Writes a value as a CSV field (RFC 4180): if it contains a comma, quote,
+     *  or line break, it's quoted, with embedded quotes doubled. A null value is
+     *  written as an empty field.
+     */
+    public static void appendCsv(Appendable out, String value)
+    throws IOException
+    {
+        if (value == null)
+            return;
+
+        boolean needsQuotes = false;
+        for (int ii = 0 ; ii < value.length() ; ii++)
+        {
+            char c = value.charAt(ii);
+            if ((c == ',') || (c == '"') || (c == '\n') || (c == '\r'))
+            {
+                needsQuotes = true;
+                break;
+            }
+        }
+
+        if (!needsQuotes)
+        {
+            out.append(value);
+            return;
+        }
+
+        out.append('"');
+        int start = 0;
+        for (int quote = value.indexOf('"') ; quote >= 0 ; quote = value.indexOf('"', start))
+        {
+            out.append(value, start, quote + 1).append('"');
+            start = quote + 1;
+        }
+        out.append(value, start, value.length());
+        out.append('"');
+    }
+
+
+    /**
+     *  Writes a value followed by enough spaces to fill the given width.
+     */
+    public static void appendPadded(Appendable out, String value, int width)
+    throws IOException
+    {
+        out.append(value);
+        for (int pad = width - value.length() ; pad > 0 ; pad -= SPACES.length())
+            out.append(SPACES, 0, Math.min(pad, SPACES.length()));
+    }
+}
@@ -0,0 +1,134 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.output;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import com.kdgregory.pathfinder.core.Destination;
+import com.kdgregory.pathfinder.core.HttpMethod;
+import com.kdgregory.pathfinder.core.InvocationOptions;
+import com.kdgregory.pathfinder.core.PathRepo;
+
+
+/**
+ *  Writes the displayed destinations in a repository, one route (URL and method)
+ *  at a time. Subclasses implement a specific format; they write directly to the
+ *  destination <code>Writer</code>, which should be buffered.
+ */
+public abstract class RouteWriter
+{
+    /**
+     *  The formats supported by {@link #forFormat}.
+     */
+    public final static List<String> FORMATS = Collections.unmodifiableList(Arrays.asList("text", "json", "ndjson", "csv"));
+
+
+    /**
+     *  Returns a writer for the named format.
+     *
+     *  @throws IllegalArgumentException if the format isn't one of {@link #FORMATS}.
+     */
+    public static RouteWriter forFormat(String format, Writer out, Map<InvocationOptions,Boolean> options)
+    {
+        if (format.equals("text"))
+            return new TextRouteWriter(out, options);
+        else if (format.equals("json"))
+            return new JsonRouteWriter(out, options, false);
+        else if (format.equals("ndjson"))
+            return new JsonRouteWriter(out, options, true);
+        else if (format.equals("csv"))
+            return new CsvRouteWriter(out, options);
+        else
+            throw new IllegalArgumentException("unsupported format: " + format);
+    }
+
+
+//----------------------------------------------------------------------------
+//  Instance variables and constructor
+//----------------------------------------------------------------------------
+
+    protected Writer out;
+    protected Map<InvocationOptions,Boolean> options;
+
+
+    protected RouteWriter(Writer out, Map<InvocationOptions,Boolean> options)
+    {
+        this.out = out;
+        this.options = options;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Public Methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Writes the repository and flushes the output. Does not close the output.
+     */
+    public void write(PathRepo repo)
+    throws IOException
+    {
+        start(repo);
+        for (String url : repo)
+        {
+            for (Map.Entry<HttpMethod,Destination> entry : repo.get(url).entrySet())
+            {
+                Destination dest = entry.getValue();
+                if (dest.isDisplayed(options))
+                    writeRoute(url, entry.getKey(), dest);
+            }
+        }
+        finish();
+        out.flush();
+    }
+
+
+//----------------------------------------------------------------------------
+//  Subclass hooks
+//----------------------------------------------------------------------------
+
+    /**
+     *  Called before the first route is written. The default implementation
+     *  does nothing.
+     */
+    protected void start(PathRepo repo)
+    throws IOException
+    {
+        // nothing happening here
+    }
+
+
+    /**
+     *  Called for each displayed route, in repository order.
+     */
+    protected abstract void writeRoute(String url, HttpMethod method, Destination dest)
+    throws IOException;
+
+
+    /**
+     *  Called after the last route is written. The default implementation
+     *  does nothing.
+     */
+    protected void finish()
+    throws IOException
+    {
+        // nothing happening here
+    }
+}
@@ -0,0 +1,393 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.output;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import com.kdgregory.pathfinder.core.Destination;
+import com.kdgregory.pathfinder.core.HttpMethod;
+import com.kdgregory.pathfinder.core.InvocationOptions;
+import com.kdgregory.pathfinder.core.PathRepo;
+import com.kdgregory.pathfinder.core.RoutePattern;
+
+
+/**
+ *  A write-only repository that writes each update as a newline-delimited JSON
+ *  record, as it happens, rather than waiting until all updates are done. Records
+ *  have an "op" field, which is one of:
+ *  <ul>
+ *  <li> <code>route</code>: the first destination for a URL and method; the other
+ *       fields are the same as {@link JsonRouteWriter}.
+ *  <li> <code>supersede</code>: a destination that replaces one that was already
+ *       written for the URL and method; same fields as "route".
+ *  <li> <code>remove</code>: the URL and method no longer have a destination; only
+ *       has "url" and "method" fields.
+ *  </ul>
+ *  Applying the records in order, as simple puts and removes, gives a map in which
+ *  each request method resolves to the same displayed destination as it would in
+ *  a stored repository (where a specific method overrides "ALL"), but URLs are not
+ *  sorted. Only displayed destinations are written, so a URL whose "ALL" mapping
+ *  is partly overridden by hidden destinations (or removed methods, which split
+ *  "ALL" into the individual methods) is written as individual methods.
+ *  <p>
+ *  To do this, the repository retains the methods that have a destination for each
+ *  URL, and which of those are hidden, but not the destinations themselves; the
+ *  exception is the "ALL" destination, which is needed to write individual methods
+ *  when it's split. As a result, a destination that replaces an equal destination
+ *  is still written, as "supersede". Output is flushed when a record is written
+ *  more than {@link #FLUSH_INTERVAL_MILLIS} after the previous flush, and when
+ *  {@link #flush} is called.
+ *  <p>
+ *  Methods that would read the repository throw <code>UnsupportedOperationException</code>.
+ *  This class is not intended for use by concurrent threads.
+ */
+public class StreamingPathRepo
+implements PathRepo
+{
+    public final static long FLUSH_INTERVAL_MILLIS = 100;
+
+    private final static HttpMethod[] SPECIFIC_METHODS
+            = { HttpMethod.GET, HttpMethod.POST, HttpMethod.PUT, HttpMethod.DELETE };
+
+    private Writer out;
+    private Map<InvocationOptions,Boolean> options;
+    private Map<String,UrlState> state = new HashMap<String,UrlState>();
+    private int urlCount;
+    private long lastFlush = System.nanoTime();
+
+
+    public StreamingPathRepo(Writer out, Map<InvocationOptions,Boolean> options)
+    {
+        this.out = out;
+        this.options = options;
+    }
+
+
+//----------------------------------------------------------------------------
+//  PathRepo
+//----------------------------------------------------------------------------
+
+    /**
+     *  Returns the number of URLs that currently have a written destination.
+     */
+    @Override
+    public int urlCount()
+    {
+        return urlCount;
+    }
+
+
+    @Override
+    public void put(String url, Destination dest)
+    {
+        Map<HttpMethod,Destination> destMap = new EnumMap<HttpMethod,Destination>(HttpMethod.class);
+        destMap.put(HttpMethod.ALL, dest);
+        put(url, destMap);
+    }
+
+
+    @Override
+    public void put(String url, HttpMethod method, Destination dest)
+    {
+        UrlState urlState = getOrCreateState(url);
+        Set<HttpMethod> before = displayed(urlState);
+        urlState.put(method, dest, options);
+
+        Map<HttpMethod,Destination> changed = new EnumMap<HttpMethod,Destination>(HttpMethod.class);
+        changed.put(method, dest);
+        writeChanges(url, urlState, before, changed);
+    }
+
+
+    @Override
+    public void put(String url, Map<HttpMethod,Destination> destMap)
+    {
+        UrlState urlState = getOrCreateState(url);
+        Set<HttpMethod> before = displayed(urlState);
+        urlState.clear();
+        for (Map.Entry<HttpMethod,Destination> entry : destMap.entrySet())
+            urlState.put(entry.getKey(), entry.getValue(), options);
+        writeChanges(url, urlState, before, destMap);
+    }
+
+
+    @Override
+    public Destination get(String url, HttpMethod method)
+    {
+        throw new UnsupportedOperationException("repository is write-only");
+    }
+
+
+    @Override
+    public Map<HttpMethod,Destination> get(String url)
+    {
+        throw new UnsupportedOperationException("repository is write-only");
+    }
+
+
+    @Override
+    public RoutePattern getPattern(String url)
+    {
+        throw new UnsupportedOperationException("repository is write-only");
+    }
+
+
+    @Override
+    public void remove(String url, HttpMethod method)
+    {
+        UrlState urlState = state.get(url);
+        if (urlState == null)
+            return;
+
+        // as with a stored repository, removing one method replaces "ALL" with the
+        // individual methods, all of which take its destination; those that were
+        // already written with it don't change
+        Set<HttpMethod> before = displayed(urlState);
+        Map<HttpMethod,Destination> changed = new EnumMap<HttpMethod,Destination>(HttpMethod.class);
+        if (method == HttpMethod.ALL)
+        {
+            urlState.clear();
+        }
+        else if (urlState.methods.contains(HttpMethod.ALL))
+        {
+            for (HttpMethod specific : SPECIFIC_METHODS)
+            {
+                if (urlState.methods.contains(specific) || !before.contains(specific))
+                    changed.put(specific, urlState.all);
+            }
+            urlState.splitAll();
+        }
+        urlState.remove(method);
+        writeChanges(url, urlState, before, changed);
+    }
+
+
+    @Override
+    public Iterator<String> iterator()
+    {
+        throw new UnsupportedOperationException("repository is write-only");
+    }
+
+
+    @Override
+    public PathRepo freeze()
+    {
+        throw new UnsupportedOperationException("repository is write-only");
+    }
+
+
+//----------------------------------------------------------------------------
+//  Other Public Methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Flushes the underlying writer.
+     *
+     *  @throws IllegalStateException if unable to write.
+     */
+    public void flush()
+    {
+        try
+        {
+            out.flush();
+            lastFlush = System.nanoTime();
+        }
+        catch (IOException ex)
+        {
+            throw new IllegalStateException("unable to write routes", ex);
+        }
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    private UrlState getOrCreateState(String url)
+    {
+        UrlState urlState = state.get(url);
+        if (urlState == null)
+        {
+            urlState = new UrlState();
+            state.put(url, urlState);
+        }
+        return urlState;
+    }
+
+
+    /**
+     *  Returns the methods that are written for a URL: "ALL" is retained if it's
+     *  displayed and not overridden by a hidden method, otherwise each method that
+     *  doesn't have its own destination is written with the "ALL" destination.
+     */
+    private static Set<HttpMethod> displayed(UrlState urlState)
+    {
+        Set<HttpMethod> result = EnumSet.noneOf(HttpMethod.class);
+        result.addAll(urlState.methods);
+        result.removeAll(urlState.hidden);
+
+        boolean splitAll = false;
+        for (HttpMethod method : urlState.hidden)
+            splitAll |= (method != HttpMethod.ALL);
+
+        if (splitAll && result.contains(HttpMethod.ALL))
+        {
+            result.remove(HttpMethod.ALL);
+            for (HttpMethod method : SPECIFIC_METHODS)
+            {
+                if (!urlState.methods.contains(method))
+                    result.add(method);
+            }
+        }
+        return result;
+    }
+
+
+    /**
+     *  Writes the records that turn the URL's previously written methods into its
+     *  current ones: removals first, then new and replaced destinations. The passed
+     *  map holds the destinations that changed; a method without its own destination
+     *  takes the "ALL" destination.
+     */
+    private void writeChanges(String url, UrlState urlState, Set<HttpMethod> before, Map<HttpMethod,Destination> changed)
+    {
+        Set<HttpMethod> after = displayed(urlState);
+        if (before.isEmpty() && !after.isEmpty())
+            urlCount++;
+        else if (!before.isEmpty() && after.isEmpty())
+            urlCount--;
+
+        if (urlState.methods.isEmpty())
+            state.remove(url);
+
+        try
+        {
+            for (HttpMethod method : before)
+            {
+                if (!after.contains(method))
+                    writeRemove(url, method);
+            }
+            for (HttpMethod method : after)
+            {
+                boolean fromAll = (method != HttpMethod.ALL) && !urlState.methods.contains(method);
+                Destination dest = changed.get(fromAll ? HttpMethod.ALL : method);
+                if (!before.contains(method))
+                    writeRoute("route", url, method, (dest != null) ? dest : urlState.all);
+                else if (dest != null)
+                    writeRoute("supersede", url, method, dest);
+            }
+        }
+        catch (IOException ex)
+        {
+            throw new IllegalStateException("unable to write routes", ex);
+        }
+        maybeFlush();
+    }
+
+
+    private void writeRoute(String op, String url, HttpMethod method, Destination dest)
+    throws IOException
+    {
+        out.write("{\"op\":\"");
+        out.write(op);
+        out.write("\",");
+        JsonRouteWriter.writeFields(out, options, url, method, dest);
+        out.write("}\n");
+    }
+
+
+    private void writeRemove(String url, HttpMethod method)
+    throws IOException
+    {
+        out.write("{\"op\":\"remove\",\"url\":");
+        OutputUtil.appendJson(out, url);
+        out.write(",\"method\":\"");
+        out.write(method.name());
+        out.write("\"}\n");
+    }
+
+
+    private void maybeFlush()
+    {
+        if (System.nanoTime() - lastFlush > FLUSH_INTERVAL_MILLIS * 1000000L)
+            flush();
+    }
+
+
+//----------------------------------------------------------------------------
+//  Supporting classes
+//----------------------------------------------------------------------------
+
+    /**
+     *  The methods that have a destination for a single URL, with the same
+     *  semantics as a stored repository.
+     */
+    private static class UrlState
+    {
+        public Set<HttpMethod> methods = EnumSet.noneOf(HttpMethod.class);
+        public Set<HttpMethod> hidden = EnumSet.noneOf(HttpMethod.class);
+        public Destination all;
+
+        public void put(HttpMethod method, Destination dest, Map<InvocationOptions,Boolean> options)
+        {
+            methods.add(method);
+            if (dest.isDisplayed(options))
+                hidden.remove(method);
+            else
+                hidden.add(method);
+            if (method == HttpMethod.ALL)
+                all = dest;
+        }
+
+        public void remove(HttpMethod method)
+        {
+            methods.remove(method);
+            hidden.remove(method);
+        }
+
+        /**
+         *  Replaces "ALL" with the individual methods, replacing any that have
+         *  their own destination.
+         */
+        public void splitAll()
+        {
+            boolean allHidden = hidden.contains(HttpMethod.ALL);
+            for (HttpMethod method : SPECIFIC_METHODS)
+            {
+                methods.add(method);
+                if (allHidden)
+                    hidden.add(method);
+                else
+                    hidden.remove(method);
+            }
+            remove(HttpMethod.ALL);
+            all = null;
+        }
+
+        public void clear()
+        {
+            methods.clear();
+            hidden.clear();
+            all = null;
+        }
+    }
+}
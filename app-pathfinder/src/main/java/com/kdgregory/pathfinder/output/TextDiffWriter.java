@@ -0,0 +1,82 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.output;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import com.kdgregory.pathfinder.util.RouteSnapshot;
+
+
+/**
+ *  Writes one line per change, prefixed with "+", "-", or "~", followed by
+ *  a summary line.
+ */
+public class TextDiffWriter
+extends DiffWriter
+{
+    private final static int METHOD_WIDTH = 6;
+
+
+    public TextDiffWriter(Writer out)
+    {
+        super(out);
+    }
+
+
+    @Override
+    protected void writeAdded(RouteSnapshot.Entry newEntry)
+    throws IOException
+    {
+        writeLine("+ ", newEntry, newEntry.getDestination());
+    }
+
+
+    @Override
+    protected void writeRemoved(RouteSnapshot.Entry oldEntry)
+    throws IOException
+    {
+        writeLine("- ", oldEntry, oldEntry.getDestination());
+    }
+
+
+    @Override
+    protected void writeChanged(RouteSnapshot.Entry oldEntry, RouteSnapshot.Entry newEntry)
+    throws IOException
+    {
+        writeLine("~ ", newEntry, oldEntry.getDestination() + " -> " + newEntry.getDestination());
+    }
+
+
+    @Override
+    protected void writeSummary()
+    throws IOException
+    {
+        out.write(added + " added, " + removed + " removed, " + changed + " changed\n");
+    }
+
+
+    private void writeLine(String prefix, RouteSnapshot.Entry entry, String destination)
+    throws IOException
+    {
+        out.write(prefix);
+        out.write(entry.getUrl());
+        out.write("  ");
+        OutputUtil.appendPadded(out, entry.getMethod().toString(), METHOD_WIDTH);
+        out.write("  ");
+        out.write(destination);
+        out.write('\n');
+    }
+}
@@ -0,0 +1,67 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.output;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+
+import com.kdgregory.pathfinder.core.Destination;
+import com.kdgregory.pathfinder.core.HttpMethod;
+import com.kdgregory.pathfinder.core.InvocationOptions;
+import com.kdgregory.pathfinder.core.PathRepo;
+
+
+/**
+ *  Writes a table with columns for URL, method, and destination description.
+ *  The URL column is sized to fit the longest URL, which takes a pass over
+ *  the repository's URLs before writing.
+ */
+public class TextRouteWriter
+extends RouteWriter
+{
+    private final static int MIN_URL_WIDTH = 16;
+    private final static int METHOD_WIDTH = 6;
+
+    private int urlWidth;
+
+
+    public TextRouteWriter(Writer out, Map<InvocationOptions,Boolean> options)
+    {
+        super(out, options);
+    }
+
+
+    @Override
+    protected void start(PathRepo repo)
+    {
+        urlWidth = MIN_URL_WIDTH;
+        for (String url : repo)
+            urlWidth = Math.max(urlWidth, url.length());
+    }
+
+
+    @Override
+    protected void writeRoute(String url, HttpMethod method, Destination dest)
+    throws IOException
+    {
+        OutputUtil.appendPadded(out, url, urlWidth);
+        out.write("  ");
+        OutputUtil.appendPadded(out, method.toString(), METHOD_WIDTH);
+        out.write("  ");
+        out.write(dest.toString(options));
+        out.write('\n');
+    }
+}
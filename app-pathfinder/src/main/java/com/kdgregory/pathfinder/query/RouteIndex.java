@@ -0,0 +1,291 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.query;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.sf.kdgcommons.lang.StringUtil;
+
+import com.kdgregory.pathfinder.core.Destination;
+import com.kdgregory.pathfinder.core.HttpMethod;
+import com.kdgregory.pathfinder.core.InvocationOptions;
+import com.kdgregory.pathfinder.core.PathRepo;
+import com.kdgregory.pathfinder.core.impl.PathRepoImpl;
+import com.kdgregory.pathfinder.servlet.ServletDestination;
+import com.kdgregory.pathfinder.spring.SpringDestination;
+
+
+/**
+ *  Secondary indexes over the displayed routes in a repository, which answer
+ *  queries without examining every route. A query is a list of terms, in the
+ *  form <code>FIELD=VALUE</code>, and selects the routes that match all terms:
+ *  <ul>
+ *  <li> <code>class</code>: the destination's class (Spring controller or servlet),
+ *       either fully-qualified or simple name.
+ *  <li> <code>bean</code>: the Spring bean id.
+ *  <li> <code>prefix</code>: the URL, or a URL that's "under" it (so "/servlet/B"
+ *       matches "/servlet/B/bar.html" but not "/servlet/Bar").
+ *  <li> <code>method</code>: the HTTP method, case-insensitive; a route for "ALL"
+ *       methods matches any method.
+ *  <li> <code>param</code>: the name of a request parameter (these are only
+ *       collected with <code>--showRequestParams</code>).
+ *  </ul>
+ *  The class, bean, method, and parameter indexes map each value to a bitset of
+ *  route numbers, and a query intersects those bitsets. Routes are numbered in
+ *  repository order, which is sorted by URL, so a prefix selects a contiguous
+ *  range that's found with a binary search.
+ *  <p>
+ *  Summarized static content (see {@link InvocationOptions#EXPAND_STATIC}) is
+ *  indexed by its summary pattern, such as <code>/css/**</code>: a prefix query
+ *  selects the summary rather than individual files. Summaries have no class,
+ *  bean, or parameters, so aren't selected by those fields.
+ *  <p>
+ *  Instances are immutable once constructed.
+ */
+public class RouteIndex
+{
+    public final static List<String> FIELDS = Collections.unmodifiableList(
+            Arrays.asList("class", "bean", "prefix", "method", "param"));
+
+    private String[] urls;
+    private HttpMethod[] methods;
+    private Destination[] destinations;
+    private Map<String,Map<String,BitSet>> indexes = new HashMap<String,Map<String,BitSet>>();
+
+
+    public RouteIndex(PathRepo repo, Map<InvocationOptions,Boolean> options)
+    {
+        for (String field : FIELDS)
+            indexes.put(field, new HashMap<String,BitSet>());
+
+        List<String> urlList = new ArrayList<String>();
+        List<HttpMethod> methodList = new ArrayList<HttpMethod>();
+        List<Destination> destList = new ArrayList<Destination>();
+        for (String url : repo)
+        {
+            for (Map.Entry<HttpMethod,Destination> entry : repo.get(url).entrySet())
+            {
+                Destination dest = entry.getValue();
+                if (!dest.isDisplayed(options))
+                    continue;
+
+                int route = urlList.size();
+                urlList.add(url);
+                methodList.add(entry.getKey());
+                destList.add(dest);
+                indexRoute(route, entry.getKey(), dest);
+            }
+        }
+
+        urls = urlList.toArray(new String[urlList.size()]);
+        methods = methodList.toArray(new HttpMethod[methodList.size()]);
+        destinations = destList.toArray(new Destination[destList.size()]);
+    }
+
+
+//----------------------------------------------------------------------------
+//  Public methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Returns the number of indexed routes.
+     */
+    public int size()
+    {
+        return urls.length;
+    }
+
+
+    /**
+     *  Checks query terms without building an index, so that callers can reject
+     *  them before inspecting a WAR.
+     *
+     *  @throws IllegalArgumentException if a term isn't <code>FIELD=VALUE</code>,
+     *          or names an unknown field.
+     */
+    public static void validate(String... terms)
+    {
+        for (String term : terms)
+        {
+            int eq = term.indexOf('=');
+            if (eq < 1)
+                throw new IllegalArgumentException("query term must be FIELD=VALUE: " + term);
+
+            String field = term.substring(0, eq);
+            if (!FIELDS.contains(field))
+                throw new IllegalArgumentException("unknown query field: " + field);
+        }
+    }
+
+
+    /**
+     *  Returns the routes that match all of the passed terms, as a new repository.
+     *  With no terms, returns all routes.
+     *
+     *  @throws IllegalArgumentException if a term isn't <code>FIELD=VALUE</code>,
+     *          or names an unknown field.
+     */
+    public PathRepo query(String... terms)
+    {
+        validate(terms);
+
+        BitSet selected = new BitSet(urls.length);
+        selected.set(0, urls.length);
+        for (String term : terms)
+        {
+            int eq = term.indexOf('=');
+            selected.and(select(term.substring(0, eq), term.substring(eq + 1)));
+            if (selected.isEmpty())
+                break;
+        }
+
+        PathRepo result = new PathRepoImpl();
+        for (int route = selected.nextSetBit(0) ; route >= 0 ; route = selected.nextSetBit(route + 1))
+        {
+            result.put(urls[route], methods[route], destinations[route]);
+        }
+        return result;
+    }
+
+
+    /**
+     *  Estimates the memory used by the index, beyond that of the repository it
+     *  was built from: the route arrays, plus each indexed value and its bitset.
+     */
+    public long getEstimatedBytes()
+    {
+        long bytes = 3 * 8L * urls.length;
+        for (Map<String,BitSet> index : indexes.values())
+        {
+            for (Map.Entry<String,BitSet> entry : index.entrySet())
+                bytes += 96 + 2 * entry.getKey().length() + entry.getValue().size() / 8;
+        }
+        return bytes;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    private void indexRoute(int route, HttpMethod method, Destination dest)
+    {
+        addToIndex("method", method.name(), route);
+        if (dest instanceof SpringDestination)
+        {
+            SpringDestination springDest = (SpringDestination)dest;
+            addClassToIndex(springDest.getBeanClass(), route);
+            addToIndex("bean", springDest.getBeanId(), route);
+            for (String param : springDest.getParams().keySet())
+                addToIndex("param", param, route);
+        }
+        else if (dest instanceof ServletDestination)
+        {
+            addClassToIndex(((ServletDestination)dest).getServletClass(), route);
+        }
+    }
+
+
+    private void addClassToIndex(String className, int route)
+    {
+        if (StringUtil.isBlank(className))
+            return;
+
+        addToIndex("class", className, route);
+        int dot = className.lastIndexOf('.');
+        if (dot >= 0)
+            addToIndex("class", className.substring(dot + 1), route);
+    }
+
+
+    private void addToIndex(String field, String value, int route)
+    {
+        if (value == null)
+            return;
+
+        Map<String,BitSet> index = indexes.get(field);
+        BitSet routes = index.get(value);
+        if (routes == null)
+        {
+            routes = new BitSet();
+            index.put(value, routes);
+        }
+        routes.set(route);
+    }
+
+
+    private BitSet select(String field, String value)
+    {
+        if (field.equals("prefix"))
+            return selectPrefix(value);
+        if (field.equals("method"))
+            value = value.toUpperCase();
+
+        BitSet result = new BitSet(urls.length);
+        BitSet routes = indexes.get(field).get(value);
+        if (routes != null)
+            result.or(routes);
+
+        if (field.equals("method") && !value.equals(HttpMethod.ALL.name()))
+        {
+            BitSet allRoutes = indexes.get(field).get(HttpMethod.ALL.name());
+            if (allRoutes != null)
+                result.or(allRoutes);
+        }
+        return result;
+    }
+
+
+    private BitSet selectPrefix(String prefix)
+    {
+        while ((prefix.length() > 1) && prefix.endsWith("/"))
+            prefix = prefix.substring(0, prefix.length() - 1);
+        boolean isRoot = prefix.equals("/") || prefix.equals("");
+
+        BitSet result = new BitSet(urls.length);
+        for (int route = lowerBound(prefix) ; (route < urls.length) && urls[route].startsWith(prefix) ; route++)
+        {
+            String url = urls[route];
+            if (isRoot || (url.length() == prefix.length()) || (url.charAt(prefix.length()) == '/'))
+                result.set(route);
+        }
+        return result;
+    }
+
+
+    /**
+     *  Returns the first route whose URL is greater than or equal to the passed value.
+     */
+    private int lowerBound(String value)
+    {
+        int lo = 0;
+        int hi = urls.length;
+        while (lo < hi)
+        {
+            int mid = (lo + hi) >>> 1;
+            if (urls[mid].compareTo(value) < 0)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+}
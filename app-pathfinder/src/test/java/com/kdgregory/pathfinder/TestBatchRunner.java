@@ -0,0 +1,152 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assume;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import net.sf.kdgcommons.io.IOUtil;
+
+import com.kdgregory.pathfinder.core.InvocationOptions;
+import com.kdgregory.pathfinder.core.impl.ArchiveIndexCache;
+import com.kdgregory.pathfinder.test.WarNames;
+
+
+public class TestBatchRunner
+{
+//----------------------------------------------------------------------------
+//  Support Code
+//----------------------------------------------------------------------------
+
+    private static File createDir()
+    throws Exception
+    {
+        File dir = IOUtil.createTempFile("TestBatchRunner", 0);
+        dir.delete();
+        dir.mkdirs();
+        return dir;
+    }
+
+
+    private static void extractWar(String warName, File dir)
+    throws Exception
+    {
+        InputStream in = TestBatchRunner.class.getClassLoader().getResourceAsStream(warName);
+        FileOutputStream out = new FileOutputStream(new File(dir, warName));
+        try
+        {
+            IOUtil.copy(in, out);
+        }
+        finally
+        {
+            IOUtil.closeQuietly(in);
+            IOUtil.closeQuietly(out);
+        }
+    }
+
+
+    private static String read(File file)
+    throws Exception
+    {
+        InputStream in = IOUtil.openFile(file);
+        try
+        {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            IOUtil.copy(in, out);
+            return new String(out.toByteArray(), "UTF-8");
+        }
+        finally
+        {
+            IOUtil.closeQuietly(in);
+        }
+    }
+
+
+//----------------------------------------------------------------------------
+//  TestCases
+//----------------------------------------------------------------------------
+
+    @Test
+    public void testBatch() throws Exception
+    {
+        File inputDir = createDir();
+        extractWar(WarNames.SERVLET, inputDir);
+        extractWar(WarNames.SPRING_ANNO, inputDir);
+        extractWar(WarNames.SPRING_SCAN, inputDir);
+        FileOutputStream broken = new FileOutputStream(new File(inputDir, "broken.war"));
+        broken.write("this is not a WAR".getBytes("UTF-8"));
+        broken.close();
+
+        List<File> wars = BatchRunner.expand(inputDir.getPath(), "/no/such/file.war");
+        assertEquals("expanded directory and file", 5, wars.size());
+        assertEquals("directory contents are sorted", "broken.war", wars.get(0).getName());
+
+        long cacheHits = ArchiveIndexCache.getShared().getHitCount();
+        File outputDir = new File(createDir(), "output");
+        ByteArrayOutputStream summary = new ByteArrayOutputStream();
+        int failures = new BatchRunner(InvocationOptions.parseCli(), "text", 2)
+                       .run(wars, outputDir, new PrintStream(summary, true, "UTF-8"));
+
+        assertEquals("failures", 2, failures);
+        assertTrue("Spring WARs share library JARs", ArchiveIndexCache.getShared().getHitCount() > cacheHits);
+
+        String summaryText = new String(summary.toByteArray(), "UTF-8");
+        assertEquals("summary file", summaryText, read(new File(outputDir, BatchRunner.SUMMARY_FILE)));
+        assertTrue("broken WAR reported",   summaryText.startsWith("FAILED  " + new File(inputDir, "broken.war")));
+        assertTrue("missing file reported", summaryText.contains("FAILED  /no/such/file.war"));
+        assertTrue("totals",                summaryText.contains("5 WARs, 2 failed"));
+
+        String annoOutput = read(new File(outputDir, "pathfinder-testdata-spring-anno.txt"));
+        assertTrue("per-WAR output", annoOutput.contains("/servlet/C           GET     com.kdgregory.pathfinder.test.spring3.pkg2.ControllerC.getC()"));
+        assertFalse("no output for failure", new File(outputDir, "broken.txt").exists());
+    }
+
+
+    @Test
+    public void testUnreadableDirectory() throws Exception
+    {
+        File inputDir = createDir();
+        extractWar(WarNames.SERVLET, inputDir);
+        inputDir.setReadable(false);
+        try
+        {
+            // root can read anything, so this only runs for ordinary users
+            Assume.assumeTrue(inputDir.list() == null);
+
+            List<File> wars = BatchRunner.expand(inputDir.getPath());
+            assertEquals("directory retained", Arrays.asList(inputDir), wars);
+
+            ByteArrayOutputStream summary = new ByteArrayOutputStream();
+            int failures = new BatchRunner(InvocationOptions.parseCli(), "text", 1)
+                           .run(wars, new File(createDir(), "output"), new PrintStream(summary, true, "UTF-8"));
+            assertEquals("failures", 1, failures);
+            assertTrue("directory reported",
+                       new String(summary.toByteArray(), "UTF-8").startsWith("FAILED  " + inputDir + ": unable to list directory"));
+        }
+        finally
+        {
+            inputDir.setReadable(true);
+        }
+    }
+}
@@ -45,7 +45,7 @@ public class TestCoverage
 
             WarMachine machine = TestHelpers.createWarMachine(warName);
             PrintStream out = new PrintStream(new ByteArrayOutputStream());
-            new Main(InvocationOptions.parseCli(""), machine, out).run();
+            new WarReport(InvocationOptions.parseCli(""), machine, out).run();
         }
     }
 }
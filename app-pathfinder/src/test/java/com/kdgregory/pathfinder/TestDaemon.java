@@ -0,0 +1,189 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.Socket;
+import java.net.URL;
+import java.net.URLEncoder;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import net.sf.kdgcommons.io.IOUtil;
+
+import com.kdgregory.pathfinder.test.WarNames;
+
+
+public class TestDaemon
+{
+    private Daemon daemon;
+    private String warPath;
+
+//----------------------------------------------------------------------------
+//  Support Code
+//----------------------------------------------------------------------------
+
+    @Before
+    public void setUp() throws Exception
+    {
+        File war = IOUtil.createTempFile("TestDaemon", 0);
+        InputStream in = getClass().getClassLoader().getResourceAsStream(WarNames.SPRING_ANNO);
+        FileOutputStream out = new FileOutputStream(war);
+        try
+        {
+            IOUtil.copy(in, out);
+        }
+        finally
+        {
+            IOUtil.closeQuietly(in);
+            IOUtil.closeQuietly(out);
+        }
+        warPath = URLEncoder.encode(war.getAbsolutePath(), "UTF-8");
+
+        daemon = new Daemon(0, Long.MAX_VALUE, 2);
+        daemon.start();
+    }
+
+
+    @After
+    public void tearDown()
+    {
+        daemon.stop();
+    }
+
+
+    private static class Response
+    {
+        public int status;
+        public String body;
+    }
+
+
+    private Response get(String pathAndQuery)
+    throws Exception
+    {
+        URL url = new URL("http://127.0.0.1:" + daemon.getPort() + pathAndQuery);
+        HttpURLConnection cxt = (HttpURLConnection)url.openConnection();
+        Response response = new Response();
+        response.status = cxt.getResponseCode();
+        InputStream in = (response.status < 400) ? cxt.getInputStream() : cxt.getErrorStream();
+        try
+        {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            IOUtil.copy(in, bytes);
+            response.body = new String(bytes.toByteArray(), "UTF-8");
+        }
+        finally
+        {
+            IOUtil.closeQuietly(in);
+            cxt.disconnect();
+        }
+        return response;
+    }
+
+
+    /**
+     *  Sends a request over a plain socket, so that we can control the method and
+     *  headers, and returns the response's status code.
+     */
+    private int send(String method, String path, String host)
+    throws Exception
+    {
+        Socket socket = new Socket("127.0.0.1", daemon.getPort());
+        try
+        {
+            OutputStream out = socket.getOutputStream();
+            String request = method + " " + path + " HTTP/1.1\r\n"
+                           + "Host: " + host + "\r\n"
+                           + "Content-Length: 0\r\n"
+                           + "Connection: close\r\n"
+                           + "\r\n";
+            out.write(request.getBytes("US-ASCII"));
+            out.flush();
+
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "US-ASCII"));
+            String statusLine = in.readLine();
+            return Integer.parseInt(statusLine.split(" ")[1]);
+        }
+        finally
+        {
+            socket.close();
+        }
+    }
+
+
+//----------------------------------------------------------------------------
+//  TestCases
+//----------------------------------------------------------------------------
+
+    @Test
+    public void testRoutesAndQuery() throws Exception
+    {
+        Response routes = get("/routes?war=" + warPath);
+        assertEquals("routes status", 200, routes.status);
+        assertTrue("routes body", routes.body.contains("/servlet/C           GET     com.kdgregory.pathfinder.test.spring3.pkg2.ControllerC.getC()"));
+
+        Response json = get("/routes?war=" + warPath + "&format=json");
+        assertEquals("json status", 200, json.status);
+        assertTrue("json body", json.body.startsWith("{\"routes\":["));
+
+        Response query = get("/query?war=" + warPath + "&term=" + URLEncoder.encode("prefix=/servlet/C", "UTF-8"));
+        assertEquals("query status", 200, query.status);
+        assertTrue("query matches", query.body.contains("ControllerC.getC()"));
+        assertFalse("query excludes", query.body.contains("ControllerA"));
+
+        // the format doesn't affect the entry, and queries share it
+        assertEquals("cache entries", 1, daemon.getCache().getEntryCount());
+        assertEquals("cache misses", 1, daemon.getCache().getMissCount());
+
+        Response stats = get("/stats");
+        assertEquals("stats status", 200, stats.status);
+        assertTrue("stats body", stats.body.contains("hits: 2"));
+    }
+
+
+    @Test
+    public void testBadRequests() throws Exception
+    {
+        assertEquals("missing WAR parameter", 400, get("/routes").status);
+        assertEquals("nonexistent WAR",       400, get("/routes?war=%2Fno%2Fsuch%2Ffile.war").status);
+        assertEquals("unsupported format",    400, get("/routes?war=" + warPath + "&format=xml").status);
+
+        Response badTerm = get("/query?war=" + warPath + "&term=color%3Dred");
+        assertEquals("unsupported query field", 400, badTerm.status);
+        assertTrue("error message", badTerm.body.length() > 0);
+    }
+
+
+    @Test
+    public void testMethodAndHost() throws Exception
+    {
+        String port = String.valueOf(daemon.getPort());
+        assertEquals("GET with loopback address", 200, send("GET", "/stats", "127.0.0.1:" + port));
+        assertEquals("GET with localhost",        200, send("GET", "/stats", "localhost:" + port));
+        assertEquals("POST",                      405, send("POST", "/stats", "127.0.0.1:" + port));
+        assertEquals("rebound hostname",          403, send("GET", "/stats", "attacker.example.com:" + port));
+    }
+}
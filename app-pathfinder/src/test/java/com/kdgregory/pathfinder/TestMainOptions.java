@@ -14,14 +14,37 @@
 
 package com.kdgregory.pathfinder;
 
+import java.io.BufferedReader;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.PrintStream;
+import java.io.StringReader;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+
+import org.junit.Assume;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
+import net.sf.kdgcommons.io.IOUtil;
+
+import com.kdgregory.pathfinder.core.HttpMethod;
 import com.kdgregory.pathfinder.core.InvocationOptions;
+import com.kdgregory.pathfinder.core.impl.WarMachineImpl;
+import com.kdgregory.pathfinder.embed.ManifestEmbedder;
 import com.kdgregory.pathfinder.test.WarNames;
+import com.kdgregory.pathfinder.util.RouteHistory;
+import com.kdgregory.pathfinder.util.RouteManifest;
+import com.kdgregory.pathfinder.util.RouteSnapshot;
 import com.kdgregory.pathfinder.util.TestHelpers;
 
 
@@ -35,11 +58,44 @@ public class TestMainOptions
 
     private void run(String warName, String... options)
     throws Exception
+    {
+        runWithFormat("text", warName, options);
+    }
+
+
+    private void runWithFormat(String format, String warName, String... options)
+    throws Exception
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        WarReport report = new WarReport(InvocationOptions.parseCli(options),
+                                         TestHelpers.createWarMachine(warName),
+                                         new PrintStream(out));
+        report.setFormat(format);
+        report.run();
+        output = new String(out.toByteArray()); // default encoding is OK
+    }
+
+
+    private static File extractWar(String warName)
+    throws Exception
+    {
+        InputStream in = TestMainOptions.class.getClassLoader().getResourceAsStream(warName);
+        try
+        {
+            return IOUtil.createTempFile(in, warName);
+        }
+        finally
+        {
+            IOUtil.closeQuietly(in);
+        }
+    }
+
+
+    private void diff(File oldFile, File newFile, boolean asJson)
+    throws Exception
     {
         ByteArrayOutputStream out = new ByteArrayOutputStream();
-        new Main(InvocationOptions.parseCli(options),
-                 TestHelpers.createWarMachine(warName),
-                 new PrintStream(out)).run();
+        new DiffRunner(InvocationOptions.parseCli(), asJson).diff(oldFile, newFile, new PrintStream(out));
         output = new String(out.toByteArray()); // default encoding is OK
     }
 
@@ -112,15 +168,36 @@ public class TestMainOptions
 
     @Test
     public void testIncludeStatic() throws Exception
+    {
+        run(WarNames.STATIC,
+            InvocationOptions.SHOW_STATIC.getEnableString(),
+            InvocationOptions.EXPAND_STATIC.getEnableString());
+        assertExpectedUrls(
+                "/index.html",
+                "/index.jsp",
+                "/subdir/index.jsp",
+                "/sample.gif",
+                "/css/sample.css");
+        assertUnexpectedUrls(
+                "/*.gif",
+                "/css/**");
+    }
+
+
+    @Test
+    public void testSummarizeStatic() throws Exception
     {
         run(WarNames.STATIC, InvocationOptions.SHOW_STATIC.getEnableString());
         assertExpectedUrls(
                 "/index.html",
                 "/index.jsp",
                 "/subdir/index.jsp",
+                "/*.gif",
+                "/css/**");
+        assertUnexpectedUrls(
                 "/sample.gif",
                 "/css/sample.css");
-        assertUnexpectedUrls();
+        assertTrue("file count", output.contains("static content, 1 file"));
     }
 
 
@@ -140,4 +217,337 @@ public class TestMainOptions
         assertTrue("controller should show params",
                    output.contains("com.kdgregory.pathfinder.test.spring3.pkg2.ControllerE.getFoo(java.lang.String argle,"));
     }
+
+
+    @Test
+    public void testStructuredFormats() throws Exception
+    {
+        // request parameters are only collected when they're to be shown
+        runWithFormat("json", WarNames.SPRING_ANNO, InvocationOptions.SHOW_REQUEST_PARAMS.getEnableString());
+        assertTrue("JSON wrapper", output.startsWith("{\"routes\":[\n"));
+        assertTrue("JSON route with Spring details",
+                   output.contains("{\"url\":\"/servlet/E2\",\"method\":\"ALL\","
+                                   + "\"destination\":\"com.kdgregory.pathfinder.test.spring3.pkg2.ControllerE.getBar(java.lang.String argle, java.lang.Integer bargle)\","
+                                   + "\"bean\":\"controllerE\","
+                                   + "\"class\":\"com.kdgregory.pathfinder.test.spring3.pkg2.ControllerE\","
+                                   + "\"handlerMethod\":\"getBar\","
+                                   + "\"params\":[{\"name\":\"argle\",\"type\":\"java.lang.String\",\"required\":true,\"default\":\"\"},"
+                                   + "{\"name\":\"bargle\",\"type\":\"java.lang.Integer\",\"required\":true,\"default\":\"\"}]}"));
+
+        runWithFormat("ndjson", WarNames.SPRING_ANNO);
+        assertTrue("NDJSON route", output.startsWith("{\"url\":\"/index.jsp\",\"method\":\"ALL\",\"destination\":\"/index.jsp\"}\n"));
+
+        runWithFormat("csv", WarNames.SPRING_ANNO);
+        assertTrue("CSV header", output.startsWith("url,method,destination,bean,class,handlerMethod\r\n"));
+        assertTrue("CSV route",
+                   output.contains("\r\n/servlet/C,GET,com.kdgregory.pathfinder.test.spring3.pkg2.ControllerC.getC(),"
+                                   + "controllerC,com.kdgregory.pathfinder.test.spring3.pkg2.ControllerC,getC\r\n"));
+    }
+
+
+    @Test
+    public void testManifest() throws Exception
+    {
+        File manifestFile = IOUtil.createTempFile("testManifest", 0);
+        WarReport report = new WarReport(InvocationOptions.parseCli(),
+                                         TestHelpers.createWarMachine(WarNames.SERVLET),
+                                         new PrintStream(new ByteArrayOutputStream()));
+        report.setManifest(manifestFile);
+        report.run();
+
+        RouteManifest manifest = new RouteManifest(manifestFile);
+        int route = manifest.find("/servlet", HttpMethod.GET);
+        assertEquals("servlet destination", "com.example.servlet.SomeServlet", manifest.getDestination(route));
+    }
+
+
+    @Test
+    public void testEmbeddedManifest() throws Exception
+    {
+        File war = extractWar(WarNames.SPRING_ANNO);
+        new ManifestEmbedder(InvocationOptions.parseCli()).embed(war);
+
+        // manifest destinations only have descriptions, so there's no bean in the JSON
+        String[] variants = new String[] { InvocationOptions.USE_MANIFEST.getEnableString(),
+                                           InvocationOptions.USE_MANIFEST.getDisableString() };
+        String[] outputs = new String[variants.length];
+        for (int ii = 0 ; ii < variants.length ; ii++)
+        {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            WarReport report = new WarReport(InvocationOptions.parseCli(variants[ii]), new WarMachineImpl(war), new PrintStream(out));
+            report.setFormat("json");
+            report.run();
+            outputs[ii] = new String(out.toByteArray(), "UTF-8");
+        }
+
+        assertFalse("loaded from manifest",     outputs[0].contains("\"bean\":"));
+        assertTrue("ignored manifest",          outputs[1].contains("\"bean\":"));
+        assertTrue("same paths",                outputs[0].contains("{\"url\":\"/servlet/C\",\"method\":\"GET\",\"destination\":\"com.kdgregory.pathfinder.test.spring3.pkg2.ControllerC.getC()\"}"));
+    }
+
+
+    @Test
+    public void testShowFilters() throws Exception
+    {
+        run(WarNames.SERVLET_25);
+        assertFalse("filters are hidden by default", output.contains("Filter chains"));
+
+        run(WarNames.SERVLET_25, InvocationOptions.SHOW_FILTERS.getEnableString());
+        assertTrue("URL filters, then servlet-name filters",
+                   output.contains("/servlet2          Auth -> Compression -> RateLimit\n"));
+        assertTrue("JSP isn't handled by mapped servlet",
+                   output.contains("/subdir/index.jsp  Auth -> Compression\n"));
+    }
+
+
+    @Test
+    public void testStream() throws Exception
+    {
+        run(WarNames.SPRING_MULTI_DISPATCH, InvocationOptions.SNAPSHOT.getEnableString());
+        Map<String,String> expected = new TreeMap<String,String>();
+        for (Iterator<RouteSnapshot.Entry> itx = RouteSnapshot.read(new BufferedReader(new StringReader(output))) ; itx.hasNext() ; )
+        {
+            RouteSnapshot.Entry entry = itx.next();
+            expected.put(entry.getUrl() + " " + entry.getMethod().name(), entry.getDestination());
+        }
+
+        run(WarNames.SPRING_MULTI_DISPATCH, InvocationOptions.STREAM.getEnableString());
+        assertTrue("dispatcher mapping removed",    output.contains("{\"op\":\"remove\","));
+        assertTrue("conflicting mapping superseded", output.contains("{\"op\":\"supersede\","));
+
+        // applying the records in order gives the same paths as a normal run
+        Pattern recordRegex = Pattern.compile("\\{\"op\":\"(\\w+)\",\"url\":\"([^\"]*)\",\"method\":\"(\\w+)\"(?:,\"destination\":\"([^\"]*)\")?.*\\}");
+        Map<String,String> actual = new TreeMap<String,String>();
+        for (String line : output.split("\n"))
+        {
+            Matcher matcher = recordRegex.matcher(line);
+            assertTrue("record: " + line, matcher.matches());
+            String key = matcher.group(2) + " " + matcher.group(3);
+            if (matcher.group(1).equals("remove"))
+                actual.remove(key);
+            else
+                actual.put(key, matcher.group(4));
+        }
+        assertEquals("replayed stream", expected, actual);
+    }
+
+
+    @Test
+    public void testQuery() throws Exception
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        QueryRunner query = new QueryRunner(InvocationOptions.parseCli(),
+                                            TestHelpers.createWarMachine(WarNames.SPRING_ANNO),
+                                            new PrintStream(out));
+        query.query("class=ControllerB", "method=POST");
+        assertEquals("/servlet/B/baz.html  POST    com.kdgregory.pathfinder.test.spring3.pkg2.ControllerB.setBaz()\n",
+                     new String(out.toByteArray(), "UTF-8"));
+    }
+
+
+    @Test
+    public void testAnalyze() throws Exception
+    {
+        run(WarNames.SPRING_MULTI_DISPATCH);
+        assertFalse("analysis is off by default", output.contains("Route analysis"));
+
+        run(WarNames.SPRING_MULTI_DISPATCH, InvocationOptions.ANALYZE.getEnableString());
+        assertTrue("analysis summary",
+                   output.contains("Route analysis: 1 finding"));
+        assertTrue("conflict between dispatchers",
+                   output.contains("CONFLICT /b/foo *: \"com.kdgregory.pathfinder.test.multi.alpha.AlphaController.getFoo()\""));
+
+        run(WarNames.SPRING_INHERIT, InvocationOptions.ANALYZE.getEnableString());
+        assertTrue("literal overlaps variable",
+                   output.contains("OVERLAP /servlet/users/me / /servlet/users/{id} DELETE"));
+    }
+
+
+    @Test
+    public void testTextOnlySections() throws Exception
+    {
+        runWithFormat("json", WarNames.SPRING_MULTI_DISPATCH,
+                      InvocationOptions.SHOW_FILTERS.getEnableString(),
+                      InvocationOptions.ANALYZE.getEnableString());
+        assertFalse("no filter chains in JSON", output.contains("Filter chains"));
+        assertFalse("no analysis in JSON",      output.contains("Route analysis"));
+
+        ScriptEngine engine = new ScriptEngineManager().getEngineByName("javascript");
+        Assume.assumeNotNull(engine);
+        engine.put("output", output);
+        assertEquals("output parses as JSON", Boolean.TRUE,
+                     engine.eval("Array.isArray(JSON.parse(output).routes)"));
+
+        File snapshot = IOUtil.createTempFile("testTextOnlySections", 0);
+        try
+        {
+            run(WarNames.SPRING_MULTI_DISPATCH,
+                InvocationOptions.SNAPSHOT.getEnableString(),
+                InvocationOptions.SHOW_FILTERS.getEnableString(),
+                InvocationOptions.ANALYZE.getEnableString());
+            OutputStream snapshotOut = new FileOutputStream(snapshot);
+            snapshotOut.write(output.getBytes("UTF-8"));
+            snapshotOut.close();
+
+            diff(snapshot, snapshot, false);
+            assertEquals("snapshot is readable", "0 added, 0 removed, 0 changed", output.trim());
+        }
+        finally
+        {
+            snapshot.delete();
+        }
+    }
+
+
+    @Test
+    public void testAttribute() throws Exception
+    {
+        File log = IOUtil.createTempFile("testAttribute", 0);
+        try
+        {
+            OutputStream logOut = new FileOutputStream(log);
+            logOut.write(("127.0.0.1 - - [10/Oct/2000:13:55:36 -0700] \"GET /ctx/servlet?foo=bar HTTP/1.1\" 200 2326\n"
+                        + "127.0.0.1 - - [10/Oct/2000:13:55:37 -0700] \"POST /ctx/servlet HTTP/1.1\" 200 2326\n"
+                        + "127.0.0.1 - - [10/Oct/2000:13:55:38 -0700] \"GET /ctx/index.jsp HTTP/1.1\" 200 2326\n"
+                        + "127.0.0.1 - - [10/Oct/2000:13:55:39 -0700] \"GET /ctx/missing HTTP/1.1\" 404 0\n")
+                        .getBytes("US-ASCII"));
+            logOut.close();
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            new AttributionReport(InvocationOptions.parseCli(),
+                                  TestHelpers.createWarMachine(WarNames.SERVLET),
+                                  new PrintStream(out)).attribute("/ctx", log);
+            output = new String(out.toByteArray()); // default encoding is OK
+        }
+        finally
+        {
+            log.delete();
+        }
+
+        assertTrue("request count",             output.contains("Requests: 4"));
+        assertTrue("attributed count",          output.contains("attributed:          3"));
+        assertTrue("unmatched count",           output.contains("unmatched:           1"));
+        assertTrue("servlet hits",              output.matches("(?s).*\\s2  com.example.servlet.SomeServlet\n.*"));
+        assertTrue("unused servlet mapping",    output.contains("\n    /servlet2 "));
+        assertTrue("unused JSP",                output.contains("\n    /subdir/index.jsp "));
+        assertFalse("used servlet mapping",     output.contains("\n    /servlet "));
+        assertFalse("used JSP",                 output.contains("\n    /index.jsp "));
+    }
+
+
+    @Test
+    public void testHistory() throws Exception
+    {
+        File dir = IOUtil.createTempFile("testHistory", 0);
+        dir.delete();
+        RouteHistory history = new RouteHistory(dir);
+
+        String[] warNames = new String[] { WarNames.SERVLET, WarNames.STATIC };
+        for (int ii = 0 ; ii < warNames.length ; ii++)
+        {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            WarReport report = new WarReport(InvocationOptions.parseCli(),
+                                             TestHelpers.createWarMachine(warNames[ii]),
+                                             new PrintStream(out));
+            report.setHistory(history, "v" + (ii + 1));
+            report.run();
+            assertTrue("recorded build " + (ii + 1),
+                       new String(out.toByteArray(), "UTF-8").contains("Recorded build v" + (ii + 1) + ": "));
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        HistoryReport report = new HistoryReport(history, new PrintStream(out));
+        report.listBuilds();
+        output = new String(out.toByteArray(), "UTF-8");
+        assertTrue("first build listed",    output.startsWith("v1 "));
+        assertTrue("second build listed",   output.contains("\nv2 "));
+
+        out.reset();
+        report.showLifetime("/servlet");
+        output = new String(out.toByteArray(), "UTF-8");
+        assertTrue("servlet added",         output.contains("v1                    ADDED"));
+        assertTrue("servlet removed",       output.contains("v2                    REMOVED"));
+
+        out.reset();
+        report.showTable("v1");
+        output = new String(out.toByteArray(), "UTF-8");
+        assertTrue("table has servlet",     output.contains("/servlet "));
+
+        try
+        {
+            report.showTable("v3");
+            fail("should have failed for missing build");
+        }
+        catch (IllegalArgumentException ex)
+        {
+            // success
+        }
+    }
+
+
+    @Test
+    public void testDiff() throws Exception
+    {
+        File servletWar = extractWar(WarNames.SERVLET);
+        File staticWar = extractWar(WarNames.STATIC);
+        File snapshot = IOUtil.createTempFile("testDiff", 0);
+        try
+        {
+            run(WarNames.SERVLET, InvocationOptions.SNAPSHOT.getEnableString());
+            assertTrue("snapshot header", output.startsWith(RouteSnapshot.HEADER));
+            OutputStream snapshotOut = new FileOutputStream(snapshot);
+            snapshotOut.write(output.getBytes());   // default encoding is OK
+            snapshotOut.close();
+
+            diff(snapshot, servletWar, false);
+            assertEquals("snapshot matches WAR", "0 added, 0 removed, 0 changed", output.trim());
+
+            diff(servletWar, staticWar, false);
+            assertTrue("text: removed servlet", output.contains("- /servlet  " + "      " + "  com.example.servlet.SomeServlet\n"));
+            assertTrue("text: summary",         output.endsWith("0 added, 2 removed, 0 changed\n"));
+
+            diff(snapshot, staticWar, true);
+            assertTrue("json: removed servlet",
+                       output.contains("{\"change\":\"removed\",\"url\":\"/servlet\",\"method\":\"ALL\","
+                                       + "\"destination\":\"com.example.servlet.SomeServlet\"}"));
+            assertTrue("json: summary",
+                       output.trim().endsWith("],\"added\":0,\"removed\":2,\"changed\":0}"));
+        }
+        finally
+        {
+            servletWar.delete();
+            staticWar.delete();
+            snapshot.delete();
+        }
+    }
+
+
+    @Test
+    public void testDiffMalformedSnapshot() throws Exception
+    {
+        File servletWar = extractWar(WarNames.SERVLET);
+        File snapshot = IOUtil.createTempFile("testDiffMalformedSnapshot", 0);
+        try
+        {
+            OutputStream snapshotOut = new FileOutputStream(snapshot);
+            snapshotOut.write((RouteSnapshot.HEADER + "\n/foo\n").getBytes("UTF-8"));
+            snapshotOut.close();
+
+            try
+            {
+                diff(snapshot, servletWar, false);
+                fail("diffed a malformed snapshot");
+            }
+            catch (DiffRunner.SnapshotException ex)
+            {
+                assertEquals("exception identifies file", snapshot, ex.getFile());
+                assertTrue("exception message", ex.getMessage().startsWith("malformed snapshot line 2"));
+            }
+        }
+        finally
+        {
+            servletWar.delete();
+            snapshot.delete();
+        }
+    }
 }
@@ -0,0 +1,155 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.util.Map;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import net.sf.kdgcommons.io.IOUtil;
+
+import com.kdgregory.pathfinder.core.InvocationOptions;
+import com.kdgregory.pathfinder.test.WarNames;
+
+
+public class TestRouteCache
+{
+//----------------------------------------------------------------------------
+//  Support Code
+//----------------------------------------------------------------------------
+
+    private static File extractWar(String warName, File file)
+    throws Exception
+    {
+        if (file == null)
+            file = IOUtil.createTempFile("TestRouteCache", 0);
+
+        InputStream in = TestRouteCache.class.getClassLoader().getResourceAsStream(warName);
+        FileOutputStream out = new FileOutputStream(file);
+        try
+        {
+            IOUtil.copy(in, out);
+        }
+        finally
+        {
+            IOUtil.closeQuietly(in);
+            IOUtil.closeQuietly(out);
+        }
+        return file;
+    }
+
+
+//----------------------------------------------------------------------------
+//  TestCases
+//----------------------------------------------------------------------------
+
+    @Test
+    public void testHitAndInvalidation() throws Exception
+    {
+        Map<InvocationOptions,Boolean> options = InvocationOptions.parseCli();
+        File war = extractWar(WarNames.SERVLET, null);
+        war.setLastModified(1000000000000L);
+
+        RouteCache cache = new RouteCache(Long.MAX_VALUE);
+        RouteCache.Entry entry1 = cache.get(war, options);
+        assertTrue("inspected WAR has paths", entry1.getPaths().urlCount() > 0);
+        assertEquals("first request is a miss", 1, cache.getMissCount());
+
+        RouteCache.Entry entry2 = cache.get(war, options);
+        assertSame("unchanged WAR returns cached entry", entry1, entry2);
+        assertEquals("second request is a hit", 1, cache.getHitCount());
+
+        RouteCache.Entry entry3 = cache.get(war, InvocationOptions.parseCli("--showStatic"));
+        assertNotSame("different options are a different entry", entry1, entry3);
+        assertEquals("entries", 2, cache.getEntryCount());
+
+        war.setLastModified(1000000002000L);
+        RouteCache.Entry entry4 = cache.get(war, options);
+        assertSame("touched WAR retains entry", entry1, entry4);
+        assertEquals("touched WAR is a hit", 2, cache.getHitCount());
+
+        extractWar(WarNames.SPRING_ANNO, war);
+        RouteCache.Entry entry5 = cache.get(war, options);
+        assertNotSame("replaced WAR is inspected again", entry1, entry5);
+        assertEquals("misses after replacement", 3, cache.getMissCount());
+        assertTrue("replaced WAR has Spring paths", entry5.getPaths().urlCount() != entry1.getPaths().urlCount());
+    }
+
+
+    @Test
+    public void testEviction() throws Exception
+    {
+        Map<InvocationOptions,Boolean> options = InvocationOptions.parseCli();
+        File war1 = extractWar(WarNames.SERVLET, null);
+        File war2 = extractWar(WarNames.SPRING_ANNO, null);
+
+        RouteCache cache = new RouteCache(1);
+        RouteCache.Entry entry1 = cache.get(war1, options);
+        assertEquals("oversized entry is retained", 1, cache.getEntryCount());
+        assertEquals("byte count", entry1.getEstimatedBytes(), cache.getByteCount());
+
+        RouteCache.Entry entry2 = cache.get(war2, options);
+        assertEquals("older entry evicted", 1, cache.getEntryCount());
+        assertEquals("byte count after eviction", entry2.getEstimatedBytes(), cache.getByteCount());
+
+        cache.get(war1, options);
+        assertEquals("evicted WAR is inspected again", 3, cache.getMissCount());
+    }
+
+
+    @Test
+    public void testIndexCountsTowardSize() throws Exception
+    {
+        Map<InvocationOptions,Boolean> options = InvocationOptions.parseCli();
+        File war = extractWar(WarNames.SPRING_ANNO, null);
+
+        RouteCache cache = new RouteCache(Long.MAX_VALUE);
+        RouteCache.Entry entry = cache.get(war, options);
+        long pathBytes = entry.getEstimatedBytes();
+
+        assertSame("index is built once", entry.getIndex(), entry.getIndex());
+        assertTrue("index adds to entry size", entry.getEstimatedBytes() > pathBytes);
+        assertEquals("cache byte count includes index", entry.getEstimatedBytes(), cache.getByteCount());
+    }
+
+
+    @Test
+    public void testSharedClassCache() throws Exception
+    {
+        Map<InvocationOptions,Boolean> options = InvocationOptions.parseCli();
+        File war1 = extractWar(WarNames.SPRING_ANNO, null);
+        File war2 = extractWar(WarNames.SPRING_ANNO, null);
+
+        RouteCache cache = new RouteCache(Long.MAX_VALUE);
+        cache.get(war1, options);
+        assertTrue("classes parsed by first inspection", cache.getClassCache().size() > 0);
+        assertEquals("no class cache hits", 0, cache.getClassCache().getHitCount());
+
+        cache.get(war2, options);
+        assertEquals("copy is inspected", 2, cache.getMissCount());
+        assertTrue("copy reuses parsed classes", cache.getClassCache().getHitCount() > 0);
+    }
+
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testMissingFile() throws Exception
+    {
+        new RouteCache(Long.MAX_VALUE).get(new File("/no/such/file.war"), InvocationOptions.parseCli());
+    }
+}
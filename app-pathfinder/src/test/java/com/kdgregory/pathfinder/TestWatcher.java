@@ -0,0 +1,144 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import net.sf.kdgcommons.io.IOUtil;
+
+import com.kdgregory.pathfinder.core.InvocationOptions;
+import com.kdgregory.pathfinder.test.WarNames;
+import com.kdgregory.pathfinder.util.RouteDiff;
+import com.kdgregory.pathfinder.util.RouteSnapshot.Entry;
+
+
+public class TestWatcher
+{
+//----------------------------------------------------------------------------
+//  Support Code
+//----------------------------------------------------------------------------
+
+    /**
+     *  Copies a test WAR to the given file, optionally adding an HTML file.
+     */
+    private static void writeWar(String warName, File file, String extraFile)
+    throws Exception
+    {
+        ZipInputStream in = new ZipInputStream(TestWatcher.class.getClassLoader().getResourceAsStream(warName));
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file));
+        try
+        {
+            ZipEntry entry;
+            while ((entry = in.getNextEntry()) != null)
+            {
+                out.putNextEntry(new ZipEntry(entry.getName()));
+                IOUtil.copy(in, out);
+                out.closeEntry();
+            }
+            if (extraFile != null)
+            {
+                out.putNextEntry(new ZipEntry(extraFile));
+                out.write("<html></html>".getBytes("UTF-8"));
+                out.closeEntry();
+            }
+        }
+        finally
+        {
+            IOUtil.closeQuietly(in);
+            IOUtil.closeQuietly(out);
+        }
+    }
+
+
+    private static class MyListener
+    implements RouteDiff.Listener
+    {
+        public List<String> added = new ArrayList<String>();
+        public List<String> removed = new ArrayList<String>();
+        public List<String> changed = new ArrayList<String>();
+
+        @Override
+        public void added(Entry newEntry)
+        {
+            added.add(newEntry.getUrl());
+        }
+
+        @Override
+        public void removed(Entry oldEntry)
+        {
+            removed.add(oldEntry.getUrl());
+        }
+
+        @Override
+        public void changed(Entry oldEntry, Entry newEntry)
+        {
+            changed.add(newEntry.getUrl());
+        }
+    }
+
+
+//----------------------------------------------------------------------------
+//  TestCases
+//----------------------------------------------------------------------------
+
+    @Test
+    public void testWatch() throws Exception
+    {
+        File war = IOUtil.createTempFile("TestWatcher", 0);
+        war.delete();
+
+        Watcher watcher = new Watcher(war, InvocationOptions.parseCli());
+        assertFalse("missing WAR isn't inspected", watcher.poll());
+
+        writeWar(WarNames.SPRING_ANNO, war, null);
+        war.setLastModified(1000000000000L);
+        assertTrue("first poll inspects", watcher.poll());
+        assertTrue("classes parsed by first inspection", watcher.getParsedClassCount() > 0);
+
+        MyListener listener1 = new MyListener();
+        watcher.diff(listener1);
+        assertEquals("first inspection reports all paths", watcher.getPaths().urlCount(), listener1.added.size());
+        assertTrue("first inspection has Spring paths", listener1.added.contains("/servlet/C"));
+
+        assertFalse("unchanged WAR isn't inspected", watcher.poll());
+
+        writeWar(WarNames.SPRING_ANNO, war, null);
+        war.setLastModified(1000000002000L);
+        assertFalse("rebuilt without change isn't inspected", watcher.poll());
+        assertEquals("changed entries after rebuild", 0, watcher.getChangedEntryCount());
+
+        writeWar(WarNames.SPRING_ANNO, war, "added.html");
+        war.setLastModified(1000000004000L);
+        assertTrue("changed WAR is inspected", watcher.poll());
+        assertEquals("changed entries", 1, watcher.getChangedEntryCount());
+        assertEquals("unchanged classes aren't parsed", 0, watcher.getParsedClassCount());
+
+        MyListener listener2 = new MyListener();
+        watcher.diff(listener2);
+        assertEquals("added",   1, listener2.added.size());
+        assertEquals("removed", 0, listener2.removed.size());
+        assertEquals("changed", 0, listener2.changed.size());
+        assertEquals("added path", "/added.html", listener2.added.get(0));
+    }
+}
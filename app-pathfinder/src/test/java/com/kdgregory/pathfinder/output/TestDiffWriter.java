@@ -0,0 +1,78 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.output;
+
+import java.io.StringWriter;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import com.kdgregory.pathfinder.core.HttpMethod;
+import com.kdgregory.pathfinder.util.RouteSnapshot;
+
+
+public class TestDiffWriter
+{
+//----------------------------------------------------------------------------
+//  Support Code
+//----------------------------------------------------------------------------
+
+    private static String writeDiff(boolean asJson, boolean withChanges)
+    throws Exception
+    {
+        StringWriter out = new StringWriter();
+        DiffWriter writer = DiffWriter.forFormat(asJson, out);
+        if (withChanges)
+        {
+            writer.added(new RouteSnapshot.Entry("/foo", HttpMethod.GET, "added \"foo\""));
+            writer.removed(new RouteSnapshot.Entry("/bar", HttpMethod.ALL, "bar"));
+            writer.changed(new RouteSnapshot.Entry("/baz", HttpMethod.POST, "old"),
+                           new RouteSnapshot.Entry("/baz", HttpMethod.POST, "new"));
+        }
+        writer.finish();
+        return out.toString();
+    }
+
+
+//----------------------------------------------------------------------------
+//  TestCases
+//----------------------------------------------------------------------------
+
+    @Test
+    public void testText() throws Exception
+    {
+        assertEquals("+ /foo  GET     added \"foo\"\n"
+                     + "- /bar          bar\n"
+                     + "~ /baz  POST    old -> new\n"
+                     + "1 added, 1 removed, 1 changed\n",
+                     writeDiff(false, true));
+        assertEquals("0 added, 0 removed, 0 changed\n",
+                     writeDiff(false, false));
+    }
+
+
+    @Test
+    public void testJson() throws Exception
+    {
+        assertEquals("{\"changes\":[\n"
+                     + "{\"change\":\"added\",\"url\":\"/foo\",\"method\":\"GET\",\"destination\":\"added \\\"foo\\\"\"},\n"
+                     + "{\"change\":\"removed\",\"url\":\"/bar\",\"method\":\"ALL\",\"destination\":\"bar\"},\n"
+                     + "{\"change\":\"changed\",\"url\":\"/baz\",\"method\":\"POST\",\"oldDestination\":\"old\",\"newDestination\":\"new\"}\n"
+                     + "],\"added\":1,\"removed\":1,\"changed\":1}\n",
+                     writeDiff(true, true));
+        assertEquals("{\"changes\":[\n],\"added\":0,\"removed\":0,\"changed\":0}\n",
+                     writeDiff(true, false));
+    }
+}
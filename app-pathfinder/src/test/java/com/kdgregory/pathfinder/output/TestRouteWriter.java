@@ -0,0 +1,183 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.output;
+
+import java.io.BufferedWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Map;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import com.kdgregory.pathfinder.core.Destination;
+import com.kdgregory.pathfinder.core.HttpMethod;
+import com.kdgregory.pathfinder.core.InvocationOptions;
+import com.kdgregory.pathfinder.core.PathRepo;
+import com.kdgregory.pathfinder.core.impl.PathRepoImpl;
+
+
+public class TestRouteWriter
+{
+//----------------------------------------------------------------------------
+//  Support Code
+//----------------------------------------------------------------------------
+
+    private static class MyDestination
+    implements Destination
+    {
+        private String name;
+        private boolean displayed;
+
+        public MyDestination(String name)
+        {
+            this(name, true);
+        }
+
+        public MyDestination(String name, boolean displayed)
+        {
+            this.name = name;
+            this.displayed = displayed;
+        }
+
+        @Override
+        public boolean isDisplayed(Map<InvocationOptions,Boolean> options)
+        {
+            return displayed;
+        }
+
+        @Override
+        public String toString(Map<InvocationOptions,Boolean> options)
+        {
+            return name;
+        }
+    }
+
+
+    private static PathRepo createRepo()
+    {
+        PathRepo repo = new PathRepoImpl();
+        repo.put("/foo",                        new MyDestination("foo"));
+        repo.put("/bar",    HttpMethod.GET,     new MyDestination("say \"bar\", then\ttab"));
+        repo.put("/bar",    HttpMethod.POST,    new MyDestination("\u0001control"));
+        repo.put("/hidden",                     new MyDestination("hidden", false));
+        return repo;
+    }
+
+
+    private static String write(String format, PathRepo repo)
+    throws Exception
+    {
+        StringWriter out = new StringWriter();
+        RouteWriter.forFormat(format, out, InvocationOptions.parseCli()).write(repo);
+        return out.toString();
+    }
+
+
+//----------------------------------------------------------------------------
+//  TestCases
+//----------------------------------------------------------------------------
+
+    @Test
+    public void testText() throws Exception
+    {
+        assertEquals("/bar              GET     say \"bar\", then\ttab\n"
+                     + "/bar              POST    \u0001control\n"
+                     + "/foo                      foo\n",
+                     write("text", createRepo()));
+    }
+
+
+    @Test
+    public void testJson() throws Exception
+    {
+        assertEquals("{\"routes\":[\n"
+                     + "{\"url\":\"/bar\",\"method\":\"GET\",\"destination\":\"say \\\"bar\\\", then\\ttab\"},\n"
+                     + "{\"url\":\"/bar\",\"method\":\"POST\",\"destination\":\"\\u0001control\"},\n"
+                     + "{\"url\":\"/foo\",\"method\":\"ALL\",\"destination\":\"foo\"}\n"
+                     + "]}\n",
+                     write("json", createRepo()));
+
+        assertEquals("empty repository", "{\"routes\":[\n]}\n", write("json", new PathRepoImpl()));
+    }
+
+
+    @Test
+    public void testNdjson() throws Exception
+    {
+        assertEquals("{\"url\":\"/bar\",\"method\":\"GET\",\"destination\":\"say \\\"bar\\\", then\\ttab\"}\n"
+                     + "{\"url\":\"/bar\",\"method\":\"POST\",\"destination\":\"\\u0001control\"}\n"
+                     + "{\"url\":\"/foo\",\"method\":\"ALL\",\"destination\":\"foo\"}\n",
+                     write("ndjson", createRepo()));
+    }
+
+
+    @Test
+    public void testCsv() throws Exception
+    {
+        assertEquals(CsvRouteWriter.HEADER + "\r\n"
+                     + "/bar,GET,\"say \"\"bar\"\", then\ttab\",,,\r\n"
+                     + "/bar,POST,\u0001control,,,\r\n"
+                     + "/foo,ALL,foo,,,\r\n",
+                     write("csv", createRepo()));
+    }
+
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testUnsupportedFormat() throws Exception
+    {
+        write("xml", createRepo());
+    }
+
+
+    @Test(timeout=20000)
+    public void testLargeRepository() throws Exception
+    {
+        PathRepo repo = new PathRepoImpl();
+        for (int ii = 0 ; ii < 100000 ; ii++)
+        {
+            repo.put("/service/" + ii + "/item/{id}", HttpMethod.GET, new MyDestination("com.example.Controller" + ii + ".get()"));
+        }
+
+        for (String format : RouteWriter.FORMATS)
+        {
+            Writer out = new BufferedWriter(new NullWriter(), 65536);
+            RouteWriter.forFormat(format, out, InvocationOptions.parseCli()).write(repo);
+        }
+    }
+
+
+    private static class NullWriter
+    extends Writer
+    {
+        @Override
+        public void write(char[] cbuf, int off, int len)
+        {
+            // nothing happening here
+        }
+
+        @Override
+        public void flush()
+        {
+            // nothing happening here
+        }
+
+        @Override
+        public void close()
+        {
+            // nothing happening here
+        }
+    }
+}
@@ -0,0 +1,272 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.output;
+
+import java.io.StringWriter;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import com.kdgregory.pathfinder.core.Destination;
+import com.kdgregory.pathfinder.core.HttpMethod;
+import com.kdgregory.pathfinder.core.InvocationOptions;
+import com.kdgregory.pathfinder.core.PathRepo;
+import com.kdgregory.pathfinder.core.impl.PathRepoImpl;
+
+
+public class TestStreamingPathRepo
+{
+//----------------------------------------------------------------------------
+//  Support Code
+//----------------------------------------------------------------------------
+
+    private static class MyDestination
+    implements Destination
+    {
+        private String name;
+        private boolean displayed;
+
+        public MyDestination(String name)
+        {
+            this(name, true);
+        }
+
+        public MyDestination(String name, boolean displayed)
+        {
+            this.name = name;
+            this.displayed = displayed;
+        }
+
+        @Override
+        public boolean isDisplayed(Map<InvocationOptions,Boolean> options)
+        {
+            return displayed;
+        }
+
+        @Override
+        public String toString(Map<InvocationOptions,Boolean> options)
+        {
+            return name;
+        }
+    }
+
+
+    private static String route(String op, String url, String method, String dest)
+    {
+        return "{\"op\":\"" + op + "\",\"url\":\"" + url + "\",\"method\":\"" + method
+             + "\",\"destination\":\"" + dest + "\"}\n";
+    }
+
+
+    private static String remove(String url, String method)
+    {
+        return "{\"op\":\"remove\",\"url\":\"" + url + "\",\"method\":\"" + method + "\"}\n";
+    }
+
+
+    private final static Pattern RECORD = Pattern.compile(
+            "\\{\"op\":\"(\\w+)\",\"url\":\"([^\"]*)\",\"method\":\"(\\w+)\"(?:,\"destination\":\"([^\"]*)\")?\\}");
+
+    /**
+     *  Applies the written records, in order, as simple puts and removes.
+     */
+    private static Map<String,Map<HttpMethod,String>> replay(String output)
+    {
+        Map<String,Map<HttpMethod,String>> result = new HashMap<String,Map<HttpMethod,String>>();
+        for (String line : output.split("\n"))
+        {
+            Matcher matcher = RECORD.matcher(line);
+            assertTrue("record format: " + line, matcher.matches());
+
+            Map<HttpMethod,String> destMap = result.get(matcher.group(2));
+            if (destMap == null)
+            {
+                destMap = new EnumMap<HttpMethod,String>(HttpMethod.class);
+                result.put(matcher.group(2), destMap);
+            }
+
+            HttpMethod method = HttpMethod.valueOf(matcher.group(3));
+            if (matcher.group(1).equals("remove"))
+                destMap.remove(method);
+            else
+                destMap.put(method, matcher.group(4));
+        }
+        return result;
+    }
+
+
+    /**
+     *  Asserts that each request method resolves to the same displayed destination
+     *  in the replayed records as in the stored repository.
+     */
+    private static void assertSameResolution(String message, PathRepo expected, Map<String,Map<HttpMethod,String>> actual, String... urls)
+    {
+        Map<InvocationOptions,Boolean> options = InvocationOptions.parseCli();
+        for (String url : urls)
+        {
+            Map<HttpMethod,String> destMap = actual.get(url);
+            for (HttpMethod method : HttpMethod.values())
+            {
+                if (method == HttpMethod.ALL)
+                    continue;
+
+                Destination dest = expected.get(url, method);
+                String expectedName = ((dest != null) && dest.isDisplayed(options)) ? dest.toString(options) : null;
+
+                String actualName = null;
+                if (destMap != null)
+                {
+                    actualName = destMap.containsKey(method) ? destMap.get(method) : destMap.get(HttpMethod.ALL);
+                }
+
+                assertEquals(message + ": " + url + " " + method, expectedName, actualName);
+            }
+        }
+    }
+
+
+//----------------------------------------------------------------------------
+//  TestCases
+//----------------------------------------------------------------------------
+
+    @Test
+    public void testPutAndOverride() throws Exception
+    {
+        StringWriter out = new StringWriter();
+        StreamingPathRepo repo = new StreamingPathRepo(out, InvocationOptions.parseCli());
+
+        repo.put("/foo",                        new MyDestination("foo"));
+        repo.put("/foo",    HttpMethod.GET,     new MyDestination("getFoo"));
+        repo.put("/foo",    HttpMethod.GET,     new MyDestination("getFoo2"));
+        repo.put("/foo",                        new MyDestination("foo2"));
+        repo.put("/bar",                        new MyDestination("hidden", false));
+        repo.flush();
+
+        assertEquals(route("route",     "/foo", "ALL",  "foo")
+                     + route("route",     "/foo", "GET",  "getFoo")
+                     + route("supersede", "/foo", "GET",  "getFoo2")
+                     + remove("/foo", "GET")
+                     + route("supersede", "/foo", "ALL",  "foo2"),
+                     out.toString());
+        assertEquals("URL count", 1, repo.urlCount());
+    }
+
+
+    @Test
+    public void testRemove() throws Exception
+    {
+        StringWriter out = new StringWriter();
+        StreamingPathRepo repo = new StreamingPathRepo(out, InvocationOptions.parseCli());
+
+        repo.put("/foo",    HttpMethod.GET,     new MyDestination("getFoo"));
+        repo.put("/foo",    HttpMethod.POST,    new MyDestination("postFoo"));
+        repo.put("/bar",    HttpMethod.GET,     new MyDestination("getBar"));
+        repo.put("/bar",    HttpMethod.GET,     new MyDestination("hidden", false));
+        repo.remove("/foo", HttpMethod.PUT);
+        repo.remove("/foo", HttpMethod.ALL);
+        repo.flush();
+
+        assertEquals(route("route",     "/foo", "GET",  "getFoo")
+                     + route("route",     "/foo", "POST", "postFoo")
+                     + route("route",     "/bar", "GET",  "getBar")
+                     + remove("/bar", "GET")
+                     + remove("/foo", "GET")
+                     + remove("/foo", "POST"),
+                     out.toString());
+        assertEquals("URL count", 0, repo.urlCount());
+    }
+
+
+    @Test
+    public void testReplaceMap() throws Exception
+    {
+        StringWriter out = new StringWriter();
+        StreamingPathRepo repo = new StreamingPathRepo(out, InvocationOptions.parseCli());
+
+        Map<HttpMethod,Destination> map = new EnumMap<HttpMethod,Destination>(HttpMethod.class);
+        map.put(HttpMethod.POST, new MyDestination("postFoo2"));
+
+        repo.put("/foo",    HttpMethod.GET,     new MyDestination("getFoo"));
+        repo.put("/foo",    HttpMethod.POST,    new MyDestination("postFoo"));
+        repo.put("/foo",    map);
+        repo.flush();
+
+        assertEquals(route("route",     "/foo", "GET",  "getFoo")
+                     + route("route",     "/foo", "POST", "postFoo")
+                     + remove("/foo", "GET")
+                     + route("supersede", "/foo", "POST", "postFoo2"),
+                     out.toString());
+    }
+
+
+    @Test
+    public void testReplayMatchesStoredRepo() throws Exception
+    {
+        StringWriter out = new StringWriter();
+        StreamingPathRepo repo = new StreamingPathRepo(out, InvocationOptions.parseCli());
+        PathRepo stored = new PathRepoImpl();
+        PathRepo[] repos = new PathRepo[] { repo, stored };
+
+        Map<HttpMethod,Destination> map = new EnumMap<HttpMethod,Destination>(HttpMethod.class);
+        map.put(HttpMethod.ALL,  new MyDestination("allBaz"));
+        map.put(HttpMethod.POST, new MyDestination("hidden", false));
+
+        for (PathRepo r : repos)
+        {
+            r.put("/foo",                       new MyDestination("foo"));
+            r.remove("/foo",    HttpMethod.GET);
+        }
+        assertSameResolution("remove GET from ALL", stored, replay(out.toString()), "/foo");
+        assertTrue("removing GET from ALL is written as individual methods",
+                   out.toString().contains(route("route", "/foo", "POST", "foo")));
+
+        for (PathRepo r : repos)
+        {
+            r.put("/foo",                       new MyDestination("foo2"));
+            r.put("/foo",       HttpMethod.GET, new MyDestination("hidden", false));
+        }
+        assertSameResolution("hidden GET over ALL", stored, replay(out.toString()), "/foo");
+
+        for (PathRepo r : repos)
+        {
+            r.put("/bar",       HttpMethod.PUT, new MyDestination("putBar"));
+            r.put("/bar",       HttpMethod.ALL, new MyDestination("allBar"));
+        }
+        assertSameResolution("ALL over PUT", stored, replay(out.toString()), "/foo", "/bar");
+
+        for (PathRepo r : repos)
+        {
+            r.remove("/bar",    HttpMethod.ALL);
+            r.put("/baz",       map);
+            r.remove("/baz",    HttpMethod.DELETE);
+            r.put("/foo",       HttpMethod.GET, new MyDestination("getFoo"));
+        }
+        repo.flush();
+        assertSameResolution("removals and map", stored, replay(out.toString()), "/foo", "/bar", "/baz");
+        assertEquals("URL count", 2, repo.urlCount());
+    }
+
+
+    @Test(expected=UnsupportedOperationException.class)
+    public void testWriteOnly() throws Exception
+    {
+        new StreamingPathRepo(new StringWriter(), InvocationOptions.parseCli()).get("/foo");
+    }
+}
@@ -0,0 +1,192 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.query;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import com.kdgregory.pathfinder.core.Destination;
+import com.kdgregory.pathfinder.core.HttpMethod;
+import com.kdgregory.pathfinder.core.InvocationOptions;
+import com.kdgregory.pathfinder.core.PathRepo;
+import com.kdgregory.pathfinder.core.WarMachine;
+import com.kdgregory.pathfinder.core.impl.PathRepoImpl;
+import com.kdgregory.pathfinder.servlet.ServletInspector;
+import com.kdgregory.pathfinder.spring.SpringInspector;
+import com.kdgregory.pathfinder.test.WarNames;
+import com.kdgregory.pathfinder.util.TestHelpers;
+
+
+public class TestRouteIndex
+{
+//----------------------------------------------------------------------------
+//  Support Code
+//----------------------------------------------------------------------------
+
+    private static class MyDestination
+    implements Destination
+    {
+        private String name;
+
+        public MyDestination(String name)
+        {
+            this.name = name;
+        }
+
+        @Override
+        public boolean isDisplayed(Map<InvocationOptions,Boolean> options)
+        {
+            return true;
+        }
+
+        @Override
+        public String toString(Map<InvocationOptions,Boolean> options)
+        {
+            return name;
+        }
+    }
+
+
+    private static RouteIndex createIndex(String warName)
+    throws Exception
+    {
+        Map<InvocationOptions,Boolean> options = InvocationOptions.parseCli(InvocationOptions.SHOW_REQUEST_PARAMS.getEnableString());
+        WarMachine machine = TestHelpers.createWarMachine(warName);
+        PathRepo repo = new PathRepoImpl();
+        new ServletInspector(options).inspect(machine, repo);
+        new SpringInspector(options).inspect(machine, repo);
+        return new RouteIndex(repo, options);
+    }
+
+
+    /**
+     *  Returns the matched routes as "URL METHOD" strings.
+     */
+    private static List<String> routes(PathRepo repo)
+    {
+        List<String> result = new ArrayList<String>();
+        for (String url : repo)
+        {
+            for (HttpMethod method : repo.get(url).keySet())
+                result.add(url + " " + method.name());
+        }
+        return result;
+    }
+
+
+//----------------------------------------------------------------------------
+//  TestCases
+//----------------------------------------------------------------------------
+
+    @Test
+    public void testSingleTerms() throws Exception
+    {
+        RouteIndex index = createIndex(WarNames.SPRING_ANNO);
+        assertEquals("no terms",            index.size(),   routes(index.query()).size());
+
+        assertEquals("simple class name",   "[/servlet/B/bar.html GET, /servlet/B/baz.html POST]",
+                                            routes(index.query("class=ControllerB")).toString());
+        assertEquals("qualified class name","[/servlet/C GET]",
+                                            routes(index.query("class=com.kdgregory.pathfinder.test.spring3.pkg2.ControllerC")).toString());
+        assertEquals("bean",                "[/servlet/foo.html ALL]",
+                                            routes(index.query("bean=myController")).toString());
+        assertEquals("prefix",              "[/servlet/B/bar.html GET, /servlet/B/baz.html POST]",
+                                            routes(index.query("prefix=/servlet/B/")).toString());
+        assertEquals("prefix is exact URL", "[/servlet/C GET]",
+                                            routes(index.query("prefix=/servlet/C")).toString());
+        assertEquals("param",               "[/servlet/E1 ALL]",
+                                            routes(index.query("param=wargle")).toString());
+        assertEquals("no match",            "[]",
+                                            routes(index.query("class=NoSuchClass")).toString());
+    }
+
+
+    @Test
+    public void testMethod() throws Exception
+    {
+        RouteIndex index = createIndex(WarNames.SPRING_ANNO);
+        assertEquals("POST includes ALL",   "[/index.jsp ALL, /servlet/B/baz.html POST, /servlet/E1 ALL, /servlet/E2 ALL, /servlet/foo.html ALL]",
+                                            routes(index.query("method=post")).toString());
+        assertEquals("ALL only",            "[/index.jsp ALL, /servlet/E1 ALL, /servlet/E2 ALL, /servlet/foo.html ALL]",
+                                            routes(index.query("method=ALL")).toString());
+    }
+
+
+    @Test
+    public void testIntersection() throws Exception
+    {
+        RouteIndex index = createIndex(WarNames.SPRING_ANNO);
+        assertEquals("class and method",    "[/servlet/B/baz.html POST]",
+                                            routes(index.query("class=ControllerB", "method=POST")).toString());
+        assertEquals("method and param",    "[/servlet/E1 ALL, /servlet/E2 ALL]",
+                                            routes(index.query("method=POST", "param=argle")).toString());
+        assertEquals("prefix and param",    "[/servlet/E2 ALL]",
+                                            routes(index.query("prefix=/servlet/E2", "param=argle")).toString());
+    }
+
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testUnknownField() throws Exception
+    {
+        createIndex(WarNames.SPRING_ANNO).query("color=blue");
+    }
+
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testMalformedTerm() throws Exception
+    {
+        createIndex(WarNames.SPRING_ANNO).query("ControllerB");
+    }
+
+
+    @Test
+    public void testValidateWithoutIndex() throws Exception
+    {
+        RouteIndex.validate("prefix=/foo", "method=GET");
+
+        try
+        {
+            RouteIndex.validate("prefix=/foo", "color=blue");
+            fail("validated unknown field");
+        }
+        catch (IllegalArgumentException ex)
+        {
+            assertEquals("exception message", "unknown query field: color", ex.getMessage());
+        }
+    }
+
+
+    @Test(timeout=20000)
+    public void testLargeIndex() throws Exception
+    {
+        PathRepo repo = new PathRepoImpl();
+        for (int ii = 0 ; ii < 100000 ; ii++)
+        {
+            repo.put("/service/" + (ii % 1000) + "/item/" + ii, HttpMethod.values()[1 + ii % 4], new MyDestination("dest" + ii));
+        }
+
+        RouteIndex index = new RouteIndex(repo, InvocationOptions.parseCli());
+        assertEquals("indexed routes", 100000, index.size());
+        for (int ii = 0 ; ii < 1000 ; ii++)
+        {
+            PathRepo result = index.query("prefix=/service/" + ii, "method=" + HttpMethod.values()[1 + ii % 4].name());
+            assertEquals("routes for prefix " + ii, 100, result.urlCount());
+        }
+    }
+}
@@ -26,7 +26,8 @@ import net.sf.kdgcommons.lang.StringUtil;
 /**
  *  Options to control the behavior of the PathFinder. These will be parsed
  *  from the command-line, and loaded into a <code>EnumMap</code> that is
- *  then passed to the various inspectors and output code.
+ *  then passed to the various inspectors and output code. Inspectors use
+ *  the options to avoid work whose results would not be displayed.
  *  <p>
  *  Each option has two string values representing command-line parameters
  *  that enable and disable the option. Each option also has a default value
@@ -48,11 +49,62 @@ public enum InvocationOptions
             "Display client-accessible static content other than HTML"
             + " (eg, JS and CSS) as destination URLs."),
 
+    EXPAND_STATIC(
+            "--expandStatic", "--summarizeStatic", false,
+            "When displaying static content, list every file. By default, directories"
+            + " that only hold static content are summarized as \"/dir/**\", and other"
+            + " static files as \"/dir/*.ext\", with a file count. Summaries aren't"
+            + " mappings, so are omitted from analysis and filter chains."),
+
     SHOW_REQUEST_PARAMS(
             "--showRequestParams", "--hideRequestParams", false,
             "For mappings that identify individual request parameters (eg, Spring3) "
             + "show those parameters in the mapping output."),
 
+    SHOW_FILTERS(
+            "--showFilters", "--hideFilters", false,
+            "After listing paths, list the filters (from web.xml) that a request"
+            + " to each path passes through, in the order that they're applied."
+            + " Only for text output."),
+
+    USE_MANIFEST(
+            "--useManifest", "--ignoreManifest", false,
+            "If the WAR contains a route manifest written at build time, and the WAR"
+            + " hasn't changed since then, load paths from the manifest rather than"
+            + " inspecting the WAR. Only use this for WARs from a trusted build: the"
+            + " manifest is checked against the WAR's own digest, so can be forged."
+            + " Loaded paths only have destination descriptions, so JSON output and"
+            + " filter chains have less detail. Not used with --analyze."),
+
+    ANALYZE(
+            "--analyze", "", false,
+            "After listing paths, report mappings that conflict with or overlap"
+            + " each other. Only for text output."),
+
+    SNAPSHOT(
+            "--snapshot", "", false,
+            "Write paths as a route snapshot (tab-separated, one line per URL and"
+            + " method) rather than a table. Snapshots can be compared with --diff."),
+
+    STREAM(
+            "--stream", "", false,
+            "Write paths as newline-delimited JSON records as they're found, without"
+            + " sorting, rather than after all inspection is done. A path that's later"
+            + " replaced or removed is followed by a \"supersede\" or \"remove\" record."
+            + " Other output options are ignored."),
+
+    WATCH(
+            "--watch", "", false,
+            "Keep running, and re-inspect the WAR whenever it's rebuilt, writing the"
+            + " paths that changed (as for --diff). The first inspection reports every"
+            + " path as added. Only entries that changed are re-parsed."),
+
+    DIFF(
+            "--diff", "", false,
+            "Compare two WARs or route snapshots, given as OLD NEW in place of"
+            + " WARFILE, and report the paths that were added, removed, or changed"
+            + " destination. Use --format=json for JSON output."),
+
     DEBUG(
             "--debug", "", false,
             "Enable debug-level logging to StdErr."),
@@ -163,6 +215,23 @@ public enum InvocationOptions
     }
 
 
+    /**
+     *  Returns a map in which every "show" option is enabled, and static content
+     *  is listed file-by-file. This is used by inspectors that are constructed
+     *  without options, so that they record all of the detail that they can find.
+     */
+    public static Map<InvocationOptions,Boolean> showAll()
+    {
+        Map<InvocationOptions,Boolean> result = parseCli();
+        result.put(SHOW_JSP, Boolean.TRUE);
+        result.put(SHOW_HTML, Boolean.TRUE);
+        result.put(SHOW_STATIC, Boolean.TRUE);
+        result.put(EXPAND_STATIC, Boolean.TRUE);
+        result.put(SHOW_REQUEST_PARAMS, Boolean.TRUE);
+        return result;
+    }
+
+
     /**
      *  Extract all options from the command-line arguments. Missing arguments
      *  will be filled with their default values.
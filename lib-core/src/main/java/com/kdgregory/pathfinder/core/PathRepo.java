@@ -28,7 +28,8 @@ import java.util.Map;
  *  to a particular URL. Inner and outer maps are sorted, to result in consisted
  *  output.
  *  <p>
- *  This class is not intended for use by concurrent threads.
+ *  Implementations are not required to support concurrent threads; those that
+ *  do (such as <code>ConcurrentPathRepo</code>) say so.
  */
 public interface PathRepo
 extends Iterable<String>
@@ -83,6 +84,13 @@ extends Iterable<String>
     public Map<HttpMethod,Destination> get(String url);
 
 
+    /**
+     *  Returns the parsed form of a URL, which is created when the URL is first
+     *  stored. Returns <code>null</code> if the URL is not in the repository.
+     */
+    public RoutePattern getPattern(String url);
+
+
     /**
      *  Removes the destination(s) associated with the given URL and method.
      *  If the passed method is "ALL", will remove all destinations (even if
@@ -98,4 +106,12 @@ extends Iterable<String>
      */
     @Override
     public Iterator<String> iterator();
+
+
+    /**
+     *  Returns an immutable snapshot of the repository's current contents, which
+     *  is more compact than the mutable repository and may be shared between
+     *  threads. Later changes to this repository are not reflected in the snapshot.
+     */
+    public PathRepo freeze();
 }
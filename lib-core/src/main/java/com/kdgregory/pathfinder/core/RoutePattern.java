@@ -0,0 +1,635 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.core;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+
+/**
+ *  A URL pattern, parsed into segments. Patterns are parsed once, when they're
+ *  first stored in a {@link PathRepo}, so that consumers can sort, compare, and
+ *  match them without re-examining strings.
+ *  <p>
+ *  Patterns use servlet mapping syntax (<code>/foo/*</code> is a path-prefix mapping,
+ *  <code>*.do</code> an extension mapping, and <code>/</code> the default servlet),
+ *  extended with Spring's syntax for handler mappings: <code>{name}</code> and
+ *  <code>{name:regex}</code> path variables, <code>*</code> for any part of a single
+ *  segment, and <code>**</code> for any number of segments.
+ *  <p>
+ *  The pattern's string form is exactly what was parsed, and is used for equality
+ *  and natural ordering (so a repository's iteration order doesn't change). The
+ *  {@link #SPECIFICITY} comparator orders patterns from most to least specific,
+ *  using a ranking computed at parse time.
+ *  <p>
+ *  Segments are interned: all patterns containing <code>/users/{id}</code> share
+ *  the same two <code>Segment</code> objects. The intern table holds segments
+ *  weakly, so that long-running processes (which parse many WARs) only retain
+ *  the segments of patterns that are still in use. Instances are immutable.
+ */
+public final class RoutePattern
+implements Comparable<RoutePattern>
+{
+    /**
+     *  How the servlet container treats the pattern. These are listed in order
+     *  of matching precedence.
+     */
+    public enum Kind
+    {
+        /** Literal URL, which must match the request exactly. */
+        EXACT,
+
+        /** Contains path variables or wildcards. */
+        TEMPLATE,
+
+        /** Servlet path-prefix mapping: <code>/foo/*</code>. */
+        PREFIX,
+
+        /** Servlet extension mapping: <code>*.do</code>. */
+        EXTENSION,
+
+        /** The default servlet: <code>/</code>. */
+        DEFAULT
+    }
+
+
+    /**
+     *  Orders patterns from most to least specific: first by kind, then by the
+     *  number of <code>**</code> segments, then by the number of variables and
+     *  wildcards, then (longest first) by the number of literal characters.
+     *  Ties are broken by string value.
+     */
+    public final static Comparator<RoutePattern> SPECIFICITY = new Comparator<RoutePattern>()
+    {
+        @Override
+        public int compare(RoutePattern p1, RoutePattern p2)
+        {
+            return (p1.specificity < p2.specificity) ? -1
+                 : (p1.specificity > p2.specificity) ? 1
+                 : p1.compareTo(p2);
+        }
+    };
+
+
+    // keys are the segments' own text, so an entry is removed once its segment is
+    // no longer used (the value must be a weak reference, or it would keep the key)
+    private final static Map<String,WeakReference<Segment>> INTERNED_SEGMENTS
+            = new WeakHashMap<String,WeakReference<Segment>>();
+
+
+//----------------------------------------------------------------------------
+//  Instance Variables and Constructor
+//----------------------------------------------------------------------------
+
+    private String value;
+    private Kind kind;
+    private List<Segment> segments;
+    private String extension;
+    private boolean hasConstraints;
+    private long specificity;
+
+
+    private RoutePattern(String value)
+    {
+        this.value = value;
+        this.kind = classify(value);
+
+        List<Segment> segs = new ArrayList<Segment>();
+        if (kind == Kind.EXTENSION)
+        {
+            extension = value.substring(2);
+        }
+        else if (kind != Kind.DEFAULT)
+        {
+            String path = (kind == Kind.PREFIX) ? value.substring(0, value.length() - 2) : value;
+            int start = path.startsWith("/") ? 1 : 0;
+            while (start <= path.length() && (path.length() > 0))
+            {
+                int end = nextSegmentEnd(path, start);
+                segs.add(intern(path.substring(start, end)));
+                start = end + 1;
+            }
+        }
+        segments = Collections.unmodifiableList(segs);
+
+        int doubleWildcards = 0;
+        int wildcards = 0;
+        int constraints = 0;
+        int literalChars = 0;
+        for (Segment seg : segments)
+        {
+            for (Segment part : seg.getParts())
+            {
+                switch (part.getType())
+                {
+                    case LITERAL :
+                        literalChars += part.getText().length();
+                        break;
+                    case DOUBLE_WILDCARD :
+                        doubleWildcards++;
+                        break;
+                    case VARIABLE :
+                        wildcards++;
+                        constraints += (part.getConstraint() != null) ? 1 : 0;
+                        break;
+                    default :
+                        wildcards++;
+                }
+            }
+        }
+        hasConstraints = constraints > 0;
+
+        // each component of the ranking gets its own bit field; smaller is more specific
+        specificity = ((long)kind.ordinal() << 58)
+                    | ((long)Math.min(doubleWildcards, 0xFF) << 50)
+                    | ((long)Math.min(wildcards, 0xFF) << 42)
+                    | ((long)(0xFFFFFF - Math.min(literalChars, 0xFFFFFF)) << 18)
+                    | (0xFF - Math.min(constraints, 0xFF));
+    }
+
+
+    /**
+     *  Parses the passed string.
+     */
+    public static RoutePattern parse(String value)
+    {
+        if (value == null)
+            throw new IllegalArgumentException("pattern may not be null");
+        return new RoutePattern(value);
+    }
+
+
+    /**
+     *  Combines a prefix (for example, a dispatcher servlet's mapping) with a
+     *  pattern defined relative to that prefix, such that there's exactly one
+     *  slash between them. If the relative pattern is empty or null, returns
+     *  the prefix without trailing slashes.
+     */
+    public static RoutePattern join(String prefix, String relative)
+    {
+        int prefixEnd = prefix.length();
+        while ((prefixEnd > 0) && (prefix.charAt(prefixEnd - 1) == '/'))
+            prefixEnd--;
+
+        if ((relative == null) || (relative.length() == 0))
+            return parse(prefix.substring(0, prefixEnd));
+
+        int relativeStart = 0;
+        while ((relativeStart < relative.length()) && (relative.charAt(relativeStart) == '/'))
+            relativeStart++;
+
+        StringBuilder sb = new StringBuilder(prefixEnd + relative.length() + 1);
+        sb.append(prefix, 0, prefixEnd).append('/').append(relative, relativeStart, relative.length());
+        return parse(sb.toString());
+    }
+
+
+//----------------------------------------------------------------------------
+//  Public Methods
+//----------------------------------------------------------------------------
+
+    public Kind getKind()
+    {
+        return kind;
+    }
+
+
+    /**
+     *  Returns the pattern's segments (the parts between slashes). For a prefix
+     *  mapping, these are the segments of the prefix; extension mappings and the
+     *  default mapping have no segments.
+     */
+    public List<Segment> getSegments()
+    {
+        return segments;
+    }
+
+
+    /**
+     *  Returns the extension (without leading dot) for an extension mapping,
+     *  <code>null</code> for any other kind.
+     */
+    public String getExtension()
+    {
+        return extension;
+    }
+
+
+    /**
+     *  Returns the literal prefix (without trailing "/*") for a prefix mapping,
+     *  <code>null</code> for any other kind.
+     */
+    public String getPrefix()
+    {
+        return (kind == Kind.PREFIX) ? value.substring(0, value.length() - 2) : null;
+    }
+
+
+    /**
+     *  Returns <code>true</code> if any path variable has a regex constraint.
+     */
+    public boolean hasConstraints()
+    {
+        return hasConstraints;
+    }
+
+
+    /**
+     *  Returns the precomputed specificity ranking; lower values are more specific.
+     *  This is only meaningful in comparison with other patterns' rankings.
+     */
+    public long getSpecificity()
+    {
+        return specificity;
+    }
+
+
+    /**
+     *  Determines whether this pattern matches the passed request path (which
+     *  must not have a query string).
+     */
+    public boolean matches(String path)
+    {
+        switch (kind)
+        {
+            case EXACT :
+                return value.equals(path);
+            case DEFAULT :
+                return true;
+            case EXTENSION :
+                int lastSlash = path.lastIndexOf('/');
+                int lastDot = path.lastIndexOf('.');
+                return (lastDot > lastSlash)
+                    && (path.length() - lastDot - 1 == extension.length())
+                    && path.endsWith(extension);
+            case PREFIX :
+                String prefix = getPrefix();
+                return path.startsWith(prefix)
+                    && ((path.length() == prefix.length()) || (path.charAt(prefix.length()) == '/'));
+            default :
+                if (value.startsWith("/") != path.startsWith("/"))
+                    return false;
+                return matchSegments(0, path, path.startsWith("/") ? 1 : 0, path.length());
+        }
+    }
+
+
+    @Override
+    public int compareTo(RoutePattern that)
+    {
+        return value.compareTo(that.value);
+    }
+
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        return (obj instanceof RoutePattern)
+            && value.equals(((RoutePattern)obj).value);
+    }
+
+
+    @Override
+    public int hashCode()
+    {
+        return value.hashCode();
+    }
+
+
+    @Override
+    public String toString()
+    {
+        return value;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    private static Kind classify(String value)
+    {
+        if (value.equals("/"))
+            return Kind.DEFAULT;
+        if (value.startsWith("*."))
+            return Kind.EXTENSION;
+
+        boolean wild = false;
+        for (int ii = 0 ; ii < value.length() ; ii++)
+        {
+            char c = value.charAt(ii);
+            if ((c == '*') || (c == '{'))
+            {
+                if (value.endsWith("/*") && (ii == value.length() - 1))
+                    return Kind.PREFIX;
+                wild = true;
+                break;
+            }
+        }
+        return wild ? Kind.TEMPLATE : Kind.EXACT;
+    }
+
+
+    /**
+     *  Finds the end of the segment starting at the passed index, ignoring any
+     *  slashes within a variable's regex.
+     */
+    private static int nextSegmentEnd(String path, int start)
+    {
+        int depth = 0;
+        for (int ii = start ; ii < path.length() ; ii++)
+        {
+            char c = path.charAt(ii);
+            if (c == '{')
+                depth++;
+            else if ((c == '}') && (depth > 0))
+                depth--;
+            else if ((c == '/') && (depth == 0))
+                return ii;
+        }
+        return path.length();
+    }
+
+
+    private static Segment intern(String text)
+    {
+        synchronized (INTERNED_SEGMENTS)
+        {
+            WeakReference<Segment> ref = INTERNED_SEGMENTS.get(text);
+            Segment seg = (ref != null) ? ref.get() : null;
+            if (seg == null)
+            {
+                // remove any stale entry, so that its key is replaced by ours
+                seg = Segment.create(text);
+                INTERNED_SEGMENTS.remove(text);
+                INTERNED_SEGMENTS.put(seg.getText(), new WeakReference<Segment>(seg));
+            }
+            return seg;
+        }
+    }
+
+
+    /**
+     *  Matches segments starting at the given index against the path starting
+     *  at the given position (which is always the start of a path segment, or
+     *  past the end of the path if all segments have been consumed).
+     */
+    private boolean matchSegments(int segIdx, String path, int pos, int end)
+    {
+        if (segIdx == segments.size())
+            return pos > end;
+
+        Segment seg = segments.get(segIdx);
+        if (seg.getType() == Segment.Type.DOUBLE_WILDCARD)
+        {
+            if (matchSegments(segIdx + 1, path, pos, end))
+                return true;
+            while (pos <= end)
+            {
+                int segEnd = path.indexOf('/', pos);
+                pos = ((segEnd < 0) ? end : segEnd) + 1;
+                if (matchSegments(segIdx + 1, path, pos, end))
+                    return true;
+            }
+            return false;
+        }
+
+        if (pos > end)
+            return false;
+
+        int segEnd = path.indexOf('/', pos);
+        if (segEnd < 0)
+            segEnd = end;
+        return seg.matches(path, pos, segEnd)
+            && matchSegments(segIdx + 1, path, segEnd + 1, end);
+    }
+
+
+//----------------------------------------------------------------------------
+//  Supporting classes
+//----------------------------------------------------------------------------
+
+    /**
+     *  A single segment of a pattern. Segments that mix literal text with
+     *  variables or wildcards (eg, <code>{name}.html</code>) are composites,
+     *  and can be decomposed into parts.
+     */
+    public static final class Segment
+    {
+        public enum Type { LITERAL, VARIABLE, WILDCARD, DOUBLE_WILDCARD, COMPOSITE }
+
+        private Type type;
+        private String text;
+        private String variableName;
+        private Pattern constraint;
+        private List<Segment> parts;
+
+
+        private Segment(Type type, String text, String variableName, Pattern constraint)
+        {
+            this.type = type;
+            this.text = text;
+            this.variableName = variableName;
+            this.constraint = constraint;
+            this.parts = Collections.singletonList(this);
+        }
+
+
+        private static Segment create(String text)
+        {
+            if (text.equals("**"))
+                return new Segment(Type.DOUBLE_WILDCARD, text, null, null);
+
+            List<Segment> parts = new ArrayList<Segment>();
+            StringBuilder literal = new StringBuilder();
+            int idx = 0;
+            while (idx < text.length())
+            {
+                char c = text.charAt(idx);
+                int close = (c == '{') ? findClosingBrace(text, idx) : -1;
+                if (close > idx)
+                {
+                    addLiteral(parts, literal);
+                    parts.add(createVariable(text.substring(idx, close + 1)));
+                    idx = close + 1;
+                }
+                else if (c == '*')
+                {
+                    addLiteral(parts, literal);
+                    int start = idx;
+                    while ((idx < text.length()) && (text.charAt(idx) == '*'))
+                        idx++;
+                    parts.add(new Segment(Type.WILDCARD, text.substring(start, idx), null, null));
+                }
+                else
+                {
+                    literal.append(c);
+                    idx++;
+                }
+            }
+            addLiteral(parts, literal);
+
+            if (parts.size() == 0)
+                return new Segment(Type.LITERAL, text, null, null);
+            if (parts.size() == 1)
+                return parts.get(0);
+
+            StringBuilder regex = new StringBuilder();
+            for (Segment part : parts)
+            {
+                switch (part.type)
+                {
+                    case LITERAL :
+                        regex.append(Pattern.quote(part.text));
+                        break;
+                    case VARIABLE :
+                        regex.append("(").append((part.constraint != null) ? part.constraint.pattern() : ".*").append(")");
+                        break;
+                    default :
+                        regex.append(".*");
+                }
+            }
+
+            Segment composite = new Segment(Type.COMPOSITE, text, null, Pattern.compile(regex.toString()));
+            composite.parts = Collections.unmodifiableList(parts);
+            return composite;
+        }
+
+
+        private static void addLiteral(List<Segment> parts, StringBuilder literal)
+        {
+            if (literal.length() > 0)
+                parts.add(new Segment(Type.LITERAL, literal.toString(), null, null));
+            literal.setLength(0);
+        }
+
+
+        private static Segment createVariable(String text)
+        {
+            String body = text.substring(1, text.length() - 1);
+            int colon = body.indexOf(':');
+            if (colon < 0)
+                return new Segment(Type.VARIABLE, text, body, null);
+
+            try
+            {
+                Pattern constraint = Pattern.compile(body.substring(colon + 1));
+                return new Segment(Type.VARIABLE, text, body.substring(0, colon), constraint);
+            }
+            catch (PatternSyntaxException ex)
+            {
+                // an unparseable regex can't be enforced; treat it as unconstrained
+                return new Segment(Type.VARIABLE, text, body.substring(0, colon), null);
+            }
+        }
+
+
+        private static int findClosingBrace(String text, int openIdx)
+        {
+            int depth = 0;
+            for (int ii = openIdx ; ii < text.length() ; ii++)
+            {
+                char c = text.charAt(ii);
+                if (c == '{')
+                    depth++;
+                else if ((c == '}') && (--depth == 0))
+                    return ii;
+            }
+            return -1;
+        }
+
+
+        public Type getType()
+        {
+            return type;
+        }
+
+
+        /**
+         *  Returns the segment's text, as it appeared in the pattern.
+         */
+        public String getText()
+        {
+            return text;
+        }
+
+
+        /**
+         *  Returns the name of a path variable, <code>null</code> for other types.
+         */
+        public String getVariableName()
+        {
+            return variableName;
+        }
+
+
+        /**
+         *  Returns a path variable's regex constraint, <code>null</code> if the
+         *  variable is unconstrained or this is not a variable.
+         */
+        public Pattern getConstraint()
+        {
+            return (type == Type.VARIABLE) ? constraint : null;
+        }
+
+
+        /**
+         *  Returns the components of a composite segment: literals, variables,
+         *  and wildcards. Other segments return a list containing only themselves.
+         */
+        public List<Segment> getParts()
+        {
+            return parts;
+        }
+
+
+        /**
+         *  Determines whether this segment matches a segment of a request path.
+         *  Double wildcards must be handled by the caller.
+         */
+        public boolean matches(String path, int start, int end)
+        {
+            switch (type)
+            {
+                case LITERAL :
+                    return (end - start == text.length()) && path.regionMatches(start, text, 0, text.length());
+                case WILDCARD :
+                    return true;
+                case VARIABLE :
+                    return (constraint == null)
+                         ? (end > start)
+                         : constraint.matcher(path.subSequence(start, end)).matches();
+                case COMPOSITE :
+                    return constraint.matcher(path.subSequence(start, end)).matches();
+                default :
+                    return false;
+            }
+        }
+
+
+        @Override
+        public String toString()
+        {
+            return text;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.core;
+
+import java.util.Map;
+
+
+/**
+ *  A destination that stands in for a group of files, rather than being the
+ *  target of a mapping. Its URL is a pattern that describes the files (eg,
+ *  <code>/css/**</code>), which no framework would use to dispatch requests,
+ *  so code that reasons about request routing (such as overlap analysis or
+ *  filter chains) should skip it.
+ */
+public interface SummaryDestination
+extends Destination
+{
+    /**
+     *  Returns the number of files that this destination represents.
+     */
+    public int getFileCount();
+
+
+//----------------------------------------------------------------------------
+//  Supporting classes
+//----------------------------------------------------------------------------
+
+    /**
+     *  Static methods for summary destinations (held in a nested class because
+     *  interfaces can't have static methods at our source level).
+     */
+    public static class Util
+    {
+        /**
+         *  Determines whether a URL only has summary destinations, whose URL is a
+         *  description of files rather than a request path.
+         */
+        public static boolean isSummary(PathRepo repo, String url)
+        {
+            Map<HttpMethod,Destination> destMap = repo.get(url);
+            for (Destination dest : destMap.values())
+            {
+                if (!(dest instanceof SummaryDestination))
+                    return false;
+            }
+            return !destMap.isEmpty();
+        }
+    }
+}
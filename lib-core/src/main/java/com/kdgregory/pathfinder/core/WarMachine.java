@@ -14,11 +14,13 @@
 
 package com.kdgregory.pathfinder.core;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.SortedMap;
 
 import org.w3c.dom.Document;
 
@@ -33,8 +35,12 @@ import net.sf.practicalxml.xpath.XPathWrapper;
  *  An implementation may choose to fully extract all information at the time
  *  of construction, or may defer operations. They are not required to be
  *  thread-safe.
+ *  <p>
+ *  An instance may hold the WAR open, so must be closed when no longer needed.
+ *  Streams opened from it are invalid once it's closed.
  */
 public interface WarMachine
+extends Closeable
 {
     /**
      *  Returns the <code>web.xml</code> as a parsed XML DOM. Implementations
@@ -63,6 +69,34 @@ public interface WarMachine
     public List<ServletMapping> getServletMappings();
 
 
+    /**
+     *  Joins the <code>filter</code> and <code>filter-mapping</code> entries from
+     *  <code>web.xml</code>. A mapping with several URL patterns or servlet names
+     *  is split into one entry for each. The result is in document order, which
+     *  is the order that the container applies filters.
+     */
+    public List<FilterMapping> getFilterMappings();
+
+
+    /**
+     *  Returns a hex-encoded digest of the WAR's contents, which changes if any
+     *  entry is added, removed, or changed. Entries under the given prefix (eg,
+     *  files added by a build step that records the digest) are excluded. The
+     *  digest uses each entry's name, size, and CRC, so is independent of entry
+     *  order and compression.
+     */
+    public String getContentDigest(String excludedPrefix);
+
+
+    /**
+     *  Returns the name of every file entry in the WAR, mapped to a signature that
+     *  changes when the entry's content changes (its size and CRC). Names are as
+     *  stored in the WAR (without a leading slash), and the map is sorted by name.
+     *  Entries under the given prefix are excluded.
+     */
+    public SortedMap<String,String> getEntrySignatures(String excludedPrefix);
+
+
     /**
      *  Returns a list of all entries in the WAR, prefixed with a leading slash.
      */
@@ -123,6 +157,15 @@ public interface WarMachine
     public JavaClass loadClass(String classname);
 
 
+    /**
+     *  Releases the WAR. Other methods may fail once this is called; calling it
+     *  more than once has no effect.
+     */
+    @Override
+    public void close()
+    throws IOException;
+
+
 
 //----------------------------------------------------------------------------
 //  Supporting Objects
@@ -145,4 +188,42 @@ public interface WarMachine
 
         public Map<String,String> getInitParams();
     }
+
+
+    /**
+     *  The kinds of request that a filter mapping applies to. A mapping that
+     *  doesn't specify any applies only to <code>REQUEST</code>.
+     */
+    public enum Dispatcher
+    {
+        REQUEST, FORWARD, INCLUDE, ERROR, ASYNC
+    }
+
+
+    /**
+     *  Filter mappings are parsed into objects that implement this interface.
+     *  Each mapping has either a URL pattern or a servlet name, but not both.
+     */
+    public interface FilterMapping
+    {
+        public String getFilterName();
+
+        public String getFilterClass();
+
+        /**
+         *  Returns the mapping's URL pattern, <code>null</code> if it's mapped
+         *  by servlet name.
+         */
+        public String getUrlPattern();
+
+        /**
+         *  Returns the name of the servlet that this mapping applies to ("*" for
+         *  all servlets), <code>null</code> if it's mapped by URL pattern.
+         */
+        public String getServletName();
+
+        public Set<Dispatcher> getDispatchers();
+
+        public Map<String,String> getInitParams();
+    }
 }
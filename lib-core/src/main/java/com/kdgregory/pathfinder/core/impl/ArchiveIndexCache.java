@@ -0,0 +1,117 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.core.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ *  Caches the list of files in a library JAR, so that a JAR that appears in many
+ *  WARs (eg, the Spring framework) is only indexed once per JVM. JARs are identified
+ *  by name and a SHA-256 hash of their content: a lookup reads the JAR, but doesn't
+ *  inflate its entries. Because the hash can't be forged (unlike a ZIP entry's CRC),
+ *  one WAR can't plant a file list that's used by another.
+ *  <p>
+ *  The cache holds a limited number of JARs, discarding the least recently used.
+ *  It may be used by concurrent threads.
+ */
+public class ArchiveIndexCache
+{
+    public final static int DEFAULT_CAPACITY = 1000;
+
+    private static ArchiveIndexCache shared = new ArchiveIndexCache(DEFAULT_CAPACITY);
+
+    private Map<String,List<String>> cache;
+    private AtomicLong hits = new AtomicLong();
+    private AtomicLong misses = new AtomicLong();
+
+
+    public ArchiveIndexCache(final int capacity)
+    {
+        cache = new LinkedHashMap<String,List<String>>(16, 0.75f, true)
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String,List<String>> eldest)
+            {
+                return size() > capacity;
+            }
+        };
+    }
+
+
+    /**
+     *  Returns the instance that's shared by all {@link WarMachineImpl}s.
+     */
+    public static ArchiveIndexCache getShared()
+    {
+        return shared;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Public methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Builds the cache key for an archive, reading its content from the passed
+     *  stream. The stream is not closed.
+     */
+    public static String key(String name, InputStream content)
+    throws IOException
+    {
+        int slash = name.lastIndexOf('/');
+        return name.substring(slash + 1) + ":" + ContentHash.of(content);
+    }
+
+
+    /**
+     *  Returns the cached file list for an archive, <code>null</code> if it's not
+     *  cached. The returned list must not be modified.
+     */
+    public synchronized List<String> get(String key)
+    {
+        List<String> files = cache.get(key);
+        if (files != null)
+            hits.incrementAndGet();
+        else
+            misses.incrementAndGet();
+        return files;
+    }
+
+
+    public synchronized void put(String key, List<String> files)
+    {
+        cache.put(key, files);
+    }
+
+
+    public long getHitCount()
+    {
+        return hits.get();
+    }
+
+
+    public long getMissCount()
+    {
+        return misses.get();
+    }
+}
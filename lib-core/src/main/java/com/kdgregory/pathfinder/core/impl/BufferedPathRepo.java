@@ -0,0 +1,34 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.core.impl;
+
+
+/**
+ *  A private write buffer for an inspector that runs on its own thread. Every
+ *  update is applied to a local repository (so that reads see the inspector's
+ *  own writes) and also recorded, so that {@link #replay} can later apply the
+ *  same sequence of operations to a shared repository.
+ *  <p>
+ *  Like {@link PathRepoImpl}, this class is not intended for use by concurrent
+ *  threads; each thread should have its own buffer.
+ */
+public class BufferedPathRepo
+extends RecordingPathRepo
+{
+    public BufferedPathRepo()
+    {
+        super(new PathRepoImpl());
+    }
+}
@@ -0,0 +1,432 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.core.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.kdgregory.pathfinder.core.Destination;
+import com.kdgregory.pathfinder.core.HttpMethod;
+import com.kdgregory.pathfinder.core.PathRepo;
+import com.kdgregory.pathfinder.core.RoutePattern;
+
+
+/**
+ *  A path repository that may be updated and read by concurrent threads, so that
+ *  inspectors can run in parallel. URLs are held in a skip-list, and all updates
+ *  to a single URL are atomic. Reads don't lock: each URL's destination map is
+ *  replaced (not modified) on update, and {@link #get(String)} returns the map
+ *  as of the time of the call.
+ *  <p>
+ *  Concurrent writers to the same URL are resolved deterministically. Each writer
+ *  uses its own view of the repository, obtained from {@link #writer}, which is
+ *  identified by an order. The repository's content is always that which would
+ *  result from running the writers sequentially, lowest order first: so if the
+ *  servlet inspector is given order 0 and the Spring inspector order 1, then the
+ *  Spring inspector's removal of a dispatcher's mapping takes effect even if the
+ *  servlet inspector stores that mapping afterward. To do this, the repository
+ *  retains each writer's operations on each URL (usually one or two), and replays
+ *  them when an earlier writer updates a URL that a later writer has touched.
+ *  <p>
+ *  Call {@link #finishWriters} when all writers are done: it merges the retained
+ *  operations into the repository's content and discards them. Any later updates
+ *  are ordered relative to each other, and all follow the earlier updates.
+ *  <p>
+ *  Updates made directly to this object are treated as coming from writer 0.
+ *  Each writer's own operations are applied in the order they're made, so a
+ *  writer should only be used by one thread at a time.
+ *  <p>
+ *  Iteration, counts, and {@link #freeze} are weakly consistent: they reflect the
+ *  repository at some point during the call.
+ */
+public class ConcurrentPathRepo
+implements PathRepo
+{
+    private ConcurrentSkipListMap<String,UrlState> urlMap = new ConcurrentSkipListMap<String,UrlState>();
+    private AtomicInteger urlCount = new AtomicInteger();
+    private PathRepo defaultWriter = writer(0);
+
+
+//----------------------------------------------------------------------------
+//  PathRepo
+//----------------------------------------------------------------------------
+
+    @Override
+    public int urlCount()
+    {
+        return urlCount.get();
+    }
+
+
+    @Override
+    public void put(String url, Destination dest)
+    {
+        defaultWriter.put(url, dest);
+    }
+
+
+    @Override
+    public void put(String url, HttpMethod method, Destination dest)
+    {
+        defaultWriter.put(url, method, dest);
+    }
+
+
+    @Override
+    public void put(String url, Map<HttpMethod,Destination> destMap)
+    {
+        defaultWriter.put(url, destMap);
+    }
+
+
+    @Override
+    public Destination get(String url, HttpMethod method)
+    {
+        Map<HttpMethod,Destination> destMap = get(url);
+        Destination dest = destMap.get(method);
+        return (dest != null) ? dest : destMap.get(HttpMethod.ALL);
+    }
+
+
+    @Override
+    public Map<HttpMethod,Destination> get(String url)
+    {
+        UrlState state = urlMap.get(url);
+        return (state == null)
+             ? Collections.<HttpMethod,Destination>emptyMap()
+             : state.destinations;
+    }
+
+
+    @Override
+    public RoutePattern getPattern(String url)
+    {
+        UrlState state = urlMap.get(url);
+        return (state == null) ? null : state.pattern;
+    }
+
+
+    @Override
+    public void remove(String url, HttpMethod method)
+    {
+        defaultWriter.remove(url, method);
+    }
+
+
+    @Override
+    public Iterator<String> iterator()
+    {
+        List<String> urls = new ArrayList<String>();
+        for (Map.Entry<String,UrlState> entry : urlMap.entrySet())
+        {
+            if (entry.getValue().destinations.size() > 0)
+                urls.add(entry.getKey());
+        }
+        return urls.iterator();
+    }
+
+
+    @Override
+    public PathRepo freeze()
+    {
+        return new FrozenPathRepo.Builder().addAll(this).build();
+    }
+
+
+//----------------------------------------------------------------------------
+//  Other Public Methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Returns a view of this repository for a single writer. Reads go directly
+     *  to the repository; updates are ordered relative to other writers as
+     *  described in the class documentation.
+     */
+    public PathRepo writer(int order)
+    {
+        return new Writer(order);
+    }
+
+
+    /**
+     *  Merges all retained writer operations into the repository's content, and
+     *  discards them. Call when all writers are done; after this, the repository
+     *  only retains operations from subsequent updates.
+     */
+    public void finishWriters()
+    {
+        for (UrlState state : urlMap.values())
+        {
+            synchronized (state)
+            {
+                state.base = state.destinations;
+                state.layers = null;
+            }
+        }
+    }
+
+
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder(64 * urlMap.size());
+        sb.append("[");
+        for (String url : urlMap.keySet())
+        {
+            if (sb.length() > 1)
+                sb.append(",");
+            sb.append(url);
+        }
+        sb.append("]");
+        return sb.toString();
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    private UrlState getOrCreateState(String url)
+    {
+        UrlState state = urlMap.get(url);
+        if (state == null)
+        {
+            UrlState newState = new UrlState(url);
+            state = urlMap.putIfAbsent(url, newState);
+            if (state == null)
+                state = newState;
+        }
+        return state;
+    }
+
+
+    private void update(String url, int order, Operation op)
+    {
+        UrlState state = getOrCreateState(url);
+        synchronized (state)
+        {
+            boolean wasEmpty = state.destinations.isEmpty();
+
+            if (state.layers == null)
+                state.layers = new TreeMap<Integer,List<Operation>>();
+
+            List<Operation> ops = state.layers.get(order);
+            if (ops == null)
+            {
+                ops = new ArrayList<Operation>(2);
+                state.layers.put(order, ops);
+            }
+            ops.add(op);
+
+            SortedMap<HttpMethod,Destination> updated;
+            if (order == state.layers.lastKey().intValue())
+            {
+                // the common case: nothing later to replay
+                updated = new TreeMap<HttpMethod,Destination>(state.destinations);
+                op.apply(updated);
+            }
+            else
+            {
+                updated = new TreeMap<HttpMethod,Destination>(state.base);
+                for (List<Operation> layer : state.layers.values())
+                {
+                    for (Operation layerOp : layer)
+                        layerOp.apply(updated);
+                }
+            }
+            state.destinations = Collections.unmodifiableSortedMap(updated);
+
+            boolean isEmpty = updated.isEmpty();
+            if (wasEmpty && !isEmpty)
+                urlCount.incrementAndGet();
+            else if (!wasEmpty && isEmpty)
+                urlCount.decrementAndGet();
+        }
+    }
+
+
+//----------------------------------------------------------------------------
+//  Supporting classes
+//----------------------------------------------------------------------------
+
+    /**
+     *  Everything known about a single URL. The destination map is replaced
+     *  while holding the object's lock, and read without it. The base map holds
+     *  the destinations as of the last call to {@link #finishWriters}, and the
+     *  layers hold operations since then (null if there aren't any).
+     */
+    private static class UrlState
+    {
+        public final RoutePattern pattern;
+        public SortedMap<HttpMethod,Destination> base;
+        public TreeMap<Integer,List<Operation>> layers;
+        public volatile SortedMap<HttpMethod,Destination> destinations;
+
+        public UrlState(String url)
+        {
+            this.pattern = RoutePattern.parse(url);
+            this.destinations = Collections.unmodifiableSortedMap(new TreeMap<HttpMethod,Destination>());
+            this.base = destinations;
+        }
+    }
+
+
+    /**
+     *  A single update, with the same semantics as the corresponding method of
+     *  {@link PathRepoImpl}.
+     */
+    private static class Operation
+    {
+        private HttpMethod method;
+        private Destination dest;
+        private Map<HttpMethod,Destination> destMap;
+        private boolean replace;
+        private boolean remove;
+
+        public static Operation replace(Destination dest)
+        {
+            Operation op = new Operation();
+            op.replace = true;
+            op.method = HttpMethod.ALL;
+            op.dest = dest;
+            return op;
+        }
+
+        public static Operation put(HttpMethod method, Destination dest)
+        {
+            Operation op = new Operation();
+            op.method = method;
+            op.dest = dest;
+            return op;
+        }
+
+        public static Operation replace(Map<HttpMethod,Destination> destMap)
+        {
+            Operation op = new Operation();
+            op.replace = true;
+            op.destMap = new TreeMap<HttpMethod,Destination>(destMap);
+            return op;
+        }
+
+        public static Operation remove(HttpMethod method)
+        {
+            Operation op = new Operation();
+            op.remove = true;
+            op.method = method;
+            return op;
+        }
+
+        public void apply(Map<HttpMethod,Destination> target)
+        {
+            if (remove)
+            {
+                PathRepoImpl.removeMethod(target, method);
+                return;
+            }
+
+            if (replace)
+                target.clear();
+
+            if (destMap != null)
+                target.putAll(destMap);
+            else
+                target.put(method, dest);
+        }
+    }
+
+
+    /**
+     *  A writer's view of the repository.
+     */
+    private class Writer
+    implements PathRepo
+    {
+        private int order;
+
+        public Writer(int order)
+        {
+            this.order = order;
+        }
+
+        @Override
+        public int urlCount()
+        {
+            return ConcurrentPathRepo.this.urlCount();
+        }
+
+        @Override
+        public void put(String url, Destination dest)
+        {
+            update(url, order, Operation.replace(dest));
+        }
+
+        @Override
+        public void put(String url, HttpMethod method, Destination dest)
+        {
+            update(url, order, Operation.put(method, dest));
+        }
+
+        @Override
+        public void put(String url, Map<HttpMethod,Destination> destMap)
+        {
+            update(url, order, Operation.replace(destMap));
+        }
+
+        @Override
+        public Destination get(String url, HttpMethod method)
+        {
+            return ConcurrentPathRepo.this.get(url, method);
+        }
+
+        @Override
+        public Map<HttpMethod,Destination> get(String url)
+        {
+            return ConcurrentPathRepo.this.get(url);
+        }
+
+        @Override
+        public RoutePattern getPattern(String url)
+        {
+            return ConcurrentPathRepo.this.getPattern(url);
+        }
+
+        @Override
+        public void remove(String url, HttpMethod method)
+        {
+            // PathRepoImpl ignores removal of unknown URLs; a concurrent writer can't,
+            // because an earlier writer may store the URL later
+            update(url, order, Operation.remove(method));
+        }
+
+        @Override
+        public Iterator<String> iterator()
+        {
+            return ConcurrentPathRepo.this.iterator();
+        }
+
+        @Override
+        public PathRepo freeze()
+        {
+            return ConcurrentPathRepo.this.freeze();
+        }
+    }
+}
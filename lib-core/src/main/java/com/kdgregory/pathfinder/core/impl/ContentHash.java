@@ -0,0 +1,85 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.core.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+
+/**
+ *  Computes the SHA-256 hashes that identify content in the shared caches
+ *  ({@link ParsedClassCache} and {@link ArchiveIndexCache}). Unlike the CRC
+ *  in a ZIP directory, these can't be forged to make different content look
+ *  the same, so one WAR can't plant a cache entry that's read by another.
+ */
+class ContentHash
+{
+    /**
+     *  Returns the hex-encoded hash of the passed bytes.
+     */
+    public static String of(byte[] content)
+    {
+        MessageDigest digest = createDigest();
+        digest.update(content);
+        return toHex(digest.digest());
+    }
+
+
+    /**
+     *  Returns the hex-encoded hash of the passed stream's remaining content.
+     *  The stream is not closed.
+     */
+    public static String of(InputStream in)
+    throws IOException
+    {
+        MessageDigest digest = createDigest();
+        byte[] buf = new byte[8192];
+        int count;
+        while ((count = in.read(buf)) != -1)
+            digest.update(buf, 0, count);
+        return toHex(digest.digest());
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    private static MessageDigest createDigest()
+    {
+        try
+        {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException ex)
+        {
+            throw new IllegalStateException("SHA-256 is required by the JRE spec", ex);
+        }
+    }
+
+
+    private static String toHex(byte[] bytes)
+    {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes)
+        {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16))
+              .append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,357 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.core.impl;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import com.kdgregory.pathfinder.core.Destination;
+import com.kdgregory.pathfinder.core.HttpMethod;
+import com.kdgregory.pathfinder.core.PathRepo;
+import com.kdgregory.pathfinder.core.RoutePattern;
+
+
+/**
+ *  An immutable snapshot of a path repository, created by {@link PathRepo#freeze}
+ *  or by a {@link Builder}.
+ *  <p>
+ *  Rather than a map-of-maps, paths are stored in columns: a sorted array of URLs,
+ *  and for each URL a range of rows holding HTTP method and the index of its
+ *  destination. Destinations are de-duplicated by identity, so a handler that's
+ *  mapped to many URLs and methods is stored once. Lookups are binary searches,
+ *  and iteration and counts don't copy anything.
+ *  <p>
+ *  Methods that would modify the repository throw <code>UnsupportedOperationException</code>.
+ *  Instances may be shared between threads.
+ */
+public class FrozenPathRepo
+implements PathRepo
+{
+    private final static HttpMethod[] METHODS = HttpMethod.values();
+
+    private final String[] urls;
+    private final RoutePattern[] patterns;
+    private final int[] rowStart;           // rows for urls[ii] are rowStart[ii] .. rowStart[ii+1]-1
+    private final byte[] methods;           // ordinal of HttpMethod, ascending within a URL
+    private final int[] destIndexes;
+    private final Destination[] destinations;
+
+
+    private FrozenPathRepo(String[] urls, RoutePattern[] patterns, int[] rowStart,
+                           byte[] methods, int[] destIndexes, Destination[] destinations)
+    {
+        this.urls = urls;
+        this.patterns = patterns;
+        this.rowStart = rowStart;
+        this.methods = methods;
+        this.destIndexes = destIndexes;
+        this.destinations = destinations;
+    }
+
+
+//----------------------------------------------------------------------------
+//  PathRepo
+//----------------------------------------------------------------------------
+
+    @Override
+    public int urlCount()
+    {
+        return urls.length;
+    }
+
+
+    @Override
+    public void put(String url, Destination dest)
+    {
+        throw new UnsupportedOperationException("repository is frozen");
+    }
+
+
+    @Override
+    public void put(String url, HttpMethod method, Destination dest)
+    {
+        throw new UnsupportedOperationException("repository is frozen");
+    }
+
+
+    @Override
+    public void put(String url, Map<HttpMethod,Destination> destMap)
+    {
+        throw new UnsupportedOperationException("repository is frozen");
+    }
+
+
+    @Override
+    public Destination get(String url, HttpMethod method)
+    {
+        int urlIdx = Arrays.binarySearch(urls, url);
+        if (urlIdx < 0)
+            return null;
+
+        Destination all = null;
+        for (int row = rowStart[urlIdx] ; row < rowStart[urlIdx + 1] ; row++)
+        {
+            if (methods[row] == method.ordinal())
+                return destinations[destIndexes[row]];
+            if (methods[row] == HttpMethod.ALL.ordinal())
+                all = destinations[destIndexes[row]];
+        }
+        return all;
+    }
+
+
+    @Override
+    public Map<HttpMethod,Destination> get(String url)
+    {
+        int urlIdx = Arrays.binarySearch(urls, url);
+        if (urlIdx < 0)
+            return Collections.emptyMap();
+
+        Map<HttpMethod,Destination> result = new EnumMap<HttpMethod,Destination>(HttpMethod.class);
+        for (int row = rowStart[urlIdx] ; row < rowStart[urlIdx + 1] ; row++)
+        {
+            result.put(METHODS[methods[row]], destinations[destIndexes[row]]);
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+
+    @Override
+    public RoutePattern getPattern(String url)
+    {
+        int urlIdx = Arrays.binarySearch(urls, url);
+        return (urlIdx < 0) ? null : patterns[urlIdx];
+    }
+
+
+    @Override
+    public void remove(String url, HttpMethod method)
+    {
+        throw new UnsupportedOperationException("repository is frozen");
+    }
+
+
+    @Override
+    public Iterator<String> iterator()
+    {
+        // the list's iterator doesn't support remove()
+        return Arrays.asList(urls).iterator();
+    }
+
+
+    @Override
+    public PathRepo freeze()
+    {
+        return this;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Other Public Methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Returns the number of URL/method combinations in the repository.
+     */
+    public int pathCount()
+    {
+        return methods.length;
+    }
+
+
+    /**
+     *  Returns the number of distinct destinations in the repository.
+     */
+    public int destinationCount()
+    {
+        return destinations.length;
+    }
+
+
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder(64 * urls.length);
+        sb.append("[");
+        for (String url : urls)
+        {
+            if (sb.length() > 1)
+                sb.append(",");
+            sb.append(url);
+        }
+        sb.append("]");
+        return sb.toString();
+    }
+
+
+//----------------------------------------------------------------------------
+//  Builder
+//----------------------------------------------------------------------------
+
+    /**
+     *  Accumulates paths in flat arrays, and sorts them into a frozen repository
+     *  in a single pass. This is intended for inspectors (or tools) that produce
+     *  large numbers of paths, and don't need the replacement semantics of a
+     *  mutable repository: if the same URL and method are added more than once,
+     *  the last destination wins. A URL with an explicit method and also with
+     *  {@link HttpMethod#ALL} keeps both, as in {@link PathRepoImpl}.
+     *  <p>
+     *  Builders are not intended for use by concurrent threads, and should not
+     *  be used after calling {@link #build}.
+     */
+    public static class Builder
+    {
+        private int count;
+        private String[] urls = new String[64];
+        private HttpMethod[] methods = new HttpMethod[64];
+        private Destination[] dests = new Destination[64];
+        private Map<String,RoutePattern> knownPatterns = new HashMap<String,RoutePattern>();
+
+        /**
+         *  Adds a single path.
+         */
+        public Builder add(String url, HttpMethod method, Destination dest)
+        {
+            if ((url == null) || (method == null))
+                throw new IllegalArgumentException("URL and method are required");
+
+            if (count == urls.length)
+            {
+                int newSize = count * 2;
+                urls = Arrays.copyOf(urls, newSize);
+                methods = Arrays.copyOf(methods, newSize);
+                dests = Arrays.copyOf(dests, newSize);
+            }
+            urls[count] = url;
+            methods[count] = method;
+            dests[count] = dest;
+            count++;
+            return this;
+        }
+
+
+        /**
+         *  Adds all paths from an existing repository, retaining its parsed patterns.
+         */
+        public Builder addAll(PathRepo repo)
+        {
+            for (String url : repo)
+            {
+                RoutePattern pattern = repo.getPattern(url);
+                if (pattern != null)
+                    knownPatterns.put(url, pattern);
+                for (Map.Entry<HttpMethod,Destination> entry : repo.get(url).entrySet())
+                {
+                    add(url, entry.getKey(), entry.getValue());
+                }
+            }
+            return this;
+        }
+
+
+        /**
+         *  Creates the frozen repository.
+         */
+        public FrozenPathRepo build()
+        {
+            Integer[] order = new Integer[count];
+            for (int ii = 0 ; ii < count ; ii++)
+                order[ii] = Integer.valueOf(ii);
+
+            // stable sort, so the last of any duplicates is last in its run
+            Arrays.sort(order, new Comparator<Integer>()
+            {
+                @Override
+                public int compare(Integer i1, Integer i2)
+                {
+                    int cmp = urls[i1.intValue()].compareTo(urls[i2.intValue()]);
+                    return (cmp != 0) ? cmp : methods[i1.intValue()].compareTo(methods[i2.intValue()]);
+                }
+            });
+
+            int urlCount = 0;
+            int rowCount = 0;
+            String prevUrl = null;
+            for (int ii = 0 ; ii < count ; ii++)
+            {
+                if (isLastOfRun(order, ii))
+                {
+                    String url = urls[order[ii].intValue()];
+                    rowCount++;
+                    urlCount += url.equals(prevUrl) ? 0 : 1;
+                    prevUrl = url;
+                }
+            }
+
+            String[] fUrls = new String[urlCount];
+            RoutePattern[] fPatterns = new RoutePattern[urlCount];
+            int[] fRowStart = new int[urlCount + 1];
+            byte[] fMethods = new byte[rowCount];
+            int[] fDestIndexes = new int[rowCount];
+            Map<Destination,Integer> destLookup = new IdentityHashMap<Destination,Integer>();
+            Destination[] fDestinations = new Destination[rowCount];
+
+            int urlIdx = -1;
+            int row = 0;
+            for (int ii = 0 ; ii < count ; ii++)
+            {
+                if (!isLastOfRun(order, ii))
+                    continue;
+
+                int src = order[ii].intValue();
+                if ((urlIdx < 0) || !fUrls[urlIdx].equals(urls[src]))
+                {
+                    urlIdx++;
+                    fUrls[urlIdx] = urls[src];
+                    RoutePattern pattern = knownPatterns.get(urls[src]);
+                    fPatterns[urlIdx] = (pattern != null) ? pattern : RoutePattern.parse(urls[src]);
+                    fRowStart[urlIdx] = row;
+                }
+
+                Integer destIdx = destLookup.get(dests[src]);
+                if (destIdx == null)
+                {
+                    destIdx = Integer.valueOf(destLookup.size());
+                    destLookup.put(dests[src], destIdx);
+                    fDestinations[destIdx.intValue()] = dests[src];
+                }
+
+                fMethods[row] = (byte)methods[src].ordinal();
+                fDestIndexes[row] = destIdx.intValue();
+                row++;
+            }
+            fRowStart[urlCount] = row;
+
+            return new FrozenPathRepo(fUrls, fPatterns, fRowStart, fMethods, fDestIndexes,
+                                      Arrays.copyOf(fDestinations, destLookup.size()));
+        }
+
+
+        private boolean isLastOfRun(Integer[] order, int ii)
+        {
+            if (ii == count - 1)
+                return true;
+            int cur = order[ii].intValue();
+            int next = order[ii + 1].intValue();
+            return !urls[cur].equals(urls[next]) || (methods[cur] != methods[next]);
+        }
+    }
+}
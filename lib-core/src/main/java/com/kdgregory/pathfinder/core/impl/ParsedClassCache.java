@@ -0,0 +1,111 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.core.impl;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.bcel.classfile.JavaClass;
+
+
+/**
+ *  Caches parsed classes, so that re-inspecting a rebuilt WAR only parses the
+ *  classes that changed. Classes are identified by their name and a SHA-256 hash
+ *  of their classfile, so a lookup reads the class but doesn't parse it. Because
+ *  the hash can't be forged (unlike a ZIP entry's CRC), a cache may be shared by
+ *  WARs from different sources.
+ *  <p>
+ *  Unlike {@link ArchiveIndexCache}, there's no shared instance: parsed classes
+ *  are much larger than file lists, so callers that re-inspect a WAR create a
+ *  cache and pass it to {@link WarMachineImpl#setClassCache}. The cache holds a
+ *  limited number of classes, discarding the least recently used. It may be
+ *  used by concurrent threads.
+ */
+public class ParsedClassCache
+{
+    public final static int DEFAULT_CAPACITY = 10000;
+
+    private Map<String,JavaClass> cache;
+    private AtomicLong hits = new AtomicLong();
+    private AtomicLong misses = new AtomicLong();
+
+
+    public ParsedClassCache(final int capacity)
+    {
+        cache = new LinkedHashMap<String,JavaClass>(16, 0.75f, true)
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String,JavaClass> eldest)
+            {
+                return size() > capacity;
+            }
+        };
+    }
+
+
+//----------------------------------------------------------------------------
+//  Public methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Builds the cache key for a classfile.
+     */
+    public static String key(String filename, byte[] content)
+    {
+        return filename + ":" + ContentHash.of(content);
+    }
+
+
+    /**
+     *  Returns the cached class, <code>null</code> if it's not cached. The returned
+     *  class must not be modified.
+     */
+    public synchronized JavaClass get(String key)
+    {
+        JavaClass klass = cache.get(key);
+        if (klass != null)
+            hits.incrementAndGet();
+        else
+            misses.incrementAndGet();
+        return klass;
+    }
+
+
+    public synchronized void put(String key, JavaClass klass)
+    {
+        cache.put(key, klass);
+    }
+
+
+    public synchronized int size()
+    {
+        return cache.size();
+    }
+
+
+    public long getHitCount()
+    {
+        return hits.get();
+    }
+
+
+    public long getMissCount()
+    {
+        return misses.get();
+    }
+}
@@ -16,6 +16,7 @@ package com.kdgregory.pathfinder.core.impl;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -25,6 +26,7 @@ import java.util.TreeMap;
 import com.kdgregory.pathfinder.core.Destination;
 import com.kdgregory.pathfinder.core.HttpMethod;
 import com.kdgregory.pathfinder.core.PathRepo;
+import com.kdgregory.pathfinder.core.RoutePattern;
 
 
 /**
@@ -35,6 +37,7 @@ import com.kdgregory.pathfinder.core.PathRepo;
  *  The storage mechanism is a map-of-maps, with the URL as outer key. Inspectors
  *  are allowed (and expected) to completely replace the destinations that belong
  *  to a particular URL. Both maps are sorted, to result in consisted output.
+ *  Each URL is parsed into a {@link RoutePattern} when it's first stored.
  *  <p>
  *  This class is not intended for use by concurrent threads.
  */
@@ -43,6 +46,7 @@ implements PathRepo
 {
     private SortedMap<String,SortedMap<HttpMethod,Destination>> urlMap
             = new TreeMap<String,SortedMap<HttpMethod,Destination>>();
+    private Map<String,RoutePattern> patterns = new HashMap<String,RoutePattern>();
 
 
 //----------------------------------------------------------------------------
@@ -93,6 +97,13 @@ implements PathRepo
     }
 
 
+    @Override
+    public RoutePattern getPattern(String url)
+    {
+        return patterns.get(url);
+    }
+
+
     @Override
     public void remove(String url, HttpMethod method)
     {
@@ -100,22 +111,7 @@ implements PathRepo
         if (destMap == null)
             return;
 
-        if (method.equals(HttpMethod.ALL))
-        {
-            destMap.clear();
-            return;
-        }
-
-        if (destMap.containsKey(HttpMethod.ALL))
-        {
-            Destination dest = destMap.remove(HttpMethod.ALL);
-            destMap.put(HttpMethod.GET, dest);
-            destMap.put(HttpMethod.POST, dest);
-            destMap.put(HttpMethod.PUT, dest);
-            destMap.put(HttpMethod.DELETE, dest);
-        }
-
-        destMap.remove(method);
+        removeMethod(destMap, method);
     }
 
 
@@ -145,8 +141,15 @@ implements PathRepo
     }
 
 
+    @Override
+    public PathRepo freeze()
+    {
+        return new FrozenPathRepo.Builder().addAll(this).build();
+    }
+
+
 //----------------------------------------------------------------------------
-//  Otheer Public Methods
+//  Other Public Methods
 //----------------------------------------------------------------------------
 
     @Override
@@ -176,7 +179,33 @@ implements PathRepo
         {
             destMap = new TreeMap<HttpMethod,Destination>();
             urlMap.put(url, destMap);
+            patterns.put(url, RoutePattern.parse(url));
         }
         return destMap;
     }
+
+
+    /**
+     *  Implements the semantics of {@link #remove} for a single URL's destination
+     *  map; shared with other implementations.
+     */
+    static void removeMethod(Map<HttpMethod,Destination> destMap, HttpMethod method)
+    {
+        if (method.equals(HttpMethod.ALL))
+        {
+            destMap.clear();
+            return;
+        }
+
+        if (destMap.containsKey(HttpMethod.ALL))
+        {
+            Destination dest = destMap.remove(HttpMethod.ALL);
+            destMap.put(HttpMethod.GET, dest);
+            destMap.put(HttpMethod.POST, dest);
+            destMap.put(HttpMethod.PUT, dest);
+            destMap.put(HttpMethod.DELETE, dest);
+        }
+
+        destMap.remove(method);
+    }
 }
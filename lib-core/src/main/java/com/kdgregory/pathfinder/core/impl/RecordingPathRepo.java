@@ -0,0 +1,274 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.core.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import com.kdgregory.pathfinder.core.Destination;
+import com.kdgregory.pathfinder.core.HttpMethod;
+import com.kdgregory.pathfinder.core.PathRepo;
+import com.kdgregory.pathfinder.core.RoutePattern;
+
+
+/**
+ *  Wraps another repository, recording every update before passing it on. The
+ *  record includes updates that are later overridden, so it can be used to find
+ *  conflicting mappings (see <code>RouteAnalyzer</code>), and can be replayed
+ *  against another repository.
+ *  <p>
+ *  Replaying the operation log, rather than copying the final contents, preserves
+ *  the replace-versus-override semantics of the different <code>put()</code> methods:
+ *  a recorded <code>put(url,dest)</code> will still clear any methods that the target
+ *  repository holds for that URL.
+ *  <p>
+ *  This class is not intended for use by concurrent threads.
+ */
+public class RecordingPathRepo
+implements PathRepo
+{
+    private PathRepo delegate;
+    private List<Operation> log = new ArrayList<Operation>();
+
+
+    public RecordingPathRepo(PathRepo delegate)
+    {
+        this.delegate = delegate;
+    }
+
+
+//----------------------------------------------------------------------------
+//  PathRepo
+//----------------------------------------------------------------------------
+
+    @Override
+    public int urlCount()
+    {
+        return delegate.urlCount();
+    }
+
+
+    @Override
+    public void put(String url, Destination dest)
+    {
+        delegate.put(url, dest);
+        log.add(new Operation(OperationType.REPLACE, url, HttpMethod.ALL, dest, null));
+    }
+
+
+    @Override
+    public void put(String url, HttpMethod method, Destination dest)
+    {
+        delegate.put(url, method, dest);
+        log.add(new Operation(OperationType.PUT, url, method, dest, null));
+    }
+
+
+    @Override
+    public void put(String url, Map<HttpMethod,Destination> destMap)
+    {
+        // copy now, because the caller is free to change the map after this call
+        Map<HttpMethod,Destination> copy = new EnumMap<HttpMethod,Destination>(HttpMethod.class);
+        copy.putAll(destMap);
+
+        delegate.put(url, copy);
+        log.add(new Operation(OperationType.REPLACE_MAP, url, null, null, copy));
+    }
+
+
+    @Override
+    public Destination get(String url, HttpMethod method)
+    {
+        return delegate.get(url, method);
+    }
+
+
+    @Override
+    public Map<HttpMethod,Destination> get(String url)
+    {
+        return delegate.get(url);
+    }
+
+
+    @Override
+    public RoutePattern getPattern(String url)
+    {
+        return delegate.getPattern(url);
+    }
+
+
+    @Override
+    public void remove(String url, HttpMethod method)
+    {
+        delegate.remove(url, method);
+        log.add(new Operation(OperationType.REMOVE, url, method, null, null));
+    }
+
+
+    @Override
+    public Iterator<String> iterator()
+    {
+        return delegate.iterator();
+    }
+
+
+    @Override
+    public PathRepo freeze()
+    {
+        return delegate.freeze();
+    }
+
+
+//----------------------------------------------------------------------------
+//  Other Public Methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Returns the number of operations that have been recorded.
+     */
+    public int size()
+    {
+        return log.size();
+    }
+
+
+    /**
+     *  Returns the recorded operations, in the order that they were performed.
+     */
+    public List<Operation> getOperations()
+    {
+        return Collections.unmodifiableList(log);
+    }
+
+
+    /**
+     *  Applies all recorded operations to the passed repository, in the order
+     *  that they were originally performed. The log is not modified, so may
+     *  be replayed multiple times.
+     */
+    public void replay(PathRepo target)
+    {
+        for (Operation op : log)
+        {
+            op.apply(target);
+        }
+    }
+
+
+//----------------------------------------------------------------------------
+//  Supporting classes
+//----------------------------------------------------------------------------
+
+    /**
+     *  The repository method that was called.
+     */
+    public enum OperationType
+    {
+        /** <code>put(url, dest)</code> */
+        REPLACE,
+
+        /** <code>put(url, method, dest)</code> */
+        PUT,
+
+        /** <code>put(url, destMap)</code> */
+        REPLACE_MAP,
+
+        /** <code>remove(url, method)</code> */
+        REMOVE
+    }
+
+
+    /**
+     *  A single recorded update. Only those fields that apply to the operation
+     *  type are set; the others are null.
+     */
+    public static class Operation
+    {
+        private OperationType type;
+        private String url;
+        private HttpMethod method;
+        private Destination dest;
+        private Map<HttpMethod,Destination> destMap;
+
+        public Operation(OperationType type, String url, HttpMethod method, Destination dest, Map<HttpMethod,Destination> destMap)
+        {
+            this.type = type;
+            this.url = url;
+            this.method = method;
+            this.dest = dest;
+            this.destMap = destMap;
+        }
+
+        public OperationType getType()
+        {
+            return type;
+        }
+
+        public String getUrl()
+        {
+            return url;
+        }
+
+        public HttpMethod getMethod()
+        {
+            return method;
+        }
+
+        public Destination getDestination()
+        {
+            return dest;
+        }
+
+        public Map<HttpMethod,Destination> getDestinationMap()
+        {
+            return (destMap == null) ? null : Collections.unmodifiableMap(destMap);
+        }
+
+        /**
+         *  Performs this operation on the passed repository.
+         */
+        public void apply(PathRepo target)
+        {
+            switch (type)
+            {
+                case REPLACE :
+                    target.put(url, dest);
+                    break;
+                case PUT :
+                    target.put(url, method, dest);
+                    break;
+                case REPLACE_MAP :
+                    target.put(url, destMap);
+                    break;
+                case REMOVE :
+                    target.remove(url, method);
+                    break;
+            }
+        }
+
+        @Override
+        public String toString()
+        {
+            return type + " " + url
+                 + ((method != null) ? " " + method : "")
+                 + ((dest != null) ? " => " + dest : "")
+                 + ((destMap != null) ? " => " + destMap : "");
+        }
+    }
+}
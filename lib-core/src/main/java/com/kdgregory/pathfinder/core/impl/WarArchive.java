@@ -0,0 +1,380 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.core.impl;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarFile;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+
+
+/**
+ *  The entries of a WAR, as used by {@link WarMachineImpl}. The WAR may be a
+ *  file or held in memory; either way, entries are read (and inflated) only
+ *  when opened.
+ *  <p>
+ *  Entries are returned in the order that they appear in the WAR. Each entry's
+ *  size and CRC are available without reading it.
+ */
+abstract class WarArchive
+implements Closeable
+{
+    /**
+     *  Returns all entries, including directories.
+     */
+    public abstract List<ZipEntry> entries();
+
+
+    /**
+     *  Returns the named entry, <code>null</code> if it doesn't exist.
+     */
+    public abstract ZipEntry getEntry(String name);
+
+
+    /**
+     *  Opens an entry. The caller must close the returned stream.
+     */
+    public abstract InputStream getInputStream(ZipEntry entry)
+    throws IOException;
+
+
+    /**
+     *  Releases any file handle held by the archive.
+     */
+    @Override
+    public abstract void close()
+    throws IOException;
+
+
+//----------------------------------------------------------------------------
+//  Factory methods
+//----------------------------------------------------------------------------
+
+    public static WarArchive open(File file)
+    throws IOException
+    {
+        return new FileArchive(new JarFile(file));
+    }
+
+
+    /**
+     *  Reads the WAR from the buffer's remaining bytes; the buffer's position is
+     *  not changed.
+     */
+    public static WarArchive read(ByteBuffer buf)
+    throws IOException
+    {
+        return new MemoryArchive(buf.duplicate());
+    }
+
+
+//----------------------------------------------------------------------------
+//  Implementations
+//----------------------------------------------------------------------------
+
+    private static class FileArchive
+    extends WarArchive
+    {
+        private JarFile jar;
+        private List<ZipEntry> entries;
+
+        public FileArchive(JarFile jar)
+        {
+            this.jar = jar;
+            entries = new ArrayList<ZipEntry>(jar.size());
+            for (Enumeration<? extends ZipEntry> itx = jar.entries() ; itx.hasMoreElements() ; )
+                entries.add(itx.nextElement());
+            entries = Collections.unmodifiableList(entries);
+        }
+
+        @Override
+        public List<ZipEntry> entries()
+        {
+            return entries;
+        }
+
+        @Override
+        public ZipEntry getEntry(String name)
+        {
+            return jar.getJarEntry(name);
+        }
+
+        @Override
+        public InputStream getInputStream(ZipEntry entry)
+        throws IOException
+        {
+            return jar.getInputStream(entry);
+        }
+
+        @Override
+        public void close()
+        throws IOException
+        {
+            jar.close();
+        }
+    }
+
+
+    /**
+     *  Reads entries directly from the WAR's bytes. The central directory is parsed
+     *  when the archive is created, which gives each entry's name, sizes, CRC, and
+     *  location; entries are inflated only when opened. The WAR's (compressed)
+     *  bytes are copied, so the caller may reuse its buffer.
+     */
+    private static class MemoryArchive
+    extends WarArchive
+    {
+        private final static int END_SIGNATURE = 0x06054b50;
+        private final static int END_MIN_LENGTH = 22;
+        private final static int END_MAX_COMMENT = 0xFFFF;
+        private final static int CENTRAL_SIGNATURE = 0x02014b50;
+        private final static int CENTRAL_LENGTH = 46;
+        private final static int LOCAL_SIGNATURE = 0x04034b50;
+        private final static int LOCAL_LENGTH = 30;
+
+        private ByteBuffer buf;
+        private List<ZipEntry> entries = new ArrayList<ZipEntry>();
+        private Map<String,ZipEntry> entryLookup = new HashMap<String,ZipEntry>();
+        private Map<ZipEntry,Integer> offsets = new HashMap<ZipEntry,Integer>();
+
+        public MemoryArchive(ByteBuffer src)
+        throws IOException
+        {
+            buf = ByteBuffer.allocate(src.remaining());
+            buf.put(src);
+            buf.flip();
+            buf.order(ByteOrder.LITTLE_ENDIAN);
+
+            int end = findEndRecord();
+            int count = buf.getShort(end + 10) & 0xFFFF;
+            int pos = buf.getInt(end + 16);
+            for (int ii = 0 ; ii < count ; ii++)
+            {
+                checkSignature(pos, CENTRAL_LENGTH, CENTRAL_SIGNATURE, "central directory");
+                int nameLength = buf.getShort(pos + 28) & 0xFFFF;
+                int extraLength = buf.getShort(pos + 30) & 0xFFFF;
+                int commentLength = buf.getShort(pos + 32) & 0xFFFF;
+                long compressedSize = buf.getInt(pos + 20) & 0xFFFFFFFFL;
+                long size = buf.getInt(pos + 24) & 0xFFFFFFFFL;
+                long offset = buf.getInt(pos + 42) & 0xFFFFFFFFL;
+                if ((compressedSize == 0xFFFFFFFFL) || (size == 0xFFFFFFFFL) || (offset == 0xFFFFFFFFL))
+                    throw new IOException("ZIP64 archives not supported");
+
+                ZipEntry entry = new ZipEntry(readString(pos + CENTRAL_LENGTH, nameLength));
+                entry.setMethod(buf.getShort(pos + 10) & 0xFFFF);
+                entry.setTime(dosToJavaTime(buf.getInt(pos + 12)));
+                entry.setCrc(buf.getInt(pos + 16) & 0xFFFFFFFFL);
+                entry.setCompressedSize(compressedSize);
+                entry.setSize(size);
+
+                entries.add(entry);
+                entryLookup.put(entry.getName(), entry);
+                offsets.put(entry, Integer.valueOf((int)offset));
+                pos += CENTRAL_LENGTH + nameLength + extraLength + commentLength;
+            }
+            entries = Collections.unmodifiableList(entries);
+        }
+
+        @Override
+        public List<ZipEntry> entries()
+        {
+            return entries;
+        }
+
+        @Override
+        public ZipEntry getEntry(String name)
+        {
+            return entryLookup.get(name);
+        }
+
+        @Override
+        public InputStream getInputStream(ZipEntry entry)
+        throws IOException
+        {
+            // the local header's extra field may differ from the central directory's
+            int pos = offsets.get(entry).intValue();
+            checkSignature(pos, LOCAL_LENGTH, LOCAL_SIGNATURE, "local header");
+            int dataStart = pos + LOCAL_LENGTH
+                          + (buf.getShort(pos + 26) & 0xFFFF)
+                          + (buf.getShort(pos + 28) & 0xFFFF);
+            if ((dataStart + entry.getCompressedSize()) > buf.limit())
+                throw new IOException("truncated entry: " + entry.getName());
+
+            ByteBuffer data = buf.duplicate();
+            data.position(dataStart);
+            data.limit(dataStart + (int)entry.getCompressedSize());
+            InputStream in = new ByteBufferInputStream(data.slice());
+
+            switch (entry.getMethod())
+            {
+                case ZipEntry.STORED :
+                    return in;
+                case ZipEntry.DEFLATED :
+                    return new EntryInflaterInputStream(in);
+                default :
+                    throw new IOException("unsupported compression method " + entry.getMethod() + ": " + entry.getName());
+            }
+        }
+
+        @Override
+        public void close()
+        {
+            // nothing to release
+        }
+
+        /**
+         *  The end-of-central-directory record is at the end of the archive, but
+         *  may be followed by a comment, so we search backwards for it.
+         */
+        private int findEndRecord()
+        throws IOException
+        {
+            int last = buf.limit() - END_MIN_LENGTH;
+            int first = Math.max(0, last - END_MAX_COMMENT);
+            for (int pos = last ; pos >= first ; pos--)
+            {
+                if (buf.getInt(pos) == END_SIGNATURE)
+                    return pos;
+            }
+            throw new IOException("not a ZIP archive");
+        }
+
+        private void checkSignature(int pos, int length, int signature, String description)
+        throws IOException
+        {
+            if ((pos < 0) || ((pos + length) > buf.limit()) || (buf.getInt(pos) != signature))
+                throw new IOException("invalid " + description + " at offset " + pos);
+        }
+
+        private String readString(int pos, int length)
+        throws IOException
+        {
+            if ((pos + length) > buf.limit())
+                throw new IOException("invalid entry name at offset " + pos);
+
+            byte[] bytes = new byte[length];
+            ByteBuffer src = buf.duplicate();
+            src.position(pos);
+            src.get(bytes);
+            return new String(bytes, "UTF-8");
+        }
+
+        private static long dosToJavaTime(int dosTime)
+        {
+            Calendar cal = new GregorianCalendar(((dosTime >> 25) & 0x7f) + 1980,
+                                                 ((dosTime >> 21) & 0x0f) - 1,
+                                                 (dosTime >> 16) & 0x1f,
+                                                 (dosTime >> 11) & 0x1f,
+                                                 (dosTime >> 5) & 0x3f,
+                                                 (dosTime << 1) & 0x3e);
+            return cal.getTimeInMillis();
+        }
+    }
+
+
+    /**
+     *  Inflates a raw (no header) deflate stream. As with <code>ZipFile</code>, it
+     *  supplies a dummy byte at end of input (which the inflater may need), and
+     *  releases the inflater's native memory when closed.
+     */
+    private static class EntryInflaterInputStream
+    extends InflaterInputStream
+    {
+        private boolean eof;
+        private boolean closed;
+
+        public EntryInflaterInputStream(InputStream in)
+        {
+            super(in, new Inflater(true));
+        }
+
+        @Override
+        protected void fill()
+        throws IOException
+        {
+            if (eof)
+                throw new EOFException("unexpected end of entry");
+
+            len = in.read(buf, 0, buf.length);
+            if (len == -1)
+            {
+                buf[0] = 0;
+                len = 1;
+                eof = true;
+            }
+            inf.setInput(buf, 0, len);
+        }
+
+        @Override
+        public void close()
+        throws IOException
+        {
+            if (closed)
+                return;
+            closed = true;
+            inf.end();
+            super.close();
+        }
+    }
+
+
+    private static class ByteBufferInputStream
+    extends InputStream
+    {
+        private ByteBuffer buf;
+
+        public ByteBufferInputStream(ByteBuffer buf)
+        {
+            this.buf = buf;
+        }
+
+        @Override
+        public int read()
+        {
+            return buf.hasRemaining() ? (buf.get() & 0xFF) : -1;
+        }
+
+        @Override
+        public int read(byte[] dst, int off, int len)
+        {
+            if (!buf.hasRemaining())
+                return -1;
+            int count = Math.min(len, buf.remaining());
+            buf.get(dst, off, count);
+            return count;
+        }
+
+        @Override
+        public int available()
+        {
+            return buf.remaining();
+        }
+    }
+}
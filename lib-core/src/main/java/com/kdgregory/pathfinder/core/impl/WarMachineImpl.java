@@ -14,25 +14,30 @@
 
 package com.kdgregory.pathfinder.core.impl;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Enumeration;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.SortedMap;
 import java.util.TreeMap;
-import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
 import java.util.jar.JarInputStream;
 import java.util.zip.ZipEntry;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
 
 import org.xml.sax.InputSource;
 
@@ -56,6 +61,11 @@ import com.kdgregory.pathfinder.core.WarMachine;
 
 /**
  *  The one and only non-mock implementation of the War Machine.
+ *  <p>
+ *  Once constructed, an instance may be read by concurrent threads: the lazily
+ *  built servlet and filter mappings and classpath index are initialized under a lock, the
+ *  <code>web.xml</code> DOM is fully expanded at construction, and each thread
+ *  gets its own compiled XPath expressions.
  */
 public class WarMachineImpl
 implements WarMachine
@@ -72,10 +82,12 @@ implements WarMachine
 
     private Logger logger = Logger.getLogger(getClass());
 
-    private JarFile mappedWar;
+    private WarArchive archive;
     private Document webXml;
     private List<ServletMapping> servletMappings;
+    private List<FilterMapping> filterMappings;
     private TreeMap<String,String> filesOnClasspath;
+    private ParsedClassCache classCache;
 
     private XPathWrapperFactory xpathFact;
 
@@ -88,24 +100,94 @@ implements WarMachine
      */
     public WarMachineImpl(File warFile)
     {
-        openFile(warFile);
+        try
+        {
+            logger.debug("opening file: " + warFile);
+            archive = WarArchive.open(warFile);
+        }
+        catch (Exception ex)
+        {
+            throw new IllegalArgumentException("unable to open: " + warFile, ex);
+        }
 
         // if the file doesn't have web.xml, it's not a war, so fail fast
-        parseWebXml();
+        parseWebXmlOrClose();
     }
 
-    // the following methods are called by the ctor; broken out for readability
 
-    private void openFile(File warFile)
+    /**
+     *  Reads a WAR from memory, without writing it to a file. The WAR's bytes are
+     *  copied, and its entries are inflated as they're read.
+     *
+     *  @throws IllegalArgumentException if the content doesn't appear to be a WAR.
+     */
+    public WarMachineImpl(byte[] warContent)
+    {
+        this(ByteBuffer.wrap(warContent));
+    }
+
+
+    /**
+     *  Reads a WAR from the buffer's remaining bytes (without changing its position).
+     *
+     *  @throws IllegalArgumentException if the content doesn't appear to be a WAR.
+     */
+    public WarMachineImpl(ByteBuffer warContent)
     {
         try
         {
-            logger.debug("opening file: " + warFile);
-            mappedWar = new JarFile(warFile);
+            logger.debug("reading WAR from memory: " + warContent.remaining() + " bytes");
+            archive = WarArchive.read(warContent);
         }
         catch (Exception ex)
         {
-            throw new IllegalArgumentException("unable to open: " + mappedWar, ex);
+            throw new IllegalArgumentException("unable to read WAR", ex);
+        }
+
+        parseWebXmlOrClose();
+    }
+
+    // the following methods are called by the ctor; broken out for readability
+
+
+    /**
+     *  The caller never sees an instance that fails construction, so can't close
+     *  it; we release the archive before propagating the failure.
+     */
+    private void parseWebXmlOrClose()
+    {
+        boolean success = false;
+        try
+        {
+            parseWebXml();
+            success = true;
+        }
+        finally
+        {
+            if (!success)
+                IOUtil.closeQuietly(archive);
+        }
+    }
+
+
+    /**
+     *  The JDK's parser builds a "deferred" DOM, in which nodes are created when
+     *  first accessed. That isn't safe for concurrent readers, so we touch every
+     *  node (and its data) once, before the DOM is shared.
+     */
+    private static void expandDom(Node node)
+    {
+        node.getNodeValue();
+        node.getNamespaceURI();
+        NamedNodeMap attrs = node.getAttributes();
+        if (attrs != null)
+        {
+            for (int ii = 0 ; ii < attrs.getLength() ; ii++)
+                expandDom(attrs.item(ii));
+        }
+        for (Node child = node.getFirstChild() ; child != null ; child = child.getNextSibling())
+        {
+            expandDom(child);
         }
     }
 
@@ -116,15 +198,16 @@ implements WarMachine
         try
         {
             logger.debug("looking for web.xml");
-            JarEntry entry = mappedWar.getJarEntry("WEB-INF/web.xml");
+            ZipEntry entry = archive.getEntry("WEB-INF/web.xml");
             if (entry == null)
             {
                 throw new IllegalArgumentException("missing web.xml");
             }
 
             logger.debug("parsing web.xml");
-            entryStream = mappedWar.getInputStream(entry);
+            entryStream = archive.getInputStream(entry);
             webXml = ParseUtil.parse(new InputSource(entryStream));
+            expandDom(webXml);
             Element root = webXml.getDocumentElement();
 
             String rootLocalName = DomUtil.getLocalName(root);
@@ -137,12 +220,12 @@ implements WarMachine
             String rootNamespaceUri = root.getNamespaceURI();
             if (NS_SERVLET_24.equals(rootNamespaceUri))
             {
-                xpathFact = new XPathWrapperFactory(CacheType.SIMPLE)
+                xpathFact = new XPathWrapperFactory(CacheType.THREADSAFE)
                                 .bindNamespace("j2ee", NS_SERVLET_24);
             }
             else if (NS_SERVLET_25.equals(rootNamespaceUri))
             {
-                xpathFact = new XPathWrapperFactory(CacheType.SIMPLE)
+                xpathFact = new XPathWrapperFactory(CacheType.THREADSAFE)
                                 .bindNamespace("j2ee", NS_SERVLET_25);
             }
             else
@@ -183,7 +266,7 @@ implements WarMachine
 
 
     @Override
-    public List<ServletMapping> getServletMappings()
+    public synchronized List<ServletMapping> getServletMappings()
     {
         if (servletMappings == null)
             parseServletMappings();
@@ -192,13 +275,67 @@ implements WarMachine
     }
 
 
+    @Override
+    public synchronized List<FilterMapping> getFilterMappings()
+    {
+        if (filterMappings == null)
+            parseFilterMappings();
+
+        return Collections.unmodifiableList(filterMappings);
+    }
+
+
+    @Override
+    public String getContentDigest(String excludedPrefix)
+    {
+        try
+        {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            for (Map.Entry<String,String> entry : getEntrySignatures(excludedPrefix).entrySet())
+            {
+                digest.update(entry.getKey().getBytes("UTF-8"));
+                digest.update((byte)0);
+                digest.update(entry.getValue().getBytes("UTF-8"));
+                digest.update((byte)0);
+            }
+
+            StringBuilder sb = new StringBuilder(40);
+            for (byte b : digest.digest())
+            {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16))
+                  .append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.toString();
+        }
+        catch (Exception ex)
+        {
+            throw new IllegalStateException("unable to compute content digest", ex);
+        }
+    }
+
+
+    @Override
+    public SortedMap<String,String> getEntrySignatures(String excludedPrefix)
+    {
+        // each entry's size and CRC come from the central directory, for both file
+        // and in-memory WARs, so the entries aren't read
+        TreeMap<String,String> result = new TreeMap<String,String>();
+        for (ZipEntry entry : archive.entries())
+        {
+            String name = entry.getName();
+            if (!name.endsWith("/") && !name.startsWith(excludedPrefix))
+                result.put(name, entry.getSize() + ":" + entry.getCrc());
+        }
+        return result;
+    }
+
+
     @Override
     public List<String> getAllFiles()
     {
-        List<String> result = new ArrayList<String>(mappedWar.size());
-        for (Enumeration<JarEntry> itx = mappedWar.entries() ; itx.hasMoreElements() ; )
+        List<String> result = new ArrayList<String>(archive.entries().size());
+        for (ZipEntry entry : archive.entries())
         {
-            JarEntry entry = itx.nextElement();
             String filename = entry.getName();
             if (! filename.endsWith("/"))
                 result.add("/" + filename);
@@ -210,10 +347,16 @@ implements WarMachine
     @Override
     public List<String> getPublicFiles()
     {
-        List<String> filenames = getAllFiles();
-        filenames = CollectionUtil.filter(filenames, "/WEB-INF.*", false);
-        filenames = CollectionUtil.filter(filenames, "/META-INF.*", false);
-        return filenames;
+        // a single pass over the entry index, rather than regex-filtering a copy of
+        // it twice; this matters for WARs with many thousands of static files
+        List<String> result = new ArrayList<String>(archive.entries().size());
+        for (ZipEntry entry : archive.entries())
+        {
+            String filename = entry.getName();
+            if (!filename.endsWith("/") && !filename.startsWith("WEB-INF") && !filename.startsWith("META-INF"))
+                result.add("/" + filename);
+        }
+        return result;
     }
 
 
@@ -274,11 +417,11 @@ implements WarMachine
             return null;
 
         filename = filename.substring(1);
-        JarEntry entry = mappedWar.getJarEntry(filename);
+        ZipEntry entry = archive.getEntry(filename);
         if (entry == null)
             return null;
 
-        return mappedWar.getInputStream(entry);
+        return archive.getInputStream(entry);
     }
 
 
@@ -325,9 +468,24 @@ implements WarMachine
         try
         {
             in = openClasspathFile(filename);
-            return (in == null)
-                 ? null
-                 : new ClassParser(in, classname).parse();
+            if (in == null)
+                return null;
+
+            if (classCache == null)
+                return new ClassParser(in, classname).parse();
+
+            // the key hashes the classfile, so we read it before parsing
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            IOUtil.copy(in, bos);
+            byte[] content = bos.toByteArray();
+            String cacheKey = ParsedClassCache.key(filename, content);
+            JavaClass klass = classCache.get(cacheKey);
+            if (klass == null)
+            {
+                klass = new ClassParser(new ByteArrayInputStream(content), classname).parse();
+                classCache.put(cacheKey, klass);
+            }
+            return klass;
         }
         catch (IOException ex)
         {
@@ -340,6 +498,30 @@ implements WarMachine
     }
 
 
+    @Override
+    public void close()
+    throws IOException
+    {
+        archive.close();
+    }
+
+
+//----------------------------------------------------------------------------
+//  Other public methods
+//----------------------------------------------------------------------------
+
+
+    /**
+     *  Sets a cache for parsed classes, which may be shared with other instances
+     *  (eg, successive versions of the same WAR). By default, classes are parsed
+     *  every time they're loaded.
+     */
+    public void setClassCache(ParsedClassCache classCache)
+    {
+        this.classCache = classCache;
+    }
+
+
 //----------------------------------------------------------------------------
 //  Internals
 //----------------------------------------------------------------------------
@@ -377,7 +559,65 @@ implements WarMachine
     }
 
 
-    private void lazyBuildClasspath()
+    private void parseFilterMappings()
+    {
+        filterMappings = new ArrayList<FilterMapping>();
+
+        Map<String,Element> filterLookup = new HashMap<String,Element>();
+        List<Element> filters = xpathFact.newXPath("/j2ee:web-app/j2ee:filter").evaluate(webXml, Element.class);
+        logger.debug("found " + filters.size() + " <filter> entries");
+        for (Element filter : filters)
+        {
+            String filterName = xpathFact.newXPath("j2ee:filter-name").evaluateAsString(filter);
+            filterLookup.put(filterName, filter);
+        }
+
+        List<Element> mappings = xpathFact.newXPath("/j2ee:web-app/j2ee:filter-mapping").evaluate(webXml, Element.class);
+        logger.debug("found " + mappings.size() + " <filter-mapping> entries");
+        for (Element mapping : mappings)
+        {
+            String filterName = xpathFact.newXPath("j2ee:filter-name").evaluateAsString(mapping);
+            Element filter = filterLookup.get(filterName);
+            if (filter == null)
+            {
+                logger.warn("<filter-mapping> \"" + filterName + "\""
+                            + " does not have <filter> entry; skipping");
+                continue;
+            }
+
+            Set<Dispatcher> dispatchers = EnumSet.noneOf(Dispatcher.class);
+            for (Element dispatcher : xpathFact.newXPath("j2ee:dispatcher").evaluate(mapping, Element.class))
+            {
+                String value = DomUtil.getText(dispatcher).trim();
+                try
+                {
+                    dispatchers.add(Dispatcher.valueOf(value));
+                }
+                catch (IllegalArgumentException ex)
+                {
+                    logger.warn("<filter-mapping> \"" + filterName + "\""
+                                + " has invalid dispatcher \"" + value + "\"; ignoring");
+                }
+            }
+            if (dispatchers.isEmpty())
+                dispatchers.add(Dispatcher.REQUEST);
+
+            // servlet 2.5 allows multiple patterns and names in a single mapping
+            for (Element pattern : xpathFact.newXPath("j2ee:url-pattern").evaluate(mapping, Element.class))
+            {
+                String urlPattern = DomUtil.getText(pattern).trim();
+                filterMappings.add(new FilterMappingImpl(filter, urlPattern, null, dispatchers));
+            }
+            for (Element servlet : xpathFact.newXPath("j2ee:servlet-name").evaluate(mapping, Element.class))
+            {
+                String servletName = DomUtil.getText(servlet).trim();
+                filterMappings.add(new FilterMappingImpl(filter, null, servletName, dispatchers));
+            }
+        }
+    }
+
+
+    private synchronized void lazyBuildClasspath()
     {
         if (filesOnClasspath != null)
             return;
@@ -406,9 +646,22 @@ implements WarMachine
             return;
         }
 
+        // identical JARs in different WARs share their file list
         InputStream in = null;
         try
         {
+            in = openFile(filename);
+            String cacheKey = ArchiveIndexCache.key(filename, in);
+            in.close();
+            List<String> files = ArchiveIndexCache.getShared().get(cacheKey);
+            if (files != null)
+            {
+                for (String file : files)
+                    addFileToClasspath(file, filename);
+                return;
+            }
+
+            files = new ArrayList<String>();
             in = openFile(filename);
             JarInputStream jis = new JarInputStream(in);
             ZipEntry entry = null;
@@ -417,8 +670,10 @@ implements WarMachine
                 String name = entry.getName();
                 if (name.endsWith("/"))
                     continue;
+                files.add(name);
                 addFileToClasspath(entry.getName(), filename);
             }
+            ArchiveIndexCache.getShared().put(cacheKey, Collections.unmodifiableList(files));
         }
         catch (Exception ex)
         {
@@ -502,4 +757,75 @@ implements WarMachine
             return getUrlPattern().compareTo(that.getUrlPattern());
         }
     }
+
+
+    private class FilterMappingImpl
+    implements FilterMapping
+    {
+        private String filterName;
+        private String filterClass;
+        private String urlPattern;
+        private String servletName;
+        private Set<Dispatcher> dispatchers;
+        private Map<String,String> initParams = new HashMap<String,String>();
+
+        public FilterMappingImpl(Element filter, String urlPattern, String servletName, Set<Dispatcher> dispatchers)
+        {
+            this.filterName = xpathFact.newXPath("j2ee:filter-name").evaluateAsString(filter);
+            this.filterClass = xpathFact.newXPath("j2ee:filter-class").evaluateAsString(filter);
+            this.urlPattern = urlPattern;
+            this.servletName = servletName;
+            this.dispatchers = Collections.unmodifiableSet(dispatchers);
+
+            List<Element> params = xpathFact.newXPath("j2ee:init-param").evaluate(filter, Element.class);
+            for (Element param : params)
+            {
+                String paramName = xpathFact.newXPath("j2ee:param-name").evaluateAsString(param);
+                String paramValue = xpathFact.newXPath("j2ee:param-value").evaluateAsString(param);
+                initParams.put(paramName, paramValue);
+            }
+        }
+
+        @Override
+        public String getFilterName()
+        {
+            return filterName;
+        }
+
+        @Override
+        public String getFilterClass()
+        {
+            return filterClass;
+        }
+
+        @Override
+        public String getUrlPattern()
+        {
+            return urlPattern;
+        }
+
+        @Override
+        public String getServletName()
+        {
+            return servletName;
+        }
+
+        @Override
+        public Set<Dispatcher> getDispatchers()
+        {
+            return dispatchers;
+        }
+
+        @Override
+        public Map<String,String> getInitParams()
+        {
+            return Collections.unmodifiableMap(initParams);
+        }
+
+        @Override
+        public String toString()
+        {
+            return filterName;
+        }
+    }
 }
@@ -0,0 +1,643 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.log4j.Logger;
+
+import net.sf.kdgcommons.io.IOUtil;
+
+import com.kdgregory.pathfinder.core.Destination;
+import com.kdgregory.pathfinder.core.HttpMethod;
+import com.kdgregory.pathfinder.core.PathRepo;
+
+
+/**
+ *  Attributes the requests in an access log to the routes of a populated
+ *  {@link PathRepo}, counting hits per route and per destination, and finding
+ *  routes that were never requested.
+ *  <p>
+ *  Logs are in the Common or Combined Log Format; only the quoted request line
+ *  (<code>"GET /foo/bar?baz HTTP/1.1"</code>) is examined. Each request's path
+ *  must start with the web-app's context path, which is removed before the path
+ *  is resolved using {@link RequestResolver}. <code>HEAD</code> requests are
+ *  attributed to the route that handles <code>GET</code>; requests with other
+ *  methods that the repository doesn't track (eg, <code>OPTIONS</code>) are
+ *  counted but not attributed.
+ *  <p>
+ *  Logs are processed in bounded memory, regardless of size: the calling thread
+ *  reads lines into fixed-size chunks, and passes those chunks to a pool of worker
+ *  threads via a bounded queue. Each worker keeps its own counters, which are
+ *  combined when the log has been read. The counters are indexed by route, so
+ *  their size depends on the repository, not the log.
+ *  <p>
+ *  Instances may be used to attribute multiple logs, but are not intended for
+ *  use by concurrent threads.
+ */
+public class AccessLogAttributor
+{
+    private Logger logger = Logger.getLogger(getClass());
+
+    private final static int CHUNK_SIZE = 4096;
+    private final static int METHOD_COUNT = HttpMethod.values().length;
+
+    private RequestResolver resolver;
+    private String contextPath;
+    private int threadCount;
+
+    // counters are indexed by (url index * METHOD_COUNT + method ordinal); a route
+    // that responds to all methods only uses the slot for ALL
+    private Map<String,Integer> urlIndexes = new HashMap<String,Integer>();
+    private String[] urls;
+    private Destination[] destinations;
+
+
+    /**
+     *  Creates an instance that uses one worker thread per processor.
+     *
+     *  @param  repo        The routes. Changes to the repository after this
+     *                      constructor returns are not reflected.
+     *  @param  contextPath The web-app's context path (eg, "/myapp"), or an
+     *                      empty string for the root context.
+     */
+    public AccessLogAttributor(PathRepo repo, String contextPath)
+    {
+        this(repo, contextPath, Runtime.getRuntime().availableProcessors());
+    }
+
+
+    public AccessLogAttributor(PathRepo repo, String contextPath, int threadCount)
+    {
+        if (threadCount < 1)
+            throw new IllegalArgumentException("thread count must be positive: " + threadCount);
+
+        this.resolver = new RequestResolver(repo);
+        this.contextPath = normalizeContextPath(contextPath);
+        this.threadCount = threadCount;
+
+        urls = new String[repo.urlCount()];
+        destinations = new Destination[urls.length * METHOD_COUNT];
+        int urlIdx = 0;
+        for (String url : repo)
+        {
+            urls[urlIdx] = url;
+            urlIndexes.put(url, Integer.valueOf(urlIdx));
+            for (Map.Entry<HttpMethod,Destination> entry : repo.get(url).entrySet())
+            {
+                destinations[urlIdx * METHOD_COUNT + entry.getKey().ordinal()] = entry.getValue();
+            }
+            urlIdx++;
+        }
+    }
+
+
+//----------------------------------------------------------------------------
+//  Public Methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Opens a log file for reading. If the file starts with the gzip "magic
+     *  number" it's decompressed, regardless of its name.
+     */
+    public static InputStream open(File file)
+    throws IOException
+    {
+        InputStream in = new BufferedInputStream(new FileInputStream(file), 65536);
+        try
+        {
+            in.mark(2);
+            int b0 = in.read();
+            int b1 = in.read();
+            in.reset();
+            return ((b0 == 0x1F) && (b1 == 0x8B))
+                 ? new GZIPInputStream(in, 65536)
+                 : in;
+        }
+        catch (IOException ex)
+        {
+            IOUtil.closeQuietly(in);
+            throw ex;
+        }
+    }
+
+
+    /**
+     *  Attributes the requests in one or more log files, which may be gzipped.
+     *  The counts are combined across all files.
+     */
+    public Result attribute(File... files)
+    throws IOException
+    {
+        Run run = new Run();
+        try
+        {
+            for (File file : files)
+            {
+                logger.debug("reading " + file);
+                InputStream in = open(file);
+                try
+                {
+                    run.read(in);
+                }
+                finally
+                {
+                    IOUtil.closeQuietly(in);
+                }
+            }
+            return run.finish();
+        }
+        finally
+        {
+            run.shutdown();
+        }
+    }
+
+
+    /**
+     *  Attributes the requests in an uncompressed log stream. The caller is
+     *  responsible for closing the stream.
+     */
+    public Result attribute(InputStream in)
+    throws IOException
+    {
+        Run run = new Run();
+        try
+        {
+            run.read(in);
+            return run.finish();
+        }
+        finally
+        {
+            run.shutdown();
+        }
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    private static String normalizeContextPath(String value)
+    {
+        if ((value == null) || value.equals("/"))
+            return "";
+        if (!value.startsWith("/"))
+            value = "/" + value;
+        while (value.endsWith("/"))
+            value = value.substring(0, value.length() - 1);
+        return value;
+    }
+
+
+    /**
+     *  Orchestrates a single call to <code>attribute()</code>.
+     */
+    private class Run
+    {
+        private BlockingQueue<String[]> queue = new ArrayBlockingQueue<String[]>(threadCount * 2);
+        private ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        private List<Worker> workers = new ArrayList<Worker>();
+        private List<Future<?>> futures = new ArrayList<Future<?>>();
+
+        public Run()
+        {
+            for (int ii = 0 ; ii < threadCount ; ii++)
+            {
+                Worker worker = new Worker(queue);
+                workers.add(worker);
+                futures.add(executor.submit(worker));
+            }
+        }
+
+        public void read(InputStream in)
+        throws IOException
+        {
+            // the request line is ASCII (the path is URL-encoded), so we use a charset
+            // where every byte is a valid character, whatever the rest of the line holds
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, "ISO-8859-1"), 65536);
+            String[] chunk = new String[CHUNK_SIZE];
+            int count = 0;
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                chunk[count++] = line;
+                if (count == CHUNK_SIZE)
+                {
+                    put(chunk);
+                    chunk = new String[CHUNK_SIZE];
+                    count = 0;
+                }
+            }
+            if (count > 0)
+            {
+                String[] partial = new String[count];
+                System.arraycopy(chunk, 0, partial, 0, count);
+                put(partial);
+            }
+        }
+
+        public Result finish()
+        throws IOException
+        {
+            for (int ii = 0 ; ii < threadCount ; ii++)
+                put(new String[0]);
+
+            for (Future<?> future : futures)
+                waitFor(future);
+
+            Result result = new Result();
+            long[] counts = new long[destinations.length];
+            for (Worker worker : workers)
+            {
+                for (int ii = 0 ; ii < counts.length ; ii++)
+                    counts[ii] += worker.counts[ii];
+                result.lineCount += worker.lineCount;
+                result.malformedCount += worker.malformedCount;
+                result.outsideContextCount += worker.outsideContextCount;
+                result.unsupportedMethodCount += worker.unsupportedMethodCount;
+                result.unmatchedCount += worker.unmatchedCount;
+            }
+            result.build(counts);
+            return result;
+        }
+
+        public void shutdown()
+        {
+            executor.shutdownNow();
+        }
+
+        /**
+         *  Adds a chunk to the queue, blocking while the queue is full. If a worker
+         *  has died, nobody will drain the queue, so we periodically check.
+         */
+        private void put(String[] chunk)
+        throws IOException
+        {
+            try
+            {
+                while (!queue.offer(chunk, 100, TimeUnit.MILLISECONDS))
+                {
+                    for (Future<?> future : futures)
+                    {
+                        if (future.isDone())
+                            waitFor(future);
+                    }
+                }
+            }
+            catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+                throw new IOException("interrupted while reading log");
+            }
+        }
+
+        private void waitFor(Future<?> future)
+        throws IOException
+        {
+            try
+            {
+                future.get();
+            }
+            catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+                throw new IOException("interrupted while reading log");
+            }
+            catch (ExecutionException ex)
+            {
+                Throwable cause = ex.getCause();
+                if (cause instanceof RuntimeException)
+                    throw (RuntimeException)cause;
+                throw new IllegalStateException("worker failed", cause);
+            }
+        }
+    }
+
+
+    /**
+     *  Parses and attributes chunks of lines until it receives an empty chunk.
+     */
+    private class Worker
+    implements Runnable
+    {
+        private BlockingQueue<String[]> queue;
+
+        public long[] counts = new long[destinations.length];
+        public long lineCount;
+        public long malformedCount;
+        public long outsideContextCount;
+        public long unsupportedMethodCount;
+        public long unmatchedCount;
+
+        public Worker(BlockingQueue<String[]> queue)
+        {
+            this.queue = queue;
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                while (true)
+                {
+                    String[] chunk = queue.take();
+                    if (chunk.length == 0)
+                        return;
+                    for (String line : chunk)
+                        process(line);
+                }
+            }
+            catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void process(String line)
+        {
+            lineCount++;
+
+            int requestStart = line.indexOf('"');
+            int requestEnd = (requestStart < 0) ? -1 : line.indexOf('"', requestStart + 1);
+            int methodEnd = (requestEnd < 0) ? -1 : line.indexOf(' ', requestStart + 1);
+            if ((methodEnd < 0) || (methodEnd > requestEnd))
+            {
+                malformedCount++;
+                return;
+            }
+
+            // HTTP/0.9 requests don't have a protocol
+            int uriStart = methodEnd + 1;
+            int uriEnd = line.lastIndexOf(' ', requestEnd - 1);
+            if (uriEnd < uriStart)
+                uriEnd = requestEnd;
+
+            // some clients send an absolute URI
+            if (line.startsWith("http://", uriStart) || line.startsWith("https://", uriStart))
+            {
+                int pathStart = line.indexOf('/', line.indexOf("//", uriStart) + 2);
+                uriStart = ((pathStart < 0) || (pathStart > uriEnd)) ? uriEnd : pathStart;
+            }
+
+            int ctxLen = contextPath.length();
+            if ((ctxLen > 0) && !isInContext(line, uriStart, uriEnd))
+            {
+                outsideContextCount++;
+                return;
+            }
+            uriStart += ctxLen;
+
+            HttpMethod method = parseMethod(line, requestStart + 1, methodEnd);
+            if (method == null)
+            {
+                unsupportedMethodCount++;
+                return;
+            }
+
+            String path = (uriStart == uriEnd) || (line.charAt(uriStart) != '/')
+                        ? "/" + line.substring(uriStart, uriEnd)
+                        : line.substring(uriStart, uriEnd);
+            String url = resolver.resolvePattern(path, method);
+            if (url == null)
+            {
+                unmatchedCount++;
+                return;
+            }
+
+            int base = urlIndexes.get(url).intValue() * METHOD_COUNT;
+            int slot = (destinations[base + method.ordinal()] != null)
+                     ? base + method.ordinal()
+                     : base + HttpMethod.ALL.ordinal();
+            counts[slot]++;
+        }
+
+        private boolean isInContext(String line, int uriStart, int uriEnd)
+        {
+            int ctxLen = contextPath.length();
+            if ((uriEnd - uriStart < ctxLen) || !line.startsWith(contextPath, uriStart))
+                return false;
+
+            int next = uriStart + ctxLen;
+            if (next == uriEnd)
+                return true;
+
+            char c = line.charAt(next);
+            return (c == '/') || (c == '?') || (c == ';') || (c == '#');
+        }
+
+        private HttpMethod parseMethod(String line, int start, int end)
+        {
+            int len = end - start;
+            if ((len == 3) && line.startsWith("GET", start))
+                return HttpMethod.GET;
+            if ((len == 4) && line.startsWith("POST", start))
+                return HttpMethod.POST;
+            if ((len == 3) && line.startsWith("PUT", start))
+                return HttpMethod.PUT;
+            if ((len == 6) && line.startsWith("DELETE", start))
+                return HttpMethod.DELETE;
+            if ((len == 4) && line.startsWith("HEAD", start))
+                return HttpMethod.GET;
+            return null;
+        }
+    }
+
+
+//----------------------------------------------------------------------------
+//  Supporting classes
+//----------------------------------------------------------------------------
+
+    /**
+     *  The hits for a single repository URL and method.
+     */
+    public static class RouteHits
+    {
+        private String url;
+        private HttpMethod method;
+        private Destination destination;
+        private long count;
+
+        public RouteHits(String url, HttpMethod method, Destination destination, long count)
+        {
+            this.url = url;
+            this.method = method;
+            this.destination = destination;
+            this.count = count;
+        }
+
+        public String getUrl()
+        {
+            return url;
+        }
+
+        public HttpMethod getMethod()
+        {
+            return method;
+        }
+
+        public Destination getDestination()
+        {
+            return destination;
+        }
+
+        public long getCount()
+        {
+            return count;
+        }
+
+        @Override
+        public String toString()
+        {
+            return url + " " + method + " " + count;
+        }
+    }
+
+
+    /**
+     *  The result of attributing one or more logs. Every line is counted in
+     *  exactly one of the categories: malformed, outside the context, unsupported
+     *  method, unmatched, or attributed to a route.
+     */
+    public class Result
+    {
+        private long lineCount;
+        private long malformedCount;
+        private long outsideContextCount;
+        private long unsupportedMethodCount;
+        private long unmatchedCount;
+        private List<RouteHits> routes = new ArrayList<RouteHits>();
+        private Map<Destination,Long> destinationCounts = new LinkedHashMap<Destination,Long>();
+
+        private void build(long[] counts)
+        {
+            final Map<Destination,Long> byDest = new IdentityHashMap<Destination,Long>();
+            for (int ii = 0 ; ii < counts.length ; ii++)
+            {
+                Destination dest = destinations[ii];
+                if (dest == null)
+                    continue;
+
+                HttpMethod method = HttpMethod.values()[ii % METHOD_COUNT];
+                routes.add(new RouteHits(urls[ii / METHOD_COUNT], method, dest, counts[ii]));
+
+                Long prev = byDest.get(dest);
+                byDest.put(dest, Long.valueOf(counts[ii] + ((prev == null) ? 0 : prev.longValue())));
+            }
+
+            List<Destination> sorted = new ArrayList<Destination>(byDest.keySet());
+            Collections.sort(sorted, new Comparator<Destination>()
+            {
+                @Override
+                public int compare(Destination d1, Destination d2)
+                {
+                    int cmp = byDest.get(d2).compareTo(byDest.get(d1));
+                    return (cmp != 0) ? cmp : String.valueOf(d1).compareTo(String.valueOf(d2));
+                }
+            });
+            for (Destination dest : sorted)
+                destinationCounts.put(dest, byDest.get(dest));
+        }
+
+        public long getLineCount()
+        {
+            return lineCount;
+        }
+
+        public long getMalformedCount()
+        {
+            return malformedCount;
+        }
+
+        public long getOutsideContextCount()
+        {
+            return outsideContextCount;
+        }
+
+        public long getUnsupportedMethodCount()
+        {
+            return unsupportedMethodCount;
+        }
+
+        public long getUnmatchedCount()
+        {
+            return unmatchedCount;
+        }
+
+        /**
+         *  Returns the number of lines that were attributed to a route.
+         */
+        public long getAttributedCount()
+        {
+            return lineCount - malformedCount - outsideContextCount - unsupportedMethodCount - unmatchedCount;
+        }
+
+        /**
+         *  Returns every route in the repository, in repository order, with its
+         *  hit count (which may be 0).
+         */
+        public List<RouteHits> getRoutes()
+        {
+            return Collections.unmodifiableList(routes);
+        }
+
+        /**
+         *  Returns the routes that were never requested, in repository order.
+         */
+        public List<RouteHits> getUnusedRoutes()
+        {
+            List<RouteHits> result = new ArrayList<RouteHits>();
+            for (RouteHits route : routes)
+            {
+                if (route.getCount() == 0)
+                    result.add(route);
+            }
+            return result;
+        }
+
+        /**
+         *  Returns the total hits for each destination, in descending order of
+         *  hits. A destination that's reachable from several routes is counted
+         *  once, with the sum of those routes' hits.
+         */
+        public Map<Destination,Long> getDestinationCounts()
+        {
+            return Collections.unmodifiableMap(destinationCounts);
+        }
+    }
+}
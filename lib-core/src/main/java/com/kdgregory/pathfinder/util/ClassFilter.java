@@ -0,0 +1,229 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import net.sf.kdgcommons.lang.StringUtil;
+
+
+/**
+ *  Describes a filter that selects classes during a classpath scan. The filter
+ *  types are those supported by Spring's component scan (other than "custom").
+ *  <p>
+ *  Instances are simply descriptions, validated at construction; they're applied
+ *  by {@link ClasspathScanner}, which compiles all of its filters into a combined
+ *  matcher. Filters that only need the classname are applied before the class is
+ *  loaded; the others require that the class be parsed.
+ */
+public class ClassFilter
+{
+    public enum FilterType
+    {
+        /**
+         *  Matches classes that are directly annotated with the named annotation.
+         */
+        ANNOTATION,
+
+        /**
+         *  Matches the named class and any class that extends or implements it.
+         */
+        ASSIGNABLE,
+
+        /**
+         *  Matches classnames against a regular expression.
+         */
+        REGEX,
+
+        /**
+         *  Matches classnames against an AspectJ type pattern: "*" matches any
+         *  part of a name, ".." matches any number of packages, and a trailing
+         *  "+" matches subtypes. Alternatives may be combined with "||"; other
+         *  AspectJ operators are not supported.
+         */
+        ASPECTJ
+    }
+
+
+//----------------------------------------------------------------------------
+//  Instance Variables and Constructor
+//----------------------------------------------------------------------------
+
+    private FilterType type;
+    private String expression;
+
+    private List<String> nameRegexes = new ArrayList<String>();
+    private List<String> subtypeRegexes = new ArrayList<String>();
+
+
+    /**
+     *  Creates an instance.
+     *
+     *  @throws IllegalArgumentException if the expression is not valid for the
+     *          filter type.
+     */
+    public ClassFilter(FilterType type, String expression)
+    {
+        if (type == null)
+            throw new IllegalArgumentException("missing filter type");
+        if (StringUtil.isBlank(expression))
+            throw new IllegalArgumentException("missing expression for " + type + " filter");
+
+        this.type = type;
+        this.expression = expression.trim();
+
+        switch (type)
+        {
+            case REGEX :
+                nameRegexes.add(validateRegex(this.expression));
+                break;
+            case ASPECTJ :
+                compileAspectJ(this.expression);
+                break;
+            default :
+                // nothing to precompute
+        }
+    }
+
+
+//----------------------------------------------------------------------------
+//  Public Methods
+//----------------------------------------------------------------------------
+
+    public FilterType getType()
+    {
+        return type;
+    }
+
+
+    public String getExpression()
+    {
+        return expression;
+    }
+
+
+    /**
+     *  Returns <code>true</code> if this filter can be applied using only the
+     *  classname, <code>false</code> if it requires the parsed class.
+     */
+    public boolean isNameFilter()
+    {
+        return ((type == FilterType.REGEX) || (type == FilterType.ASPECTJ))
+            && subtypeRegexes.isEmpty();
+    }
+
+
+    @Override
+    public String toString()
+    {
+        return type + "[" + expression + "]";
+    }
+
+
+//----------------------------------------------------------------------------
+//  Package-private methods for ClasspathScanner
+//----------------------------------------------------------------------------
+
+    /**
+     *  Returns the regular expressions that must match the class name; empty
+     *  for filters that don't match names.
+     */
+    List<String> getNameRegexes()
+    {
+        return nameRegexes;
+    }
+
+
+    /**
+     *  Returns regular expressions that must match the name of the class or
+     *  one of its supertypes; empty for filters that don't match supertypes.
+     */
+    List<String> getSubtypeRegexes()
+    {
+        return subtypeRegexes;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    private static String validateRegex(String regex)
+    {
+        try
+        {
+            Pattern.compile(regex);
+            return regex;
+        }
+        catch (PatternSyntaxException ex)
+        {
+            throw new IllegalArgumentException("invalid regex: " + regex, ex);
+        }
+    }
+
+
+    private void compileAspectJ(String pattern)
+    {
+        for (String alternative : pattern.split("\\|\\|"))
+        {
+            alternative = alternative.trim();
+            if (alternative.endsWith("+"))
+            {
+                String base = alternative.substring(0, alternative.length() - 1);
+                subtypeRegexes.add(aspectjToRegex(base, pattern));
+            }
+            else
+            {
+                nameRegexes.add(aspectjToRegex(alternative, pattern));
+            }
+        }
+    }
+
+
+    private static String aspectjToRegex(String namePattern, String fullPattern)
+    {
+        if (namePattern.length() == 0)
+            throw new IllegalArgumentException("invalid AspectJ type pattern: " + fullPattern);
+
+        StringBuilder sb = new StringBuilder(namePattern.length() * 2);
+        int idx = 0;
+        while (idx < namePattern.length())
+        {
+            char c = namePattern.charAt(idx);
+            if (namePattern.startsWith("..", idx))
+            {
+                sb.append("\\.(?:[^.]+\\.)*");
+                idx += 2;
+                continue;
+            }
+
+            if (c == '*')
+                sb.append("[^.]*");
+            else if (c == '.')
+                sb.append("\\.");
+            else if (c == '$')
+                sb.append("\\$");
+            else if (Character.isJavaIdentifierPart(c))
+                sb.append(c);
+            else
+                throw new IllegalArgumentException("unsupported AspectJ type pattern: " + fullPattern);
+            idx++;
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,113 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.util;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.bcel.classfile.JavaClass;
+
+import com.kdgregory.pathfinder.core.WarMachine;
+
+
+/**
+ *  Records the supertypes of classes on a WAR's classpath. Each class is loaded
+ *  at most once, so that checking the ancestry of many classes that share a base
+ *  class doesn't repeatedly load that base class.
+ *  <p>
+ *  Classes that aren't on the WAR's classpath (such as <code>java.lang.Object</code>)
+ *  are treated as having no supertypes other than themselves.
+ *  <p>
+ *  Instances are not intended for use by concurrent threads.
+ */
+public class ClassHierarchy
+{
+    private WarMachine war;
+    private Map<String,Set<String>> supertypes = new HashMap<String,Set<String>>();
+
+
+    public ClassHierarchy(WarMachine war)
+    {
+        this.war = war;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Public Methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Returns the names of the passed class and all of its superclasses and
+     *  interfaces. The returned set is unmodifiable.
+     */
+    public Set<String> getSupertypes(String className)
+    {
+        Set<String> result = supertypes.get(className);
+        if (result != null)
+            return result;
+
+        JavaClass klass = className.startsWith("java.") ? null : war.loadClass(className);
+        return (klass == null)
+             ? remember(className, Collections.singleton(className))
+             : getSupertypes(klass);
+    }
+
+
+    /**
+     *  Returns the names of the passed class and all of its superclasses and
+     *  interfaces. This variant is used for classes that have already been
+     *  loaded; their ancestors are loaded as needed.
+     */
+    public Set<String> getSupertypes(JavaClass klass)
+    {
+        String className = klass.getClassName();
+        Set<String> result = supertypes.get(className);
+        if (result != null)
+            return result;
+
+        result = new HashSet<String>();
+        result.add(className);
+        if (!klass.isInterface())
+            result.addAll(getSupertypes(klass.getSuperclassName()));
+        for (String intf : klass.getInterfaceNames())
+            result.addAll(getSupertypes(intf));
+
+        return remember(className, Collections.unmodifiableSet(result));
+    }
+
+
+    /**
+     *  Returns the number of classes whose supertypes have been recorded.
+     *  Exposed for testing.
+     */
+    public int size()
+    {
+        return supertypes.size();
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    private Set<String> remember(String className, Set<String> value)
+    {
+        supertypes.put(className, value);
+        return value;
+    }
+}
@@ -14,14 +14,18 @@
 
 package com.kdgregory.pathfinder.util;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.regex.Pattern;
 
 import org.apache.bcel.classfile.JavaClass;
+import org.apache.log4j.Logger;
 
 import net.sf.kdgcommons.lang.StringUtil;
 
@@ -34,11 +38,24 @@ import com.kdgregory.pathfinder.core.WarMachine;
  *  This class contains the logic to scan a WAR's classpath, applying zero or
  *  more filters to the classes found there. An unconfigured instance (one
  *  without filters) returns all classes on the classpath.
+ *  <p>
+ *  A class is selected if it's in one of the base packages, is not matched by
+ *  any exclude filter, and is matched by an include filter (or an included
+ *  annotation). If there are no include filters, all non-excluded classes are
+ *  selected, unless {@link #setIncludeAllByDefault} has been called to select
+ *  none (as for a Spring component-scan without default filters). Filters that only examine the classname are applied before the
+ *  class is loaded, so excluding classes by name avoids the cost of parsing
+ *  them.
  */
 public class ClasspathScanner
 {
+    private Logger logger = Logger.getLogger(getClass());
+
     private Map<String,Boolean> basePackages;   // packageName -> recurse
     private Set<String> includedAnnotations;
+    private List<ClassFilter> includeFilters;
+    private List<ClassFilter> excludeFilters;
+    private boolean includeAllByDefault = true;
 
 //----------------------------------------------------------------------------
 //  ClasspathScanner
@@ -70,11 +87,55 @@ public class ClasspathScanner
     }
 
 
+    public ClasspathScanner addIncludeFilter(ClassFilter filter)
+    {
+        if (includeFilters == null)
+            includeFilters = new ArrayList<ClassFilter>();
+
+        includeFilters.add(filter);
+        return this;
+    }
+
+
+    public ClasspathScanner addExcludeFilter(ClassFilter filter)
+    {
+        if (excludeFilters == null)
+            excludeFilters = new ArrayList<ClassFilter>();
+
+        excludeFilters.add(filter);
+        return this;
+    }
+
+
+    /**
+     *  Determines what's selected if there are no include filters or annotations:
+     *  if <code>true</code> (the default), all classes that aren't excluded; if
+     *  <code>false</code>, nothing.
+     */
+    public ClasspathScanner setIncludeAllByDefault(boolean value)
+    {
+        includeAllByDefault = value;
+        return this;
+    }
+
+
     public Map<String,AnnotationParser> scan(WarMachine war)
     {
         // a TreeMap is easier for debugging: all scanned classes are in order
         Map<String,AnnotationParser> result = new TreeMap<String,AnnotationParser>();
 
+        CompiledFilters includes = new CompiledFilters(includedAnnotations, includeFilters);
+        CompiledFilters excludes = new CompiledFilters(null, excludeFilters);
+        if (includes.isEmpty() && !includeAllByDefault)
+        {
+            logger.debug("no include filters; nothing to scan");
+            return result;
+        }
+
+        ClassHierarchy hierarchy = (includes.needsHierarchy() || excludes.needsHierarchy())
+                                 ? new ClassHierarchy(war)
+                                 : null;
+
         for (String fileName :  war.getFilesOnClasspath())
         {
             if (! fileName.endsWith(".class"))
@@ -84,9 +145,29 @@ public class ClasspathScanner
             if (! applyBasePackageFilter(className))
                 continue;
 
+            // name-based decisions come first, so that we only load classes
+            // that have a chance of being selected
+
+            if (excludes.matchesName(className))
+            {
+                logger.debug("excluded by name: " + className);
+                continue;
+            }
+
+            boolean included = includes.isEmpty() || includes.matchesName(className);
+            if (!included && !includes.hasTypeFilters())
+                continue;
+
             JavaClass klass = war.loadClass(className);
             AnnotationParser ap = new AnnotationParser(klass);
-            if (! applyIncludedAnnotationFilter(ap))
+
+            if (excludes.hasTypeFilters() && excludes.matchesType(ap, hierarchy))
+            {
+                logger.debug("excluded by type: " + className);
+                continue;
+            }
+
+            if (!included && !includes.matchesType(ap, hierarchy))
                 continue;
 
             result.put(className, ap);
@@ -115,6 +196,22 @@ public class ClasspathScanner
     }
 
 
+    public List<ClassFilter> getIncludeFilters()
+    {
+        return (includeFilters == null)
+             ? Collections.<ClassFilter>emptyList()
+             : Collections.unmodifiableList(includeFilters);
+    }
+
+
+    public List<ClassFilter> getExcludeFilters()
+    {
+        return (excludeFilters == null)
+             ? Collections.<ClassFilter>emptyList()
+             : Collections.unmodifiableList(excludeFilters);
+    }
+
+
 //----------------------------------------------------------------------------
 //  Filters
 //----------------------------------------------------------------------------
@@ -140,18 +237,117 @@ public class ClasspathScanner
     }
 
 
-    private boolean applyIncludedAnnotationFilter(AnnotationParser ap)
+
+//----------------------------------------------------------------------------
+//  Supporting classes
+//----------------------------------------------------------------------------
+
+    /**
+     *  Combines a list of filters into a single matcher: annotation and assignable
+     *  filters become set lookups, and the regexes for names (or supertype names)
+     *  are compiled once. The regexes are applied one at a time, rather than
+     *  joined, so that each keeps its own group numbering for backreferences.
+     */
+    private static class CompiledFilters
     {
-        if (includedAnnotations == null)
-            return true;
+        private boolean isEmpty = true;
+        private Set<String> annotations = new HashSet<String>();
+        private Set<String> assignableTo = new HashSet<String>();
+        private List<Pattern> names;
+        private List<Pattern> supertypeNames;
 
-        for (Annotation anno : ap.getClassVisibleAnnotations())
+        public CompiledFilters(Set<String> annotations, List<ClassFilter> filters)
         {
-            String annoClass = anno.getClassName();
-            if (includedAnnotations.contains(annoClass))
-                return true;
+            if (annotations != null)
+                this.annotations.addAll(annotations);
+
+            List<String> nameRegexes = new ArrayList<String>();
+            List<String> supertypeRegexes = new ArrayList<String>();
+            if (filters != null)
+            {
+                for (ClassFilter filter : filters)
+                {
+                    switch (filter.getType())
+                    {
+                        case ANNOTATION :
+                            this.annotations.add(filter.getExpression());
+                            break;
+                        case ASSIGNABLE :
+                            assignableTo.add(filter.getExpression());
+                            break;
+                        default :
+                            nameRegexes.addAll(filter.getNameRegexes());
+                            supertypeRegexes.addAll(filter.getSubtypeRegexes());
+                    }
+                }
+            }
+
+            names = compile(nameRegexes);
+            supertypeNames = compile(supertypeRegexes);
+            isEmpty = this.annotations.isEmpty() && assignableTo.isEmpty()
+                   && names.isEmpty() && supertypeNames.isEmpty();
         }
 
-        return false;
+        public boolean isEmpty()
+        {
+            return isEmpty;
+        }
+
+        public boolean hasTypeFilters()
+        {
+            return !annotations.isEmpty() || needsHierarchy();
+        }
+
+        public boolean needsHierarchy()
+        {
+            return !assignableTo.isEmpty() || !supertypeNames.isEmpty();
+        }
+
+        public boolean matchesName(String className)
+        {
+            return matchesAny(names, className);
+        }
+
+        public boolean matchesType(AnnotationParser ap, ClassHierarchy hierarchy)
+        {
+            if (!annotations.isEmpty())
+            {
+                for (Annotation anno : ap.getClassVisibleAnnotations())
+                {
+                    if (annotations.contains(anno.getClassName()))
+                        return true;
+                }
+            }
+
+            if (!needsHierarchy())
+                return false;
+
+            for (String supertype : hierarchy.getSupertypes(ap.getParsedClass()))
+            {
+                if (assignableTo.contains(supertype))
+                    return true;
+                if (matchesAny(supertypeNames, supertype))
+                    return true;
+            }
+            return false;
+        }
+
+        private static List<Pattern> compile(List<String> regexes)
+        {
+            List<Pattern> result = new ArrayList<Pattern>(regexes.size());
+            for (String regex : regexes)
+                result.add(Pattern.compile(regex));
+            return result;
+        }
+
+        private static boolean matchesAny(List<Pattern> patterns, String value)
+        {
+            for (Pattern pattern : patterns)
+            {
+                if (pattern.matcher(value).matches())
+                    return true;
+            }
+            return false;
+        }
     }
 }
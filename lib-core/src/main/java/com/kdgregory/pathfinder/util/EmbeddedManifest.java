@@ -0,0 +1,209 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.log4j.Logger;
+
+import net.sf.kdgcommons.io.IOUtil;
+
+import com.kdgregory.pathfinder.core.Destination;
+import com.kdgregory.pathfinder.core.InvocationOptions;
+import com.kdgregory.pathfinder.core.PathRepo;
+import com.kdgregory.pathfinder.core.WarMachine;
+import com.kdgregory.pathfinder.core.impl.PathRepoImpl;
+
+
+/**
+ *  Reads a route manifest that was embedded in the WAR at build time, so that
+ *  the WAR's paths can be loaded without inspecting it. The manifest is a pair
+ *  of entries under <code>META-INF/pathfinder</code>:
+ *  <ul>
+ *  <li> <code>routes.properties</code>: the manifest version, the digest of the
+ *       WAR's contents when the manifest was built (see {@link
+ *       WarMachine#getContentDigest}), and the options that affect which routes
+ *       were written and how they're described.
+ *  <li> <code>routes.idx</code>: the routes, as a {@link RouteManifest}.
+ *  </ul>
+ *  A manifest is only used if the WAR's contents haven't changed since it was
+ *  built, and it was built with the same options as the current invocation.
+ */
+public class EmbeddedManifest
+{
+    public final static String ENTRY_PREFIX = "META-INF/pathfinder/";
+    public final static String MANIFEST_ENTRY = ENTRY_PREFIX + "routes.idx";
+    public final static String PROPERTIES_ENTRY = ENTRY_PREFIX + "routes.properties";
+
+    public final static String PROP_VERSION = "version";
+    public final static String PROP_DIGEST = "contentDigest";
+    public final static String PROP_OPTIONS = "options";
+
+    /**
+     *  The options that affect the content of a manifest.
+     */
+    public final static InvocationOptions[] RELEVANT_OPTIONS = new InvocationOptions[]
+    {
+        InvocationOptions.SHOW_JSP,
+        InvocationOptions.SHOW_HTML,
+        InvocationOptions.SHOW_STATIC,
+        InvocationOptions.EXPAND_STATIC,
+        InvocationOptions.SHOW_REQUEST_PARAMS
+    };
+
+    private static Logger logger = Logger.getLogger(EmbeddedManifest.class);
+
+
+    /**
+     *  Creates the properties that describe a manifest built from a WAR with
+     *  the given content digest, using the given options.
+     */
+    public static Properties createProperties(String contentDigest, Map<InvocationOptions,Boolean> options)
+    {
+        Properties props = new Properties();
+        props.setProperty(PROP_VERSION, String.valueOf(RouteManifest.VERSION));
+        props.setProperty(PROP_DIGEST, contentDigest);
+        props.setProperty(PROP_OPTIONS, describeOptions(options));
+        return props;
+    }
+
+
+    /**
+     *  Loads the paths from the WAR's embedded manifest. Returns <code>null</code>
+     *  if the WAR doesn't have a manifest, or if it can't be used: the WAR has
+     *  changed since it was built, or it was built with different options.
+     *  <p>
+     *  Destinations in the returned repository only know their description, so
+     *  can't provide the details of (for example) a Spring controller method.
+     */
+    public static PathRepo load(WarMachine war, Map<InvocationOptions,Boolean> options)
+    throws IOException
+    {
+        Properties props = new Properties();
+        InputStream in = war.openFile("/" + PROPERTIES_ENTRY);
+        if (in == null)
+            return null;
+        try
+        {
+            props.load(in);
+        }
+        finally
+        {
+            IOUtil.closeQuietly(in);
+        }
+
+        if (!String.valueOf(RouteManifest.VERSION).equals(props.getProperty(PROP_VERSION)))
+        {
+            logger.debug("ignoring embedded manifest: unsupported version " + props.getProperty(PROP_VERSION));
+            return null;
+        }
+        if (!describeOptions(options).equals(props.getProperty(PROP_OPTIONS)))
+        {
+            logger.debug("ignoring embedded manifest: built with options " + props.getProperty(PROP_OPTIONS));
+            return null;
+        }
+        if (!war.getContentDigest(ENTRY_PREFIX).equals(props.getProperty(PROP_DIGEST)))
+        {
+            logger.debug("ignoring embedded manifest: WAR has changed since it was built");
+            return null;
+        }
+
+        in = war.openFile("/" + MANIFEST_ENTRY);
+        if (in == null)
+            return null;
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try
+        {
+            IOUtil.copy(in, bytes);
+        }
+        finally
+        {
+            IOUtil.closeQuietly(in);
+        }
+
+        RouteManifest manifest = new RouteManifest(ByteBuffer.wrap(bytes.toByteArray()));
+        PathRepo repo = new PathRepoImpl();
+        for (int route = 0 ; route < manifest.getRouteCount() ; route++)
+        {
+            repo.put(manifest.getUrl(route), manifest.getMethod(route),
+                     new ManifestDestination(manifest.getDestination(route)));
+        }
+        return repo;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    private static String describeOptions(Map<InvocationOptions,Boolean> options)
+    {
+        StringBuilder sb = new StringBuilder();
+        for (InvocationOptions option : RELEVANT_OPTIONS)
+        {
+            if (option.isEnabled(options))
+            {
+                if (sb.length() > 0)
+                    sb.append(",");
+                sb.append(option.name());
+            }
+        }
+        return sb.toString();
+    }
+
+
+//----------------------------------------------------------------------------
+//  Supporting classes
+//----------------------------------------------------------------------------
+
+    /**
+     *  A destination loaded from a manifest. It was displayed when the manifest
+     *  was written, and is described as it was then.
+     */
+    public static class ManifestDestination
+    implements Destination
+    {
+        private String description;
+
+        public ManifestDestination(String description)
+        {
+            this.description = description;
+        }
+
+        @Override
+        public boolean isDisplayed(Map<InvocationOptions,Boolean> options)
+        {
+            return true;
+        }
+
+        @Override
+        public String toString(Map<InvocationOptions,Boolean> options)
+        {
+            return description;
+        }
+
+        @Override
+        public String toString()
+        {
+            return description;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.kdgregory.pathfinder.core.PathRepo;
+import com.kdgregory.pathfinder.core.SummaryDestination;
+import com.kdgregory.pathfinder.core.WarMachine;
+import com.kdgregory.pathfinder.core.WarMachine.Dispatcher;
+import com.kdgregory.pathfinder.core.WarMachine.FilterMapping;
+import com.kdgregory.pathfinder.core.WarMachine.ServletMapping;
+
+
+/**
+ *  Determines the filters that a request passes through before it reaches its
+ *  destination. Following the servlet spec, the chain consists of the filters
+ *  whose URL patterns match the request, in <code>web.xml</code> order, followed
+ *  by the filters mapped to the servlet that handles the request, also in
+ *  <code>web.xml</code> order. A filter appears at most once in a chain.
+ *  <p>
+ *  The handling servlet is found from the WAR's servlet mappings, as the container
+ *  would find it. Requests for JSPs (that aren't explicitly mapped) are handled by
+ *  the container's "jsp" servlet, and unmapped requests by its "default" servlet.
+ *  <p>
+ *  Repository URLs are matched as if they were request paths, so a route such as
+ *  <code>/orders/{id}</code> or <code>/api/*</code> gets the chain for a request
+ *  to that literal path. Filters that only apply to some of the requests handled
+ *  by a wildcarded route (eg, a filter on <code>/api/admin/*</code>) are not part
+ *  of its chain.
+ *  <p>
+ *  Servlet and filter patterns are compiled into {@link UrlPatternMatcher}s when
+ *  the resolver is constructed, so finding a chain costs a few lookups per path
+ *  segment, not one comparison per filter. Instances may be shared between threads.
+ */
+public class FilterChainResolver
+{
+    public final static String JSP_SERVLET = "jsp";
+    public final static String DEFAULT_SERVLET = "default";
+
+    private List<FilterMapping> mappings;
+    private UrlPatternMatcher<String> servletMatcher = new UrlPatternMatcher<String>();
+    private UrlPatternMatcher<Integer> urlFilters = new UrlPatternMatcher<Integer>();
+    private Map<String,List<Integer>> servletFilters = new HashMap<String,List<Integer>>();
+    private List<Integer> allServletFilters = new ArrayList<Integer>();
+
+
+    public FilterChainResolver(WarMachine war)
+    {
+        for (ServletMapping servlet : war.getServletMappings())
+        {
+            servletMatcher.add(servlet.getUrlPattern(), servlet.getServletName());
+        }
+
+        // the container's own mappings, unless the application overrides them
+        if (!servletMatcher.contains("*.jsp"))
+            servletMatcher.add("*.jsp", JSP_SERVLET);
+        if (!servletMatcher.contains("*.jspx"))
+            servletMatcher.add("*.jspx", JSP_SERVLET);
+        if (!servletMatcher.contains("/"))
+            servletMatcher.add("/", DEFAULT_SERVLET);
+
+        mappings = new ArrayList<FilterMapping>(war.getFilterMappings());
+        for (int ii = 0 ; ii < mappings.size() ; ii++)
+        {
+            FilterMapping mapping = mappings.get(ii);
+            Integer index = Integer.valueOf(ii);
+            if (mapping.getUrlPattern() != null)
+            {
+                urlFilters.add(mapping.getUrlPattern(), index);
+            }
+            else if (mapping.getServletName().equals("*"))
+            {
+                allServletFilters.add(index);
+            }
+            else
+            {
+                List<Integer> indexes = servletFilters.get(mapping.getServletName());
+                if (indexes == null)
+                {
+                    indexes = new ArrayList<Integer>();
+                    servletFilters.put(mapping.getServletName(), indexes);
+                }
+                indexes.add(index);
+            }
+        }
+    }
+
+
+//----------------------------------------------------------------------------
+//  Public Methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Returns the name of the servlet that handles requests for the given path.
+     */
+    public String getServletName(String path)
+    {
+        List<String> servlets = servletMatcher.matchBest(path);
+        return servlets.isEmpty() ? DEFAULT_SERVLET : servlets.get(0);
+    }
+
+
+    /**
+     *  Returns the filter chain for a request, as the mappings that put each filter
+     *  into the chain (if a filter is mapped several ways, the first that applies).
+     *  Returns an empty list if no filters apply.
+     */
+    public List<FilterMapping> getChain(String path, Dispatcher dispatcher)
+    {
+        if (mappings.isEmpty())
+            return Collections.emptyList();
+
+        List<FilterMapping> result = new ArrayList<FilterMapping>();
+        Set<String> seen = new HashSet<String>();
+
+        List<Integer> matches = urlFilters.matchAll(path);
+        Collections.sort(matches);
+        addToChain(matches, dispatcher, result, seen);
+
+        List<Integer> byName = servletFilters.get(getServletName(path));
+        if (!allServletFilters.isEmpty() || (byName != null))
+        {
+            matches = new ArrayList<Integer>(allServletFilters);
+            if (byName != null)
+                matches.addAll(byName);
+            Collections.sort(matches);
+            addToChain(matches, dispatcher, result, seen);
+        }
+
+        return result;
+    }
+
+
+    /**
+     *  Returns the filter chain for every URL in a repository, in the repository's
+     *  iteration order.
+     */
+    public Map<String,List<FilterMapping>> getChains(PathRepo repo, Dispatcher dispatcher)
+    {
+        Map<String,List<FilterMapping>> result = new LinkedHashMap<String,List<FilterMapping>>();
+        for (String url : repo)
+        {
+            if (!SummaryDestination.Util.isSummary(repo, url))
+                result.put(url, getChain(url, dispatcher));
+        }
+        return result;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    private void addToChain(List<Integer> indexes, Dispatcher dispatcher, List<FilterMapping> chain, Set<String> seen)
+    {
+        for (Integer index : indexes)
+        {
+            FilterMapping mapping = mappings.get(index.intValue());
+            if (mapping.getDispatchers().contains(dispatcher) && seen.add(mapping.getFilterName()))
+                chain.add(mapping);
+        }
+    }
+}
@@ -0,0 +1,495 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import com.kdgregory.pathfinder.core.Destination;
+import com.kdgregory.pathfinder.core.HttpMethod;
+import com.kdgregory.pathfinder.core.PathRepo;
+import com.kdgregory.pathfinder.core.RoutePattern;
+
+
+/**
+ *  Answers the question "which destination handles this request?" for a populated
+ *  {@link PathRepo}. The repository's patterns are compiled into radix tries when
+ *  the resolver is constructed; lookups walk those tries without allocating objects
+ *  (other than to check regex-constrained variables), so the resolver can be used to
+ *  attribute large streams of real requests.
+ *  <p>
+ *  Repository URLs are classified by their {@link RoutePattern.Kind}, and matched in
+ *  the precedence given by the servlet spec:
+ *  <ol>
+ *  <li> Exact URLs (JSPs, static content, servlets mapped to a single path, and
+ *       literal Spring mappings).
+ *  <li> Spring mappings that contain path variables (<code>{id}</code>) or
+ *       wildcards (<code>*</code> within a segment, <code>**</code> for any number
+ *       of segments). The repository holds these in place of the dispatcher's own
+ *       mapping, so they're consulted before other servlets' prefix mappings. At
+ *       each position, literal text is preferred to a variable, and a variable to
+ *       <code>**</code>. Where several patterns reach the same point (for example,
+ *       <code>{id:\\d+}</code> and <code>{name}</code>), they're tried in order of
+ *       {@link RoutePattern#SPECIFICITY}, and regex constraints are checked.
+ *  <li> Path-prefix mappings (<code>/foo/*</code>), longest prefix first.
+ *  <li> Extension mappings (<code>*.do</code>).
+ *  <li> The default servlet (<code>/</code>).
+ *  </ol>
+ *  At each step, a URL that doesn't have a destination for the requested method
+ *  (or for {@link HttpMethod#ALL}) is passed over.
+ *  <p>
+ *  Request paths are relative to the web-app's context; any query string, fragment,
+ *  or path parameters (eg, <code>;jsessionid=...</code>) are ignored.
+ *  <p>
+ *  Instances are a snapshot of the repository at the time of construction: later
+ *  changes to the repository are not reflected. Instances are immutable once
+ *  constructed, and may be shared between threads.
+ */
+public class RequestResolver
+{
+    private Node exactRoot = new Node("");
+    private Node prefixRoot = new Node("");
+    private String[] extensions = new String[0];
+    private Entry[] extensionEntries = new Entry[0];
+    private Entry defaultEntry;
+
+
+    public RequestResolver(PathRepo repo)
+    {
+        List<String> extList = new ArrayList<String>();
+        List<Entry> extEntries = new ArrayList<Entry>();
+
+        for (String url : repo)
+        {
+            RoutePattern pattern = repo.getPattern(url);
+            Entry entry = new Entry(pattern, repo.get(url));
+            switch (pattern.getKind())
+            {
+                case DEFAULT :
+                    defaultEntry = entry;
+                    break;
+                case EXTENSION :
+                    extList.add(pattern.getExtension());
+                    extEntries.add(entry);
+                    break;
+                case PREFIX :
+                    insertLiteral(prefixRoot, pattern.getPrefix()).addEntry(entry);
+                    break;
+                default :
+                    insertPattern(pattern, entry);
+            }
+        }
+
+        extensions = extList.toArray(extensions);
+        extensionEntries = extEntries.toArray(extensionEntries);
+    }
+
+
+//----------------------------------------------------------------------------
+//  Public Methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Returns the destination that will handle a request, <code>null</code>
+     *  if there isn't one.
+     *
+     *  @param  requestPath The path portion of the request URI, relative to the
+     *                      web-app's context; may include a query string.
+     *  @param  method      The request method; use {@link HttpMethod#ALL} to
+     *                      match a URL regardless of method.
+     */
+    public Destination resolve(String requestPath, HttpMethod method)
+    {
+        Entry entry = find(requestPath, method);
+        return (entry == null) ? null : entry.get(method);
+    }
+
+
+    /**
+     *  Returns the repository URL (pattern) that matches a request, <code>null</code>
+     *  if there isn't one.
+     */
+    public String resolvePattern(String requestPath, HttpMethod method)
+    {
+        Entry entry = find(requestPath, method);
+        return (entry == null) ? null : entry.url;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals -- construction
+//----------------------------------------------------------------------------
+
+    /**
+     *  Walks the pattern's segments, adding literal text, wildcards, and catch-alls
+     *  to the exact-match trie in turn.
+     */
+    private void insertPattern(RoutePattern pattern, Entry entry)
+    {
+        Node node = exactRoot;
+        StringBuilder literal = new StringBuilder();
+        if (pattern.toString().startsWith("/"))
+            literal.append('/');
+
+        List<RoutePattern.Segment> segments = pattern.getSegments();
+        for (int ii = 0 ; ii < segments.size() ; ii++)
+        {
+            RoutePattern.Segment segment = segments.get(ii);
+            if (segment.getType() == RoutePattern.Segment.Type.DOUBLE_WILDCARD)
+            {
+                // the catch-all consumes the slash that precedes it
+                if ((literal.length() > 0) && (literal.charAt(literal.length() - 1) == '/'))
+                    literal.setLength(literal.length() - 1);
+                node = insertLiteral(node, literal);
+                if (node.catchAll == null)
+                    node.catchAll = new Node("");
+                node = node.catchAll;
+            }
+            else
+            {
+                for (RoutePattern.Segment part : segment.getParts())
+                {
+                    if (part.getType() == RoutePattern.Segment.Type.LITERAL)
+                        literal.append(part.getText());
+                    else
+                        node = insertWildcard(insertLiteral(node, literal));
+                }
+            }
+
+            if (ii < segments.size() - 1)
+                literal.append('/');
+        }
+
+        insertLiteral(node, literal).addEntry(entry);
+    }
+
+
+    private static Node insertWildcard(Node node)
+    {
+        if (node.wildcard == null)
+            node.wildcard = new Node("");
+        return node.wildcard;
+    }
+
+
+    /**
+     *  Inserts the literal accumulated in the passed buffer (and clears it).
+     */
+    private static Node insertLiteral(Node node, StringBuilder literal)
+    {
+        Node result = insertLiteral(node, literal.toString());
+        literal.setLength(0);
+        return result;
+    }
+
+
+    /**
+     *  Adds literal text below the passed node, splitting edges as needed, and
+     *  returns the node at the end of that text.
+     */
+    private static Node insertLiteral(Node node, String text)
+    {
+        while (text.length() > 0)
+        {
+            int childIdx = Arrays.binarySearch(node.indices, text.charAt(0));
+            if (childIdx < 0)
+                return node.addChild(-(childIdx + 1), new Node(text));
+
+            Node child = node.children[childIdx];
+            int common = 0;
+            int max = Math.min(child.prefix.length(), text.length());
+            while ((common < max) && (child.prefix.charAt(common) == text.charAt(common)))
+                common++;
+
+            if (common < child.prefix.length())
+            {
+                Node split = new Node(child.prefix.substring(0, common));
+                child.prefix = child.prefix.substring(common);
+                split.addChild(0, child);
+                node.children[childIdx] = split;
+                child = split;
+            }
+
+            text = text.substring(common);
+            node = child;
+        }
+        return node;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals -- lookup (these must not allocate)
+//----------------------------------------------------------------------------
+
+    private Entry find(String path, HttpMethod method)
+    {
+        int end = path.length();
+        for (int ii = 0 ; ii < end ; ii++)
+        {
+            char c = path.charAt(ii);
+            if ((c == '?') || (c == '#') || (c == ';'))
+            {
+                end = ii;
+                break;
+            }
+        }
+
+        Entry entry = matchPattern(exactRoot, path, 0, end, method);
+        if (entry == null)
+            entry = matchPrefix(path, end, method);
+        if (entry == null)
+            entry = matchExtension(path, end, method);
+        if ((entry == null) && (defaultEntry != null) && defaultEntry.handles(method))
+            entry = defaultEntry;
+        return entry;
+    }
+
+
+    /**
+     *  Depth-first match against the exact/pattern trie. On entry, the node's
+     *  prefix has already been matched.
+     */
+    private static Entry matchPattern(Node node, String path, int pos, int end, HttpMethod method)
+    {
+        if (pos == end)
+        {
+            for (Entry entry : node.entries)
+            {
+                if (entry.handles(method) && entry.checkConstraints(path, end))
+                    return entry;
+            }
+        }
+
+        if (pos < end)
+        {
+            int childIdx = Arrays.binarySearch(node.indices, path.charAt(pos));
+            if (childIdx >= 0)
+            {
+                Node child = node.children[childIdx];
+                int len = child.prefix.length();
+                if ((end - pos >= len) && path.regionMatches(pos, child.prefix, 0, len))
+                {
+                    Entry entry = matchPattern(child, path, pos + len, end, method);
+                    if (entry != null)
+                        return entry;
+                }
+            }
+        }
+
+        if (node.wildcard != null)
+        {
+            // consume as much of the current segment as possible, backing off so
+            // that literal text following the wildcard can match; a wildcard can't
+            // match an empty segment
+            int segEnd = pos;
+            while ((segEnd < end) && (path.charAt(segEnd) != '/'))
+                segEnd++;
+            boolean emptySegment = (segEnd == pos) && ((pos == 0) || (path.charAt(pos - 1) == '/'));
+            for (int ii = segEnd ; (ii > pos) || ((ii == pos) && !emptySegment) ; ii--)
+            {
+                Entry entry = matchPattern(node.wildcard, path, ii, end, method);
+                if (entry != null)
+                    return entry;
+            }
+        }
+
+        if ((node.catchAll != null) && ((pos == end) || (path.charAt(pos) == '/')))
+        {
+            // consume as few segments as possible, so that anything after the "**" can match
+            int ii = pos;
+            while (true)
+            {
+                Entry entry = matchPattern(node.catchAll, path, ii, end, method);
+                if (entry != null)
+                    return entry;
+                if (ii >= end)
+                    break;
+                ii = path.indexOf('/', ii + 1);
+                if ((ii < 0) || (ii > end))
+                    ii = end;
+            }
+        }
+
+        return null;
+    }
+
+
+    private Entry matchPrefix(String path, int end, HttpMethod method)
+    {
+        Entry best = null;
+        Node node = prefixRoot;
+        int pos = 0;
+        while (true)
+        {
+            if ((node.entries.length > 0) && node.entries[0].handles(method)
+                    && ((pos == end) || (path.charAt(pos) == '/')))
+                best = node.entries[0];
+
+            if (pos >= end)
+                break;
+
+            int childIdx = Arrays.binarySearch(node.indices, path.charAt(pos));
+            if (childIdx < 0)
+                break;
+
+            Node child = node.children[childIdx];
+            int len = child.prefix.length();
+            if ((end - pos < len) || !path.regionMatches(pos, child.prefix, 0, len))
+                break;
+
+            pos += len;
+            node = child;
+        }
+        return best;
+    }
+
+
+    private Entry matchExtension(String path, int end, HttpMethod method)
+    {
+        if (extensions.length == 0)
+            return null;
+
+        int dotIdx = -1;
+        for (int ii = end - 1 ; ii >= 0 ; ii--)
+        {
+            char c = path.charAt(ii);
+            if (c == '/')
+                break;
+            if (c == '.')
+            {
+                dotIdx = ii;
+                break;
+            }
+        }
+        if (dotIdx < 0)
+            return null;
+
+        int extLen = end - dotIdx - 1;
+        for (int ii = 0 ; ii < extensions.length ; ii++)
+        {
+            String ext = extensions[ii];
+            if ((ext.length() == extLen)
+                    && path.regionMatches(dotIdx + 1, ext, 0, extLen)
+                    && extensionEntries[ii].handles(method))
+                return extensionEntries[ii];
+        }
+        return null;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Supporting classes
+//----------------------------------------------------------------------------
+
+    /**
+     *  A node in one of the tries. The edge leading to a node is labeled with
+     *  literal text (its prefix); literal children are kept in order of their
+     *  first character so that they can be found by binary search.
+     */
+    private static class Node
+    {
+        public String prefix;
+        public char[] indices = new char[0];
+        public Node[] children = new Node[0];
+        public Node wildcard;           // matches within a single segment
+        public Node catchAll;           // matches zero or more segments
+        public Entry[] entries = new Entry[0];
+
+        public Node(String prefix)
+        {
+            this.prefix = prefix;
+        }
+
+        public Node addChild(int idx, Node child)
+        {
+            char[] newIndices = new char[indices.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(indices, 0, newIndices, 0, idx);
+            System.arraycopy(children, 0, newChildren, 0, idx);
+            newIndices[idx] = child.prefix.charAt(0);
+            newChildren[idx] = child;
+            System.arraycopy(indices, idx, newIndices, idx + 1, indices.length - idx);
+            System.arraycopy(children, idx, newChildren, idx + 1, children.length - idx);
+            indices = newIndices;
+            children = newChildren;
+            return child;
+        }
+
+        /**
+         *  Adds an entry, keeping entries ordered by specificity.
+         */
+        public void addEntry(Entry entry)
+        {
+            Entry[] newEntries = Arrays.copyOf(entries, entries.length + 1);
+            int idx = entries.length;
+            while ((idx > 0) && (RoutePattern.SPECIFICITY.compare(newEntries[idx - 1].pattern, entry.pattern) > 0))
+            {
+                newEntries[idx] = newEntries[idx - 1];
+                idx--;
+            }
+            newEntries[idx] = entry;
+            entries = newEntries;
+        }
+    }
+
+
+    /**
+     *  The destinations for a single repository URL.
+     */
+    private static class Entry
+    {
+        public String url;
+        public RoutePattern pattern;
+        public Map<HttpMethod,Destination> destinations;
+        public Destination first;       // returned for HttpMethod.ALL if there's no explicit entry
+
+        public Entry(RoutePattern pattern, Map<HttpMethod,Destination> destinations)
+        {
+            this.url = pattern.toString();
+            this.pattern = pattern;
+            this.destinations = new EnumMap<HttpMethod,Destination>(HttpMethod.class);
+            this.destinations.putAll(destinations);
+            this.first = this.destinations.isEmpty() ? null : this.destinations.values().iterator().next();
+        }
+
+        public boolean handles(HttpMethod method)
+        {
+            return (method == HttpMethod.ALL)
+                 ? (first != null)
+                 : destinations.containsKey(method) || destinations.containsKey(HttpMethod.ALL);
+        }
+
+        /**
+         *  Checks regex constraints on path variables. The trie has already matched
+         *  the request's structure, so unconstrained patterns don't need to look at it.
+         */
+        public boolean checkConstraints(String path, int end)
+        {
+            return !pattern.hasConstraints()
+                || pattern.matches(path.substring(0, end));
+        }
+
+        public Destination get(HttpMethod method)
+        {
+            Destination dest = destinations.get(method);
+            if (dest == null)
+                dest = destinations.get(HttpMethod.ALL);
+            return (dest != null) ? dest : first;
+        }
+    }
+}
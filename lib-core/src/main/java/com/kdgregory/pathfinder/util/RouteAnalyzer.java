@@ -0,0 +1,609 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.kdgregory.pathfinder.core.Destination;
+import com.kdgregory.pathfinder.core.HttpMethod;
+import com.kdgregory.pathfinder.core.PathRepo;
+import com.kdgregory.pathfinder.core.RoutePattern;
+import com.kdgregory.pathfinder.core.RoutePattern.Segment;
+import com.kdgregory.pathfinder.core.SummaryDestination;
+import com.kdgregory.pathfinder.core.impl.PathRepoImpl;
+import com.kdgregory.pathfinder.core.impl.RecordingPathRepo;
+
+
+/**
+ *  Finds mappings that conflict with or hide each other. There are two sources
+ *  of information:
+ *  <ul>
+ *  <li> The operations recorded by one or more {@link RecordingPathRepo}s, which
+ *       are replayed to find destinations that were overwritten by a later write
+ *       to the same URL and method (for example, two controllers mapped to the
+ *       same URL). These are reported as {@link FindingType#CONFLICT}.
+ *  <li> The final repository, whose patterns are checked for overlap: two routes
+ *       that can match the same request with the same method. Rather than comparing
+ *       every pair of patterns, the routes are loaded into a trie of path segments,
+ *       and the trie is walked against itself; only branches that can match the
+ *       same path are followed. Servlet prefix and extension mappings are checked
+ *       against the routes that they'd also match. URLs that only have a
+ *       {@link SummaryDestination} aren't mappings, so aren't checked.
+ *  </ul>
+ *  Instances are not intended for use by concurrent threads.
+ */
+public class RouteAnalyzer
+{
+    public enum FindingType
+    {
+        /**
+         *  The same URL and method were given different destinations; the
+         *  earlier destination was silently replaced.
+         */
+        CONFLICT,
+
+        /**
+         *  Two patterns can match the same request, and neither is more specific
+         *  than the other; which one handles the request depends on the framework.
+         */
+        AMBIGUOUS,
+
+        /**
+         *  Two patterns can match the same request; the more specific pattern
+         *  handles requests that match both.
+         */
+        OVERLAP,
+
+        /**
+         *  A servlet prefix or extension mapping also matches a route. Depending
+         *  on which servlet the route is dispatched through, one of the two is
+         *  unreachable for the requests that match both.
+         */
+        SHADOWED
+    }
+
+
+    private List<RecordingPathRepo.Operation> operations = new ArrayList<RecordingPathRepo.Operation>();
+
+
+//----------------------------------------------------------------------------
+//  Public Methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Adds recorded operations. When writes from several recorders are added,
+     *  they should be added in the order that they were applied to the repository.
+     */
+    public void addOperations(List<RecordingPathRepo.Operation> ops)
+    {
+        operations.addAll(ops);
+    }
+
+
+    /**
+     *  Analyzes the passed repository and any recorded operations, returning the
+     *  findings: conflicts first, in the order that they occurred, then pattern
+     *  overlaps.
+     */
+    public List<Finding> analyze(PathRepo repo)
+    {
+        List<Finding> findings = new ArrayList<Finding>();
+        findConflicts(findings);
+
+        Trie trie = new Trie();
+        List<RoutePattern> prefixes = new ArrayList<RoutePattern>();
+        List<RoutePattern> extensions = new ArrayList<RoutePattern>();
+        List<RoutePattern> routes = new ArrayList<RoutePattern>();
+        for (String url : repo)
+        {
+            if (SummaryDestination.Util.isSummary(repo, url))
+                continue;
+
+            RoutePattern pattern = repo.getPattern(url);
+            switch (pattern.getKind())
+            {
+                case EXACT :
+                case TEMPLATE :
+                    trie.insert(pattern);
+                    routes.add(pattern);
+                    break;
+                case PREFIX :
+                    prefixes.add(pattern);
+                    break;
+                case EXTENSION :
+                    extensions.add(pattern);
+                    break;
+                default :
+                    // the default servlet doesn't hide anything
+            }
+        }
+
+        findOverlaps(repo, trie, findings);
+        findPrefixShadows(repo, trie, prefixes, findings);
+        findExtensionShadows(repo, routes, extensions, findings);
+        return findings;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals -- conflicts
+//----------------------------------------------------------------------------
+
+    private void findConflicts(List<Finding> findings)
+    {
+        PathRepo scratch = new PathRepoImpl();
+        for (RecordingPathRepo.Operation op : operations)
+        {
+            String url = op.getUrl();
+            Map<HttpMethod,Destination> existing = scratch.get(url);
+            switch (op.getType())
+            {
+                case PUT :
+                    checkConflict(url, op.getMethod(), existing.get(op.getMethod()), op.getDestination(), findings);
+                    break;
+                case REPLACE :
+                    for (Map.Entry<HttpMethod,Destination> entry : existing.entrySet())
+                        checkConflict(url, entry.getKey(), entry.getValue(), op.getDestination(), findings);
+                    break;
+                case REPLACE_MAP :
+                    for (Map.Entry<HttpMethod,Destination> entry : existing.entrySet())
+                    {
+                        Destination replacement = op.getDestinationMap().get(entry.getKey());
+                        if (replacement == null)
+                            replacement = op.getDestinationMap().get(HttpMethod.ALL);
+                        checkConflict(url, entry.getKey(), entry.getValue(), replacement, findings);
+                    }
+                    break;
+                default :
+                    // removal is deliberate
+            }
+            op.apply(scratch);
+        }
+    }
+
+
+    private static void checkConflict(String url, HttpMethod method, Destination oldDest, Destination newDest, List<Finding> findings)
+    {
+        if ((oldDest == null) || (newDest == null) || isSameDestination(oldDest, newDest))
+            return;
+
+        findings.add(new Finding(FindingType.CONFLICT, url, method, url,
+                                 "\"" + oldDest + "\" replaced by \"" + newDest + "\""));
+    }
+
+
+    /**
+     *  Destinations don't implement equality, and inspectors may create a new
+     *  object for the same handler (for example, the same bean mapped by two
+     *  handler mappings), so we also compare their descriptions.
+     */
+    private static boolean isSameDestination(Destination d1, Destination d2)
+    {
+        return (d1 == d2) || d1.equals(d2) || String.valueOf(d1).equals(String.valueOf(d2));
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals -- overlaps
+//----------------------------------------------------------------------------
+
+    private void findOverlaps(PathRepo repo, Trie trie, List<Finding> findings)
+    {
+        PairWalker walker = new PairWalker(repo, findings);
+        walker.walk(trie.root, trie.root);
+    }
+
+
+    private void findPrefixShadows(PathRepo repo, Trie trie, List<RoutePattern> prefixes, List<Finding> findings)
+    {
+        for (RoutePattern prefix : prefixes)
+        {
+            List<String> segments = new ArrayList<String>();
+            for (Segment segment : prefix.getSegments())
+                segments.add(segment.getText());
+
+            Set<RoutePattern> matched = new HashSet<RoutePattern>();
+            trie.collectUnder(trie.root, segments, 0, matched);
+
+            List<RoutePattern> sorted = new ArrayList<RoutePattern>(matched);
+            Collections.sort(sorted);
+            for (RoutePattern route : sorted)
+            {
+                HttpMethod method = commonMethod(repo, prefix, route);
+                if (method != null)
+                {
+                    findings.add(new Finding(FindingType.SHADOWED, prefix.toString(), method, route.toString(),
+                                             "prefix mapping also matches route"));
+                }
+            }
+        }
+    }
+
+
+    private void findExtensionShadows(PathRepo repo, List<RoutePattern> routes, List<RoutePattern> extensions, List<Finding> findings)
+    {
+        for (RoutePattern extension : extensions)
+        {
+            String suffix = "." + extension.getExtension();
+            for (RoutePattern route : routes)
+            {
+                List<Segment> segments = route.getSegments();
+                if (segments.isEmpty())
+                    continue;
+
+                // only routes whose last segment has literal text are considered; every
+                // "{id}" could technically end with ".do", but reporting those is noise
+                List<Segment> parts = segments.get(segments.size() - 1).getParts();
+                Segment last = parts.get(parts.size() - 1);
+                if (last.getType() != Segment.Type.LITERAL)
+                    continue;
+
+                String literal = last.getText();
+                boolean matches = (parts.size() == 1)
+                                ? literal.endsWith(suffix)
+                                : literal.endsWith(suffix) || suffix.endsWith(literal);
+                HttpMethod method = matches ? commonMethod(repo, extension, route) : null;
+                if (method != null)
+                {
+                    findings.add(new Finding(FindingType.SHADOWED, extension.toString(), method, route.toString(),
+                                             "extension mapping also matches route"));
+                }
+            }
+        }
+    }
+
+
+    /**
+     *  Returns a method that both patterns respond to, <code>null</code> if there
+     *  isn't one. If both respond to all methods, returns <code>ALL</code>.
+     */
+    private static HttpMethod commonMethod(PathRepo repo, RoutePattern p1, RoutePattern p2)
+    {
+        Map<HttpMethod,Destination> m1 = repo.get(p1.toString());
+        Map<HttpMethod,Destination> m2 = repo.get(p2.toString());
+        if (m1.containsKey(HttpMethod.ALL) && m2.containsKey(HttpMethod.ALL))
+            return HttpMethod.ALL;
+
+        for (HttpMethod method : HttpMethod.values())
+        {
+            if (method == HttpMethod.ALL)
+                continue;
+            boolean in1 = m1.containsKey(method) || m1.containsKey(HttpMethod.ALL);
+            boolean in2 = m2.containsKey(method) || m2.containsKey(HttpMethod.ALL);
+            if (in1 && in2)
+                return method;
+        }
+        return null;
+    }
+
+
+    /**
+     *  Determines whether two non-literal segments could match the same text.
+     *  This only looks at literal text at the start and end of composites; it
+     *  doesn't attempt to intersect regexes.
+     */
+    private static boolean mayOverlap(Segment s1, Segment s2)
+    {
+        String head1 = leadingLiteral(s1);
+        String head2 = leadingLiteral(s2);
+        if (!head1.startsWith(head2) && !head2.startsWith(head1))
+            return false;
+
+        String tail1 = trailingLiteral(s1);
+        String tail2 = trailingLiteral(s2);
+        return tail1.endsWith(tail2) || tail2.endsWith(tail1);
+    }
+
+
+    private static String leadingLiteral(Segment segment)
+    {
+        Segment first = segment.getParts().get(0);
+        return (first.getType() == Segment.Type.LITERAL) ? first.getText() : "";
+    }
+
+
+    private static String trailingLiteral(Segment segment)
+    {
+        List<Segment> parts = segment.getParts();
+        Segment last = parts.get(parts.size() - 1);
+        return (last.getType() == Segment.Type.LITERAL) ? last.getText() : "";
+    }
+
+
+//----------------------------------------------------------------------------
+//  Supporting classes
+//----------------------------------------------------------------------------
+
+    /**
+     *  A single problem. The URL is the pattern that was written (for conflicts)
+     *  or the first of a pair of patterns; the other URL is the second of the pair
+     *  (for conflicts, it's the same as the first).
+     */
+    public static class Finding
+    {
+        private FindingType type;
+        private String url;
+        private HttpMethod method;
+        private String otherUrl;
+        private String description;
+
+        public Finding(FindingType type, String url, HttpMethod method, String otherUrl, String description)
+        {
+            this.type = type;
+            this.url = url;
+            this.method = method;
+            this.otherUrl = otherUrl;
+            this.description = description;
+        }
+
+        public FindingType getType()
+        {
+            return type;
+        }
+
+        public String getUrl()
+        {
+            return url;
+        }
+
+        public HttpMethod getMethod()
+        {
+            return method;
+        }
+
+        public String getOtherUrl()
+        {
+            return otherUrl;
+        }
+
+        public String getDescription()
+        {
+            return description;
+        }
+
+        @Override
+        public String toString()
+        {
+            String methodString = (method == HttpMethod.ALL) ? "*" : method.toString();
+            return (type == FindingType.CONFLICT)
+                 ? type + " " + url + " " + methodString + ": " + description
+                 : type + " " + url + " / " + otherUrl + " " + methodString + ": " + description;
+        }
+    }
+
+
+    /**
+     *  A node in the segment trie. Literal segments are keyed by their text, other
+     *  segments by their pattern text. A "**" segment leads to a node that can
+     *  consume any number of path segments before continuing.
+     */
+    private static class Node
+    {
+        public int id;
+        public Segment segment;                     // the edge leading here; null for root and catch-alls
+        public boolean isCatchAll;
+        public Map<String,Node> literals = new HashMap<String,Node>();
+        public Map<String,Node> others = new LinkedHashMap<String,Node>();
+        public Node catchAll;
+        public List<RoutePattern> terminals = new ArrayList<RoutePattern>(1);
+
+        public Node(int id, Segment segment, boolean isCatchAll)
+        {
+            this.id = id;
+            this.segment = segment;
+            this.isCatchAll = isCatchAll;
+        }
+    }
+
+
+    private static class Trie
+    {
+        public int nodeCount;
+        public Node root = new Node(nodeCount++, null, false);
+
+        public void insert(RoutePattern pattern)
+        {
+            Node node = root;
+            for (Segment segment : pattern.getSegments())
+            {
+                if (segment.getType() == Segment.Type.DOUBLE_WILDCARD)
+                {
+                    if (node.catchAll == null)
+                        node.catchAll = new Node(nodeCount++, null, true);
+                    node = node.catchAll;
+                    continue;
+                }
+
+                Map<String,Node> children = (segment.getType() == Segment.Type.LITERAL)
+                                          ? node.literals : node.others;
+                Node child = children.get(segment.getText());
+                if (child == null)
+                {
+                    child = new Node(nodeCount++, segment, false);
+                    children.put(segment.getText(), child);
+                }
+                node = child;
+            }
+            node.terminals.add(pattern);
+        }
+
+
+        /**
+         *  Collects all patterns that could match a path starting with the given
+         *  literal segments.
+         */
+        public void collectUnder(Node node, List<String> segments, int idx, Set<RoutePattern> result)
+        {
+            if (idx == segments.size())
+            {
+                collectAll(node, result, new HashSet<Node>());
+                return;
+            }
+
+            String text = segments.get(idx);
+            Node literal = node.literals.get(text);
+            if (literal != null)
+                collectUnder(literal, segments, idx + 1, result);
+            for (Node other : node.others.values())
+            {
+                if (other.segment.matches(text, 0, text.length()))
+                    collectUnder(other, segments, idx + 1, result);
+            }
+            if (node.catchAll != null)
+                collectUnder(node.catchAll, segments, idx, result);
+            if (node.isCatchAll)
+                collectUnder(node, segments, idx + 1, result);
+        }
+
+
+        private void collectAll(Node node, Set<RoutePattern> result, Set<Node> visited)
+        {
+            if (!visited.add(node))
+                return;
+            result.addAll(node.terminals);
+            for (Node child : node.literals.values())
+                collectAll(child, result, visited);
+            for (Node child : node.others.values())
+                collectAll(child, result, visited);
+            if (node.catchAll != null)
+                collectAll(node.catchAll, result, visited);
+        }
+    }
+
+
+    /**
+     *  Walks pairs of trie nodes that can be reached by the same request path,
+     *  reporting pairs where both nodes terminate a pattern. Each unordered pair
+     *  is visited once.
+     */
+    private static class PairWalker
+    {
+        private PathRepo repo;
+        private List<Finding> findings;
+        private Set<Long> visited = new HashSet<Long>();
+
+        public PairWalker(PathRepo repo, List<Finding> findings)
+        {
+            this.repo = repo;
+            this.findings = findings;
+        }
+
+        public void walk(Node a, Node b)
+        {
+            if (a.id > b.id)
+            {
+                Node tmp = a;
+                a = b;
+                b = tmp;
+            }
+            if (!visited.add(Long.valueOf(((long)a.id << 32) | b.id)))
+                return;
+
+            if (a != b)
+                report(a, b);
+
+            // a catch-all can match zero segments
+            if (a.catchAll != null)
+                walk(a.catchAll, b);
+            if (b.catchAll != null)
+                walk(a, b.catchAll);
+
+            // otherwise, both sides consume one path segment
+            for (Map.Entry<String,Node> entry : a.literals.entrySet())
+            {
+                Node match = b.literals.get(entry.getKey());
+                if (match != null)
+                    walk(entry.getValue(), match);
+            }
+            walkLiteralsAgainstOthers(a, b);
+            if (a != b)
+                walkLiteralsAgainstOthers(b, a);
+            for (Node otherA : a.others.values())
+            {
+                for (Node otherB : b.others.values())
+                {
+                    if ((otherA == otherB) || mayOverlap(otherA.segment, otherB.segment))
+                        walk(otherA, otherB);
+                }
+            }
+            if (a.isCatchAll)
+                walkAnySegment(a, b);
+            if (b.isCatchAll && (a != b))
+                walkAnySegment(b, a);
+        }
+
+        private void walkLiteralsAgainstOthers(Node a, Node b)
+        {
+            if (b.others.isEmpty())
+                return;
+            for (Map.Entry<String,Node> entry : a.literals.entrySet())
+            {
+                String text = entry.getKey();
+                for (Node other : b.others.values())
+                {
+                    if (other.segment.matches(text, 0, text.length()))
+                        walk(entry.getValue(), other);
+                }
+            }
+        }
+
+        /**
+         *  A catch-all node consumes one segment and remains where it is, while
+         *  the other side takes any of its edges.
+         */
+        private void walkAnySegment(Node catchAll, Node other)
+        {
+            for (Node child : other.literals.values())
+                walk(catchAll, child);
+            for (Node child : other.others.values())
+                walk(catchAll, child);
+            if (other.isCatchAll)
+                walk(catchAll, other);
+        }
+
+        private void report(Node a, Node b)
+        {
+            for (RoutePattern p1 : a.terminals)
+            {
+                for (RoutePattern p2 : b.terminals)
+                {
+                    HttpMethod method = commonMethod(repo, p1, p2);
+                    if (method == null)
+                        continue;
+
+                    RoutePattern first = (RoutePattern.SPECIFICITY.compare(p1, p2) < 0) ? p1 : p2;
+                    RoutePattern second = (first == p1) ? p2 : p1;
+                    if (first.getSpecificity() == second.getSpecificity())
+                    {
+                        findings.add(new Finding(FindingType.AMBIGUOUS, first.toString(), method, second.toString(),
+                                                 "neither pattern is more specific"));
+                    }
+                    else
+                    {
+                        findings.add(new Finding(FindingType.OVERLAP, first.toString(), method, second.toString(),
+                                                 "first pattern takes precedence where both match"));
+                    }
+                }
+            }
+        }
+    }
+}
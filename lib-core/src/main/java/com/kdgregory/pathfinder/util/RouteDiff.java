@@ -0,0 +1,103 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.util;
+
+import java.util.Iterator;
+
+import com.kdgregory.pathfinder.util.RouteSnapshot.Entry;
+
+
+/**
+ *  Compares two sorted streams of routes (see {@link RouteSnapshot}), reporting
+ *  routes that were added or removed, and routes whose destination changed. The
+ *  comparison is a single merge pass over the two streams, so it only retains
+ *  the current entry from each.
+ */
+public class RouteDiff
+{
+    /**
+     *  Receives the differences, in URL/method order.
+     */
+    public interface Listener
+    {
+        public void added(Entry newEntry);
+
+        public void removed(Entry oldEntry);
+
+        public void changed(Entry oldEntry, Entry newEntry);
+    }
+
+
+    /**
+     *  Compares the streams, and returns the number of differences.
+     *
+     *  @throws IllegalArgumentException if either stream isn't sorted.
+     */
+    public static int diff(Iterator<Entry> oldRoutes, Iterator<Entry> newRoutes, Listener listener)
+    {
+        int count = 0;
+        Entry oldEntry = next(oldRoutes, null);
+        Entry newEntry = next(newRoutes, null);
+        while ((oldEntry != null) || (newEntry != null))
+        {
+            int cmp = (oldEntry == null) ? 1
+                    : (newEntry == null) ? -1
+                    : oldEntry.compareTo(newEntry);
+            if (cmp < 0)
+            {
+                listener.removed(oldEntry);
+                count++;
+                oldEntry = next(oldRoutes, oldEntry);
+            }
+            else if (cmp > 0)
+            {
+                listener.added(newEntry);
+                count++;
+                newEntry = next(newRoutes, newEntry);
+            }
+            else
+            {
+                if (!oldEntry.getDestination().equals(newEntry.getDestination()))
+                {
+                    listener.changed(oldEntry, newEntry);
+                    count++;
+                }
+                oldEntry = next(oldRoutes, oldEntry);
+                newEntry = next(newRoutes, newEntry);
+            }
+        }
+        return count;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    /**
+     *  Advances an iterator, verifying that its entries are in order: if they
+     *  aren't, the merge would report spurious differences.
+     */
+    private static Entry next(Iterator<Entry> itx, Entry prev)
+    {
+        if (!itx.hasNext())
+            return null;
+
+        Entry entry = itx.next();
+        if ((prev != null) && (prev.compareTo(entry) >= 0))
+            throw new IllegalArgumentException("routes out of order: " + prev + " followed by " + entry);
+        return entry;
+    }
+}
@@ -0,0 +1,701 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.util;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.log4j.Logger;
+
+import net.sf.kdgcommons.io.IOUtil;
+
+import com.kdgregory.pathfinder.core.HttpMethod;
+import com.kdgregory.pathfinder.core.InvocationOptions;
+import com.kdgregory.pathfinder.core.PathRepo;
+import com.kdgregory.pathfinder.util.RouteSnapshot.Entry;
+
+
+/**
+ *  An append-only store of route tables, one per build, that answers two questions:
+ *  what did the route table look like at a given build, and when did a given URL
+ *  gain, lose, or change destinations.
+ *  <p>
+ *  Each build is stored as the difference from the previous build (produced by
+ *  {@link RouteDiff}, so it's sorted by URL and method). Every 50th build (starting
+ *  with the first) also stores a full checkpoint, so that reconstructing a table
+ *  never replays more than 49 deltas. The store is a directory with two files:
+ *  <ul>
+ *  <li> <code>history.dat</code> holds the deltas and checkpoints, as text records
+ *       (one per line): "+" (added), "-" (removed), or "~" (changed), followed by
+ *       tab-separated URL, method, and destination.
+ *  <li> <code>history.idx</code> describes each build: its label, timestamp, and
+ *       the location of its records. It also holds a sparse index of each delta:
+ *       the URL and file offset of every 32nd record. The index is read into memory
+ *       when the store is opened, so a URL's history is found by a binary search
+ *       of each build's sparse index, followed by reading a few records.
+ *  </ul>
+ *  The data file is written before the index; if a write fails, the records are
+ *  orphaned but the store remains consistent. If the index itself is only partly
+ *  written, the incomplete build is ignored when the store is opened, and is
+ *  overwritten by the next append.
+ *  <p>
+ *  Instances are not intended for use by concurrent threads, and a store must
+ *  not be written by concurrent processes.
+ */
+public class RouteHistory
+{
+    private Logger logger = Logger.getLogger(getClass());
+
+    private final static String INDEX_FILENAME = "history.idx";
+    private final static String DATA_FILENAME = "history.dat";
+    private final static String ENCODING = "UTF-8";
+    private final static int SPARSE_INTERVAL = 32;
+    private final static int CHECKPOINT_INTERVAL = 50;
+
+    public enum ChangeType { ADDED, REMOVED, CHANGED }
+
+    private File indexFile;
+    private File dataFile;
+    private List<Build> builds = new ArrayList<Build>();
+    private Map<String,Build> buildsByLabel = new HashMap<String,Build>();
+    private long indexLength;
+
+
+    /**
+     *  Opens a store, creating its directory if it doesn't already exist.
+     */
+    public RouteHistory(File dir)
+    throws IOException
+    {
+        if (!dir.isDirectory() && !dir.mkdirs())
+            throw new IOException("unable to create history directory: " + dir);
+
+        indexFile = new File(dir, INDEX_FILENAME);
+        dataFile = new File(dir, DATA_FILENAME);
+        if (indexFile.exists())
+            loadIndex();
+    }
+
+
+//----------------------------------------------------------------------------
+//  Public Methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Returns all builds, oldest first.
+     */
+    public List<Build> getBuilds()
+    {
+        return Collections.unmodifiableList(builds);
+    }
+
+
+    /**
+     *  Returns the build with the given label, <code>null</code> if there
+     *  isn't one.
+     */
+    public Build getBuild(String label)
+    {
+        return buildsByLabel.get(label);
+    }
+
+
+    /**
+     *  Adds a build, storing its differences from the previous build.
+     *
+     *  @param  label   Uniquely identifies the build (for example, its version
+     *                  number). May not contain tabs or newlines.
+     *  @param  repo    The build's routes.
+     *  @param  options Determines which destinations are recorded, and how
+     *                  they're described.
+     *
+     *  @throws IllegalArgumentException if the label is invalid or already used.
+     */
+    public Build append(String label, PathRepo repo, Map<InvocationOptions,Boolean> options)
+    throws IOException
+    {
+        if ((label == null) || (label.length() == 0) || (label.indexOf('\t') >= 0)
+                || (label.indexOf('\n') >= 0) || (label.indexOf('\r') >= 0))
+            throw new IllegalArgumentException("invalid build label: \"" + label + "\"");
+        if (buildsByLabel.containsKey(label))
+            throw new IllegalArgumentException("build already exists: " + label);
+
+        Build build = new Build(builds.size(), label, System.currentTimeMillis());
+        Iterator<Entry> previous = builds.isEmpty()
+                                 ? Collections.<Entry>emptyList().iterator()
+                                 : getTable(builds.get(builds.size() - 1));
+
+        // the data file may have orphaned records from a failed append; these are
+        // harmless, and we don't bother to truncate them
+        RecordWriter writer = new RecordWriter(dataFile.length());
+        try
+        {
+            build.deltaStart = writer.position;
+            RouteDiff.diff(previous, RouteSnapshot.iterate(repo, options), writer);
+            build.deltaEnd = writer.position;
+            build.sparseUrls = writer.sparseUrls.toArray(new String[writer.sparseUrls.size()]);
+            build.sparseOffsets = toArray(writer.sparseOffsets);
+            build.lastUrl = writer.lastUrl;
+            build.changeCount = writer.count;
+
+            if (build.seq == 0)
+            {
+                // the first delta is from an empty table, so it's already a checkpoint
+                build.checkpointStart = build.deltaStart;
+                build.checkpointEnd = build.deltaEnd;
+            }
+            else if (build.seq % CHECKPOINT_INTERVAL == 0)
+            {
+                build.checkpointStart = writer.position;
+                for (Iterator<Entry> itx = RouteSnapshot.iterate(repo, options) ; itx.hasNext() ; )
+                    writer.write('+', itx.next());
+                build.checkpointEnd = writer.position;
+            }
+            writer.close();
+        }
+        finally
+        {
+            writer.closeQuietly();
+        }
+
+        writeIndex(build);
+        builds.add(build);
+        buildsByLabel.put(label, build);
+        logger.debug("appended build " + label + ": " + build.changeCount + " changes");
+        return build;
+    }
+
+
+    /**
+     *  Returns the route table as of the given build, in URL/method order.
+     */
+    public Iterator<Entry> getTable(Build build)
+    throws IOException
+    {
+        int checkpointIdx = build.seq;
+        while (builds.get(checkpointIdx).checkpointStart < 0)
+            checkpointIdx--;
+
+        Build checkpoint = builds.get(checkpointIdx);
+        TreeMap<Entry,Entry> table = new TreeMap<Entry,Entry>();
+        for (Record record : readRecords(checkpoint.checkpointStart, checkpoint.checkpointEnd))
+            table.put(record.entry, record.entry);
+
+        for (int ii = checkpointIdx + 1 ; ii <= build.seq ; ii++)
+        {
+            Build delta = builds.get(ii);
+            for (Record record : readRecords(delta.deltaStart, delta.deltaEnd))
+            {
+                if (record.type == ChangeType.REMOVED)
+                    table.remove(record.entry);
+                else
+                    table.put(record.entry, record.entry);
+            }
+        }
+        return table.values().iterator();
+    }
+
+
+    /**
+     *  Returns every change to the given URL, for all methods, oldest first.
+     *  For removals, the event holds the destination that was removed.
+     */
+    public List<Event> getLifetime(String url)
+    throws IOException
+    {
+        List<Event> result = new ArrayList<Event>();
+        RandomAccessFile in = new RandomAccessFile(dataFile, "r");
+        try
+        {
+            for (Build build : builds)
+            {
+                if ((build.sparseUrls.length == 0)
+                        || (url.compareTo(build.sparseUrls[0]) < 0)
+                        || (url.compareTo(build.lastUrl) > 0))
+                    continue;
+
+                // records for a URL may start before the sparse entry for that URL
+                // (if it has several methods), so we start at the preceding entry
+                int block = findBlock(build.sparseUrls, url);
+                boolean done = false;
+                while (!done && (block < build.sparseOffsets.length))
+                {
+                    long start = build.sparseOffsets[block];
+                    long end = (block + 1 < build.sparseOffsets.length)
+                             ? build.sparseOffsets[block + 1]
+                             : build.deltaEnd;
+                    for (Record record : parseRecords(readBytes(in, start, end)))
+                    {
+                        int cmp = record.entry.getUrl().compareTo(url);
+                        if (cmp == 0)
+                            result.add(new Event(build, record.type, record.entry));
+                        else if (cmp > 0)
+                        {
+                            done = true;
+                            break;
+                        }
+                    }
+                    block++;
+                }
+            }
+        }
+        finally
+        {
+            IOUtil.closeQuietly(in);
+        }
+        return result;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    private void loadIndex()
+    throws IOException
+    {
+        InputStream in = new FileInputStream(indexFile);
+        ByteArrayOutputStream content = new ByteArrayOutputStream((int)indexFile.length());
+        try
+        {
+            IOUtil.copy(in, content);
+        }
+        finally
+        {
+            IOUtil.closeQuietly(in);
+        }
+
+        // we track the length of the complete records, so that an append can
+        // discard anything left by an append that failed while writing the index
+
+        String text = new String(content.toByteArray(), ENCODING);
+        long offset = 0;
+        long buildOffset = 0;
+        Build build = null;
+        List<String> sparseUrls = new ArrayList<String>();
+        List<Long> sparseOffsets = new ArrayList<Long>();
+        for (int lineStart = 0 ; lineStart < text.length() ; )
+        {
+            int lineEnd = text.indexOf('\n', lineStart);
+            if (lineEnd < 0)
+            {
+                logger.warn("ignoring incomplete record at end of history index");
+                break;
+            }
+
+            String line = text.substring(lineStart, lineEnd);
+            String[] fields = line.split("\t", -1);
+            if (fields[0].equals("B") && (fields.length == 10))
+            {
+                finishBuild(build, sparseUrls, sparseOffsets);
+                build = new Build(Integer.parseInt(fields[1]), fields[2], Long.parseLong(fields[3]));
+                build.deltaStart = Long.parseLong(fields[4]);
+                build.deltaEnd = Long.parseLong(fields[5]);
+                build.checkpointStart = Long.parseLong(fields[6]);
+                build.checkpointEnd = Long.parseLong(fields[7]);
+                build.changeCount = Integer.parseInt(fields[8]);
+                build.lastUrl = fields[9];
+                if (build.seq != builds.size())
+                    throw new IOException("history index is corrupt: expected build " + builds.size() + ", was " + build.seq);
+                buildOffset = offset;
+            }
+            else if (fields[0].equals("S") && (fields.length == 3) && (build != null))
+            {
+                sparseOffsets.add(Long.valueOf(fields[1]));
+                sparseUrls.add(fields[2]);
+            }
+            else
+            {
+                throw new IOException("history index is corrupt: " + line);
+            }
+
+            offset += line.getBytes(ENCODING).length + 1;
+            lineStart = lineEnd + 1;
+        }
+
+        // the last build is only usable if all of its sparse index was written
+        if ((build != null) && (sparseUrls.size() < (build.changeCount + SPARSE_INTERVAL - 1) / SPARSE_INTERVAL))
+        {
+            logger.warn("ignoring incomplete record for build " + build.label + " at end of history index");
+            build = null;
+            offset = buildOffset;
+        }
+        finishBuild(build, sparseUrls, sparseOffsets);
+        indexLength = offset;
+    }
+
+
+    private void finishBuild(Build build, List<String> sparseUrls, List<Long> sparseOffsets)
+    {
+        if (build == null)
+            return;
+
+        build.sparseUrls = sparseUrls.toArray(new String[sparseUrls.size()]);
+        build.sparseOffsets = toArray(sparseOffsets);
+        builds.add(build);
+        buildsByLabel.put(build.label, build);
+        sparseUrls.clear();
+        sparseOffsets.clear();
+    }
+
+
+    private void writeIndex(Build build)
+    throws IOException
+    {
+        StringBuilder sb = new StringBuilder(1024);
+        sb.append("B\t").append(build.seq)
+          .append('\t').append(build.label)
+          .append('\t').append(build.timestamp)
+          .append('\t').append(build.deltaStart)
+          .append('\t').append(build.deltaEnd)
+          .append('\t').append(build.checkpointStart)
+          .append('\t').append(build.checkpointEnd)
+          .append('\t').append(build.changeCount)
+          .append('\t').append((build.lastUrl == null) ? "" : build.lastUrl)
+          .append('\n');
+        for (int ii = 0 ; ii < build.sparseUrls.length ; ii++)
+        {
+            sb.append("S\t").append(build.sparseOffsets[ii])
+              .append('\t').append(build.sparseUrls[ii])
+              .append('\n');
+        }
+
+        // writing at the end of the complete records overwrites any incomplete record
+        byte[] bytes = sb.toString().getBytes(ENCODING);
+        RandomAccessFile out = new RandomAccessFile(indexFile, "rw");
+        try
+        {
+            out.setLength(indexLength);
+            out.seek(indexLength);
+            out.write(bytes);
+            out.getFD().sync();
+        }
+        finally
+        {
+            IOUtil.closeQuietly(out);
+        }
+        indexLength += bytes.length;
+    }
+
+
+    /**
+     *  Returns the index of the sparse entry where a search for the URL should
+     *  start: the last entry whose URL is less than the target, or 0.
+     */
+    private static int findBlock(String[] sparseUrls, String url)
+    {
+        int lo = 0;
+        int hi = sparseUrls.length - 1;
+        int result = 0;
+        while (lo <= hi)
+        {
+            int mid = (lo + hi) >>> 1;
+            if (sparseUrls[mid].compareTo(url) < 0)
+            {
+                result = mid;
+                lo = mid + 1;
+            }
+            else
+            {
+                hi = mid - 1;
+            }
+        }
+        return result;
+    }
+
+
+    private List<Record> readRecords(long start, long end)
+    throws IOException
+    {
+        RandomAccessFile in = new RandomAccessFile(dataFile, "r");
+        try
+        {
+            return parseRecords(readBytes(in, start, end));
+        }
+        finally
+        {
+            IOUtil.closeQuietly(in);
+        }
+    }
+
+
+    private static byte[] readBytes(RandomAccessFile in, long start, long end)
+    throws IOException
+    {
+        byte[] bytes = new byte[(int)(end - start)];
+        in.seek(start);
+        in.readFully(bytes);
+        return bytes;
+    }
+
+
+    private static List<Record> parseRecords(byte[] bytes)
+    throws IOException
+    {
+        List<Record> result = new ArrayList<Record>();
+        String text = new String(bytes, ENCODING);
+        int lineStart = 0;
+        while (lineStart < text.length())
+        {
+            int lineEnd = text.indexOf('\n', lineStart);
+            if (lineEnd < 0)
+                lineEnd = text.length();
+
+            int tab1 = text.indexOf('\t', lineStart + 2);
+            int tab2 = (tab1 < 0) ? -1 : text.indexOf('\t', tab1 + 1);
+            if ((tab2 < 0) || (tab2 > lineEnd))
+                throw new IOException("history data is corrupt: " + text.substring(lineStart, lineEnd));
+
+            char marker = text.charAt(lineStart);
+            ChangeType type = (marker == '+') ? ChangeType.ADDED
+                            : (marker == '-') ? ChangeType.REMOVED
+                            : ChangeType.CHANGED;
+            Entry entry = new Entry(text.substring(lineStart + 2, tab1),
+                                    HttpMethod.valueOf(text.substring(tab1 + 1, tab2)),
+                                    RouteSnapshot.unescape(text.substring(tab2 + 1, lineEnd)));
+            result.add(new Record(type, entry));
+            lineStart = lineEnd + 1;
+        }
+        return result;
+    }
+
+
+    private static long[] toArray(List<Long> values)
+    {
+        long[] result = new long[values.size()];
+        for (int ii = 0 ; ii < result.length ; ii++)
+            result[ii] = values.get(ii).longValue();
+        return result;
+    }
+
+
+    /**
+     *  Writes records to the end of the data file, tracking their positions
+     *  and building the sparse index.
+     */
+    private class RecordWriter
+    implements RouteDiff.Listener
+    {
+        private FileOutputStream fileOut;
+        private OutputStream out;
+        public long position;
+        public int count;
+        public String lastUrl;
+        public List<String> sparseUrls = new ArrayList<String>();
+        public List<Long> sparseOffsets = new ArrayList<Long>();
+
+        public RecordWriter(long position)
+        throws IOException
+        {
+            this.fileOut = new FileOutputStream(dataFile, true);
+            this.out = new BufferedOutputStream(fileOut, 65536);
+            this.position = position;
+        }
+
+        @Override
+        public void added(Entry newEntry)
+        {
+            addToDelta('+', newEntry);
+        }
+
+        @Override
+        public void removed(Entry oldEntry)
+        {
+            addToDelta('-', oldEntry);
+        }
+
+        @Override
+        public void changed(Entry oldEntry, Entry newEntry)
+        {
+            addToDelta('~', newEntry);
+        }
+
+        private void addToDelta(char marker, Entry entry)
+        {
+            if (count % SPARSE_INTERVAL == 0)
+            {
+                sparseUrls.add(entry.getUrl());
+                sparseOffsets.add(Long.valueOf(position));
+            }
+            lastUrl = entry.getUrl();
+            count++;
+            write(marker, entry);
+        }
+
+        public void write(char marker, Entry entry)
+        {
+            String line = marker + "\t" + entry.getUrl()
+                        + "\t" + entry.getMethod().name()
+                        + "\t" + RouteSnapshot.escape(entry.getDestination())
+                        + "\n";
+            try
+            {
+                byte[] bytes = line.getBytes(ENCODING);
+                out.write(bytes);
+                position += bytes.length;
+            }
+            catch (IOException ex)
+            {
+                throw new IllegalStateException("unable to write history", ex);
+            }
+        }
+
+        public void close()
+        throws IOException
+        {
+            // the records must be durable before the index refers to them
+            out.flush();
+            fileOut.getFD().sync();
+            out.close();
+        }
+
+        public void closeQuietly()
+        {
+            IOUtil.closeQuietly(out);
+        }
+    }
+
+
+    private static class Record
+    {
+        public ChangeType type;
+        public Entry entry;
+
+        public Record(ChangeType type, Entry entry)
+        {
+            this.type = type;
+            this.entry = entry;
+        }
+    }
+
+
+//----------------------------------------------------------------------------
+//  Supporting classes
+//----------------------------------------------------------------------------
+
+    /**
+     *  A single build. The location fields are only of interest to the store.
+     */
+    public static class Build
+    {
+        private int seq;
+        private String label;
+        private long timestamp;
+        private int changeCount;
+        private long deltaStart;
+        private long deltaEnd;
+        private long checkpointStart = -1;
+        private long checkpointEnd = -1;
+        private String lastUrl;
+        private String[] sparseUrls = new String[0];
+        private long[] sparseOffsets = new long[0];
+
+        private Build(int seq, String label, long timestamp)
+        {
+            this.seq = seq;
+            this.label = label;
+            this.timestamp = timestamp;
+        }
+
+        /**
+         *  Returns this build's position in the store, starting at 0.
+         */
+        public int getSequence()
+        {
+            return seq;
+        }
+
+        public String getLabel()
+        {
+            return label;
+        }
+
+        /**
+         *  Returns the time that the build was appended, in millis since epoch.
+         */
+        public long getTimestamp()
+        {
+            return timestamp;
+        }
+
+        /**
+         *  Returns the number of routes that were added, removed, or changed
+         *  from the previous build.
+         */
+        public int getChangeCount()
+        {
+            return changeCount;
+        }
+
+        @Override
+        public String toString()
+        {
+            return label;
+        }
+    }
+
+
+    /**
+     *  A single change to a route.
+     */
+    public static class Event
+    {
+        private Build build;
+        private ChangeType type;
+        private Entry entry;
+
+        public Event(Build build, ChangeType type, Entry entry)
+        {
+            this.build = build;
+            this.type = type;
+            this.entry = entry;
+        }
+
+        public Build getBuild()
+        {
+            return build;
+        }
+
+        public ChangeType getType()
+        {
+            return type;
+        }
+
+        public Entry getEntry()
+        {
+            return entry;
+        }
+
+        @Override
+        public String toString()
+        {
+            return build + " " + type + " " + entry;
+        }
+    }
+}
@@ -0,0 +1,395 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.util;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.sf.kdgcommons.io.IOUtil;
+
+import com.kdgregory.pathfinder.core.Destination;
+import com.kdgregory.pathfinder.core.HttpMethod;
+import com.kdgregory.pathfinder.core.InvocationOptions;
+import com.kdgregory.pathfinder.core.PathRepo;
+
+
+/**
+ *  A binary file of routes that's intended to be memory-mapped by its consumers,
+ *  and searched without parsing. This class writes the file from a repository,
+ *  and reads it.
+ *  <p>
+ *  All numbers are big-endian 32-bit ints, and all references are either byte
+ *  offsets from the start of the file or indexes into a table. The file has five
+ *  sections:
+ *  <ul>
+ *  <li> Header (40 bytes): the magic number "PFRM", format version (1), the number
+ *       of routes, destinations, and strings, and the offsets of the other four
+ *       sections. The last int is reserved.
+ *  <li> Routes (12 bytes each): URL string index, method string index (the name
+ *       of the {@link HttpMethod}, so "ALL" rather than blank), and destination
+ *       index. Routes are in repository order: sorted by URL (comparing UTF-16
+ *       code units, as <code>String.compareTo()</code> does), then by method.
+ *  <li> Destinations (8 bytes each): description string index, and type string
+ *       index (the destination's simple class name). Routes with the same
+ *       description and type share a destination.
+ *  <li> String index: one offset per string, plus a final offset that marks the
+ *       end of the last string.
+ *  <li> String data: the strings, UTF-8 encoded, without separators. Each distinct
+ *       string is stored once.
+ *  </ul>
+ *  Only destinations that are displayed under the writer's options are written,
+ *  and they're described using those options.
+ *  <p>
+ *  Instances are immutable, and may be shared between threads. The mapping is
+ *  released when the instance is garbage-collected.
+ */
+public class RouteManifest
+{
+    public final static int MAGIC = 0x5046524D;     // "PFRM"
+    public final static int VERSION = 1;
+    public final static int HEADER_SIZE = 40;
+    public final static int ROUTE_SIZE = 12;
+    public final static int DESTINATION_SIZE = 8;
+
+    private final static Charset UTF8 = Charset.forName("UTF-8");
+
+    private ByteBuffer buf;
+    private int routeCount;
+    private int destinationCount;
+    private int stringCount;
+    private int routesOffset;
+    private int destinationsOffset;
+    private int stringIndexOffset;
+    private int stringDataOffset;
+
+
+    /**
+     *  Maps a manifest file.
+     *
+     *  @throws IllegalArgumentException if the file isn't a manifest, or is an
+     *          unsupported version.
+     */
+    public RouteManifest(File file)
+    throws IOException
+    {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try
+        {
+            FileChannel channel = raf.getChannel();
+            init(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+        finally
+        {
+            IOUtil.closeQuietly(raf);
+        }
+    }
+
+
+    /**
+     *  Reads a manifest that's already in memory. The buffer's position and
+     *  limit are ignored; the manifest must start at offset 0.
+     *
+     *  @throws IllegalArgumentException if the buffer doesn't hold a manifest,
+     *          or holds an unsupported version.
+     */
+    public RouteManifest(ByteBuffer buf)
+    {
+        init(buf.duplicate());
+    }
+
+
+    private void init(ByteBuffer buffer)
+    {
+        buf = buffer;
+        if ((buf.capacity() < HEADER_SIZE) || (buf.getInt(0) != MAGIC))
+            throw new IllegalArgumentException("not a route manifest");
+        if (buf.getInt(4) != VERSION)
+            throw new IllegalArgumentException("unsupported route manifest version: " + buf.getInt(4));
+
+        routeCount = buf.getInt(8);
+        destinationCount = buf.getInt(12);
+        stringCount = buf.getInt(16);
+        routesOffset = buf.getInt(20);
+        destinationsOffset = buf.getInt(24);
+        stringIndexOffset = buf.getInt(28);
+        stringDataOffset = buf.getInt(32);
+    }
+
+
+//----------------------------------------------------------------------------
+//  Writing
+//----------------------------------------------------------------------------
+
+    /**
+     *  Writes the repository's displayed destinations as a manifest. Routes are
+     *  written as the repository is iterated; the (deduplicated) destinations and
+     *  strings are retained until the routes have been written.
+     */
+    public static void write(PathRepo repo, Map<InvocationOptions,Boolean> options, File file)
+    throws IOException
+    {
+        FileOutputStream fos = new FileOutputStream(file);
+        try
+        {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos, 65536));
+            out.write(new byte[HEADER_SIZE]);
+
+            Interner strings = new Interner();
+            Map<String,Integer> destLookup = new HashMap<String,Integer>();
+            List<int[]> destinations = new ArrayList<int[]>();
+            int routeCount = 0;
+            for (String url : repo)
+            {
+                int urlId = strings.intern(url);
+                for (Map.Entry<HttpMethod,Destination> entry : repo.get(url).entrySet())
+                {
+                    Destination dest = entry.getValue();
+                    if (!dest.isDisplayed(options))
+                        continue;
+
+                    String description = dest.toString(options);
+                    String type = dest.getClass().getSimpleName();
+                    String destKey = type + "\n" + description;
+                    Integer destIdx = destLookup.get(destKey);
+                    if (destIdx == null)
+                    {
+                        destIdx = Integer.valueOf(destinations.size());
+                        destLookup.put(destKey, destIdx);
+                        destinations.add(new int[] { strings.intern(description), strings.intern(type) });
+                    }
+
+                    out.writeInt(urlId);
+                    out.writeInt(strings.intern(entry.getKey().name()));
+                    out.writeInt(destIdx.intValue());
+                    routeCount++;
+                }
+            }
+
+            for (int[] dest : destinations)
+            {
+                out.writeInt(dest[0]);
+                out.writeInt(dest[1]);
+            }
+
+            long offset = 0;
+            for (byte[] bytes : strings.values)
+            {
+                out.writeInt((int)offset);
+                offset += bytes.length;
+            }
+            out.writeInt((int)offset);
+
+            for (byte[] bytes : strings.values)
+            {
+                out.write(bytes);
+            }
+            out.flush();
+
+            // computed as longs so that an oversized manifest is caught, not wrapped
+            long destinationsOffset = HEADER_SIZE + (long)routeCount * ROUTE_SIZE;
+            long stringIndexOffset = destinationsOffset + (long)destinations.size() * DESTINATION_SIZE;
+            long stringDataOffset = stringIndexOffset + (strings.values.size() + 1L) * 4;
+            if (stringDataOffset + offset > Integer.MAX_VALUE)
+                throw new IllegalStateException("route manifest exceeds 2GB");
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC)
+                  .putInt(VERSION)
+                  .putInt(routeCount)
+                  .putInt(destinations.size())
+                  .putInt(strings.values.size())
+                  .putInt(HEADER_SIZE)
+                  .putInt((int)destinationsOffset)
+                  .putInt((int)stringIndexOffset)
+                  .putInt((int)stringDataOffset)
+                  .putInt(0);
+            header.flip();
+            fos.getChannel().write(header, 0);
+            out.close();
+        }
+        finally
+        {
+            IOUtil.closeQuietly(fos);
+        }
+    }
+
+
+//----------------------------------------------------------------------------
+//  Reading
+//----------------------------------------------------------------------------
+
+    public int getRouteCount()
+    {
+        return routeCount;
+    }
+
+
+    public int getDestinationCount()
+    {
+        return destinationCount;
+    }
+
+
+    public int getStringCount()
+    {
+        return stringCount;
+    }
+
+
+    public String getUrl(int route)
+    {
+        return getString(routeField(route, 0));
+    }
+
+
+    public HttpMethod getMethod(int route)
+    {
+        return HttpMethod.valueOf(getString(routeField(route, 1)));
+    }
+
+
+    /**
+     *  Returns the description of the route's destination.
+     */
+    public String getDestination(int route)
+    {
+        return getString(buf.getInt(destinationOffset(route)));
+    }
+
+
+    /**
+     *  Returns the simple class name of the route's destination.
+     */
+    public String getDestinationType(int route)
+    {
+        return getString(buf.getInt(destinationOffset(route) + 4));
+    }
+
+
+    /**
+     *  Returns the index of the first route for a URL, -1 if the manifest doesn't
+     *  contain the URL. This is a binary search, which decodes only the URLs that
+     *  it examines.
+     */
+    public int find(String url)
+    {
+        int lo = 0;
+        int hi = routeCount - 1;
+        int result = -1;
+        while (lo <= hi)
+        {
+            int mid = (lo + hi) >>> 1;
+            int cmp = getUrl(mid).compareTo(url);
+            if (cmp < 0)
+            {
+                lo = mid + 1;
+            }
+            else
+            {
+                if (cmp == 0)
+                    result = mid;
+                hi = mid - 1;
+            }
+        }
+        return result;
+    }
+
+
+    /**
+     *  Returns the index of the route for a URL and method, falling back to the
+     *  URL's route for {@link HttpMethod#ALL}. Returns -1 if there's no route.
+     */
+    public int find(String url, HttpMethod method)
+    {
+        int first = find(url);
+        if (first < 0)
+            return -1;
+
+        int fallback = -1;
+        int urlId = routeField(first, 0);
+        for (int route = first ; (route < routeCount) && (routeField(route, 0) == urlId) ; route++)
+        {
+            String routeMethod = getString(routeField(route, 1));
+            if (routeMethod.equals(method.name()))
+                return route;
+            if (routeMethod.equals(HttpMethod.ALL.name()))
+                fallback = route;
+        }
+        return fallback;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    private int routeField(int route, int field)
+    {
+        if ((route < 0) || (route >= routeCount))
+            throw new IndexOutOfBoundsException("route " + route + " of " + routeCount);
+        return buf.getInt(routesOffset + route * ROUTE_SIZE + field * 4);
+    }
+
+
+    private int destinationOffset(int route)
+    {
+        return destinationsOffset + routeField(route, 2) * DESTINATION_SIZE;
+    }
+
+
+    private String getString(int id)
+    {
+        int start = buf.getInt(stringIndexOffset + id * 4);
+        int end = buf.getInt(stringIndexOffset + id * 4 + 4);
+        byte[] bytes = new byte[end - start];
+        ByteBuffer view = buf.duplicate();
+        view.position(stringDataOffset + start);
+        view.get(bytes);
+        return new String(bytes, UTF8);
+    }
+
+
+    /**
+     *  Assigns sequential ids to distinct strings, retaining their encoded form.
+     */
+    private static class Interner
+    {
+        public Map<String,Integer> ids = new HashMap<String,Integer>();
+        public List<byte[]> values = new ArrayList<byte[]>();
+
+        public int intern(String value)
+        {
+            Integer id = ids.get(value);
+            if (id == null)
+            {
+                id = Integer.valueOf(values.size());
+                ids.put(value, id);
+                values.add(value.getBytes(UTF8));
+            }
+            return id.intValue();
+        }
+    }
+}
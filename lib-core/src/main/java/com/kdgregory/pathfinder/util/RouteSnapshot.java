@@ -0,0 +1,321 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import com.kdgregory.pathfinder.core.Destination;
+import com.kdgregory.pathfinder.core.HttpMethod;
+import com.kdgregory.pathfinder.core.InvocationOptions;
+import com.kdgregory.pathfinder.core.PathRepo;
+
+
+/**
+ *  Converts a repository into a stream of {@link Entry} objects (URL, method,
+ *  and destination description), and saves or restores that stream as a text
+ *  file. Entries are always produced in the repository's iteration order (by
+ *  URL, then by method), so that two streams can be merged without sorting.
+ *  <p>
+ *  The file format is a header line followed by one tab-separated line per
+ *  entry. Backslashes, tabs, and newlines in the destination are escaped.
+ *  Destinations are stored as their descriptions, using the options in effect
+ *  when the file was written; destinations that wouldn't be displayed with
+ *  those options are omitted.
+ */
+public class RouteSnapshot
+{
+    public final static String HEADER = "# pathfinder route snapshot v1";
+
+
+//----------------------------------------------------------------------------
+//  Public Methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Returns an iterator over the displayed destinations in a repository.
+     *  The iterator reads the repository as it advances, so doesn't retain
+     *  more than one URL's destinations.
+     */
+    public static Iterator<Entry> iterate(final PathRepo repo, final Map<InvocationOptions,Boolean> options)
+    {
+        return new AbstractEntryIterator()
+        {
+            private Iterator<String> urlItx = repo.iterator();
+            private String url;
+            private Iterator<Map.Entry<HttpMethod,Destination>> destItx = Collections.<HttpMethod,Destination>emptyMap().entrySet().iterator();
+
+            @Override
+            protected Entry advance()
+            {
+                while (true)
+                {
+                    while (destItx.hasNext())
+                    {
+                        Map.Entry<HttpMethod,Destination> dest = destItx.next();
+                        if (dest.getValue().isDisplayed(options))
+                            return new Entry(url, dest.getKey(), dest.getValue().toString(options));
+                    }
+                    if (!urlItx.hasNext())
+                        return null;
+                    url = urlItx.next();
+                    destItx = repo.get(url).entrySet().iterator();
+                }
+            }
+        };
+    }
+
+
+    /**
+     *  Writes a repository's displayed destinations in snapshot format, and flushes
+     *  the output. Does not close the output, which should be buffered (and, if it
+     *  writes a file, should use UTF-8).
+     */
+    public static void write(PathRepo repo, Map<InvocationOptions,Boolean> options, Writer out)
+    throws IOException
+    {
+        out.write(HEADER);
+        out.write('\n');
+        for (Iterator<Entry> itx = iterate(repo, options) ; itx.hasNext() ; )
+        {
+            Entry entry = itx.next();
+            out.write(entry.getUrl());
+            out.write('\t');
+            out.write(entry.getMethod().name());
+            out.write('\t');
+            out.write(escape(entry.getDestination()));
+            out.write('\n');
+        }
+        out.flush();
+    }
+
+
+    /**
+     *  Returns an iterator that reads a snapshot file one line at a time. The
+     *  caller is responsible for closing the reader.
+     *
+     *  @throws IllegalArgumentException if the file doesn't have the expected
+     *          header, or (when advancing the iterator) if a line is malformed
+     *          or out of order.
+     *  @throws IllegalStateException (when advancing the iterator) if unable
+     *          to read the file.
+     */
+    public static Iterator<Entry> read(final BufferedReader in)
+    throws IOException
+    {
+        String header = in.readLine();
+        if (!HEADER.equals(header))
+            throw new IllegalArgumentException("not a route snapshot");
+
+        return new AbstractEntryIterator()
+        {
+            private int lineNumber = 1;
+            private Entry prev;
+
+            @Override
+            protected Entry advance()
+            {
+                String line;
+                try
+                {
+                    line = in.readLine();
+                    lineNumber++;
+                }
+                catch (IOException ex)
+                {
+                    throw new IllegalStateException("unable to read snapshot", ex);
+                }
+
+                if (line == null)
+                    return null;
+
+                int tab1 = line.indexOf('\t');
+                int tab2 = (tab1 < 0) ? -1 : line.indexOf('\t', tab1 + 1);
+                if (tab2 < 0)
+                    throw new IllegalArgumentException("malformed snapshot line " + lineNumber + ": " + line);
+
+                HttpMethod method;
+                try
+                {
+                    method = HttpMethod.valueOf(line.substring(tab1 + 1, tab2));
+                }
+                catch (IllegalArgumentException ex)
+                {
+                    throw new IllegalArgumentException("invalid method at snapshot line " + lineNumber + ": " + line);
+                }
+
+                Entry entry = new Entry(line.substring(0, tab1), method, unescape(line.substring(tab2 + 1)));
+                if ((prev != null) && (prev.compareTo(entry) >= 0))
+                    throw new IllegalArgumentException("snapshot out of order at line " + lineNumber + ": " + line);
+
+                prev = entry;
+                return entry;
+            }
+        };
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    static String escape(String value)
+    {
+        StringBuilder sb = null;
+        for (int ii = 0 ; ii < value.length() ; ii++)
+        {
+            char c = value.charAt(ii);
+            String replacement = (c == '\\') ? "\\\\"
+                               : (c == '\t') ? "\\t"
+                               : (c == '\n') ? "\\n"
+                               : (c == '\r') ? "\\r"
+                               : null;
+            if ((replacement != null) && (sb == null))
+                sb = new StringBuilder(value.length() + 8).append(value, 0, ii);
+            if (sb != null)
+            {
+                if (replacement != null)
+                    sb.append(replacement);
+                else
+                    sb.append(c);
+            }
+        }
+        return (sb == null) ? value : sb.toString();
+    }
+
+
+    static String unescape(String value)
+    {
+        if (value.indexOf('\\') < 0)
+            return value;
+
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int ii = 0 ; ii < value.length() ; ii++)
+        {
+            char c = value.charAt(ii);
+            if ((c == '\\') && (ii < value.length() - 1))
+            {
+                char next = value.charAt(++ii);
+                c = (next == 't') ? '\t'
+                  : (next == 'n') ? '\n'
+                  : (next == 'r') ? '\r'
+                  : next;
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+
+    /**
+     *  Base for lazy iterators: subclasses return the next entry, or null
+     *  when there are no more.
+     */
+    private static abstract class AbstractEntryIterator
+    implements Iterator<Entry>
+    {
+        private Entry next;
+        private boolean done;
+
+        protected abstract Entry advance();
+
+        @Override
+        public boolean hasNext()
+        {
+            if ((next == null) && !done)
+            {
+                next = advance();
+                done = (next == null);
+            }
+            return next != null;
+        }
+
+        @Override
+        public Entry next()
+        {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            Entry result = next;
+            next = null;
+            return result;
+        }
+
+        @Override
+        public void remove()
+        {
+            throw new UnsupportedOperationException("snapshots are read-only");
+        }
+    }
+
+
+//----------------------------------------------------------------------------
+//  Supporting classes
+//----------------------------------------------------------------------------
+
+    /**
+     *  A single URL and method, with its destination's description. Entries
+     *  are ordered in the same way as a repository: by URL, then method.
+     */
+    public static class Entry
+    implements Comparable<Entry>
+    {
+        private String url;
+        private HttpMethod method;
+        private String destination;
+
+        public Entry(String url, HttpMethod method, String destination)
+        {
+            this.url = url;
+            this.method = method;
+            this.destination = destination;
+        }
+
+        public String getUrl()
+        {
+            return url;
+        }
+
+        public HttpMethod getMethod()
+        {
+            return method;
+        }
+
+        public String getDestination()
+        {
+            return destination;
+        }
+
+        /**
+         *  Compares URL and method, ignoring destination.
+         */
+        @Override
+        public int compareTo(Entry that)
+        {
+            int cmp = url.compareTo(that.url);
+            return (cmp != 0) ? cmp : method.compareTo(that.method);
+        }
+
+        @Override
+        public String toString()
+        {
+            return url + " " + method + " " + destination;
+        }
+    }
+}
@@ -14,7 +14,7 @@
 
 package com.kdgregory.pathfinder.util;
 
-import java.io.File;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 
@@ -31,8 +31,7 @@ import com.kdgregory.pathfinder.core.impl.WarMachineImpl;
 public abstract class TestHelpers
 {
     /**
-     *  Extracts a WAR that's stored as a resource on the classpath,
-     *  and puts it in a temporary file.
+     *  Reads a WAR that's stored as a resource on the classpath into memory.
      */
     public static WarMachine createWarMachine(String warName)
     throws IOException
@@ -43,8 +42,9 @@ public abstract class TestHelpers
             in = TestHelpers.class.getClassLoader().getResourceAsStream(warName);
             if (in == null)
                 throw new IllegalArgumentException("couldn't find " + warName + " on classpath");
-            File warFile = IOUtil.createTempFile(in, warName);
-            return new WarMachineImpl(warFile);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            IOUtil.copy(in, out);
+            return new WarMachineImpl(out.toByteArray());
         }
         finally
         {
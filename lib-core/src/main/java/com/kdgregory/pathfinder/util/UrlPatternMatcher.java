@@ -0,0 +1,182 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ *  Matches paths against a set of <code>web.xml</code> URL patterns, each of which
+ *  is associated with a value. Patterns are classified when added, following the
+ *  servlet spec:
+ *  <ul>
+ *  <li> "/" is the default pattern.
+ *  <li> Patterns starting with "/" and ending with "/*" are path prefixes;
+ *       "/foo/*" matches "/foo" and anything under it, and "/*" matches all paths.
+ *  <li> Patterns starting with "*." are extensions.
+ *  <li> Anything else must match exactly.
+ *  </ul>
+ *  Each kind of pattern is held in a hash table, so matching a path costs one
+ *  lookup per path segment, regardless of the number of patterns.
+ *  <p>
+ *  Instances may be shared between threads once populated.
+ */
+public class UrlPatternMatcher<T>
+{
+    private Map<String,List<T>> exact = new HashMap<String,List<T>>();
+    private Map<String,List<T>> prefix = new HashMap<String,List<T>>();
+    private Map<String,List<T>> extension = new HashMap<String,List<T>>();
+    private List<T> defaults = new ArrayList<T>();
+
+
+//----------------------------------------------------------------------------
+//  Public Methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Associates a value with a pattern. A pattern may have multiple values;
+     *  they're retained in the order added.
+     */
+    public void add(String pattern, T value)
+    {
+        if (pattern.equals("/"))
+            defaults.add(value);
+        else if (pattern.startsWith("/") && pattern.endsWith("/*"))
+            addTo(prefix, pattern.substring(0, pattern.length() - 2), value);
+        else if (pattern.startsWith("*."))
+            addTo(extension, pattern.substring(2), value);
+        else
+            addTo(exact, pattern, value);
+    }
+
+
+    /**
+     *  Determines whether the matcher contains the given pattern.
+     */
+    public boolean contains(String pattern)
+    {
+        if (pattern.equals("/"))
+            return !defaults.isEmpty();
+        else if (pattern.startsWith("/") && pattern.endsWith("/*"))
+            return prefix.containsKey(pattern.substring(0, pattern.length() - 2));
+        else if (pattern.startsWith("*."))
+            return extension.containsKey(pattern.substring(2));
+        else
+            return exact.containsKey(pattern);
+    }
+
+
+    /**
+     *  Returns the values of the pattern that the servlet container would pick
+     *  for a path: an exact match, then the longest prefix, then extension, and
+     *  finally the default. Returns an empty list if nothing matches.
+     */
+    public List<T> matchBest(String path)
+    {
+        List<T> result = exact.get(path);
+        if (result != null)
+            return result;
+
+        result = prefix.get(path);
+        if (result != null)
+            return result;
+
+        for (int idx = path.lastIndexOf('/') ; idx >= 0 ; idx = path.lastIndexOf('/', idx - 1))
+        {
+            result = prefix.get(path.substring(0, idx));
+            if (result != null)
+                return result;
+            if (idx == 0)
+                break;
+        }
+
+        String ext = getExtension(path);
+        result = (ext == null) ? null : extension.get(ext);
+        if (result != null)
+            return result;
+
+        return Collections.unmodifiableList(defaults);
+    }
+
+
+    /**
+     *  Returns the values of every pattern that matches a path, as used to pick
+     *  filters: exact, prefix (shortest first), then extension. The default pattern
+     *  only matches the path "/".
+     */
+    public List<T> matchAll(String path)
+    {
+        List<T> result = new ArrayList<T>();
+        addFrom(exact, path, result);
+
+        int idx = path.startsWith("/") ? 0 : -1;
+        while (idx >= 0)
+        {
+            addFrom(prefix, path.substring(0, idx), result);
+            idx = path.indexOf('/', idx + 1);
+        }
+        if (path.length() > 0)
+            addFrom(prefix, path, result);
+
+        String ext = getExtension(path);
+        if (ext != null)
+            addFrom(extension, ext, result);
+
+        if (path.equals("/"))
+            result.addAll(defaults);
+
+        return result;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    private void addTo(Map<String,List<T>> map, String key, T value)
+    {
+        List<T> values = map.get(key);
+        if (values == null)
+        {
+            values = new ArrayList<T>(1);
+            map.put(key, values);
+        }
+        values.add(value);
+    }
+
+
+    private void addFrom(Map<String,List<T>> map, String key, List<T> result)
+    {
+        List<T> values = map.get(key);
+        if (values != null)
+            result.addAll(values);
+    }
+
+
+    /**
+     *  Returns the extension of the last segment of a path, <code>null</code>
+     *  if it doesn't have one.
+     */
+    private static String getExtension(String path)
+    {
+        int slash = path.lastIndexOf('/');
+        int dot = path.lastIndexOf('.');
+        return (dot > slash) ? path.substring(dot + 1) : null;
+    }
+}
@@ -21,6 +21,9 @@ import java.util.Map;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
+import com.kdgregory.pathfinder.core.impl.BufferedPathRepo;
+import com.kdgregory.pathfinder.core.impl.ConcurrentPathRepo;
+import com.kdgregory.pathfinder.core.impl.FrozenPathRepo;
 import com.kdgregory.pathfinder.core.impl.PathRepoImpl;
 
 
@@ -300,4 +303,215 @@ public class TestPathRepo
         assertEquals("removed entire mapping", 2, repo.urlCount());
     }
 
+
+    @Test
+    public void testBufferedRepoReplaysOperations() throws Exception
+    {
+        PathRepoImpl repo = new PathRepoImpl();
+        repo.put(URL_1, HttpMethod.GET, DEST_1);
+        repo.put(URL_2, HttpMethod.GET, DEST_1);
+        repo.put(URL_3, DEST_1);
+
+        BufferedPathRepo buffer = new BufferedPathRepo();
+        buffer.put(URL_1, DEST_2);                      // replaces the existing GET
+        buffer.put(URL_2, HttpMethod.POST, DEST_2);     // adds to the existing GET
+        buffer.remove(URL_3, HttpMethod.ALL);
+
+        assertEquals("buffer sees own writes", DEST_2, buffer.get(URL_1, HttpMethod.GET));
+        assertEquals("buffered operations",    3,      buffer.size());
+        assertEquals("target not yet updated", DEST_1, repo.get(URL_1, HttpMethod.GET));
+
+        buffer.replay(repo);
+
+        assertSame("replace",   DEST_2, repo.get(URL_1, HttpMethod.GET));
+        assertEquals("replace", 1,      repo.get(URL_1).size());
+        assertSame("override",  DEST_1, repo.get(URL_2, HttpMethod.GET));
+        assertSame("override",  DEST_2, repo.get(URL_2, HttpMethod.POST));
+        assertNull("remove",            repo.get(URL_3, HttpMethod.GET));
+        assertEquals("url count", 2, repo.urlCount());
+    }
+
+
+    @Test
+    public void testFreeze() throws Exception
+    {
+        PathRepo repo = new PathRepoImpl();
+        repo.put(URL_1, DEST_1);
+        repo.put(URL_1, HttpMethod.POST, DEST_2);
+        repo.put(URL_2, HttpMethod.GET, DEST_1);
+        repo.put(URL_3, HttpMethod.GET, DEST_2);
+        repo.remove(URL_3, HttpMethod.ALL);
+
+        FrozenPathRepo frozen = (FrozenPathRepo)repo.freeze();
+
+        assertEquals("url count",           2,                  frozen.urlCount());
+        assertEquals("path count",          3,                  frozen.pathCount());
+        assertEquals("distinct dests",      2,                  frozen.destinationCount());
+        assertEquals("toString",            repo.toString().replace("," + URL_3, ""), frozen.toString());
+        assertSame("explicit method",       DEST_2,             frozen.get(URL_1, HttpMethod.POST));
+        assertSame("fallback to ALL",       DEST_1,             frozen.get(URL_1, HttpMethod.PUT));
+        assertNull("no fallback",                               frozen.get(URL_2, HttpMethod.POST));
+        assertNull("unknown URL",                               frozen.get(BOGUS_URL, HttpMethod.GET));
+        assertEquals("destination map",     repo.get(URL_1),    frozen.get(URL_1));
+        assertSame("pattern retained",      repo.getPattern(URL_1), frozen.getPattern(URL_1));
+        assertSame("freezing frozen repo",  frozen,             frozen.freeze());
+
+        Iterator<String> itx = frozen.iterator();
+        assertEquals("iterator", URL_2, itx.next());
+        assertEquals("iterator", URL_1, itx.next());
+        assertFalse("iterator", itx.hasNext());
+
+        repo.put(URL_3, DEST_1);
+        assertEquals("snapshot not changed by later updates", 2, frozen.urlCount());
+
+        try
+        {
+            frozen.put(URL_3, DEST_1);
+            fail("able to update frozen repo");
+        }
+        catch (UnsupportedOperationException ex)
+        {
+            // success
+        }
+    }
+
+
+    @Test
+    public void testFrozenRepoBuilder() throws Exception
+    {
+        FrozenPathRepo frozen = new FrozenPathRepo.Builder()
+                                .add(URL_2, HttpMethod.GET, DEST_1)
+                                .add(URL_1, HttpMethod.ALL, DEST_1)
+                                .add(URL_2, HttpMethod.GET, DEST_2)
+                                .add(URL_2, HttpMethod.POST, DEST_2)
+                                .build();
+
+        assertEquals("url count",           2,          frozen.urlCount());
+        assertEquals("path count",          3,          frozen.pathCount());
+        assertSame("last write wins",       DEST_2,     frozen.get(URL_2, HttpMethod.GET));
+        assertSame("ALL mapping",           DEST_1,     frozen.get(URL_1, HttpMethod.DELETE));
+        assertEquals("parsed pattern",      RoutePattern.Kind.EXACT, frozen.getPattern(URL_1).getKind());
+        assertEquals("empty builder",       0,          new FrozenPathRepo.Builder().build().urlCount());
+    }
+
+
+    @Test
+    public void testConcurrentRepoSequentialSemantics() throws Exception
+    {
+        PathRepo repo = new ConcurrentPathRepo();
+
+        repo.put(URL_1, DEST_1);
+        repo.put(URL_1, HttpMethod.POST, DEST_2);
+        assertSame("explicit method",   DEST_2, repo.get(URL_1, HttpMethod.POST));
+        assertSame("fallback to ALL",   DEST_1, repo.get(URL_1, HttpMethod.GET));
+
+        repo.put(URL_1, DEST_2);
+        assertEquals("replace clears methods", 1, repo.get(URL_1).size());
+
+        repo.put(URL_2, HttpMethod.ALL, DEST_1);
+        repo.remove(URL_2, HttpMethod.POST);
+        assertSame("remove expands ALL",    DEST_1, repo.get(URL_2, HttpMethod.GET));
+        assertNull("remove expands ALL",            repo.get(URL_2, HttpMethod.POST));
+
+        repo.remove(BOGUS_URL, HttpMethod.ALL);
+        repo.put(URL_3, DEST_1);
+        repo.remove(URL_3, HttpMethod.ALL);
+        assertEquals("url count", 2, repo.urlCount());
+
+        Iterator<String> itx = repo.iterator();
+        assertEquals("iterator", URL_2, itx.next());
+        assertEquals("iterator", URL_1, itx.next());
+        assertFalse("iterator", itx.hasNext());
+    }
+
+
+    @Test
+    public void testConcurrentRepoOrdersWriters() throws Exception
+    {
+        ConcurrentPathRepo repo = new ConcurrentPathRepo();
+        PathRepo first = repo.writer(0);
+        PathRepo second = repo.writer(1);
+
+        // the second writer's operations happen before the first's, but the
+        // result must be as if the first ran to completion before the second
+
+        second.remove(URL_1, HttpMethod.ALL);
+        second.put(URL_2, HttpMethod.POST, DEST_2);
+        second.put(URL_3, DEST_2);
+
+        first.put(URL_1, DEST_1);
+        first.put(URL_2, DEST_1);
+        first.put(URL_3, HttpMethod.GET, DEST_1);
+
+        assertEquals("removed by later writer",     0,      repo.get(URL_1).size());
+        assertSame("later writer adds method",      DEST_2, repo.get(URL_2, HttpMethod.POST));
+        assertSame("earlier writer's ALL retained", DEST_1, repo.get(URL_2, HttpMethod.GET));
+        assertSame("later writer replaces",         DEST_2, repo.get(URL_3, HttpMethod.GET));
+        assertEquals("later writer replaces",       1,      repo.get(URL_3).size());
+        assertEquals("url count",                   2,      repo.urlCount());
+        assertEquals("pattern",                     URL_2,  repo.getPattern(URL_2).toString());
+    }
+
+
+    @Test
+    public void testConcurrentRepoFinishWriters() throws Exception
+    {
+        ConcurrentPathRepo repo = new ConcurrentPathRepo();
+        PathRepo first = repo.writer(0);
+        PathRepo second = repo.writer(1);
+
+        second.remove(URL_1, HttpMethod.ALL);
+        second.put(URL_2, HttpMethod.POST, DEST_2);
+        first.put(URL_1, DEST_1);
+        first.put(URL_2, DEST_1);
+        assertEquals("removed by later writer",     0,      repo.get(URL_1).size());
+
+        repo.finishWriters();
+        assertSame("content retained",              DEST_2, repo.get(URL_2, HttpMethod.POST));
+        assertSame("content retained",              DEST_1, repo.get(URL_2, HttpMethod.GET));
+
+        // finished operations are no longer replayed, but new ones are still ordered
+
+        first.put(URL_1, DEST_1);
+        assertSame("earlier removal not replayed",  DEST_1, repo.get(URL_1, HttpMethod.GET));
+
+        second.put(URL_2, HttpMethod.GET, DEST_2);
+        first.put(URL_2, HttpMethod.GET, DEST_1);
+        assertSame("later writer still wins",       DEST_2, repo.get(URL_2, HttpMethod.GET));
+        assertSame("base retained in replay",       DEST_2, repo.get(URL_2, HttpMethod.POST));
+        assertEquals("url count",                   2,      repo.urlCount());
+    }
+
+
+    @Test
+    public void testConcurrentRepoWithThreads() throws Exception
+    {
+        final ConcurrentPathRepo repo = new ConcurrentPathRepo();
+        final int numUrls = 1000;
+
+        Thread[] threads = new Thread[4];
+        for (int ii = 0 ; ii < threads.length ; ii++)
+        {
+            final PathRepo writer = repo.writer(ii);
+            final Destination dest = (ii == threads.length - 1) ? DEST_2 : DEST_1;
+            threads[ii] = new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    for (int jj = 0 ; jj < numUrls ; jj++)
+                        writer.put("/url" + jj, dest);
+                }
+            });
+        }
+
+        for (Thread thread : threads)
+            thread.start();
+        for (Thread thread : threads)
+            thread.join();
+
+        assertEquals("url count", numUrls, repo.urlCount());
+        for (int jj = 0 ; jj < numUrls ; jj++)
+            assertSame("last writer wins: /url" + jj, DEST_2, repo.get("/url" + jj, HttpMethod.GET));
+    }
 }
@@ -0,0 +1,150 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.core;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import com.kdgregory.pathfinder.core.RoutePattern.Kind;
+import com.kdgregory.pathfinder.core.RoutePattern.Segment;
+import com.kdgregory.pathfinder.core.impl.PathRepoImpl;
+
+
+public class TestRoutePattern
+{
+    @Test
+    public void testClassification() throws Exception
+    {
+        assertEquals("default",     Kind.DEFAULT,   RoutePattern.parse("/").getKind());
+        assertEquals("extension",   Kind.EXTENSION, RoutePattern.parse("*.do").getKind());
+        assertEquals("prefix",      Kind.PREFIX,    RoutePattern.parse("/foo/*").getKind());
+        assertEquals("root prefix", Kind.PREFIX,    RoutePattern.parse("/*").getKind());
+        assertEquals("exact",       Kind.EXACT,     RoutePattern.parse("/foo/bar.html").getKind());
+        assertEquals("variable",    Kind.TEMPLATE,  RoutePattern.parse("/foo/{id}").getKind());
+        assertEquals("wildcard",    Kind.TEMPLATE,  RoutePattern.parse("/foo/*.html").getKind());
+        assertEquals("catch-all",   Kind.TEMPLATE,  RoutePattern.parse("/foo/**").getKind());
+        assertEquals("mixed",       Kind.TEMPLATE,  RoutePattern.parse("/{id}/*").getKind());
+
+        assertEquals("extension value", "do",   RoutePattern.parse("*.do").getExtension());
+        assertEquals("prefix value",    "/foo", RoutePattern.parse("/foo/*").getPrefix());
+        assertEquals("root prefix",     "",     RoutePattern.parse("/*").getPrefix());
+    }
+
+
+    @Test
+    public void testSegments() throws Exception
+    {
+        RoutePattern pattern = RoutePattern.parse("/users/{id:\\d{2,}}/{name}.html/**");
+        List<Segment> segments = pattern.getSegments();
+
+        assertEquals("segment count", 4, segments.size());
+        assertEquals("literal",         Segment.Type.LITERAL,           segments.get(0).getType());
+        assertEquals("variable",        Segment.Type.VARIABLE,          segments.get(1).getType());
+        assertEquals("variable name",   "id",                           segments.get(1).getVariableName());
+        assertEquals("constraint",      "\\d{2,}",                      segments.get(1).getConstraint().pattern());
+        assertEquals("composite",       Segment.Type.COMPOSITE,         segments.get(2).getType());
+        assertEquals("composite parts", 2,                              segments.get(2).getParts().size());
+        assertEquals("catch-all",       Segment.Type.DOUBLE_WILDCARD,   segments.get(3).getType());
+        assertTrue("has constraints",   pattern.hasConstraints());
+
+        assertSame("segments are interned",
+                   segments.get(0),
+                   RoutePattern.parse("/users/me").getSegments().get(0));
+    }
+
+
+    @Test
+    public void testUnusedSegmentsAreReleased() throws Exception
+    {
+        WeakReference<Segment> ref = new WeakReference<Segment>(
+                RoutePattern.parse("/testUnusedSegmentsAreReleased").getSegments().get(0));
+
+        for (int ii = 0 ; (ii < 20) && (ref.get() != null) ; ii++)
+        {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull("segment released once no pattern uses it", ref.get());
+    }
+
+
+    @Test
+    public void testMatches() throws Exception
+    {
+        RoutePattern pattern = RoutePattern.parse("/users/{id:\\d+}/*.html");
+        assertTrue("matches",                   pattern.matches("/users/12/foo.html"));
+        assertFalse("constraint fails",         pattern.matches("/users/bob/foo.html"));
+        assertFalse("extra segment",            pattern.matches("/users/12/foo.html/bar"));
+
+        pattern = RoutePattern.parse("/a/**/z");
+        assertTrue("zero segments",             pattern.matches("/a/z"));
+        assertTrue("several segments",          pattern.matches("/a/b/c/z"));
+        assertFalse("wrong terminal",           pattern.matches("/a/b/c/y"));
+
+        assertTrue("prefix, exact",             RoutePattern.parse("/foo/*").matches("/foo"));
+        assertTrue("prefix, child",             RoutePattern.parse("/foo/*").matches("/foo/bar"));
+        assertFalse("prefix, partial segment",  RoutePattern.parse("/foo/*").matches("/foobar"));
+        assertTrue("extension",                 RoutePattern.parse("*.do").matches("/foo/bar.do"));
+        assertFalse("extension in directory",   RoutePattern.parse("*.do").matches("/foo.do/bar"));
+        assertFalse("unconstrained, empty",     RoutePattern.parse("/foo/{id}").matches("/foo/"));
+    }
+
+
+    @Test
+    public void testJoin() throws Exception
+    {
+        assertEquals("no slashes",      "/servlet/foo",    RoutePattern.join("/servlet", "foo").toString());
+        assertEquals("both slashes",    "/servlet/foo",    RoutePattern.join("/servlet/", "/foo").toString());
+        assertEquals("empty prefix",    "/foo",            RoutePattern.join("", "/foo").toString());
+        assertEquals("empty relative",  "/servlet",        RoutePattern.join("/servlet/", "").toString());
+        assertEquals("null relative",   "/servlet",        RoutePattern.join("/servlet", null).toString());
+    }
+
+
+    @Test
+    public void testSpecificityOrdering() throws Exception
+    {
+        List<RoutePattern> patterns = new ArrayList<RoutePattern>();
+        for (String value : Arrays.asList("/", "*.do", "/foo/*", "/foo/**", "/foo/{id}",
+                                          "/foo/{id:\\d+}", "/foo/bar", "/foo/{a}/{b}"))
+        {
+            patterns.add(RoutePattern.parse(value));
+        }
+        Collections.sort(patterns, RoutePattern.SPECIFICITY);
+
+        assertEquals("sorted order",
+                     "[/foo/bar, /foo/{id:\\d+}, /foo/{id}, /foo/{a}/{b}, /foo/**, /foo/*, *.do, /]",
+                     patterns.toString());
+    }
+
+
+    @Test
+    public void testRepoRetainsParsedPattern() throws Exception
+    {
+        PathRepo repo = new PathRepoImpl();
+        repo.put("/foo/{id}", HttpMethod.GET, null);
+
+        RoutePattern pattern = repo.getPattern("/foo/{id}");
+        assertEquals("kind", Kind.TEMPLATE, pattern.getKind());
+        assertSame("parsed once", pattern, repo.getPattern("/foo/{id}"));
+        assertNull("unknown URL", repo.getPattern("/bar"));
+    }
+}
@@ -14,9 +14,12 @@
 
 package com.kdgregory.pathfinder.core;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.w3c.dom.Element;
@@ -29,7 +32,10 @@ import org.apache.commons.io.IOUtils;
 
 import net.sf.kdgcommons.io.IOUtil;
 
+import com.kdgregory.pathfinder.core.WarMachine.Dispatcher;
+import com.kdgregory.pathfinder.core.WarMachine.FilterMapping;
 import com.kdgregory.pathfinder.core.WarMachine.ServletMapping;
+import com.kdgregory.pathfinder.core.impl.ParsedClassCache;
 import com.kdgregory.pathfinder.core.impl.WarMachineImpl;
 import com.kdgregory.pathfinder.test.WarNames;
 import com.kdgregory.pathfinder.util.TestHelpers;
@@ -69,6 +75,87 @@ public class TestWarMachine
     }
 
 
+    @Test(expected=IllegalArgumentException.class)
+    public void testInvalidWarContent() throws Exception
+    {
+        new WarMachineImpl("this is not a WAR".getBytes("UTF-8"));
+    }
+
+
+    @Test
+    public void testInMemoryMatchesFile() throws Exception
+    {
+        InputStream in = getClass().getClassLoader().getResourceAsStream(WarNames.SPRING_ANNO);
+        byte[] content = IOUtils.toByteArray(in);
+        in.close();
+        File warFile = IOUtil.createTempFile(new ByteArrayInputStream(content), WarNames.SPRING_ANNO);
+
+        // the buffer's WAR starts part-way in, to verify that we respect position
+        ByteBuffer buf = ByteBuffer.allocate(content.length + 10);
+        buf.position(10);
+        buf.put(content);
+        buf.position(10);
+
+        WarMachine fromFile = new WarMachineImpl(warFile);
+        WarMachine fromMemory = new WarMachineImpl(buf);
+        try
+        {
+            assertEquals("buffer position unchanged",  10,                                  buf.position());
+            assertEquals("all files",                   fromFile.getAllFiles(),             fromMemory.getAllFiles());
+            assertEquals("public files",                fromFile.getPublicFiles(),          fromMemory.getPublicFiles());
+            assertEquals("entry signatures",            fromFile.getEntrySignatures(""),    fromMemory.getEntrySignatures(""));
+            assertEquals("classpath",                   fromFile.getFilesOnClasspath(),     fromMemory.getFilesOnClasspath());
+            assertEquals("servlet mappings",            fromFile.getServletMappings().size(),
+                                                        fromMemory.getServletMappings().size());
+
+            String className = "com.kdgregory.pathfinder.test.spring3.pkg2.ControllerC";
+            assertEquals("loaded class",                fromFile.loadClass(className).getClassName(),
+                                                        fromMemory.loadClass(className).getClassName());
+
+            for (String filename : fromFile.getAllFiles())
+            {
+                if (filename.endsWith("/"))
+                    continue;
+                assertArrayEquals("content of " + filename,
+                                  IOUtils.toByteArray(fromFile.openFile(filename)),
+                                  IOUtils.toByteArray(fromMemory.openFile(filename)));
+            }
+        }
+        finally
+        {
+            IOUtil.closeQuietly(fromFile);
+            IOUtil.closeQuietly(fromMemory);
+            warFile.delete();
+        }
+    }
+
+
+    @Test
+    public void testClose() throws Exception
+    {
+        InputStream in = getClass().getClassLoader().getResourceAsStream(WarNames.SERVLET);
+        File warFile = IOUtil.createTempFile(in, WarNames.SERVLET);
+        in.close();
+
+        WarMachine machine = new WarMachineImpl(warFile);
+        assertNotNull("can open file before close", machine.openFile("/index.jsp"));
+
+        machine.close();
+        try
+        {
+            machine.openFile("/index.jsp");
+            fail("opened file after close");
+        }
+        catch (IllegalStateException ex)
+        {
+            // success
+        }
+
+        // closing again is harmless
+        machine.close();
+    }
+
+
     @Test
     public void testXpathAgainstWebXml() throws Exception
     {
@@ -121,6 +208,79 @@ public class TestWarMachine
     }
 
 
+    @Test
+    public void testGetFilterMappings() throws Exception
+    {
+        WarMachine machine = TestHelpers.createWarMachine(WarNames.SERVLET_25);
+
+        // mappings are in document order, one per pattern or servlet name; the
+        // mapping for an undefined filter is dropped
+        List<FilterMapping> mappings = machine.getFilterMappings();
+        assertEquals("number of mappings", 5, mappings.size());
+
+        FilterMapping mapping0 = mappings.get(0);
+        assertEquals("mapping #0 filter",       "RateLimit",                mapping0.getFilterName());
+        assertEquals("mapping #0 class",        "com.example.filter.RateLimitFilter",
+                                                mapping0.getFilterClass());
+        assertEquals("mapping #0 servlet",      "MyServlet",                mapping0.getServletName());
+        assertNull("mapping #0 pattern",                                    mapping0.getUrlPattern());
+        assertEquals("mapping #0 dispatchers",  "[REQUEST]",                mapping0.getDispatchers().toString());
+
+        FilterMapping mapping1 = mappings.get(1);
+        assertEquals("mapping #1 filter",       "Auth",                     mapping1.getFilterName());
+        assertEquals("mapping #1 pattern",      "/servlet2",                mapping1.getUrlPattern());
+        assertNull("mapping #1 servlet",                                    mapping1.getServletName());
+        assertEquals("mapping #1 param",        "example",                  mapping1.getInitParams().get("realm"));
+
+        FilterMapping mapping2 = mappings.get(2);
+        assertEquals("mapping #2 filter",       "Auth",                     mapping2.getFilterName());
+        assertEquals("mapping #2 pattern",      "/subdir/*",                mapping2.getUrlPattern());
+
+        FilterMapping mapping3 = mappings.get(3);
+        assertEquals("mapping #3 filter",       "Compression",              mapping3.getFilterName());
+        assertEquals("mapping #3 dispatchers",  "[REQUEST, FORWARD]",       mapping3.getDispatchers().toString());
+
+        FilterMapping mapping4 = mappings.get(4);
+        assertEquals("mapping #4 filter",       "ErrorLogger",              mapping4.getFilterName());
+        assertTrue("mapping #4 dispatchers",    mapping4.getDispatchers().contains(Dispatcher.ERROR));
+        assertFalse("mapping #4 dispatchers",   mapping4.getDispatchers().contains(Dispatcher.REQUEST));
+
+        assertEquals("no filters in 2.4 WAR", 0, TestHelpers.createWarMachine(WarNames.SERVLET).getFilterMappings().size());
+    }
+
+
+    @Test
+    public void testGetContentDigest() throws Exception
+    {
+        String digest1 = TestHelpers.createWarMachine(WarNames.SERVLET).getContentDigest("META-INF/pathfinder/");
+        String digest2 = TestHelpers.createWarMachine(WarNames.SERVLET).getContentDigest("META-INF/pathfinder/");
+        String digest3 = TestHelpers.createWarMachine(WarNames.SERVLET_25).getContentDigest("META-INF/pathfinder/");
+
+        assertEquals("digest is hex-encoded SHA-1",     40,         digest1.length());
+        assertEquals("same WAR, same digest",           digest1,    digest2);
+        assertFalse("different WAR, different digest",  digest1.equals(digest3));
+
+        String digest4 = TestHelpers.createWarMachine(WarNames.SERVLET).getContentDigest("WEB-INF/");
+        assertFalse("excluded entries not in digest",   digest1.equals(digest4));
+    }
+
+
+    @Test
+    public void testGetEntrySignatures() throws Exception
+    {
+        WarMachine machine = TestHelpers.createWarMachine(WarNames.SERVLET);
+
+        Map<String,String> signatures = machine.getEntrySignatures("META-INF/pathfinder/");
+        assertEquals("one signature per file",          machine.getAllFiles().size(), signatures.size());
+        assertTrue("names don't have leading slash",    signatures.containsKey("index.jsp"));
+        assertTrue("signature is size:crc",             signatures.get("index.jsp").matches("\\d+:\\d+"));
+        assertEquals("same as a separate instance",     signatures,
+                                                        TestHelpers.createWarMachine(WarNames.SERVLET).getEntrySignatures("META-INF/pathfinder/"));
+
+        assertFalse("excluded entries",                 machine.getEntrySignatures("WEB-INF/").containsKey("WEB-INF/web.xml"));
+    }
+
+
     @Test
     public void testFileLists() throws Exception
     {
@@ -260,4 +420,33 @@ public class TestWarMachine
     }
 
 
+    @Test
+    public void testLoadClassWithCache() throws Exception
+    {
+        ParsedClassCache cache = new ParsedClassCache(ParsedClassCache.DEFAULT_CAPACITY);
+
+        WarMachineImpl machine1 = (WarMachineImpl)TestHelpers.createWarMachine(WarNames.SERVLET);
+        machine1.setClassCache(cache);
+        JavaClass c1 = machine1.loadClass("com.example.servlet.SomeServlet");
+        JavaClass c2 = machine1.loadClass("net.sf.practicalxml.DomUtil");
+        assertEquals("classes parsed", 2, cache.getMissCount());
+        assertNull("missing class", machine1.loadClass("java.lang.String"));
+        assertEquals("missing class isn't cached", 2, cache.size());
+
+        // a separate copy of the same WAR has the same signatures
+        WarMachineImpl machine2 = (WarMachineImpl)TestHelpers.createWarMachine(WarNames.SERVLET);
+        machine2.setClassCache(cache);
+        assertSame("class from WEB-INF/classes", c1, machine2.loadClass("com.example.servlet.SomeServlet"));
+        assertSame("class from enclosed JAR",    c2, machine2.loadClass("net.sf.practicalxml.DomUtil"));
+        assertEquals("cache hits", 2, cache.getHitCount());
+
+        // an entry with the same name but different content isn't used
+        ParsedClassCache planted = new ParsedClassCache(ParsedClassCache.DEFAULT_CAPACITY);
+        planted.put(ParsedClassCache.key("com/example/servlet/SomeServlet.class", new byte[0]), c2);
+        machine2.setClassCache(planted);
+        assertEquals("class with planted entry", "com.example.servlet.SomeServlet",
+                     machine2.loadClass("com.example.servlet.SomeServlet").getClassName());
+    }
+
+
 }
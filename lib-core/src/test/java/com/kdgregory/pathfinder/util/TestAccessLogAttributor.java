@@ -0,0 +1,254 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import net.sf.kdgcommons.io.IOUtil;
+
+import com.kdgregory.pathfinder.core.Destination;
+import com.kdgregory.pathfinder.core.HttpMethod;
+import com.kdgregory.pathfinder.core.InvocationOptions;
+import com.kdgregory.pathfinder.core.PathRepo;
+import com.kdgregory.pathfinder.core.impl.PathRepoImpl;
+import com.kdgregory.pathfinder.util.AccessLogAttributor.Result;
+import com.kdgregory.pathfinder.util.AccessLogAttributor.RouteHits;
+
+
+public class TestAccessLogAttributor
+{
+//----------------------------------------------------------------------------
+//  Support Code
+//----------------------------------------------------------------------------
+
+    private static class MyDestination
+    implements Destination
+    {
+        private String name;
+
+        public MyDestination(String name)
+        {
+            this.name = name;
+        }
+
+        @Override
+        public boolean isDisplayed(Map<InvocationOptions,Boolean> options)
+        {
+            return true;
+        }
+
+        @Override
+        public String toString(Map<InvocationOptions,Boolean> options)
+        {
+            return name;
+        }
+
+        @Override
+        public String toString()
+        {
+            return name;
+        }
+    }
+
+
+    private static String logLine(String method, String uri)
+    {
+        return "10.0.0.1 - frank [10/Oct/2000:13:55:36 -0700] \"" + method + " " + uri + " HTTP/1.1\" 200 2326"
+             + " \"http://www.example.com/start.html\" \"Mozilla/4.08 [en] (Win98; I ;Nav)\"\n";
+    }
+
+
+    private static byte[] toBytes(List<String> lines)
+    throws Exception
+    {
+        StringBuilder sb = new StringBuilder();
+        for (String line : lines)
+            sb.append(line);
+        return sb.toString().getBytes("ISO-8859-1");
+    }
+
+
+    private static long hits(Result result, String url, HttpMethod method)
+    {
+        for (RouteHits route : result.getRoutes())
+        {
+            if (route.getUrl().equals(url) && (route.getMethod() == method))
+                return route.getCount();
+        }
+        fail("no route: " + url + " " + method);
+        return -1;
+    }
+
+
+    private static PathRepo createRepo()
+    {
+        PathRepo repo = new PathRepoImpl();
+        repo.put("/index.jsp",                          new MyDestination("index"));
+        repo.put("/users/{id}",     HttpMethod.GET,     new MyDestination("getUser"));
+        repo.put("/users/{id}",     HttpMethod.POST,    new MyDestination("updateUser"));
+        repo.put("/users/me",       HttpMethod.GET,     new MyDestination("getSelf"));
+        repo.put("/api/*",                              new MyDestination("api"));
+        repo.put("/unused",         HttpMethod.DELETE,  new MyDestination("unused"));
+        return repo;
+    }
+
+
+//----------------------------------------------------------------------------
+//  TestCases
+//----------------------------------------------------------------------------
+
+    @Test
+    public void testBasicOperation() throws Exception
+    {
+        List<String> lines = new ArrayList<String>();
+        lines.add(logLine("GET",    "/myapp/users/123"));
+        lines.add(logLine("GET",    "/myapp/users/456?format=json"));
+        lines.add(logLine("HEAD",   "/myapp/users/789"));
+        lines.add(logLine("POST",   "/myapp/users/123"));
+        lines.add(logLine("GET",    "/myapp/users/me"));
+        lines.add(logLine("PUT",    "/myapp/api/v1/foo"));
+        lines.add(logLine("GET",    "http://example.com/myapp/index.jsp;jsessionid=1234"));
+        lines.add(logLine("GET",    "/myapp/nowhere"));
+        lines.add(logLine("GET",    "/myappx/index.jsp"));
+        lines.add(logLine("GET",    "/other/index.jsp"));
+        lines.add(logLine("OPTIONS","/myapp/users/123"));
+        lines.add("this is not a log line\n");
+        lines.add("\n");
+
+        AccessLogAttributor attributor = new AccessLogAttributor(createRepo(), "/myapp/", 1);
+        Result result = attributor.attribute(new ByteArrayInputStream(toBytes(lines)));
+
+        assertEquals("lines",               13, result.getLineCount());
+        assertEquals("attributed",          7,  result.getAttributedCount());
+        assertEquals("unmatched",           1,  result.getUnmatchedCount());
+        assertEquals("outside context",     2,  result.getOutsideContextCount());
+        assertEquals("unsupported method",  1,  result.getUnsupportedMethodCount());
+        assertEquals("malformed",           2,  result.getMalformedCount());
+
+        assertEquals("GET /users/{id}, including HEAD",     3, hits(result, "/users/{id}", HttpMethod.GET));
+        assertEquals("POST /users/{id}",                    1, hits(result, "/users/{id}", HttpMethod.POST));
+        assertEquals("literal preferred to variable",       1, hits(result, "/users/me", HttpMethod.GET));
+        assertEquals("prefix mapping, any method",          1, hits(result, "/api/*", HttpMethod.ALL));
+        assertEquals("absolute URI, path parameter",        1, hits(result, "/index.jsp", HttpMethod.ALL));
+
+        List<RouteHits> unused = result.getUnusedRoutes();
+        assertEquals("unused routes",       1,          unused.size());
+        assertEquals("unused route",        "/unused",  unused.get(0).getUrl());
+
+        Map<Destination,Long> destCounts = result.getDestinationCounts();
+        assertEquals("destinations",        6,          destCounts.size());
+        assertEquals("most hits first",     "getUser",  destCounts.keySet().iterator().next().toString());
+    }
+
+
+    @Test
+    public void testSharedDestination() throws Exception
+    {
+        Destination dest = new MyDestination("shared");
+        PathRepo repo = new PathRepoImpl();
+        repo.put("/foo",    HttpMethod.GET,     dest);
+        repo.put("/bar",    HttpMethod.GET,     dest);
+
+        List<String> lines = new ArrayList<String>();
+        lines.add(logLine("GET",    "/foo"));
+        lines.add(logLine("GET",    "/bar"));
+        lines.add(logLine("GET",    "/bar"));
+
+        Result result = new AccessLogAttributor(repo, "").attribute(new ByteArrayInputStream(toBytes(lines)));
+
+        assertEquals("hits for /foo",               1, hits(result, "/foo", HttpMethod.GET));
+        assertEquals("hits for /bar",               2, hits(result, "/bar", HttpMethod.GET));
+        assertEquals("destination total",           Long.valueOf(3), result.getDestinationCounts().get(dest));
+    }
+
+
+    @Test
+    public void testGzippedFiles() throws Exception
+    {
+        List<String> lines1 = new ArrayList<String>();
+        lines1.add(logLine("GET",    "/users/123"));
+        lines1.add(logLine("GET",    "/users/me"));
+
+        List<String> lines2 = new ArrayList<String>();
+        lines2.add(logLine("POST",   "/users/123"));
+
+        File plain = IOUtil.createTempFile("testGzippedFiles", 0);
+        File zipped = IOUtil.createTempFile("testGzippedFiles", 0);
+        try
+        {
+            OutputStream out = new FileOutputStream(plain);
+            out.write(toBytes(lines1));
+            out.close();
+
+            out = new GZIPOutputStream(new FileOutputStream(zipped));
+            out.write(toBytes(lines2));
+            out.close();
+
+            Result result = new AccessLogAttributor(createRepo(), "").attribute(plain, zipped);
+
+            assertEquals("lines",                   3, result.getLineCount());
+            assertEquals("GET /users/{id}",         1, hits(result, "/users/{id}", HttpMethod.GET));
+            assertEquals("GET /users/me",           1, hits(result, "/users/me", HttpMethod.GET));
+            assertEquals("POST /users/{id}",        1, hits(result, "/users/{id}", HttpMethod.POST));
+        }
+        finally
+        {
+            plain.delete();
+            zipped.delete();
+        }
+    }
+
+
+    @Test
+    public void testMultipleThreads() throws Exception
+    {
+        // enough lines for many chunks, so that all workers participate
+        final int reps = 25000;
+        List<String> lines = new ArrayList<String>();
+        for (int ii = 0 ; ii < reps ; ii++)
+        {
+            lines.add(logLine("GET",    "/users/" + ii));
+            lines.add(logLine("POST",   "/users/" + ii));
+            lines.add(logLine("GET",    "/users/me"));
+            lines.add(logLine("GET",    "/api/" + ii));
+        }
+
+        Result result = new AccessLogAttributor(createRepo(), "", 4).attribute(new ByteArrayInputStream(toBytes(lines)));
+
+        assertEquals("lines",                   4 * reps,   result.getLineCount());
+        assertEquals("attributed",              4 * reps,   result.getAttributedCount());
+        assertEquals("GET /users/{id}",         reps,       hits(result, "/users/{id}", HttpMethod.GET));
+        assertEquals("POST /users/{id}",        reps,       hits(result, "/users/{id}", HttpMethod.POST));
+        assertEquals("GET /users/me",           reps,       hits(result, "/users/me", HttpMethod.GET));
+        assertEquals("/api/*",                  reps,       hits(result, "/api/*", HttpMethod.ALL));
+    }
+
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testInvalidThreadCount() throws Exception
+    {
+        new AccessLogAttributor(createRepo(), "", 0);
+    }
+}
@@ -14,7 +14,12 @@
 
 package com.kdgregory.pathfinder.util;
 
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 import org.junit.Test;
 import static org.junit.Assert.*;
@@ -22,6 +27,7 @@ import static org.junit.Assert.*;
 import com.kdgregory.bcelx.parser.AnnotationParser;
 import com.kdgregory.pathfinder.core.WarMachine;
 import com.kdgregory.pathfinder.test.WarNames;
+import com.kdgregory.pathfinder.util.ClassFilter.FilterType;
 import com.kdgregory.pathfinder.util.ClasspathScanner;
 import com.kdgregory.pathfinder.util.TestHelpers;
 
@@ -111,4 +117,116 @@ public class TestClasspathScanner
         assertTrue("expected ControllerB", result.containsKey("com.kdgregory.pathfinder.test.scan.controller.ControllerB"));
         // no Dummy, no @Service, no @Component
     }
+
+
+    @Test
+    public void testNameFiltersDoNotLoadClasses() throws Exception
+    {
+        final Set<String> loaded = new HashSet<String>();
+        final WarMachine machine = TestHelpers.createWarMachine(WarNames.SPRING_SCAN);
+        WarMachine proxy = (WarMachine)Proxy.newProxyInstance(
+                getClass().getClassLoader(),
+                new Class<?>[] { WarMachine.class },
+                new InvocationHandler()
+                {
+                    @Override
+                    public Object invoke(Object obj, Method method, Object[] args) throws Throwable
+                    {
+                        if (method.getName().equals("loadClass"))
+                            loaded.add((String)args[0]);
+                        return method.invoke(machine, args);
+                    }
+                });
+
+        ClasspathScanner scanner = new ClasspathScanner()
+                                       .addBasePackage("com.kdgregory.pathfinder.test")
+                                       .addIncludeFilter(new ClassFilter(FilterType.REGEX, ".*\\.controller\\..*"))
+                                       .addExcludeFilter(new ClassFilter(FilterType.ASPECTJ, "*..Dummy"));
+
+        Map<String,AnnotationParser> result = scanner.scan(proxy);
+        assertEquals("number of files found", 2, result.size());
+        assertTrue("expected ControllerA", result.containsKey("com.kdgregory.pathfinder.test.scan.controller.ControllerA"));
+        assertTrue("expected ControllerB", result.containsKey("com.kdgregory.pathfinder.test.scan.controller.ControllerB"));
+        assertEquals("classes loaded", result.keySet(), loaded);
+    }
+
+
+    @Test
+    public void testTypeFilters() throws Exception
+    {
+        WarMachine machine = TestHelpers.createWarMachine(WarNames.SPRING_SCAN);
+
+        ClasspathScanner scanner = new ClasspathScanner()
+                                       .addBasePackage("com.kdgregory.pathfinder.test")
+                                       .addIncludeFilter(new ClassFilter(FilterType.ASSIGNABLE, "com.kdgregory.pathfinder.test.scan.service.Auditable"))
+                                       .addIncludeFilter(new ClassFilter(FilterType.ANNOTATION, "org.springframework.stereotype.Controller"))
+                                       .addExcludeFilter(new ClassFilter(FilterType.ASPECTJ, "com.kdgregory.pathfinder.test.scan.service.Auditable+"));
+
+        // the exclude wins over the assignable include
+
+        Map<String,AnnotationParser> result = scanner.scan(machine);
+        assertEquals("number of files found", 2, result.size());
+        assertTrue("expected ControllerA", result.containsKey("com.kdgregory.pathfinder.test.scan.controller.ControllerA"));
+        assertTrue("expected ControllerB", result.containsKey("com.kdgregory.pathfinder.test.scan.controller.ControllerB"));
+    }
+
+
+    @Test
+    public void testRegexFiltersKeepTheirOwnGroups() throws Exception
+    {
+        WarMachine machine = TestHelpers.createWarMachine(WarNames.SPRING_SCAN);
+
+        // the backreference in the second regex refers to its own first group
+
+        ClasspathScanner scanner = new ClasspathScanner()
+                                       .addBasePackage("com.kdgregory.pathfinder.test")
+                                       .addIncludeFilter(new ClassFilter(FilterType.REGEX, ".*\\.(controller)\\.ControllerA"))
+                                       .addIncludeFilter(new ClassFilter(FilterType.REGEX, "(?i).*\\.(repo)\\.\\1sitoryA"));
+
+        Map<String,AnnotationParser> result = scanner.scan(machine);
+        assertEquals("number of files found", 2, result.size());
+        assertTrue("expected ControllerA", result.containsKey("com.kdgregory.pathfinder.test.scan.controller.ControllerA"));
+        assertTrue("expected RepositoryA", result.containsKey("com.kdgregory.pathfinder.test.scan.repo.RepositoryA"));
+    }
+
+
+    @Test
+    public void testIncludeNothingByDefault() throws Exception
+    {
+        WarMachine machine = TestHelpers.createWarMachine(WarNames.SPRING_SCAN);
+
+        ClasspathScanner scanner = new ClasspathScanner()
+                                       .addBasePackage("com.kdgregory.pathfinder.test")
+                                       .addExcludeFilter(new ClassFilter(FilterType.ASPECTJ, "*..Dummy"))
+                                       .setIncludeAllByDefault(false);
+        assertEquals("exclude filter only", 0, scanner.scan(machine).size());
+
+        scanner.addIncludeFilter(new ClassFilter(FilterType.REGEX, ".*\\.controller\\..*"));
+        assertEquals("with include filter", 2, scanner.scan(machine).size());
+    }
+
+
+    @Test
+    public void testInvalidFilters() throws Exception
+    {
+        try
+        {
+            new ClassFilter(FilterType.REGEX, "foo(");
+            fail("accepted invalid regex");
+        }
+        catch (IllegalArgumentException ex)
+        {
+            // success
+        }
+
+        try
+        {
+            new ClassFilter(FilterType.ASPECTJ, "com.example.Foo && !com.example.Bar");
+            fail("accepted unsupported AspectJ operator");
+        }
+        catch (IllegalArgumentException ex)
+        {
+            // success
+        }
+    }
 }
@@ -0,0 +1,152 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.util;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import com.kdgregory.pathfinder.core.Destination;
+import com.kdgregory.pathfinder.core.HttpMethod;
+import com.kdgregory.pathfinder.core.InvocationOptions;
+import com.kdgregory.pathfinder.core.PathRepo;
+import com.kdgregory.pathfinder.core.SummaryDestination;
+import com.kdgregory.pathfinder.core.WarMachine;
+import com.kdgregory.pathfinder.core.WarMachine.Dispatcher;
+import com.kdgregory.pathfinder.core.WarMachine.FilterMapping;
+import com.kdgregory.pathfinder.core.impl.PathRepoImpl;
+import com.kdgregory.pathfinder.test.WarNames;
+
+
+public class TestFilterChainResolver
+{
+//----------------------------------------------------------------------------
+//  Support Code
+//----------------------------------------------------------------------------
+
+    private static class MyDestination
+    implements Destination
+    {
+        @Override
+        public boolean isDisplayed(Map<InvocationOptions,Boolean> options)
+        {
+            return true;
+        }
+
+        @Override
+        public String toString(Map<InvocationOptions,Boolean> options)
+        {
+            return "";
+        }
+    }
+
+
+    private static class MySummary
+    extends MyDestination
+    implements SummaryDestination
+    {
+        @Override
+        public int getFileCount()
+        {
+            return 1;
+        }
+    }
+
+
+    /**
+     *  Returns the chain as a string of filter names.
+     */
+    private static String chain(FilterChainResolver resolver, String path, Dispatcher dispatcher)
+    {
+        return resolver.getChain(path, dispatcher).toString();
+    }
+
+
+//----------------------------------------------------------------------------
+//  TestCases
+//----------------------------------------------------------------------------
+
+    @Test
+    public void testServletName() throws Exception
+    {
+        FilterChainResolver resolver = new FilterChainResolver(TestHelpers.createWarMachine(WarNames.SERVLET_25));
+
+        assertEquals("mapped servlet",      "MyServlet",    resolver.getServletName("/servlet"));
+        assertEquals("unmapped JSP",        "jsp",          resolver.getServletName("/subdir/index.jsp"));
+        assertEquals("unmapped path",       "default",      resolver.getServletName("/index.html"));
+        assertEquals("not a prefix",        "default",      resolver.getServletName("/servlet/foo"));
+    }
+
+
+    @Test
+    public void testChains() throws Exception
+    {
+        FilterChainResolver resolver = new FilterChainResolver(TestHelpers.createWarMachine(WarNames.SERVLET_25));
+
+        assertEquals("servlet-name filter follows URL filters",
+                     "[Compression, RateLimit]",
+                     chain(resolver, "/servlet", Dispatcher.REQUEST));
+        assertEquals("URL filters in document order",
+                     "[Auth, Compression, RateLimit]",
+                     chain(resolver, "/servlet2", Dispatcher.REQUEST));
+        assertEquals("prefix match",
+                     "[Auth, Compression]",
+                     chain(resolver, "/subdir/index.jsp", Dispatcher.REQUEST));
+        assertEquals("prefix matches directory itself",
+                     "[Auth, Compression]",
+                     chain(resolver, "/subdir", Dispatcher.REQUEST));
+        assertEquals("forward",
+                     "[Compression]",
+                     chain(resolver, "/servlet2", Dispatcher.FORWARD));
+        assertEquals("error, extension match",
+                     "[ErrorLogger]",
+                     chain(resolver, "/index.jsp", Dispatcher.ERROR));
+        assertEquals("include",
+                     "[]",
+                     chain(resolver, "/index.jsp", Dispatcher.INCLUDE));
+    }
+
+
+    @Test
+    public void testChainsForRepo() throws Exception
+    {
+        WarMachine war = TestHelpers.createWarMachine(WarNames.SERVLET_25);
+        PathRepo repo = new PathRepoImpl();
+        repo.put("/servlet",            new MyDestination());
+        repo.put("/subdir/{id}",        new MyDestination());
+        repo.put("/subdir/*",           new MyDestination());
+        repo.put("*.jsp",               new MyDestination());
+        repo.put("/subdir/**",          HttpMethod.GET, new MySummary());
+
+        Map<String,List<FilterMapping>> chains = new FilterChainResolver(war).getChains(repo, Dispatcher.REQUEST);
+        assertEquals("repository order, without summary", "[*.jsp, /servlet, /subdir/*, /subdir/{id}]", chains.keySet().toString());
+        assertEquals("path variable",       "[Auth, Compression]",                          chains.get("/subdir/{id}").toString());
+        assertEquals("wildcard",            "[Auth, Compression]",                          chains.get("/subdir/*").toString());
+        assertEquals("extension",           "[]",                                           chains.get("*.jsp").toString());
+
+        FilterMapping auth = chains.get("/subdir/*").get(0);
+        assertEquals("chain identifies mapping", "/subdir/*", auth.getUrlPattern());
+    }
+
+
+    @Test
+    public void testNoFilters() throws Exception
+    {
+        FilterChainResolver resolver = new FilterChainResolver(TestHelpers.createWarMachine(WarNames.SERVLET));
+        assertEquals("empty chain", "[]", chain(resolver, "/servlet", Dispatcher.REQUEST));
+    }
+}
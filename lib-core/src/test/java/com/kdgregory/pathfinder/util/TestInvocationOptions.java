@@ -44,6 +44,7 @@ public class TestInvocationOptions
         assertTrue("--showJSP",            InvocationOptions.SHOW_JSP.isEnabled(opts));
         assertTrue("--showHTML",           InvocationOptions.SHOW_HTML.isEnabled(opts));
         assertFalse("--showStatic",        InvocationOptions.SHOW_STATIC.isEnabled(opts));
+        assertFalse("--expandStatic",      InvocationOptions.EXPAND_STATIC.isEnabled(opts));
         assertFalse("--showRequestParams", InvocationOptions.SHOW_REQUEST_PARAMS.isEnabled(opts));
     }
 
@@ -53,12 +54,13 @@ public class TestInvocationOptions
     {
         Map<InvocationOptions,Boolean> opts
             = InvocationOptions.parseCli(
-                "--showJSP", "--showHTML", "--showStatic",
+                "--showJSP", "--showHTML", "--showStatic", "--expandStatic",
                 "--showRequestParams");
 
         assertTrue("--showJSP",           InvocationOptions.SHOW_JSP.isEnabled(opts));
         assertTrue("--showHTML",          InvocationOptions.SHOW_HTML.isEnabled(opts));
         assertTrue("--showStatic",        InvocationOptions.SHOW_STATIC.isEnabled(opts));
+        assertTrue("--expandStatic",      InvocationOptions.EXPAND_STATIC.isEnabled(opts));
         assertTrue("--showRequestParams", InvocationOptions.SHOW_REQUEST_PARAMS.isEnabled(opts));
     }
 
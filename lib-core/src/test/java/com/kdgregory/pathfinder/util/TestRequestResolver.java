@@ -0,0 +1,187 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.util;
+
+import java.util.Map;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import com.kdgregory.pathfinder.core.Destination;
+import com.kdgregory.pathfinder.core.HttpMethod;
+import com.kdgregory.pathfinder.core.InvocationOptions;
+import com.kdgregory.pathfinder.core.PathRepo;
+import com.kdgregory.pathfinder.core.impl.PathRepoImpl;
+
+
+public class TestRequestResolver
+{
+//----------------------------------------------------------------------------
+//  Support Code
+//----------------------------------------------------------------------------
+
+    private static class MyDestination
+    implements Destination
+    {
+        private String name;
+
+        public MyDestination(String name)
+        {
+            this.name = name;
+        }
+
+        @Override
+        public boolean isDisplayed(Map<InvocationOptions,Boolean> options)
+        {
+            return true;
+        }
+
+        @Override
+        public String toString(Map<InvocationOptions,Boolean> options)
+        {
+            return name;
+        }
+
+        @Override
+        public String toString()
+        {
+            return name;
+        }
+    }
+
+
+    private static void assertResolves(RequestResolver resolver, String request, HttpMethod method, String expected)
+    {
+        Destination dest = resolver.resolve(request, method);
+        assertEquals(method + " " + request, expected, (dest == null) ? null : dest.toString());
+    }
+
+
+//----------------------------------------------------------------------------
+//  TestCases
+//----------------------------------------------------------------------------
+
+    @Test
+    public void testServletPrecedence() throws Exception
+    {
+        PathRepo repo = new PathRepoImpl();
+        repo.put("/",                   new MyDestination("default"));
+        repo.put("/*",                  new MyDestination("root-prefix"));
+        repo.put("/catalog",            new MyDestination("exact"));
+        repo.put("/catalog/*",          new MyDestination("catalog-prefix"));
+        repo.put("/catalog/books/*",    new MyDestination("books-prefix"));
+        repo.put("*.do",                new MyDestination("extension"));
+        repo.put("/index.jsp",          new MyDestination("jsp"));
+
+        RequestResolver resolver = new RequestResolver(repo);
+
+        assertResolves(resolver, "/catalog",                HttpMethod.GET, "exact");
+        assertResolves(resolver, "/catalog/",               HttpMethod.GET, "catalog-prefix");
+        assertResolves(resolver, "/catalog/index.html",     HttpMethod.GET, "catalog-prefix");
+        assertResolves(resolver, "/catalog/books",          HttpMethod.GET, "books-prefix");
+        assertResolves(resolver, "/catalog/books/1.do",     HttpMethod.GET, "books-prefix");
+        assertResolves(resolver, "/catalogue",              HttpMethod.GET, "root-prefix");
+        assertResolves(resolver, "/index.jsp",              HttpMethod.GET, "jsp");
+        assertResolves(resolver, "/index.jsp?foo=bar",      HttpMethod.GET, "jsp");
+        assertResolves(resolver, "/index.jsp;jsessionid=1", HttpMethod.GET, "jsp");
+
+        repo.remove("/*", HttpMethod.ALL);
+        resolver = new RequestResolver(repo);
+
+        assertResolves(resolver, "/foo/bar.do",             HttpMethod.GET, "extension");
+        assertResolves(resolver, "/foo.do/bar",             HttpMethod.GET, "default");
+        assertResolves(resolver, "/",                       HttpMethod.GET, "default");
+    }
+
+
+    @Test
+    public void testSpringPatterns() throws Exception
+    {
+        PathRepo repo = new PathRepoImpl();
+        repo.put("/servlet/B/bar.html",         HttpMethod.GET,    new MyDestination("literal"));
+        repo.put("/servlet/B/{name}.html",      HttpMethod.GET,    new MyDestination("variable-with-suffix"));
+        repo.put("/servlet/users/{id}",         HttpMethod.GET,    new MyDestination("get-user"));
+        repo.put("/servlet/users/{id}",         HttpMethod.DELETE, new MyDestination("delete-user"));
+        repo.put("/servlet/users/me",           HttpMethod.GET,    new MyDestination("me"));
+        repo.put("/servlet/files/**",           new MyDestination("files"));
+        repo.put("/servlet/a/**/z",             new MyDestination("a-to-z"));
+        repo.put("/servlet/{id:\\d{3}}/detail", new MyDestination("regex-var"));
+
+        RequestResolver resolver = new RequestResolver(repo);
+
+        assertResolves(resolver, "/servlet/B/bar.html?x=1",     HttpMethod.GET,    "literal");
+        assertResolves(resolver, "/servlet/B/baz.html",         HttpMethod.GET,    "variable-with-suffix");
+        assertResolves(resolver, "/servlet/B/baz.htm",          HttpMethod.GET,    null);
+        assertResolves(resolver, "/servlet/users/me",           HttpMethod.GET,    "me");
+        assertResolves(resolver, "/servlet/users/me",           HttpMethod.DELETE, "delete-user");
+        assertResolves(resolver, "/servlet/users/12",           HttpMethod.GET,    "get-user");
+        assertResolves(resolver, "/servlet/users/12",           HttpMethod.POST,   null);
+        assertResolves(resolver, "/servlet/users/",             HttpMethod.GET,    null);
+        assertResolves(resolver, "/servlet/files",              HttpMethod.GET,    "files");
+        assertResolves(resolver, "/servlet/files/a/b/c.txt",    HttpMethod.GET,    "files");
+        assertResolves(resolver, "/servlet/a/z",                HttpMethod.GET,    "a-to-z");
+        assertResolves(resolver, "/servlet/a/b/c/z",            HttpMethod.GET,    "a-to-z");
+        assertResolves(resolver, "/servlet/a/b/c/y",            HttpMethod.GET,    null);
+        assertResolves(resolver, "/servlet/123/detail",         HttpMethod.GET,    "regex-var");
+
+        assertEquals("matched pattern", "/servlet/users/{id}", resolver.resolvePattern("/servlet/users/12", HttpMethod.GET));
+    }
+
+
+    @Test
+    public void testConstrainedVariables() throws Exception
+    {
+        PathRepo repo = new PathRepoImpl();
+        repo.put("/orders/{name}",              new MyDestination("by-name"));
+        repo.put("/orders/{id:\\d+}",           new MyDestination("by-id"));
+        repo.put("/orders/{year:\\d{4}}/{m}",   new MyDestination("by-month"));
+
+        RequestResolver resolver = new RequestResolver(repo);
+
+        assertResolves(resolver, "/orders/123",         HttpMethod.GET, "by-id");
+        assertResolves(resolver, "/orders/abc",         HttpMethod.GET, "by-name");
+        assertResolves(resolver, "/orders/2012/06",     HttpMethod.GET, "by-month");
+        assertResolves(resolver, "/orders/12/06",       HttpMethod.GET, null);
+    }
+
+
+    @Test
+    public void testMethodFallback() throws Exception
+    {
+        PathRepo repo = new PathRepoImpl();
+        repo.put("/servlet/*",  new MyDestination("servlet"));
+        repo.put("/servlet/x",  HttpMethod.POST, new MyDestination("post-x"));
+
+        RequestResolver resolver = new RequestResolver(repo);
+
+        assertResolves(resolver, "/servlet/x", HttpMethod.POST, "post-x");
+        assertResolves(resolver, "/servlet/x", HttpMethod.GET,  "servlet");
+        assertResolves(resolver, "/servlet/x", HttpMethod.ALL,  "post-x");
+    }
+
+
+    @Test
+    public void testSnapshot() throws Exception
+    {
+        PathRepo repo = new PathRepoImpl();
+        repo.put("/foo", new MyDestination("foo"));
+
+        RequestResolver resolver = new RequestResolver(repo);
+        repo.put("/bar", new MyDestination("bar"));
+
+        assertResolves(resolver, "/foo", HttpMethod.GET, "foo");
+        assertResolves(resolver, "/bar", HttpMethod.GET, null);
+    }
+}
@@ -0,0 +1,310 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.util;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import com.kdgregory.pathfinder.core.Destination;
+import com.kdgregory.pathfinder.core.HttpMethod;
+import com.kdgregory.pathfinder.core.InvocationOptions;
+import com.kdgregory.pathfinder.core.PathRepo;
+import com.kdgregory.pathfinder.core.SummaryDestination;
+import com.kdgregory.pathfinder.core.impl.PathRepoImpl;
+import com.kdgregory.pathfinder.core.impl.RecordingPathRepo;
+import com.kdgregory.pathfinder.util.RouteAnalyzer.Finding;
+import com.kdgregory.pathfinder.util.RouteAnalyzer.FindingType;
+
+
+public class TestRouteAnalyzer
+{
+//----------------------------------------------------------------------------
+//  Support Code
+//----------------------------------------------------------------------------
+
+    private static class MyDestination
+    implements Destination
+    {
+        private String name;
+
+        public MyDestination(String name)
+        {
+            this.name = name;
+        }
+
+        @Override
+        public boolean isDisplayed(Map<InvocationOptions,Boolean> options)
+        {
+            return true;
+        }
+
+        @Override
+        public String toString(Map<InvocationOptions,Boolean> options)
+        {
+            return name;
+        }
+
+        @Override
+        public String toString()
+        {
+            return name;
+        }
+    }
+
+
+    private static class MySummary
+    extends MyDestination
+    implements SummaryDestination
+    {
+        public MySummary(String name)
+        {
+            super(name);
+        }
+
+        @Override
+        public int getFileCount()
+        {
+            return 1;
+        }
+    }
+
+
+    /**
+     *  Converts findings to a set of "TYPE url otherUrl method" strings, which
+     *  are easier to assert than the full descriptions. As in the findings'
+     *  own string value, <code>ALL</code> is shown as "*".
+     */
+    private static Set<String> summarize(List<Finding> findings)
+    {
+        Set<String> result = new HashSet<String>();
+        for (Finding finding : findings)
+        {
+            result.add(finding.getType() + " " + finding.getUrl() + " " + finding.getOtherUrl() + " "
+                     + ((finding.getMethod() == HttpMethod.ALL) ? "*" : finding.getMethod().toString()));
+        }
+        return result;
+    }
+
+
+    private static int count(List<Finding> findings, FindingType type)
+    {
+        int count = 0;
+        for (Finding finding : findings)
+        {
+            if (finding.getType() == type)
+                count++;
+        }
+        return count;
+    }
+
+
+//----------------------------------------------------------------------------
+//  TestCases
+//----------------------------------------------------------------------------
+
+    @Test
+    public void testRecordingRepoPassesThrough() throws Exception
+    {
+        PathRepo delegate = new PathRepoImpl();
+        RecordingPathRepo repo = new RecordingPathRepo(delegate);
+
+        repo.put("/foo", HttpMethod.GET, new MyDestination("A"));
+        repo.put("/foo", HttpMethod.GET, new MyDestination("B"));
+        repo.remove("/foo", HttpMethod.POST);
+
+        assertEquals("recorded operations",     3,      repo.size());
+        assertEquals("delegate updated",        "B",    delegate.get("/foo", HttpMethod.GET).toString());
+        assertEquals("first operation",         "PUT /foo GET => A", repo.getOperations().get(0).toString());
+        assertEquals("last operation",          RecordingPathRepo.OperationType.REMOVE,
+                                                repo.getOperations().get(2).getType());
+    }
+
+
+    @Test
+    public void testConflicts() throws Exception
+    {
+        RecordingPathRepo repo = new RecordingPathRepo(new PathRepoImpl());
+
+        repo.put("/foo", HttpMethod.GET, new MyDestination("A"));
+        repo.put("/foo", HttpMethod.GET, new MyDestination("B"));
+        repo.put("/foo", HttpMethod.POST, new MyDestination("C"));
+
+        // same description is treated as the same handler
+        repo.put("/bar", new MyDestination("D"));
+        repo.put("/bar", new MyDestination("D"));
+
+        // replacing all methods conflicts with each method that was there
+        repo.put("/baz", HttpMethod.GET, new MyDestination("E"));
+        repo.put("/baz", HttpMethod.PUT, new MyDestination("F"));
+        repo.put("/baz", new MyDestination("G"));
+
+        // explicit removal isn't a conflict
+        repo.put("/argle", HttpMethod.GET, new MyDestination("H"));
+        repo.remove("/argle", HttpMethod.GET);
+        repo.put("/argle", HttpMethod.GET, new MyDestination("I"));
+
+        RouteAnalyzer analyzer = new RouteAnalyzer();
+        analyzer.addOperations(repo.getOperations());
+        List<Finding> findings = analyzer.analyze(repo);
+
+        assertEquals("number of findings", 3, findings.size());
+        assertEquals("conflicts reported in order",
+                     "CONFLICT /foo GET: \"A\" replaced by \"B\"",
+                     findings.get(0).toString());
+
+        Set<String> summary = summarize(findings);
+        assertTrue("replace GET",  summary.contains("CONFLICT /baz /baz GET"));
+        assertTrue("replace PUT",  summary.contains("CONFLICT /baz /baz PUT"));
+    }
+
+
+    @Test
+    public void testAmbiguousAndOverlapping() throws Exception
+    {
+        PathRepo repo = new PathRepoImpl();
+        repo.put("/users/{id}",         HttpMethod.GET,     new MyDestination("A"));
+        repo.put("/users/{name}",       HttpMethod.GET,     new MyDestination("B"));
+        repo.put("/users/me",           HttpMethod.GET,     new MyDestination("C"));
+        repo.put("/users/new",          HttpMethod.POST,    new MyDestination("D"));
+        repo.put("/users/{id}/edit",    HttpMethod.GET,     new MyDestination("E"));
+        repo.put("/orders/{id}",        HttpMethod.GET,     new MyDestination("F"));
+
+        List<Finding> findings = new RouteAnalyzer().analyze(repo);
+        Set<String> summary = summarize(findings);
+
+        assertTrue("ambiguous variables",   summary.contains("AMBIGUOUS /users/{id} /users/{name} GET"));
+        assertTrue("literal overlaps id",   summary.contains("OVERLAP /users/me /users/{id} GET"));
+        assertTrue("literal overlaps name", summary.contains("OVERLAP /users/me /users/{name} GET"));
+        assertEquals("no other findings (different methods, lengths, or literals)", 3, findings.size());
+    }
+
+
+    @Test
+    public void testCompositeSegments() throws Exception
+    {
+        PathRepo repo = new PathRepoImpl();
+        repo.put("/files/{name}.html",  new MyDestination("A"));
+        repo.put("/files/{name}.json",  new MyDestination("B"));
+        repo.put("/files/index.html",   new MyDestination("C"));
+        repo.put("/files/{name}",       new MyDestination("D"));
+
+        Set<String> summary = summarize(new RouteAnalyzer().analyze(repo));
+
+        assertTrue("literal matches composite",     summary.contains("OVERLAP /files/index.html /files/{name}.html *"));
+        assertTrue("literal matches variable",      summary.contains("OVERLAP /files/index.html /files/{name} *"));
+        assertTrue("composite overlaps variable",   summary.contains("OVERLAP /files/{name}.html /files/{name} *"));
+        assertFalse("different suffixes",           summary.contains("AMBIGUOUS /files/{name}.html /files/{name}.json *"));
+        assertFalse("different suffixes",           summary.contains("AMBIGUOUS /files/{name}.json /files/{name}.html *"));
+        assertFalse("literal doesn't match suffix", summary.contains("OVERLAP /files/index.html /files/{name}.json *"));
+    }
+
+
+    @Test
+    public void testDoubleWildcard() throws Exception
+    {
+        PathRepo repo = new PathRepoImpl();
+        repo.put("/api/**",             HttpMethod.GET,     new MyDestination("A"));
+        repo.put("/api/v1/items",       HttpMethod.GET,     new MyDestination("B"));
+        repo.put("/api/**/items",       HttpMethod.GET,     new MyDestination("C"));
+        repo.put("/api",                HttpMethod.GET,     new MyDestination("D"));
+        repo.put("/other/items",        HttpMethod.GET,     new MyDestination("E"));
+
+        Set<String> summary = summarize(new RouteAnalyzer().analyze(repo));
+
+        assertTrue("wildcard matches descendent",   summary.contains("OVERLAP /api/v1/items /api/** GET"));
+        assertTrue("wildcard matches zero segments",summary.contains("OVERLAP /api /api/** GET"));
+        assertTrue("wildcard with suffix",          summary.contains("OVERLAP /api/v1/items /api/**/items GET"));
+        assertTrue("two wildcards",                 summary.contains("OVERLAP /api/**/items /api/** GET"));
+        assertEquals("number of findings",          4, summary.size());
+    }
+
+
+    @Test
+    public void testSummariesIgnored() throws Exception
+    {
+        PathRepo repo = new PathRepoImpl();
+        repo.put("/css/**",             HttpMethod.GET,     new MySummary("A"));
+        repo.put("/css/{name}",         HttpMethod.GET,     new MyDestination("B"));
+        repo.put("/img/*.png",          HttpMethod.GET,     new MySummary("C"));
+        repo.put("/img/{name}.png",     HttpMethod.GET,     new MyDestination("D"));
+
+        assertEquals("summaries don't overlap mappings", 0, new RouteAnalyzer().analyze(repo).size());
+    }
+
+
+    @Test
+    public void testPrefixShadowing() throws Exception
+    {
+        PathRepo repo = new PathRepoImpl();
+        repo.put("/app/*",              new MyDestination("A"));
+        repo.put("/app/foo",            HttpMethod.GET,     new MyDestination("B"));
+        repo.put("/{any}/bar",          HttpMethod.POST,    new MyDestination("C"));
+        repo.put("/application/foo",    HttpMethod.GET,     new MyDestination("D"));
+        repo.put("/",                   new MyDestination("E"));
+
+        List<Finding> findings = new RouteAnalyzer().analyze(repo);
+        Set<String> summary = summarize(findings);
+
+        assertTrue("literal route",         summary.contains("SHADOWED /app/* /app/foo GET"));
+        assertTrue("template route",        summary.contains("SHADOWED /app/* /{any}/bar POST"));
+        assertEquals("number of findings",  2, count(findings, FindingType.SHADOWED));
+    }
+
+
+    @Test
+    public void testExtensionShadowing() throws Exception
+    {
+        PathRepo repo = new PathRepoImpl();
+        repo.put("*.do",                new MyDestination("A"));
+        repo.put("/foo.do",             HttpMethod.GET,     new MyDestination("B"));
+        repo.put("/bar/{name}.do",      HttpMethod.GET,     new MyDestination("C"));
+        repo.put("/baz/{id}",           HttpMethod.GET,     new MyDestination("D"));
+        repo.put("/foo.dox",            HttpMethod.GET,     new MyDestination("E"));
+
+        List<Finding> findings = new RouteAnalyzer().analyze(repo);
+        Set<String> summary = summarize(findings);
+
+        assertTrue("literal route",         summary.contains("SHADOWED *.do /foo.do GET"));
+        assertTrue("composite route",       summary.contains("SHADOWED *.do /bar/{name}.do GET"));
+        assertEquals("number of findings",  2, findings.size());
+    }
+
+
+    @Test(timeout=30000)
+    public void testLargeRepository() throws Exception
+    {
+        // 10,000 services with three routes each; each service has one literal/variable
+        // overlap, and a top-level template overlaps with every service's "orders"
+        final int services = 10000;
+        PathRepo repo = new PathRepoImpl();
+        for (int ii = 0 ; ii < services ; ii++)
+        {
+            repo.put("/svc" + ii + "/items/{id}",   HttpMethod.GET,     new MyDestination("items-" + ii));
+            repo.put("/svc" + ii + "/items/new",    HttpMethod.GET,     new MyDestination("new-" + ii));
+            repo.put("/svc" + ii + "/orders",       HttpMethod.POST,    new MyDestination("orders-" + ii));
+        }
+        repo.put("/{service}/orders", HttpMethod.POST, new MyDestination("orders"));
+
+        List<Finding> findings = new RouteAnalyzer().analyze(repo);
+
+        assertEquals("overlaps", 2 * services, count(findings, FindingType.OVERLAP));
+        assertEquals("total",    2 * services, findings.size());
+    }
+}
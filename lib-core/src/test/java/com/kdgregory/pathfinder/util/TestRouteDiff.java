@@ -0,0 +1,216 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.util;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import com.kdgregory.pathfinder.core.Destination;
+import com.kdgregory.pathfinder.core.HttpMethod;
+import com.kdgregory.pathfinder.core.InvocationOptions;
+import com.kdgregory.pathfinder.core.PathRepo;
+import com.kdgregory.pathfinder.core.impl.PathRepoImpl;
+import com.kdgregory.pathfinder.util.RouteSnapshot.Entry;
+
+
+public class TestRouteDiff
+{
+//----------------------------------------------------------------------------
+//  Support Code
+//----------------------------------------------------------------------------
+
+    private static class MyDestination
+    implements Destination
+    {
+        private String name;
+        private boolean displayed;
+
+        public MyDestination(String name)
+        {
+            this(name, true);
+        }
+
+        public MyDestination(String name, boolean displayed)
+        {
+            this.name = name;
+            this.displayed = displayed;
+        }
+
+        @Override
+        public boolean isDisplayed(Map<InvocationOptions,Boolean> options)
+        {
+            return displayed;
+        }
+
+        @Override
+        public String toString(Map<InvocationOptions,Boolean> options)
+        {
+            return name;
+        }
+
+        @Override
+        public String toString()
+        {
+            return name;
+        }
+    }
+
+
+    /**
+     *  Records differences as strings.
+     */
+    private static class MyListener
+    implements RouteDiff.Listener
+    {
+        public List<String> changes = new ArrayList<String>();
+
+        @Override
+        public void added(Entry newEntry)
+        {
+            changes.add("+ " + newEntry);
+        }
+
+        @Override
+        public void removed(Entry oldEntry)
+        {
+            changes.add("- " + oldEntry);
+        }
+
+        @Override
+        public void changed(Entry oldEntry, Entry newEntry)
+        {
+            changes.add("~ " + newEntry + " (was " + oldEntry.getDestination() + ")");
+        }
+    }
+
+
+    private static Iterator<Entry> roundTrip(PathRepo repo)
+    throws Exception
+    {
+        StringWriter out = new StringWriter();
+        RouteSnapshot.write(repo, InvocationOptions.parseCli(), out);
+        return RouteSnapshot.read(new BufferedReader(new StringReader(out.toString())));
+    }
+
+
+//----------------------------------------------------------------------------
+//  TestCases
+//----------------------------------------------------------------------------
+
+    @Test
+    public void testSnapshotRoundTrip() throws Exception
+    {
+        PathRepo repo = new PathRepoImpl();
+        repo.put("/foo",                        new MyDestination("foo"));
+        repo.put("/bar",    HttpMethod.GET,     new MyDestination("getBar"));
+        repo.put("/bar",    HttpMethod.POST,    new MyDestination("with\ttab\\and\nnewline"));
+        repo.put("/baz",                        new MyDestination("hidden", false));
+
+        Iterator<Entry> itx = roundTrip(repo);
+        List<String> entries = new ArrayList<String>();
+        while (itx.hasNext())
+            entries.add(itx.next().toString());
+
+        assertEquals("entries, in repository order, hidden destination omitted", 3, entries.size());
+        assertEquals("first entry",     "/bar GET getBar",                      entries.get(0));
+        assertEquals("escaped entry",   "/bar POST with\ttab\\and\nnewline",    entries.get(1));
+        assertEquals("all methods",     "/foo  foo",                            entries.get(2));
+    }
+
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testSnapshotMissingHeader() throws Exception
+    {
+        RouteSnapshot.read(new BufferedReader(new StringReader("/foo\tGET\tfoo\n")));
+    }
+
+
+    @Test
+    public void testSnapshotOutOfOrder() throws Exception
+    {
+        String snapshot = RouteSnapshot.HEADER + "\n"
+                        + "/foo\tGET\tfoo\n"
+                        + "/bar\tGET\tbar\n";
+        Iterator<Entry> itx = RouteSnapshot.read(new BufferedReader(new StringReader(snapshot)));
+        itx.next();
+        try
+        {
+            itx.next();
+            fail("should have thrown");
+        }
+        catch (IllegalArgumentException ex)
+        {
+            assertTrue("message identifies line: " + ex.getMessage(), ex.getMessage().contains("line 3"));
+        }
+    }
+
+
+    @Test
+    public void testDiff() throws Exception
+    {
+        PathRepo oldRepo = new PathRepoImpl();
+        oldRepo.put("/aaa",                     new MyDestination("unchanged"));
+        oldRepo.put("/bbb", HttpMethod.GET,     new MyDestination("removed"));
+        oldRepo.put("/ccc", HttpMethod.GET,     new MyDestination("before"));
+        oldRepo.put("/ccc", HttpMethod.POST,    new MyDestination("samePost"));
+        oldRepo.put("/zzz",                     new MyDestination("removedAtEnd"));
+
+        PathRepo newRepo = new PathRepoImpl();
+        newRepo.put("/aaa",                     new MyDestination("unchanged"));
+        newRepo.put("/abc", HttpMethod.PUT,     new MyDestination("added"));
+        newRepo.put("/ccc", HttpMethod.GET,     new MyDestination("after"));
+        newRepo.put("/ccc", HttpMethod.POST,    new MyDestination("samePost"));
+        newRepo.put("/ccc", HttpMethod.DELETE,  new MyDestination("addedMethod"));
+
+        // one side from a repository, the other from a snapshot
+        MyListener listener = new MyListener();
+        int count = RouteDiff.diff(RouteSnapshot.iterate(oldRepo, InvocationOptions.parseCli()),
+                                   roundTrip(newRepo),
+                                   listener);
+
+        assertEquals("count",   5,                                  count);
+        assertEquals("changes", "[+ /abc PUT added, "
+                              + "- /bbb GET removed, "
+                              + "~ /ccc GET after (was before), "
+                              + "+ /ccc DELETE addedMethod, "
+                              + "- /zzz  removedAtEnd]",
+                                listener.changes.toString());
+    }
+
+
+    @Test
+    public void testDiffIdentical() throws Exception
+    {
+        PathRepo repo = new PathRepoImpl();
+        repo.put("/foo",                        new MyDestination("foo"));
+        repo.put("/bar",    HttpMethod.GET,     new MyDestination("bar"));
+
+        MyListener listener = new MyListener();
+        int count = RouteDiff.diff(RouteSnapshot.iterate(repo, InvocationOptions.parseCli()),
+                                   roundTrip(repo),
+                                   listener);
+
+        assertEquals("count",   0, count);
+        assertEquals("changes", 0, listener.changes.size());
+    }
+}
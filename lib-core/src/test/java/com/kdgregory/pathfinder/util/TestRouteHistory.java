@@ -0,0 +1,296 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import net.sf.kdgcommons.io.IOUtil;
+
+import com.kdgregory.pathfinder.core.Destination;
+import com.kdgregory.pathfinder.core.HttpMethod;
+import com.kdgregory.pathfinder.core.InvocationOptions;
+import com.kdgregory.pathfinder.core.PathRepo;
+import com.kdgregory.pathfinder.core.impl.PathRepoImpl;
+import com.kdgregory.pathfinder.util.RouteHistory.Event;
+import com.kdgregory.pathfinder.util.RouteSnapshot.Entry;
+
+
+public class TestRouteHistory
+{
+//----------------------------------------------------------------------------
+//  Support Code
+//----------------------------------------------------------------------------
+
+    private static class MyDestination
+    implements Destination
+    {
+        private String name;
+
+        public MyDestination(String name)
+        {
+            this.name = name;
+        }
+
+        @Override
+        public boolean isDisplayed(Map<InvocationOptions,Boolean> options)
+        {
+            return true;
+        }
+
+        @Override
+        public String toString(Map<InvocationOptions,Boolean> options)
+        {
+            return name;
+        }
+
+        @Override
+        public String toString()
+        {
+            return name;
+        }
+    }
+
+
+    private Map<InvocationOptions,Boolean> options = InvocationOptions.parseCli();
+    private File dir;
+
+
+    @Before
+    public void setUp() throws Exception
+    {
+        dir = IOUtil.createTempFile("TestRouteHistory", 0);
+        dir.delete();
+    }
+
+
+    @After
+    public void tearDown() throws Exception
+    {
+        File[] files = dir.listFiles();
+        if (files != null)
+        {
+            for (File file : files)
+                file.delete();
+        }
+        dir.delete();
+    }
+
+
+    private static List<String> toStrings(Iterator<Entry> itx)
+    {
+        List<String> result = new ArrayList<String>();
+        while (itx.hasNext())
+            result.add(itx.next().toString());
+        return result;
+    }
+
+
+    private static List<String> toStrings(List<Event> events)
+    {
+        List<String> result = new ArrayList<String>();
+        for (Event event : events)
+            result.add(event.toString());
+        return result;
+    }
+
+
+//----------------------------------------------------------------------------
+//  TestCases
+//----------------------------------------------------------------------------
+
+    @Test
+    public void testAppendAndQuery() throws Exception
+    {
+        RouteHistory history = new RouteHistory(dir);
+
+        PathRepo repo = new PathRepoImpl();
+        repo.put("/foo",                            new MyDestination("foo"));
+        repo.put("/orders/{id}",    HttpMethod.GET, new MyDestination("getOrder"));
+        history.append("1.0", repo, options);
+
+        repo.put("/orders/{id}",    HttpMethod.DELETE, new MyDestination("deleteOrder"));
+        history.append("1.1", repo, options);
+
+        repo.put("/orders/{id}",    HttpMethod.DELETE, new MyDestination("deleteOrderV2"));
+        repo.remove("/foo", HttpMethod.ALL);
+        history.append("1.2", repo, options);
+
+        repo.remove("/orders/{id}", HttpMethod.DELETE);
+        RouteHistory.Build last = history.append("1.3", repo, options);
+
+        assertEquals("sequence",            3,  last.getSequence());
+        assertEquals("change count",        1,  last.getChangeCount());
+
+        // reopen, so that we know it's been persisted
+        history = new RouteHistory(dir);
+        assertEquals("number of builds",    4,  history.getBuilds().size());
+
+        assertEquals("table at 1.0",
+                     "[/foo  foo, /orders/{id} GET getOrder]",
+                     toStrings(history.getTable(history.getBuild("1.0"))).toString());
+        assertEquals("table at 1.2",
+                     "[/orders/{id} GET getOrder, /orders/{id} DELETE deleteOrderV2]",
+                     toStrings(history.getTable(history.getBuild("1.2"))).toString());
+        assertEquals("table at 1.3",
+                     "[/orders/{id} GET getOrder]",
+                     toStrings(history.getTable(history.getBuild("1.3"))).toString());
+
+        assertEquals("lifetime",
+                     "[1.0 ADDED /orders/{id} GET getOrder, "
+                     + "1.1 ADDED /orders/{id} DELETE deleteOrder, "
+                     + "1.2 CHANGED /orders/{id} DELETE deleteOrderV2, "
+                     + "1.3 REMOVED /orders/{id} DELETE deleteOrderV2]",
+                     toStrings(history.getLifetime("/orders/{id}")).toString());
+        assertEquals("lifetime of removed URL",
+                     "[1.0 ADDED /foo  foo, 1.2 REMOVED /foo  foo]",
+                     toStrings(history.getLifetime("/foo")).toString());
+        assertEquals("lifetime of unknown URL",
+                     0,
+                     history.getLifetime("/bar").size());
+    }
+
+
+    @Test
+    public void testIncompleteIndexRecord() throws Exception
+    {
+        PathRepo repo = new PathRepoImpl();
+        for (int ii = 0 ; ii < 40 ; ii++)
+            repo.put("/url" + (1000 + ii), new MyDestination("dest" + ii));
+
+        RouteHistory history = new RouteHistory(dir);
+        history.append("1.0", repo, options);
+        File indexFile = new File(dir, "history.idx");
+
+        for (int ii = 40 ; ii < 80 ; ii++)
+            repo.put("/url" + (1000 + ii), new MyDestination("dest" + ii));
+        history.append("1.1", repo, options);
+
+        // a build whose sparse index was cut short is ignored, and overwritten by
+        // the next append
+
+        RandomAccessFile raf = new RandomAccessFile(indexFile, "rw");
+        raf.setLength(indexFile.length() - 3);
+        raf.close();
+
+        history = new RouteHistory(dir);
+        assertEquals("incomplete build ignored",    1,  history.getBuilds().size());
+
+        history.append("1.1", repo, options);
+        history = new RouteHistory(dir);
+        assertEquals("build appended again",        2,  history.getBuilds().size());
+        assertEquals("table after append",          80, toStrings(history.getTable(history.getBuild("1.1"))).size());
+
+        // as is a build record without its newline
+
+        FileOutputStream out = new FileOutputStream(indexFile, true);
+        out.write("B\t2\t1.2\t12".getBytes("UTF-8"));
+        out.close();
+
+        history = new RouteHistory(dir);
+        assertEquals("partial line ignored",        2,  history.getBuilds().size());
+    }
+
+
+    @Test
+    public void testInvalidLabels() throws Exception
+    {
+        RouteHistory history = new RouteHistory(dir);
+        history.append("1.0", new PathRepoImpl(), options);
+
+        try
+        {
+            history.append("1.0", new PathRepoImpl(), options);
+            fail("accepted duplicate label");
+        }
+        catch (IllegalArgumentException ex)
+        {
+            // success
+        }
+
+        try
+        {
+            history.append("has\ttab", new PathRepoImpl(), options);
+            fail("accepted label with tab");
+        }
+        catch (IllegalArgumentException ex)
+        {
+            // success
+        }
+
+        assertEquals("number of builds", 1, history.getBuilds().size());
+    }
+
+
+    @Test(timeout=60000)
+    public void testManyBuilds() throws Exception
+    {
+        // each build changes one route, and adds a method to another; the URLs
+        // have several methods, so that records for one URL span sparse blocks
+        final int builds = 1000;
+        final int urls = 100;
+        RouteHistory history = new RouteHistory(dir);
+        PathRepo repo = new PathRepoImpl();
+        for (int ii = 0 ; ii < urls ; ii++)
+        {
+            String url = String.format("/svc/%03d", Integer.valueOf(ii));
+            repo.put(url, HttpMethod.GET,   new MyDestination("get-" + ii + "-0"));
+            repo.put(url, HttpMethod.POST,  new MyDestination("post-" + ii + "-0"));
+        }
+        history.append("build-0", repo, options);
+
+        for (int bb = 1 ; bb < builds ; bb++)
+        {
+            int ii = bb % urls;
+            String url = String.format("/svc/%03d", Integer.valueOf(ii));
+            repo.put(url, HttpMethod.GET, new MyDestination("get-" + ii + "-" + bb));
+            if (bb % 2 == 0)
+                repo.put(url, HttpMethod.DELETE, new MyDestination("delete-" + ii + "-" + bb));
+            else
+                repo.remove(url, HttpMethod.DELETE);
+            history.append("build-" + bb, repo, options);
+        }
+
+        history = new RouteHistory(dir);
+
+        // table at a build between checkpoints
+        List<String> table = toStrings(history.getTable(history.getBuild("build-777")));
+        assertTrue("changed at 777",        table.contains("/svc/077 GET get-77-777"));
+        assertFalse("delete removed at 777",table.contains("/svc/077 DELETE delete-77-776"));
+        assertTrue("changed at 776",        table.contains("/svc/076 GET get-76-776"));
+        assertTrue("delete added at 776",   table.contains("/svc/076 DELETE delete-76-776"));
+        assertTrue("not yet changed",       table.contains("/svc/078 GET get-78-678"));
+        assertTrue("never changed",         table.contains("/svc/000 POST post-0-0"));
+
+        // URL 42 is changed by builds 42, 142, ... 942; the first build is everything
+        List<Event> events = history.getLifetime("/svc/042");
+        assertEquals("events for /svc/042",     2 + 10 * 2,     events.size());
+        assertEquals("first event",             "build-0 ADDED /svc/042 GET get-42-0",      events.get(0).toString());
+        assertEquals("second event",            "build-0 ADDED /svc/042 POST post-42-0",    events.get(1).toString());
+        assertEquals("delete added",            "build-42 ADDED /svc/042 DELETE delete-42-42",  events.get(3).toString());
+        assertEquals("last event",              "build-942 CHANGED /svc/042 DELETE delete-42-942",
+                                                events.get(events.size() - 1).toString());
+    }
+}
@@ -0,0 +1,167 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.util;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import net.sf.kdgcommons.io.IOUtil;
+
+import com.kdgregory.pathfinder.core.Destination;
+import com.kdgregory.pathfinder.core.HttpMethod;
+import com.kdgregory.pathfinder.core.InvocationOptions;
+import com.kdgregory.pathfinder.core.PathRepo;
+import com.kdgregory.pathfinder.core.impl.PathRepoImpl;
+
+
+public class TestRouteManifest
+{
+//----------------------------------------------------------------------------
+//  Support Code
+//----------------------------------------------------------------------------
+
+    private static class MyDestination
+    implements Destination
+    {
+        private String name;
+        private boolean displayed;
+
+        public MyDestination(String name)
+        {
+            this(name, true);
+        }
+
+        public MyDestination(String name, boolean displayed)
+        {
+            this.name = name;
+            this.displayed = displayed;
+        }
+
+        @Override
+        public boolean isDisplayed(Map<InvocationOptions,Boolean> options)
+        {
+            return displayed;
+        }
+
+        @Override
+        public String toString(Map<InvocationOptions,Boolean> options)
+        {
+            return name;
+        }
+    }
+
+
+    private static RouteManifest writeAndOpen(PathRepo repo)
+    throws Exception
+    {
+        File file = IOUtil.createTempFile("TestRouteManifest", 0);
+        RouteManifest.write(repo, InvocationOptions.parseCli(), file);
+        return new RouteManifest(file);
+    }
+
+
+//----------------------------------------------------------------------------
+//  TestCases
+//----------------------------------------------------------------------------
+
+    @Test
+    public void testRoundTrip() throws Exception
+    {
+        PathRepo repo = new PathRepoImpl();
+        repo.put("/foo",                        new MyDestination("foo"));
+        repo.put("/bar",    HttpMethod.GET,     new MyDestination("shared"));
+        repo.put("/bar",    HttpMethod.POST,    new MyDestination("postBar"));
+        repo.put("/baz",    HttpMethod.GET,     new MyDestination("shared"));
+        repo.put("/café",                  new MyDestination("non-ASCII é中"));
+        repo.put("/hidden",                     new MyDestination("hidden", false));
+
+        RouteManifest manifest = writeAndOpen(repo);
+        assertEquals("routes, hidden omitted",      5,  manifest.getRouteCount());
+        assertEquals("destinations, shared once",   4,  manifest.getDestinationCount());
+
+        assertEquals("route 0 URL",             "/bar",                     manifest.getUrl(0));
+        assertEquals("route 0 method",          HttpMethod.GET,             manifest.getMethod(0));
+        assertEquals("route 0 destination",     "shared",                   manifest.getDestination(0));
+        assertEquals("route 0 type",            "MyDestination",            manifest.getDestinationType(0));
+        assertEquals("route 1 method",          HttpMethod.POST,            manifest.getMethod(1));
+        assertEquals("route 2 destination",     "shared",                   manifest.getDestination(2));
+        assertEquals("route 3 URL",             "/café",               manifest.getUrl(3));
+        assertEquals("route 3 destination",     "non-ASCII é中",   manifest.getDestination(3));
+        assertEquals("route 4 method",          HttpMethod.ALL,             manifest.getMethod(4));
+    }
+
+
+    @Test
+    public void testFind() throws Exception
+    {
+        PathRepo repo = new PathRepoImpl();
+        repo.put("/foo",                        new MyDestination("foo"));
+        repo.put("/bar",    HttpMethod.GET,     new MyDestination("getBar"));
+        repo.put("/bar",    HttpMethod.POST,    new MyDestination("postBar"));
+        repo.put("/baz",                        new MyDestination("allBaz"));
+        repo.put("/baz",    HttpMethod.DELETE,  new MyDestination("deleteBaz"));
+
+        RouteManifest manifest = writeAndOpen(repo);
+        assertEquals("first route for URL",     0,          manifest.find("/bar"));
+        assertEquals("last URL",                5 - 1,      manifest.find("/foo"));
+        assertEquals("missing URL",             -1,         manifest.find("/argle"));
+        assertEquals("past end",                -1,         manifest.find("/zzz"));
+
+        assertEquals("exact method",            "postBar",  manifest.getDestination(manifest.find("/bar", HttpMethod.POST)));
+        assertEquals("fall back to ALL",        "allBaz",   manifest.getDestination(manifest.find("/baz", HttpMethod.GET)));
+        assertEquals("prefer exact to ALL",     "deleteBaz",manifest.getDestination(manifest.find("/baz", HttpMethod.DELETE)));
+        assertEquals("no fallback",             -1,         manifest.find("/bar", HttpMethod.PUT));
+    }
+
+
+    @Test
+    public void testEmptyRepo() throws Exception
+    {
+        RouteManifest manifest = writeAndOpen(new PathRepoImpl());
+        assertEquals("route count", 0, manifest.getRouteCount());
+        assertEquals("find",        -1, manifest.find("/foo"));
+    }
+
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testNotAManifest() throws Exception
+    {
+        new RouteManifest(ByteBuffer.wrap("this is not a manifest, but it's long enough".getBytes("UTF-8")));
+    }
+
+
+    @Test(timeout=20000)
+    public void testLargeManifest() throws Exception
+    {
+        PathRepo repo = new PathRepoImpl();
+        for (int ii = 0 ; ii < 100000 ; ii++)
+        {
+            repo.put("/service/" + ii, HttpMethod.GET, new MyDestination("getService" + (ii % 100)));
+        }
+
+        RouteManifest manifest = writeAndOpen(repo);
+        assertEquals("route count",         100000, manifest.getRouteCount());
+        assertEquals("destination count",   100,    manifest.getDestinationCount());
+        for (int ii = 0 ; ii < 100000 ; ii++)
+        {
+            int route = manifest.find("/service/" + ii, HttpMethod.GET);
+            assertEquals("destination of route " + ii, "getService" + (ii % 100), manifest.getDestination(route));
+        }
+    }
+}
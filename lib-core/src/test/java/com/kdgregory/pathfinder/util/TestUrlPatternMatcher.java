@@ -0,0 +1,85 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.util;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+public class TestUrlPatternMatcher
+{
+    @Test
+    public void testMatchBest() throws Exception
+    {
+        UrlPatternMatcher<String> matcher = new UrlPatternMatcher<String>();
+        matcher.add("/",            "default");
+        matcher.add("/foo/*",       "foo");
+        matcher.add("/foo/bar/*",   "foobar");
+        matcher.add("/foo/baz",     "baz");
+        matcher.add("*.do",         "action");
+
+        assertEquals("exact beats prefix",      "[baz]",        matcher.matchBest("/foo/baz").toString());
+        assertEquals("longest prefix",          "[foobar]",     matcher.matchBest("/foo/bar/x.do").toString());
+        assertEquals("prefix matches itself",   "[foo]",        matcher.matchBest("/foo").toString());
+        assertEquals("prefix beats extension",  "[foo]",        matcher.matchBest("/foo/x.do").toString());
+        assertEquals("extension",               "[action]",     matcher.matchBest("/x.do").toString());
+        assertEquals("extension, last segment", "[default]",    matcher.matchBest("/x.do/y").toString());
+        assertEquals("default",                 "[default]",    matcher.matchBest("/fooz").toString());
+
+        assertTrue("contains prefix",           matcher.contains("/foo/*"));
+        assertFalse("doesn't contain exact",    matcher.contains("/foo"));
+    }
+
+
+    @Test
+    public void testMatchAll() throws Exception
+    {
+        UrlPatternMatcher<String> matcher = new UrlPatternMatcher<String>();
+        matcher.add("/foo/bar/*",   "foobar");
+        matcher.add("/*",           "all");
+        matcher.add("/foo/*",       "foo");
+        matcher.add("/foo/bar/x.do", "exact");
+        matcher.add("*.do",         "action");
+        matcher.add("*.do",         "action2");
+        matcher.add("/",            "default");
+
+        assertEquals("exact, prefixes shortest first, extensions",
+                     "[exact, all, foo, foobar, action, action2]",
+                     matcher.matchAll("/foo/bar/x.do").toString());
+        assertEquals("no partial segments",
+                     "[all]",
+                     matcher.matchAll("/foobar").toString());
+        assertEquals("default only matches root",
+                     "[all, default]",
+                     matcher.matchAll("/").toString());
+    }
+
+
+    @Test(timeout=10000)
+    public void testManyPatterns() throws Exception
+    {
+        // with one comparison per pattern this would be 10^10 operations
+        UrlPatternMatcher<Integer> matcher = new UrlPatternMatcher<Integer>();
+        for (int ii = 0 ; ii < 100000 ; ii++)
+        {
+            matcher.add("/svc" + ii + "/*", Integer.valueOf(ii));
+        }
+
+        for (int ii = 0 ; ii < 100000 ; ii++)
+        {
+            assertEquals(1, matcher.matchAll("/svc" + ii + "/foo/bar").size());
+        }
+    }
+}
@@ -0,0 +1,275 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.embed;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.EnumMap;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.Properties;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.log4j.Logger;
+
+import net.sf.kdgcommons.io.IOUtil;
+
+import com.kdgregory.pathfinder.core.InvocationOptions;
+import com.kdgregory.pathfinder.core.PathRepo;
+import com.kdgregory.pathfinder.core.WarMachine;
+import com.kdgregory.pathfinder.core.impl.WarMachineImpl;
+import com.kdgregory.pathfinder.util.EmbeddedManifest;
+import com.kdgregory.pathfinder.util.RouteManifest;
+
+
+/**
+ *  A build step that inspects a WAR, and adds the paths that it finds to the
+ *  WAR as an {@link EmbeddedManifest}. Run it after the WAR is packaged, with
+ *  the same options that will be used to examine it:
+ *  <pre>
+ *      java -cp pathfinder.jar com.kdgregory.pathfinder.embed.ManifestEmbedder [OPTIONS] WARFILE [OUTFILE]
+ *  </pre>
+ *  If an output file isn't specified, the WAR is replaced.
+ *  <p>
+ *  The WAR's existing entries are copied in their original order (so that the
+ *  JAR manifest remains first), other than those from a previous run, and the
+ *  manifest entries are added at the end.
+ */
+public class ManifestEmbedder
+{
+    private Logger logger = Logger.getLogger(getClass());
+
+    private Map<InvocationOptions,Boolean> options;
+
+
+    public ManifestEmbedder(Map<InvocationOptions,Boolean> options)
+    {
+        this.options = options;
+    }
+
+
+    public static void main(String[] argv)
+    throws Exception
+    {
+        Map<InvocationOptions,Boolean> options = InvocationOptions.parseCli(argv);
+        String[] files = InvocationOptions.removeInvocationArguments(argv);
+        if ((files.length < 1) || (files.length > 2))
+        {
+            System.err.println("invocation: ManifestEmbedder [OPTIONS] WARFILE [OUTFILE]");
+            System.exit(1);
+        }
+
+        ManifestEmbedder embedder = new ManifestEmbedder(options);
+        if (files.length == 1)
+            embedder.embed(new File(files[0]));
+        else
+            embedder.embed(new File(files[0]), new File(files[1]));
+    }
+
+
+//----------------------------------------------------------------------------
+//  Public methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Inspects the passed WAR, and adds a manifest to it, replacing it. The new WAR
+     *  is written to a temporary file in the same directory, which then replaces the
+     *  original; the original is never removed before its replacement is complete.
+     */
+    public void embed(File war)
+    throws IOException
+    {
+        replace(war, null);
+    }
+
+
+    /**
+     *  Adds a manifest with the passed paths to the WAR, replacing it as above. Use
+     *  this when the WAR has already been inspected, to avoid inspecting it again;
+     *  the paths must have been found with the same options as this instance.
+     */
+    public void embed(File war, PathRepo paths)
+    throws IOException
+    {
+        replace(war, paths);
+    }
+
+
+    /**
+     *  Inspects the passed WAR, and writes a copy that contains a manifest.
+     */
+    public void embed(File war, File output)
+    throws IOException
+    {
+        write(war, output, null);
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    private void replace(File war, PathRepo paths)
+    throws IOException
+    {
+        File temp = File.createTempFile("pathfinder", ".war", war.getAbsoluteFile().getParentFile());
+        boolean written = false;
+        try
+        {
+            write(war, temp, paths);
+            written = true;
+        }
+        finally
+        {
+            if (!written)
+                temp.delete();
+        }
+
+        if (temp.renameTo(war))
+            return;
+
+        // some platforms won't rename over an existing file; if copying fails, the
+        // WAR may be partly overwritten, so we keep the complete copy
+        logger.debug("unable to rename " + temp + ", copying to " + war);
+        copy(temp, war);
+        temp.delete();
+    }
+
+
+    /**
+     *  Writes a copy of the WAR with a manifest. If not given paths, inspects the
+     *  WAR (ignoring any existing manifest) to find them.
+     */
+    private void write(File war, File output, PathRepo paths)
+    throws IOException
+    {
+        String digest;
+        if (paths == null)
+        {
+            Map<InvocationOptions,Boolean> inspectOptions = new EnumMap<InvocationOptions,Boolean>(options);
+            inspectOptions.put(InvocationOptions.USE_MANIFEST, Boolean.FALSE);
+            PathFinder.Result result = new PathFinder(inspectOptions).inspect(war);
+            paths = result.getPaths();
+            digest = result.getContentDigest();
+        }
+        else
+        {
+            WarMachine machine = new WarMachineImpl(war);
+            try
+            {
+                digest = machine.getContentDigest(EmbeddedManifest.ENTRY_PREFIX);
+            }
+            finally
+            {
+                IOUtil.closeQuietly(machine);
+            }
+        }
+
+        Properties props = EmbeddedManifest.createProperties(digest, options);
+        File manifest = File.createTempFile("pathfinder", ".idx");
+        try
+        {
+            RouteManifest.write(paths, options, manifest);
+            rewrite(war, output, props, manifest);
+        }
+        finally
+        {
+            manifest.delete();
+        }
+        logger.debug("wrote manifest to " + output);
+    }
+
+
+    private void rewrite(File war, File output, Properties props, File manifest)
+    throws IOException
+    {
+        ZipFile zip = new ZipFile(war);
+        ZipOutputStream out = null;
+        try
+        {
+            out = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(output), 65536));
+            for (Enumeration<? extends ZipEntry> itx = zip.entries() ; itx.hasMoreElements() ; )
+            {
+                ZipEntry entry = itx.nextElement();
+                if (entry.getName().startsWith(EmbeddedManifest.ENTRY_PREFIX))
+                    continue;
+
+                ZipEntry copy = new ZipEntry(entry.getName());
+                copy.setTime(entry.getTime());
+                out.putNextEntry(copy);
+                copyAndClose(zip.getInputStream(entry), out);
+                out.closeEntry();
+            }
+
+            out.putNextEntry(new ZipEntry(EmbeddedManifest.PROPERTIES_ENTRY));
+            props.store(out, "written by PathFinder; do not edit");
+            out.closeEntry();
+
+            out.putNextEntry(new ZipEntry(EmbeddedManifest.MANIFEST_ENTRY));
+            copyAndClose(IOUtil.openFile(manifest), out);
+            out.closeEntry();
+
+            out.close();
+        }
+        finally
+        {
+            IOUtil.closeQuietly(out);
+            zip.close();
+        }
+    }
+
+
+    private static void copy(File src, File dst)
+    throws IOException
+    {
+        InputStream in = IOUtil.openFile(src);
+        OutputStream out = null;
+        try
+        {
+            out = new FileOutputStream(dst);
+            IOUtil.copy(in, out);
+            out.close();
+        }
+        catch (IOException ex)
+        {
+            throw new IOException("unable to replace " + dst + "; complete copy is " + src, ex);
+        }
+        finally
+        {
+            IOUtil.closeQuietly(in);
+            IOUtil.closeQuietly(out);
+        }
+    }
+
+
+    private static void copyAndClose(InputStream in, ZipOutputStream out)
+    throws IOException
+    {
+        try
+        {
+            IOUtil.copy(in, out);
+        }
+        finally
+        {
+            IOUtil.closeQuietly(in);
+        }
+    }
+}
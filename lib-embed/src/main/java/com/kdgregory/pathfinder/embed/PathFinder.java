@@ -0,0 +1,267 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.embed;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+import net.sf.kdgcommons.io.IOUtil;
+
+import com.kdgregory.pathfinder.core.Inspector;
+import com.kdgregory.pathfinder.core.InvocationOptions;
+import com.kdgregory.pathfinder.core.PathRepo;
+import com.kdgregory.pathfinder.core.impl.ParsedClassCache;
+import com.kdgregory.pathfinder.core.impl.PathRepoImpl;
+import com.kdgregory.pathfinder.core.impl.WarMachineImpl;
+import com.kdgregory.pathfinder.servlet.ServletInspector;
+import com.kdgregory.pathfinder.spring.SpringInspector;
+import com.kdgregory.pathfinder.util.EmbeddedManifest;
+
+
+/**
+ *  An entry point for applications that inspect WARs: it runs the inspectors and
+ *  returns the paths, without writing output or exiting on error. A WAR may be
+ *  given as a file, or as bytes that are already in memory (eg, an upload); in
+ *  the latter case it's never written to disk.
+ *  <p>
+ *  An instance may be used by concurrent threads, and should be reused: it holds
+ *  a cache of parsed classes (see {@link ParsedClassCache}), so classes that
+ *  appear in many WARs are only parsed once. Library JAR contents are cached for
+ *  the entire JVM (see {@link com.kdgregory.pathfinder.core.impl.ArchiveIndexCache}).
+ *  <p>
+ *  Invalid WARs cause <code>IllegalArgumentException</code>; failures within the
+ *  inspectors are thrown as-is. <code>IOException</code> indicates a failure to
+ *  read an embedded manifest.
+ */
+public class PathFinder
+{
+    private Logger logger = Logger.getLogger(getClass());
+
+    private Map<InvocationOptions,Boolean> options;
+    private List<Inspector> inspectors;
+    private volatile ParsedClassCache classCache = new ParsedClassCache(ParsedClassCache.DEFAULT_CAPACITY);
+
+
+    /**
+     *  Creates an instance that runs the servlet and Spring inspectors.
+     */
+    public PathFinder(Map<InvocationOptions,Boolean> options)
+    {
+        this(options, createInspectors(options));
+    }
+
+
+    /**
+     *  Creates an instance that runs the given inspectors, in order. Inspectors
+     *  are shared by all invocations, so must be thread-safe if this instance is
+     *  used by concurrent threads.
+     */
+    public PathFinder(Map<InvocationOptions,Boolean> options, List<Inspector> inspectors)
+    {
+        this.options = Collections.unmodifiableMap(new EnumMap<InvocationOptions,Boolean>(options));
+        this.inspectors = Collections.unmodifiableList(new ArrayList<Inspector>(inspectors));
+    }
+
+
+//----------------------------------------------------------------------------
+//  Public methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Returns the standard inspectors, in the order that they must run: the
+     *  servlet inspector, then the Spring inspector (which replaces the servlet
+     *  inspector's mappings for dispatchers). This is the single definition of
+     *  that list, used by every tool that inspects WARs.
+     */
+    public static List<Inspector> createInspectors(Map<InvocationOptions,Boolean> options)
+    {
+        return createInspectors(options, Runtime.getRuntime().availableProcessors());
+    }
+
+
+    /**
+     *  Returns the standard inspectors, limiting the threads that each may use
+     *  internally (see {@link SpringInspector#setMaxThreads}). Pass 1 when the
+     *  caller is already one of many threads.
+     */
+    public static List<Inspector> createInspectors(Map<InvocationOptions,Boolean> options, int maxThreads)
+    {
+        SpringInspector springInspector = new SpringInspector(options);
+        springInspector.setMaxThreads(maxThreads);
+        return Arrays.<Inspector>asList(new ServletInspector(options), springInspector);
+    }
+
+
+    /**
+     *  Replaces the cache of parsed classes, which allows it to be shared with other
+     *  instances, or sized differently. Pass <code>null</code> to disable caching.
+     */
+    public void setClassCache(ParsedClassCache classCache)
+    {
+        this.classCache = classCache;
+    }
+
+
+    public ParsedClassCache getClassCache()
+    {
+        return classCache;
+    }
+
+
+    /**
+     *  Inspects a WAR file.
+     *
+     *  @throws IllegalArgumentException if the file doesn't exist or isn't a WAR.
+     */
+    public Result inspect(File war)
+    throws IOException
+    {
+        return inspect(new WarMachineImpl(war));
+    }
+
+
+    /**
+     *  Inspects a WAR held in a byte array.
+     *
+     *  @throws IllegalArgumentException if the content isn't a WAR.
+     */
+    public Result inspect(byte[] war)
+    throws IOException
+    {
+        return inspect(new WarMachineImpl(war));
+    }
+
+
+    /**
+     *  Inspects a WAR held in the buffer's remaining bytes. The buffer's position
+     *  isn't changed.
+     *
+     *  @throws IllegalArgumentException if the content isn't a WAR.
+     */
+    public Result inspect(ByteBuffer war)
+    throws IOException
+    {
+        return inspect(new WarMachineImpl(war));
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    /**
+     *  Inspects, then closes, the passed WAR.
+     */
+    private Result inspect(WarMachineImpl machine)
+    throws IOException
+    {
+        try
+        {
+            long start = System.currentTimeMillis();
+            String digest = machine.getContentDigest(EmbeddedManifest.ENTRY_PREFIX);
+
+            if (InvocationOptions.USE_MANIFEST.isEnabled(options))
+            {
+                PathRepo embedded = EmbeddedManifest.load(machine, options);
+                if (embedded != null)
+                    return new Result(embedded.freeze(), digest, true, System.currentTimeMillis() - start);
+            }
+
+            machine.setClassCache(classCache);
+            PathRepo repo = new PathRepoImpl();
+            for (Inspector inspector : inspectors)
+                inspector.inspect(machine, repo);
+
+            long elapsed = System.currentTimeMillis() - start;
+            logger.debug("inspected WAR " + digest + ": " + repo.urlCount() + " URLs, " + elapsed + " ms");
+            return new Result(repo.freeze(), digest, false, elapsed);
+        }
+        finally
+        {
+            IOUtil.closeQuietly(machine);
+        }
+    }
+
+
+//----------------------------------------------------------------------------
+//  Supporting classes
+//----------------------------------------------------------------------------
+
+    /**
+     *  The outcome of inspecting a WAR. Immutable, so may be cached or shared
+     *  between threads.
+     */
+    public static final class Result
+    {
+        private final PathRepo paths;
+        private final String contentDigest;
+        private final boolean fromManifest;
+        private final long elapsed;
+
+        private Result(PathRepo paths, String contentDigest, boolean fromManifest, long elapsed)
+        {
+            this.paths = paths;
+            this.contentDigest = contentDigest;
+            this.fromManifest = fromManifest;
+            this.elapsed = elapsed;
+        }
+
+        /**
+         *  Returns the paths that were found. The repository is frozen: attempts
+         *  to modify it throw <code>UnsupportedOperationException</code>.
+         */
+        public PathRepo getPaths()
+        {
+            return paths;
+        }
+
+        /**
+         *  Returns the WAR's content digest (see {@link
+         *  com.kdgregory.pathfinder.core.WarMachine#getContentDigest}), which
+         *  may be used as a key to cache results.
+         */
+        public String getContentDigest()
+        {
+            return contentDigest;
+        }
+
+        /**
+         *  Returns <code>true</code> if the paths were loaded from the WAR's
+         *  embedded manifest rather than found by inspection.
+         */
+        public boolean isFromManifest()
+        {
+            return fromManifest;
+        }
+
+        /**
+         *  Returns the time taken to inspect the WAR (not including reading it),
+         *  in milliseconds.
+         */
+        public long getElapsed()
+        {
+            return elapsed;
+        }
+    }
+}
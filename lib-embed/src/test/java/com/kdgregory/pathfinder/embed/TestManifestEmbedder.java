@@ -0,0 +1,203 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.embed;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import net.sf.kdgcommons.io.IOUtil;
+
+import com.kdgregory.pathfinder.core.HttpMethod;
+import com.kdgregory.pathfinder.core.InvocationOptions;
+import com.kdgregory.pathfinder.core.PathRepo;
+import com.kdgregory.pathfinder.core.WarMachine;
+import com.kdgregory.pathfinder.core.impl.PathRepoImpl;
+import com.kdgregory.pathfinder.core.impl.WarMachineImpl;
+import com.kdgregory.pathfinder.servlet.ServletInspector;
+import com.kdgregory.pathfinder.spring.SpringInspector;
+import com.kdgregory.pathfinder.test.WarNames;
+import com.kdgregory.pathfinder.util.EmbeddedManifest;
+import com.kdgregory.pathfinder.util.RouteDiff;
+import com.kdgregory.pathfinder.util.RouteSnapshot;
+import com.kdgregory.pathfinder.util.RouteSnapshot.Entry;
+
+
+public class TestManifestEmbedder
+{
+//----------------------------------------------------------------------------
+//  Support Code
+//----------------------------------------------------------------------------
+
+    private static File extractWar(String warName)
+    throws Exception
+    {
+        InputStream in = TestManifestEmbedder.class.getClassLoader().getResourceAsStream(warName);
+        try
+        {
+            return IOUtil.createTempFile(in, warName);
+        }
+        finally
+        {
+            IOUtil.closeQuietly(in);
+        }
+    }
+
+
+    private static PathRepo inspect(WarMachine machine, Map<InvocationOptions,Boolean> options)
+    {
+        PathRepo repo = new PathRepoImpl();
+        new ServletInspector(options).inspect(machine, repo);
+        new SpringInspector(options).inspect(machine, repo);
+        return repo;
+    }
+
+
+    private static List<String> diff(PathRepo expected, PathRepo actual, Map<InvocationOptions,Boolean> options)
+    {
+        final List<String> diffs = new ArrayList<String>();
+        RouteDiff.diff(RouteSnapshot.iterate(expected, options),
+                       RouteSnapshot.iterate(actual, options),
+                       new RouteDiff.Listener()
+                       {
+                           @Override
+                           public void added(Entry newEntry)
+                           {
+                               diffs.add("added: " + newEntry.getUrl());
+                           }
+
+                           @Override
+                           public void removed(Entry oldEntry)
+                           {
+                               diffs.add("removed: " + oldEntry.getUrl());
+                           }
+
+                           @Override
+                           public void changed(Entry oldEntry, Entry newEntry)
+                           {
+                               diffs.add("changed: " + oldEntry.getUrl());
+                           }
+                       });
+        return diffs;
+    }
+
+
+//----------------------------------------------------------------------------
+//  TestCases
+//----------------------------------------------------------------------------
+
+    @Test
+    public void testRoundTrip() throws Exception
+    {
+        Map<InvocationOptions,Boolean> options = InvocationOptions.parseCli(InvocationOptions.SHOW_REQUEST_PARAMS.getEnableString());
+        File war = extractWar(WarNames.SPRING_ANNO);
+        PathRepo expected = inspect(new WarMachineImpl(war), options);
+
+        new ManifestEmbedder(options).embed(war);
+
+        PathRepo actual = EmbeddedManifest.load(new WarMachineImpl(war), options);
+        assertNotNull("loaded manifest", actual);
+        assertTrue("manifest has paths", actual.urlCount() > 0);
+        assertEquals("differences from inspection", "[]", diff(expected, actual, options).toString());
+
+        // the embedded WAR is still a WAR, and a second run replaces the manifest
+        PathRepo reinspected = inspect(new WarMachineImpl(war), options);
+        assertEquals("differences after embedding", "[]", diff(expected, reinspected, options).toString());
+
+        new ManifestEmbedder(options).embed(war);
+        assertNotNull("loaded after second embed", EmbeddedManifest.load(new WarMachineImpl(war), options));
+    }
+
+
+    @Test
+    public void testEmbedPassedPaths() throws Exception
+    {
+        Map<InvocationOptions,Boolean> options = InvocationOptions.parseCli();
+        File war = extractWar(WarNames.SPRING_ANNO);
+        PathRepo paths = inspect(new WarMachineImpl(war), options);
+
+        // the passed paths are embedded as-is, so a change to them shows that the WAR wasn't re-inspected
+        paths.remove("/servlet/C", HttpMethod.GET);
+        new ManifestEmbedder(options).embed(war, paths);
+
+        PathRepo actual = EmbeddedManifest.load(new WarMachineImpl(war), options);
+        assertNotNull("loaded manifest", actual);
+        assertEquals("differences from passed paths", "[]", diff(paths, actual, options).toString());
+        assertNull("removed path not embedded", actual.get("/servlet/C", HttpMethod.GET));
+    }
+
+
+    @Test
+    public void testNoManifest() throws Exception
+    {
+        File war = extractWar(WarNames.SERVLET);
+        assertNull("WAR without manifest", EmbeddedManifest.load(new WarMachineImpl(war), InvocationOptions.parseCli()));
+    }
+
+
+    @Test
+    public void testOptionsMismatch() throws Exception
+    {
+        File war = extractWar(WarNames.SPRING_ANNO);
+        new ManifestEmbedder(InvocationOptions.parseCli()).embed(war);
+
+        WarMachine machine = new WarMachineImpl(war);
+        assertNotNull("same options",
+                      EmbeddedManifest.load(machine, InvocationOptions.parseCli()));
+        assertNull("different options",
+                   EmbeddedManifest.load(machine, InvocationOptions.parseCli(InvocationOptions.SHOW_REQUEST_PARAMS.getEnableString())));
+        assertNotNull("option that doesn't affect manifest",
+                      EmbeddedManifest.load(machine, InvocationOptions.parseCli(InvocationOptions.SHOW_FILTERS.getEnableString())));
+    }
+
+
+    @Test
+    public void testModifiedWar() throws Exception
+    {
+        File war = extractWar(WarNames.SPRING_ANNO);
+        File output = IOUtil.createTempFile("TestManifestEmbedder", 0);
+        new ManifestEmbedder(InvocationOptions.parseCli()).embed(war, output);
+
+        // copy everything, including the manifest, and add a new JSP
+        File modified = IOUtil.createTempFile("TestManifestEmbedder", 0);
+        ZipFile zip = new ZipFile(output);
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(modified));
+        for (Enumeration<? extends ZipEntry> itx = zip.entries() ; itx.hasMoreElements() ; )
+        {
+            ZipEntry entry = itx.nextElement();
+            out.putNextEntry(new ZipEntry(entry.getName()));
+            IOUtil.copy(zip.getInputStream(entry), out);
+            out.closeEntry();
+        }
+        out.putNextEntry(new ZipEntry("added.jsp"));
+        out.write("<html/>".getBytes("UTF-8"));
+        out.closeEntry();
+        out.close();
+        zip.close();
+
+        assertNotNull("unmodified WAR", EmbeddedManifest.load(new WarMachineImpl(output), InvocationOptions.parseCli()));
+        assertNull("modified WAR",      EmbeddedManifest.load(new WarMachineImpl(modified), InvocationOptions.parseCli()));
+    }
+}
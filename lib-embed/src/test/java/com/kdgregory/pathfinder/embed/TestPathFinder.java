@@ -0,0 +1,136 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.embed;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import net.sf.kdgcommons.io.IOUtil;
+
+import com.kdgregory.pathfinder.core.Inspector;
+import com.kdgregory.pathfinder.core.InvocationOptions;
+import com.kdgregory.pathfinder.core.PathRepo;
+import com.kdgregory.pathfinder.servlet.ServletInspector;
+import com.kdgregory.pathfinder.test.WarNames;
+import com.kdgregory.pathfinder.util.RouteSnapshot;
+
+
+public class TestPathFinder
+{
+//----------------------------------------------------------------------------
+//  Support Code
+//----------------------------------------------------------------------------
+
+    private static byte[] readWar(String warName)
+    throws Exception
+    {
+        InputStream in = TestPathFinder.class.getClassLoader().getResourceAsStream(warName);
+        try
+        {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            IOUtil.copy(in, out);
+            return out.toByteArray();
+        }
+        finally
+        {
+            IOUtil.closeQuietly(in);
+        }
+    }
+
+
+    private static String snapshot(PathRepo repo, Map<InvocationOptions,Boolean> options)
+    throws Exception
+    {
+        StringWriter out = new StringWriter();
+        RouteSnapshot.write(repo, options, out);
+        return out.toString();
+    }
+
+
+//----------------------------------------------------------------------------
+//  TestCases
+//----------------------------------------------------------------------------
+
+    @Test
+    public void testInspectFromMemoryAndFile() throws Exception
+    {
+        Map<InvocationOptions,Boolean> options = InvocationOptions.parseCli();
+        PathFinder finder = new PathFinder(options);
+
+        byte[] content = readWar(WarNames.SPRING_ANNO);
+        PathFinder.Result result1 = finder.inspect(content);
+        assertFalse("inspected, not loaded from manifest", result1.isFromManifest());
+        assertEquals("controller path", "com.kdgregory.pathfinder.test.spring3.pkg2.ControllerC.getC()",
+                     String.valueOf(result1.getPaths().get("/servlet/C").values().iterator().next()));
+        assertTrue("classes were parsed", finder.getClassCache().getMissCount() > 0);
+
+        long parsed = finder.getClassCache().getMissCount();
+        PathFinder.Result result2 = finder.inspect(ByteBuffer.wrap(content));
+        assertEquals("second inspection reuses parsed classes", parsed, finder.getClassCache().getMissCount());
+        assertEquals("same digest", result1.getContentDigest(), result2.getContentDigest());
+
+        File file = IOUtil.createTempFile(new ByteArrayInputStream(content), WarNames.SPRING_ANNO);
+        PathFinder.Result result3 = finder.inspect(file);
+        assertEquals("file and memory have same digest", result1.getContentDigest(), result3.getContentDigest());
+        assertEquals("file and memory have same paths",  snapshot(result1.getPaths(), options), snapshot(result3.getPaths(), options));
+
+        try
+        {
+            result1.getPaths().remove("/servlet/C", null);
+            fail("result should be immutable");
+        }
+        catch (UnsupportedOperationException ex)
+        {
+            // success
+        }
+    }
+
+
+    @Test
+    public void testInspectorsAndManifest() throws Exception
+    {
+        Map<InvocationOptions,Boolean> options = InvocationOptions.parseCli();
+        byte[] content = readWar(WarNames.SPRING_ANNO);
+
+        PathFinder servletOnly = new PathFinder(options, Arrays.<Inspector>asList(new ServletInspector(options)));
+        String servletPaths = snapshot(servletOnly.inspect(content).getPaths(), options);
+        assertTrue("servlet paths",     servletPaths.contains("/servlet/*"));
+        assertFalse("no Spring paths",  servletPaths.contains("ControllerC"));
+
+        File war = IOUtil.createTempFile(new ByteArrayInputStream(content), WarNames.SPRING_ANNO);
+        new ManifestEmbedder(options).embed(war);
+        assertFalse("manifest ignored by default", new PathFinder(options).inspect(war).isFromManifest());
+
+        PathFinder.Result result = new PathFinder(InvocationOptions.parseCli("--useManifest")).inspect(war);
+        assertTrue("loaded from manifest", result.isFromManifest());
+        assertNotNull("manifest has Spring paths", result.getPaths().get("/servlet/C"));
+    }
+
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testInvalidContent() throws Exception
+    {
+        new PathFinder(InvocationOptions.parseCli()).inspect("not a WAR".getBytes("UTF-8"));
+    }
+}
@@ -19,7 +19,7 @@ import java.util.Map;
 import com.kdgregory.pathfinder.core.Destination;
 import com.kdgregory.pathfinder.core.InvocationOptions;
 
-class ServletDestination
+public class ServletDestination
 implements Destination
 {
     private String servletClass;
@@ -29,6 +29,11 @@ implements Destination
         this.servletClass = servletClass;
     }
 
+    public String getServletClass()
+    {
+        return servletClass;
+    }
+
     @Override
     public boolean isDisplayed(Map<InvocationOptions,Boolean> options)
     {
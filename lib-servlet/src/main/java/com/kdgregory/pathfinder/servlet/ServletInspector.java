@@ -14,10 +14,13 @@
 
 package com.kdgregory.pathfinder.servlet;
 
+import java.util.Map;
+
 import org.apache.log4j.Logger;
 
 import com.kdgregory.pathfinder.core.HttpMethod;
 import com.kdgregory.pathfinder.core.Inspector;
+import com.kdgregory.pathfinder.core.InvocationOptions;
 import com.kdgregory.pathfinder.core.PathRepo;
 import com.kdgregory.pathfinder.core.WarMachine;
 import com.kdgregory.pathfinder.core.WarMachine.ServletMapping;
@@ -28,6 +31,35 @@ implements Inspector
 {
     private Logger logger = Logger.getLogger(getClass());
 
+    private boolean showJsp;
+    private boolean showHtml;
+    private boolean showStatic;
+    private boolean expandStatic;
+
+
+    /**
+     *  Creates an instance that adds all files to the repository.
+     */
+    public ServletInspector()
+    {
+        this(InvocationOptions.showAll());
+    }
+
+
+    /**
+     *  Creates an instance that only adds files that will be displayed under the
+     *  passed options; there's no point in creating destinations for (possibly
+     *  thousands of) static files if we're not going to show them. Unless static
+     *  content is to be expanded, it's summarized by directory.
+     */
+    public ServletInspector(Map<InvocationOptions,Boolean> options)
+    {
+        showJsp = InvocationOptions.SHOW_JSP.isEnabled(options);
+        showHtml = InvocationOptions.SHOW_HTML.isEnabled(options);
+        showStatic = InvocationOptions.SHOW_STATIC.isEnabled(options);
+        expandStatic = InvocationOptions.EXPAND_STATIC.isEnabled(options);
+    }
+
 //----------------------------------------------------------------------------
 //  Inspector
 //----------------------------------------------------------------------------
@@ -61,19 +93,55 @@ implements Inspector
 
     private void addJSPandStaticFiles(WarMachine war, PathRepo paths)
     {
+        if (!showJsp && !showHtml && !showStatic)
+        {
+            logger.debug("not displaying JSP or static content; skipping public files");
+            return;
+        }
+
+        StaticContentSummarizer summarizer = (showStatic && !expandStatic)
+                                           ? new StaticContentSummarizer()
+                                           : null;
+
         for (String filename : war.getPublicFiles())
         {
-            if (filename.toLowerCase().endsWith(".jsp"))
+            String lcFilename = filename.toLowerCase();
+            boolean isJsp = lcFilename.endsWith(".jsp");
+            boolean isHtml = !isJsp && StaticDestination.isHtml(lcFilename);
+            if (summarizer != null)
+            {
+                if (isJsp || isHtml)
+                {
+                    summarizer.addOther(filename);
+                }
+                else
+                {
+                    summarizer.addStatic(filename);
+                    continue;
+                }
+            }
+
+            if (isJsp)
             {
+                if (!showJsp)
+                    continue;
                 logger.debug("added JSP: " + filename);
                 paths.put(filename, new JspDestination(filename));
             }
             else
             {
+                if (isHtml ? !showHtml : !showStatic)
+                    continue;
                 logger.debug("added static destination: " + filename);
-                paths.put(filename, HttpMethod.GET, new StaticDestination(filename));
+                paths.put(filename, HttpMethod.GET, new StaticDestination(filename, isHtml));
             }
         }
+
+        if (summarizer != null)
+        {
+            int count = summarizer.addTo(paths);
+            logger.debug("added " + count + " static content summaries");
+        }
     }
 
 }
@@ -0,0 +1,160 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.servlet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.kdgregory.pathfinder.core.HttpMethod;
+import com.kdgregory.pathfinder.core.PathRepo;
+
+
+/**
+ *  Collapses static files into per-directory aggregates, so that the number of
+ *  repository entries depends on the number of directories rather than files.
+ *  <p>
+ *  A directory whose entire subtree holds nothing but static (non-HTML, non-JSP)
+ *  content is reported as <code>/dir/**</code>, unless its parent directory is also
+ *  reported that way. Static files in other directories are grouped by extension,
+ *  as <code>/dir/*.ext</code>; files without an extension are reported individually.
+ *  <p>
+ *  Only counts are retained, never filenames (other than those without extension).
+ */
+class StaticContentSummarizer
+{
+    private TreeMap<String,DirInfo> dirs = new TreeMap<String,DirInfo>();
+
+
+    /**
+     *  Records a static file that should be summarized.
+     */
+    public void addStatic(String filename)
+    {
+        int slash = filename.lastIndexOf('/');
+        DirInfo dir = getOrCreate(filename.substring(0, Math.max(slash, 0)));
+
+        String basename = filename.substring(slash + 1);
+        int dot = basename.lastIndexOf('.');
+        if (dot <= 0)
+        {
+            dir.unsummarized.add(filename);
+        }
+        else
+        {
+            String ext = basename.substring(dot + 1);
+            Integer count = dir.extensionCounts.get(ext);
+            dir.extensionCounts.put(ext, Integer.valueOf((count == null) ? 1 : count.intValue() + 1));
+        }
+
+        for (DirInfo ancestor = dir ; ancestor != null ; ancestor = ancestor.parent)
+            ancestor.subtreeCount++;
+    }
+
+
+    /**
+     *  Records a file that isn't summarized (JSP or HTML); its directory and all
+     *  of that directory's ancestors can't be reported as purely static.
+     */
+    public void addOther(String filename)
+    {
+        int slash = filename.lastIndexOf('/');
+        for (DirInfo dir = getOrCreate(filename.substring(0, Math.max(slash, 0))) ; dir != null ; dir = dir.parent)
+        {
+            if (dir.mixed)
+                break;
+            dir.mixed = true;
+        }
+    }
+
+
+    /**
+     *  Adds the summaries to the passed repository, returning the number of
+     *  entries added.
+     */
+    public int addTo(PathRepo paths)
+    {
+        int count = 0;
+        for (Map.Entry<String,DirInfo> entry : dirs.entrySet())
+        {
+            String dirName = entry.getKey();
+            DirInfo dir = entry.getValue();
+            if (dir.subtreeCount == 0)
+                continue;
+
+            if (!dir.mixed)
+            {
+                if ((dir.parent == null) || dir.parent.mixed)
+                {
+                    paths.put(dirName + "/**", HttpMethod.GET, new StaticSummaryDestination(dir.subtreeCount));
+                    count++;
+                }
+                continue;
+            }
+
+            for (Map.Entry<String,Integer> ext : dir.extensionCounts.entrySet())
+            {
+                paths.put(dirName + "/*." + ext.getKey(), HttpMethod.GET,
+                          new StaticSummaryDestination(ext.getValue().intValue()));
+                count++;
+            }
+            for (String filename : dir.unsummarized)
+            {
+                paths.put(filename, HttpMethod.GET, new StaticDestination(filename, false));
+                count++;
+            }
+        }
+        return count;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    /**
+     *  Returns the information for a directory (the root is ""), creating it and
+     *  any missing ancestors.
+     */
+    private DirInfo getOrCreate(String dirName)
+    {
+        DirInfo dir = dirs.get(dirName);
+        if (dir == null)
+        {
+            DirInfo parent = (dirName.length() == 0)
+                           ? null
+                           : getOrCreate(dirName.substring(0, dirName.lastIndexOf('/')));
+            dir = new DirInfo(parent);
+            dirs.put(dirName, dir);
+        }
+        return dir;
+    }
+
+
+    private static class DirInfo
+    {
+        public DirInfo parent;
+        public boolean mixed;
+        public int subtreeCount;
+        public Map<String,Integer> extensionCounts = new TreeMap<String,Integer>();
+        public List<String> unsummarized = new ArrayList<String>(0);
+
+        public DirInfo(DirInfo parent)
+        {
+            this.parent = parent;
+        }
+    }
+}
@@ -26,11 +26,27 @@ implements Destination
     private boolean isHtml;
 
     public StaticDestination(String filename)
+    {
+        this(filename, isHtml(filename.toLowerCase()));
+    }
+
+
+    /**
+     *  Constructor for callers that have already classified the file.
+     */
+    public StaticDestination(String filename, boolean isHtml)
     {
         this.filename = filename;
+        this.isHtml = isHtml;
+    }
+
 
-        String lcFilename = filename.toLowerCase();
-        this.isHtml = lcFilename.endsWith(".html") || lcFilename.endsWith(".htm");
+    /**
+     *  Determines whether the passed (lowercased) filename refers to HTML content.
+     */
+    public static boolean isHtml(String lcFilename)
+    {
+        return lcFilename.endsWith(".html") || lcFilename.endsWith(".htm");
     }
 
 
@@ -0,0 +1,63 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.servlet;
+
+import java.util.Map;
+
+import com.kdgregory.pathfinder.core.InvocationOptions;
+import com.kdgregory.pathfinder.core.SummaryDestination;
+
+
+/**
+ *  Stands in for a group of static files, identified by a directory pattern
+ *  (<code>/assets/**</code>) or an extension pattern (<code>/img/*.png</code>).
+ */
+class StaticSummaryDestination
+implements SummaryDestination
+{
+    private int fileCount;
+
+    public StaticSummaryDestination(int fileCount)
+    {
+        this.fileCount = fileCount;
+    }
+
+
+    @Override
+    public int getFileCount()
+    {
+        return fileCount;
+    }
+
+
+    @Override
+    public boolean isDisplayed(Map<InvocationOptions,Boolean> options)
+    {
+        return InvocationOptions.SHOW_STATIC.isEnabled(options);
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("static content, %,d %s", fileCount, (fileCount == 1) ? "file" : "files");
+    }
+
+    @Override
+    public String toString(Map<InvocationOptions,Boolean> options)
+    {
+        // no options (currently) apply
+        return toString();
+    }
+}
@@ -14,10 +14,13 @@
 
 package com.kdgregory.pathfinder.servlet;
 
+import java.util.Map;
+
 import org.junit.Test;
 import static org.junit.Assert.*;
 
 import com.kdgregory.pathfinder.core.HttpMethod;
+import com.kdgregory.pathfinder.core.InvocationOptions;
 import com.kdgregory.pathfinder.core.PathRepo;
 import com.kdgregory.pathfinder.core.WarMachine;
 import com.kdgregory.pathfinder.core.impl.PathRepoImpl;
@@ -44,4 +47,36 @@ public class TestServletInspector
         // and verify that we don't know nothing about the hidden JSP
         assertNull(repo.get("/WEB-INF/views/hidden.jsp", HttpMethod.ALL));
     }
+
+
+    @Test
+    public void testOptionsSuppressHiddenContent() throws Exception
+    {
+        WarMachine machine = TestHelpers.createWarMachine(WarNames.SERVLET);
+        PathRepo repo = new PathRepoImpl();
+
+        Map<InvocationOptions,Boolean> options = InvocationOptions.parseCli("--hideJSP", "--hideHTML");
+        (new ServletInspector(options)).inspect(machine, repo);
+
+        assertEquals("com.example.servlet.SomeServlet", repo.get("/servlet", HttpMethod.ALL).toString());
+        assertNull("hidden JSP not added",              repo.get("/index.jsp", HttpMethod.ALL));
+        assertNull("hidden HTML not added",             repo.get("/index.html", HttpMethod.GET));
+    }
+
+
+    @Test
+    public void testStaticContentSummarized() throws Exception
+    {
+        WarMachine machine = TestHelpers.createWarMachine(WarNames.STATIC);
+        PathRepo repo = new PathRepoImpl();
+
+        Map<InvocationOptions,Boolean> options = InvocationOptions.parseCli("--showStatic");
+        (new ServletInspector(options)).inspect(machine, repo);
+
+        assertEquals("/index.html",                 repo.get("/index.html", HttpMethod.GET).toString());
+        assertEquals("static content, 1 file",      repo.get("/*.gif", HttpMethod.GET).toString());
+        assertEquals("static content, 1 file",      repo.get("/css/**", HttpMethod.GET).toString());
+        assertNull("individual file not added",     repo.get("/sample.gif", HttpMethod.GET));
+        assertNull("individual file not added",     repo.get("/css/sample.css", HttpMethod.GET));
+    }
 }
@@ -0,0 +1,75 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.servlet;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import com.kdgregory.pathfinder.core.HttpMethod;
+import com.kdgregory.pathfinder.core.PathRepo;
+import com.kdgregory.pathfinder.core.impl.PathRepoImpl;
+
+
+public class TestStaticContentSummarizer
+{
+    private static int fileCount(PathRepo repo, String url)
+    {
+        return ((StaticSummaryDestination)repo.get(url, HttpMethod.GET)).getFileCount();
+    }
+
+
+    @Test
+    public void testSummaries() throws Exception
+    {
+        StaticContentSummarizer summarizer = new StaticContentSummarizer();
+        summarizer.addOther("/index.html");
+        summarizer.addStatic("/favicon.ico");
+        summarizer.addStatic("/robots");
+        for (int ii = 0 ; ii < 1000 ; ii++)
+        {
+            summarizer.addStatic("/assets/js/chunk-" + ii + ".js");
+            summarizer.addStatic("/assets/css/chunk-" + ii + ".css");
+        }
+        summarizer.addOther("/docs/index.html");
+        summarizer.addStatic("/docs/a.png");
+        summarizer.addStatic("/docs/b.png");
+        summarizer.addStatic("/docs/img/c.png");
+
+        PathRepo repo = new PathRepoImpl();
+        assertEquals("entries added", 5, summarizer.addTo(repo));
+
+        assertEquals("pure static directory",       2000,   fileCount(repo, "/assets/**"));
+        assertEquals("loose files by extension",    1,      fileCount(repo, "/*.ico"));
+        assertEquals("loose files by extension",    2,      fileCount(repo, "/docs/*.png"));
+        assertEquals("nested pure directory",       1,      fileCount(repo, "/docs/img/**"));
+        assertEquals("file without extension",      "/robots", repo.get("/robots", HttpMethod.GET).toString());
+        assertEquals("nested summaries not added",  0,      repo.get("/assets/js/**").size());
+    }
+
+
+    @Test
+    public void testEntireWarStatic() throws Exception
+    {
+        StaticContentSummarizer summarizer = new StaticContentSummarizer();
+        summarizer.addStatic("/a.css");
+        summarizer.addStatic("/x/b.css");
+
+        PathRepo repo = new PathRepoImpl();
+        summarizer.addTo(repo);
+
+        assertEquals("url count",   1, repo.urlCount());
+        assertEquals("root",        2, fileCount(repo, "/**"));
+    }
+}
@@ -17,7 +17,15 @@ package com.kdgregory.pathfinder.spring;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.log4j.Logger;
 
@@ -25,25 +33,71 @@ import net.sf.kdgcommons.lang.StringUtil;
 
 import com.kdgregory.pathfinder.core.HttpMethod;
 import com.kdgregory.pathfinder.core.Inspector;
+import com.kdgregory.pathfinder.core.InvocationOptions;
 import com.kdgregory.pathfinder.core.PathRepo;
 import com.kdgregory.pathfinder.core.WarMachine;
 import com.kdgregory.pathfinder.core.WarMachine.ServletMapping;
+import com.kdgregory.pathfinder.core.impl.BufferedPathRepo;
 import com.kdgregory.pathfinder.spring.context.SpringConstants;
 import com.kdgregory.pathfinder.spring.context.SpringContext;
 import com.kdgregory.pathfinder.spring.inspectors.AnnotationInspector;
 import com.kdgregory.pathfinder.spring.inspectors.BeanInspector;
+import com.kdgregory.pathfinder.spring.inspectors.RequestMappingResolver;
 
 
 /**
  *  Finds any mappings to Spring's DispatcherServlet, and replaces them with mappings
  *  found by inspecting the various Spring context files. Supports both XML-driven and
  *  Annotation-driven configuration; does not support (at presnt) Code-driven config.
+ *  <p>
+ *  Each dispatcher's context is independent of the others (other than sharing the
+ *  root context), so they are built and inspected concurrently. The results are
+ *  merged in the order of the dispatchers' servlet mappings, so that overrides are
+ *  the same as for a sequential inspection.
  */
 public class SpringInspector
 implements Inspector
 {
     private Logger logger = Logger.getLogger(getClass());
 
+    private Map<InvocationOptions,Boolean> options;
+    private int maxThreads = Runtime.getRuntime().availableProcessors();
+
+
+    /**
+     *  Creates an instance that records all available detail.
+     */
+    public SpringInspector()
+    {
+        this(InvocationOptions.showAll());
+    }
+
+
+    /**
+     *  Creates an instance that only extracts the detail that will be displayed
+     *  under the passed options.
+     */
+    public SpringInspector(Map<InvocationOptions,Boolean> options)
+    {
+        this.options = options;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Public methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Sets the maximum number of dispatchers that are inspected at once; the
+     *  default is one per CPU. With 1, dispatchers are inspected on the calling
+     *  thread, which is appropriate when the caller is already one of many threads
+     *  (eg, a batch).
+     */
+    public void setMaxThreads(int maxThreads)
+    {
+        this.maxThreads = Math.max(1, maxThreads);
+    }
+
 
 //----------------------------------------------------------------------------
 //  Inspector
@@ -55,23 +109,21 @@ implements Inspector
         logger.info("SpringInspector started");
 
         SpringContext rootContext = loadRootContext(war);
+        boolean showRequestParams = InvocationOptions.SHOW_REQUEST_PARAMS.isEnabled(options);
+        RequestMappingResolver resolver = new RequestMappingResolver(war, showRequestParams);
 
         List<ServletMapping> springMappings = extractSpringMappings(war, paths);
         logger.debug("extracted " + springMappings.size() + " Spring mappings");
+
+        List<DispatcherTask> tasks = new ArrayList<DispatcherTask>(springMappings.size());
         for (ServletMapping mapping : springMappings)
         {
-            String urlPrefix = StringUtil.extractLeftOfLast(mapping.getUrlPattern(), "/");
-            String configLoc = mapping.getInitParams().get("contextConfigLocation");
-            if (StringUtil.isBlank(configLoc))
-            {
-                configLoc = "/WEB-INF/" + mapping.getServletName() + "-servlet.xml";
-            }
-
-            logger.debug("processing mapping for \"" + urlPrefix + "\" from configFile " + configLoc);
-            SpringContext context = new SpringContext(rootContext, war, configLoc);
-            new BeanInspector(war, context, paths).inspect(urlPrefix);
-            new AnnotationInspector(war, context, paths).inspect(urlPrefix);
+            tasks.add(new DispatcherTask(war, rootContext, resolver, options, mapping));
         }
+
+        // the tasks write to private buffers, which we merge in mapping order so
+        // that the result is the same as if they were executed sequentially
+        execute(tasks, paths);
         logger.info("SpringInspector finished");
     }
 
@@ -123,4 +175,126 @@ implements Inspector
         }
         return result;
     }
+
+
+    /**
+     *  Runs the passed tasks, concurrently if there's more than one and we may use
+     *  more than one thread, and replays their results into the repository in the
+     *  same order as the tasks. Each result is replayed as soon as it and its
+     *  predecessors are done, so that a streaming repository sees paths before all
+     *  tasks have finished.
+     */
+    private void execute(List<DispatcherTask> tasks, PathRepo paths)
+    {
+        if ((tasks.size() < 2) || (maxThreads < 2))
+        {
+            for (DispatcherTask task : tasks)
+                task.call().replay(paths);
+            return;
+        }
+
+        int numThreads = Math.min(tasks.size(), maxThreads);
+        logger.debug("inspecting " + tasks.size() + " dispatchers using " + numThreads + " threads");
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads, new DaemonThreadFactory());
+        try
+        {
+            List<Future<BufferedPathRepo>> futures = new ArrayList<Future<BufferedPathRepo>>(tasks.size());
+            for (DispatcherTask task : tasks)
+                futures.add(executor.submit(task));
+
+            for (Future<BufferedPathRepo> future : futures)
+                future.get().replay(paths);
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("interrupted while inspecting dispatchers", ex);
+        }
+        catch (ExecutionException ex)
+        {
+            // rethrow what a sequential run would have thrown
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException)cause;
+            if (cause instanceof Error)
+                throw (Error)cause;
+            throw new RuntimeException("unable to inspect dispatcher", cause);
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+
+//----------------------------------------------------------------------------
+//  Supporting classes
+//----------------------------------------------------------------------------
+
+    /**
+     *  Builds the context for a single dispatcher servlet and runs the inspectors
+     *  against it. The only state shared between tasks is the WAR, the root context
+     *  (which is read-only, and built before the tasks start), and the mapping
+     *  resolver (which is synchronized). Annotation parsers build their tables on
+     *  first use, so each task creates its own for the root context's beans.
+     */
+    private static class DispatcherTask
+    implements Callable<BufferedPathRepo>
+    {
+        private Logger logger = Logger.getLogger(getClass());
+
+        private WarMachine war;
+        private SpringContext rootContext;
+        private RequestMappingResolver resolver;
+        private Map<InvocationOptions,Boolean> options;
+        private ServletMapping mapping;
+
+        public DispatcherTask(
+                WarMachine war, SpringContext rootContext, RequestMappingResolver resolver,
+                Map<InvocationOptions,Boolean> options, ServletMapping mapping)
+        {
+            this.war = war;
+            this.rootContext = rootContext;
+            this.resolver = resolver;
+            this.options = options;
+            this.mapping = mapping;
+        }
+
+        @Override
+        public BufferedPathRepo call()
+        {
+            String urlPrefix = StringUtil.extractLeftOfLast(mapping.getUrlPattern(), "/");
+            String configLoc = mapping.getInitParams().get("contextConfigLocation");
+            if (StringUtil.isBlank(configLoc))
+            {
+                configLoc = "/WEB-INF/" + mapping.getServletName() + "-servlet.xml";
+            }
+
+            logger.debug("processing mapping for \"" + urlPrefix + "\" from configFile " + configLoc);
+            BufferedPathRepo buffer = new BufferedPathRepo();
+            SpringContext context = new SpringContext(rootContext, war, configLoc);
+            new BeanInspector(war, context, buffer).inspect(urlPrefix);
+            new AnnotationInspector(war, context, buffer, resolver, options).inspect(urlPrefix);
+            return buffer;
+        }
+    }
+
+
+    /**
+     *  Creates daemon threads, so that an abandoned inspection can't keep the
+     *  JVM alive.
+     */
+    private static class DaemonThreadFactory
+    implements ThreadFactory
+    {
+        private AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r)
+        {
+            Thread thread = new Thread(r, "pathfinder-dispatcher-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
 }
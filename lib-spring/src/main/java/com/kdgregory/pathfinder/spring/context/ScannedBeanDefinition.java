@@ -59,7 +59,9 @@ extends BeanDefinition
 
     /**
      *  Returns the annotation parser wrapping this class, for use in examining
-     *  annotations on the class and its components.
+     *  annotations on the class and its components. The parser builds its tables
+     *  on first use, so must not be shared between threads; create a new parser
+     *  from {@link #getParsedClass} instead.
      */
     public AnnotationParser getAnnotationParser()
     {
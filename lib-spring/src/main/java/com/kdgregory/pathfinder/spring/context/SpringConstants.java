@@ -20,6 +20,9 @@ package com.kdgregory.pathfinder.spring.context;
 
 public class SpringConstants
 {
+    public final static String NS_BEANS                     = "http://www.springframework.org/schema/beans";
+    public final static String NS_CONTEXT                   = "http://www.springframework.org/schema/context";
+
     public final static String CLASS_DISPATCHER_SERVLET     = "org.springframework.web.servlet.DispatcherServlet";
     public final static String CLASS_CONTEXT_LISTENER       = "org.springframework.web.context.ContextLoaderListener";
     public final static String CLASS_SIMPLE_URL_HANDLER     = "org.springframework.web.servlet.handler.SimpleUrlHandlerMapping";
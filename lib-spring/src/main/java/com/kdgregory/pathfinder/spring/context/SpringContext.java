@@ -28,6 +28,7 @@ import org.w3c.dom.Element;
 
 import org.xml.sax.InputSource;
 
+import org.apache.bcel.classfile.JavaClass;
 import org.apache.log4j.Logger;
 
 import net.sf.kdgcommons.io.IOUtil;
@@ -39,6 +40,7 @@ import net.sf.practicalxml.xpath.XPathWrapperFactory.CacheType;
 
 import com.kdgregory.bcelx.parser.AnnotationParser;
 import com.kdgregory.pathfinder.core.WarMachine;
+import com.kdgregory.pathfinder.util.ClassFilter;
 import com.kdgregory.pathfinder.util.ClasspathScanner;
 
 
@@ -51,8 +53,8 @@ public class SpringContext
 
     private XPathWrapperFactory xpfact
             = new XPathWrapperFactory(CacheType.SIMPLE)
-              .bindNamespace("b",   "http://www.springframework.org/schema/beans")
-              .bindNamespace("ctx", "http://www.springframework.org/schema/context");
+              .bindNamespace("b",   SpringConstants.NS_BEANS)
+              .bindNamespace("ctx", SpringConstants.NS_CONTEXT);
 
 
 //----------------------------------------------------------------------------
@@ -224,6 +226,15 @@ public class SpringContext
         {
             for (AnnotationParser parsedClass : scanner.scan(war).values())
             {
+                // like Spring, we only create beans for concrete classes; this matters
+                // for filters that select supertypes as well as implementations
+                JavaClass klass = parsedClass.getParsedClass();
+                if (klass.isInterface() || klass.isAbstract())
+                {
+                    logger.debug("ignoring non-concrete class: " + klass.getClassName());
+                    continue;
+                }
+
                 ScannedBeanDefinition def = new ScannedBeanDefinition(parsedClass.getParsedClass(), parsedClass);
                 if (! beanDefinitions.containsKey(def.getBeanId()))
                 {
@@ -287,18 +298,61 @@ public class SpringContext
         List<ClasspathScanner> result = new ArrayList<ClasspathScanner>(scanDefs.size());
         for (Element elem : scanDefs)
         {
-            ClasspathScanner scanner = new ClasspathScanner()
-                                       .addIncludedAnnotation(SpringConstants.ANNO_CONTROLLER)
-                                       .addIncludedAnnotation(SpringConstants.ANNO_COMPONENT);
+            // without default filters, Spring selects nothing unless a filter includes
+            // it; that includes the case where all include filters are unsupported
+            ClasspathScanner scanner = new ClasspathScanner();
+            if (! "false".equals(elem.getAttribute("use-default-filters").trim()))
+            {
+                scanner.addIncludedAnnotation(SpringConstants.ANNO_CONTROLLER)
+                       .addIncludedAnnotation(SpringConstants.ANNO_COMPONENT);
+            }
+            else
+            {
+                scanner.setIncludeAllByDefault(false);
+            }
+
             String basePackage = elem.getAttribute("base-package");
             String[] bp2 = basePackage.split(",");
             for (String pkg : bp2)
             {
                 scanner.addBasePackage(pkg.trim());
             }
+
+            for (Element filterDef : DomUtil.getChildren(elem, SpringConstants.NS_CONTEXT, "include-filter"))
+            {
+                ClassFilter filter = createFilter(filterDef);
+                if (filter != null)
+                    scanner.addIncludeFilter(filter);
+            }
+            for (Element filterDef : DomUtil.getChildren(elem, SpringConstants.NS_CONTEXT, "exclude-filter"))
+            {
+                ClassFilter filter = createFilter(filterDef);
+                if (filter != null)
+                    scanner.addExcludeFilter(filter);
+            }
+
             result.add(scanner);
         }
 
         return result;
     }
+
+
+    private ClassFilter createFilter(Element filterDef)
+    {
+        String type = filterDef.getAttribute("type").trim();
+        String expression = filterDef.getAttribute("expression");
+        try
+        {
+            return new ClassFilter(ClassFilter.FilterType.valueOf(type.toUpperCase()), expression);
+        }
+        catch (IllegalArgumentException ex)
+        {
+            // unsupported type (eg, "custom") or bad expression
+            logger.warn("ignoring component-scan " + filterDef.getLocalName()
+                        + " (type \"" + type + "\", expression \"" + expression + "\"): "
+                        + ex.getMessage());
+            return null;
+        }
+    }
 }
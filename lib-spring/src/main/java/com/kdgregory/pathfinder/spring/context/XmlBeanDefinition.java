@@ -29,6 +29,11 @@ import net.sf.practicalxml.xpath.XPathWrapperFactory;
 
 /**
  *  Holds information extracted from an XML bean definition.
+ *  <p>
+ *  Beans from a root context are shared by the contexts of all dispatcher
+ *  servlets, which may be inspected concurrently. Neither the DOM nor the
+ *  XPath factory is thread-safe, so property access is serialized on the
+ *  factory (which is shared by every bean in the defining context).
  */
 public class XmlBeanDefinition
 extends BeanDefinition
@@ -64,15 +69,18 @@ extends BeanDefinition
      */
     public String getPropertyAsString(String name)
     {
-        Element propDef = getPropertyDefinition(name);
-        if (propDef == null)
-            return null;
+        synchronized (xpfact)
+        {
+            Element propDef = getPropertyDefinition(name);
+            if (propDef == null)
+                return null;
 
-        String value = propDef.getAttribute("value");
-        if (StringUtil.isEmpty(value))
-            value = xpfact.newXPath("b:value").evaluateAsString(propDef);
+            String value = propDef.getAttribute("value");
+            if (StringUtil.isEmpty(value))
+                value = xpfact.newXPath("b:value").evaluateAsString(propDef);
 
-        return value;
+            return value;
+        }
     }
 
 
@@ -82,11 +90,14 @@ extends BeanDefinition
      */
     public String getPropertyAsRefId(String name)
     {
-        Element propDef = getPropertyDefinition(name);
-        if (propDef == null)
-            return null;
+        synchronized (xpfact)
+        {
+            Element propDef = getPropertyDefinition(name);
+            if (propDef == null)
+                return null;
 
-        return propDef.getAttribute("ref");
+            return propDef.getAttribute("ref");
+        }
     }
 
 
@@ -96,15 +107,18 @@ extends BeanDefinition
      */
     public Properties getPropertyAsProperties(String name)
     {
-        Element propDef = getPropertyDefinition(name);
-        if (propDef == null)
-            return null;
+        synchronized (xpfact)
+        {
+            Element propDef = getPropertyDefinition(name);
+            if (propDef == null)
+                return null;
 
-        Properties ret = tryParsePropertiesFromValue(propDef);
-        if (ret == null)
-            ret = tryParsePropertiesFromProps(propDef);
+            Properties ret = tryParsePropertiesFromValue(propDef);
+            if (ret == null)
+                ret = tryParsePropertiesFromProps(propDef);
 
-        return ret;
+            return ret;
+        }
     }
 
 
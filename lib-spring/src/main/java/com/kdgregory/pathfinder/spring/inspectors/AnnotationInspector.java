@@ -16,6 +16,7 @@ package com.kdgregory.pathfinder.spring.inspectors;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
@@ -26,15 +27,16 @@ import org.apache.bcel.classfile.Method;
 import org.apache.bcel.generic.Type;
 import org.apache.log4j.Logger;
 
-import org.springframework.web.bind.annotation.RequestMethod;
-
 import net.sf.kdgcommons.lang.ClassUtil;
+import net.sf.kdgcommons.lang.StringUtil;
 
 import com.kdgregory.bcelx.classfile.Annotation;
 import com.kdgregory.bcelx.classfile.Annotation.ParamValue;
 import com.kdgregory.bcelx.parser.AnnotationParser;
 import com.kdgregory.pathfinder.core.HttpMethod;
+import com.kdgregory.pathfinder.core.InvocationOptions;
 import com.kdgregory.pathfinder.core.PathRepo;
+import com.kdgregory.pathfinder.core.RoutePattern;
 import com.kdgregory.pathfinder.core.WarMachine;
 import com.kdgregory.pathfinder.spring.SpringDestination;
 import com.kdgregory.pathfinder.spring.SpringDestination.RequestParameter;
@@ -43,6 +45,8 @@ import com.kdgregory.pathfinder.spring.context.ScannedBeanDefinition;
 import com.kdgregory.pathfinder.spring.context.SpringConstants;
 import com.kdgregory.pathfinder.spring.context.SpringContext;
 import com.kdgregory.pathfinder.spring.context.BeanDefinition.DefinitionType;
+import com.kdgregory.pathfinder.spring.inspectors.RequestMappingResolver.MappedMethod;
+import com.kdgregory.pathfinder.spring.inspectors.RequestMappingResolver.ResolvedClass;
 
 // Copyright (c) Keith D Gregory
 //
@@ -69,13 +73,30 @@ public class AnnotationInspector
     private WarMachine war;
     private SpringContext context;
     private PathRepo paths;
+    private RequestMappingResolver resolver;
+    private boolean showRequestParams;
 
 
     public AnnotationInspector(WarMachine war, SpringContext context, PathRepo paths)
+    {
+        this(war, context, paths, new RequestMappingResolver(war), InvocationOptions.showAll());
+    }
+
+
+    /**
+     *  Constructs an instance that uses a shared resolver for inherited mappings,
+     *  so that base classes are only examined once per WAR. Request parameters are
+     *  only decoded if the options say that they'll be shown.
+     */
+    public AnnotationInspector(
+            WarMachine war, SpringContext context, PathRepo paths,
+            RequestMappingResolver resolver, Map<InvocationOptions,Boolean> options)
     {
         this.war = war;
         this.context = context;
         this.paths = paths;
+        this.resolver = resolver;
+        this.showRequestParams = InvocationOptions.SHOW_REQUEST_PARAMS.isEnabled(options);
     }
 
 
@@ -106,9 +127,12 @@ public class AnnotationInspector
 
     private AnnotationParser getAnnotationsForBean(BeanDefinition bean)
     {
+        // scanned beans may come from the root context, which is shared by all
+        // dispatchers; the parsed class is only read, but the bean's parser builds
+        // its tables lazily, so we use our own rather than share it between threads
         if (bean.getDefinitionType() == DefinitionType.SCAN)
         {
-            return ((ScannedBeanDefinition)bean).getAnnotationParser();
+            return new AnnotationParser(((ScannedBeanDefinition)bean).getParsedClass());
         }
 
         // assume that it's an XML definition
@@ -122,30 +146,36 @@ public class AnnotationInspector
     {
         logger.debug("processing annotated bean: " + bean);
         logger.debug("initial urlPrefix: " + urlPrefix);
-        Annotation classMapping = ap.getClassAnnotation(SpringConstants.ANNO_REQUEST_MAPPING);
-        for (String classPrefix : getMappingUrls(urlPrefix, classMapping))
+        ResolvedClass mappings = resolver.resolve(ap);
+        for (String classPrefix : getMappingUrls(urlPrefix, mappings.getClassMapping()))
         {
             logger.debug("updated prefix from controller mapping: " + classPrefix);
-            for (Method method : ap.getAnnotatedMethods(SpringConstants.ANNO_REQUEST_MAPPING))
+            for (MappedMethod method : mappings.getMethods())
             {
-                processAnnotatedControllerMethods(classPrefix, bean, ap, method);
+                processAnnotatedControllerMethods(classPrefix, bean, method);
             }
         }
     }
 
 
     private void processAnnotatedControllerMethods(
-            String urlPrefix, BeanDefinition bean, AnnotationParser ap, Method method)
+            String urlPrefix, BeanDefinition bean, MappedMethod mappedMethod)
     {
+        Method method = mappedMethod.getMethod();
         String methodName = method.getName();
-        Map<String,RequestParameter> requestParams = processParameterAnnotations(method, ap);
+        Map<String,RequestParameter> requestParams = showRequestParams
+                                                   ? processParameterAnnotations(method, mappedMethod.getParser())
+                                                   : Collections.<String,RequestParameter>emptyMap();
+
+        // one destination is shared by all of the method's URLs and request methods
+        SpringDestination dest = new SpringDestination(bean, methodName, requestParams);
 
-        Annotation anno = ap.getMethodAnnotation(method, SpringConstants.ANNO_REQUEST_MAPPING);
+        Annotation anno = mappedMethod.getMapping();
         for (String methodUrl : getMappingUrls(urlPrefix, anno))
         {
             for (HttpMethod reqMethod : getRequestMethods(anno))
             {
-                paths.put(methodUrl, reqMethod, new SpringDestination(bean, methodName, requestParams));
+                paths.put(methodUrl, reqMethod, dest);
             }
         }
     }
@@ -180,38 +210,22 @@ public class AnnotationInspector
 
     private List<String> getMappingUrls(String urlPrefix, Annotation requestMapping)
     {
-        // note: called at both class and method level; either can be empty/missing
-        //     - also, we can't be sure that the controller has the proper number of
-        //       leading/trailing slashes on either mapping, so we'll remove and rebuild
-
-        while (urlPrefix.endsWith("/"))
-            urlPrefix = urlPrefix.substring(0, urlPrefix.length() - 1);
-
-        if (requestMapping == null)
+        // note: called at both class and method level; either can be empty/missing,
+        //       and we can't be sure that the controller has the proper number of
+        //       leading/trailing slashes on either mapping, so we let RoutePattern
+        //       do the joining
+
+        ParamValue paramValue = (requestMapping == null) ? null : requestMapping.getValue();
+        List<Object> mappings = (paramValue == null) ? null : paramValue.asListOfObjects();
+        if ((mappings == null) || (mappings.size() == 0))
         {
-            return Arrays.asList(urlPrefix);
-        }
-
-        ParamValue paramValue = requestMapping.getValue();
-        if (paramValue == null)
-        {
-            return Arrays.asList(urlPrefix);
-        }
-
-        List<Object> mappings = paramValue.asListOfObjects();
-        if (mappings.size() == 0)
-        {
-            return Arrays.asList(urlPrefix);
+            return Arrays.asList(RoutePattern.join(urlPrefix, null).toString());
         }
 
         List<String> result = new ArrayList<String>(mappings.size());
-        for (Object mapping0 : mappings)
+        for (Object mapping : mappings)
         {
-            String mapping = mapping0.toString();
-            while (mapping.startsWith("/"))
-                mapping = mapping.substring(1);
-
-            result.add(urlPrefix + "/" + mapping);
+            result.add(RoutePattern.join(urlPrefix, mapping.toString()).toString());
         }
         return result;
     }
@@ -223,26 +237,23 @@ public class AnnotationInspector
         if (methods == null)
             return Arrays.asList(HttpMethod.ALL);
 
+        // we decode by constant name rather than asking the parser for the enum
+        // value, because the latter needs Spring's RequestMethod on our classpath
+
         List<HttpMethod> result = new ArrayList<HttpMethod>();
-        for (Object method : methods.asListOfObjects())
+        for (ParamValue method : methods.asListOfValues())
         {
-            switch ((RequestMethod)method)
-            {
-                case GET :
-                    result.add(HttpMethod.GET);
-                    break;
-                case POST :
-                    result.add(HttpMethod.POST);
-                    break;
-                case PUT :
-                    result.add(HttpMethod.PUT);
-                    break;
-                case DELETE :
-                    result.add(HttpMethod.DELETE);
-                    break;
-                default :
-                    throw new UnsupportedOperationException("don't know how to process Spring request method: " + method);
-            }
+            String name = StringUtil.extractRightOfLast(method.toString(), ".");
+            if (name.equals("GET"))
+                result.add(HttpMethod.GET);
+            else if (name.equals("POST"))
+                result.add(HttpMethod.POST);
+            else if (name.equals("PUT"))
+                result.add(HttpMethod.PUT);
+            else if (name.equals("DELETE"))
+                result.add(HttpMethod.DELETE);
+            else
+                throw new UnsupportedOperationException("don't know how to process Spring request method: " + method);
         }
         return result;
     }
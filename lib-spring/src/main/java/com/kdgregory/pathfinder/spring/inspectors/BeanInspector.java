@@ -24,6 +24,7 @@ import org.apache.log4j.Logger;
 import net.sf.kdgcommons.lang.StringUtil;
 
 import com.kdgregory.pathfinder.core.PathRepo;
+import com.kdgregory.pathfinder.core.RoutePattern;
 import com.kdgregory.pathfinder.core.WarMachine;
 import com.kdgregory.pathfinder.spring.SpringDestination;
 import com.kdgregory.pathfinder.spring.context.BeanDefinition;
@@ -96,7 +97,7 @@ public class BeanInspector
             logger.debug("SimpleUrlHandlerMapping bean " + def.getBeanId() + " has " + mappings.size() + " mappings");
             for (Map.Entry<Object,Object> mapping : mappings.entrySet())
             {
-                String url = urlPrefix + mapping.getKey();
+                String url = RoutePattern.join(urlPrefix, String.valueOf(mapping.getKey())).toString();
                 String beanId = String.valueOf(mapping.getValue());
                 BeanDefinition bean = context.getBean(beanId);
                 logger.debug("mapped " + url + " to bean " + beanId);
@@ -125,9 +126,7 @@ public class BeanInspector
         String mapperPrefix = mapper.getPropertyAsString("pathPrefix");
         if (! StringUtil.isBlank(mapperPrefix))
         {
-            urlPrefix = urlPrefix + mapperPrefix.trim();
-            if (! urlPrefix.endsWith("/"))
-                urlPrefix += "/";
+            urlPrefix = RoutePattern.join(urlPrefix, mapperPrefix.trim()).toString();
         }
 
         for (BeanDefinition bean : context.getBeans().values())
@@ -140,7 +139,7 @@ public class BeanInspector
             if (beanClass.endsWith("controller"))
                 beanClass = StringUtil.extractLeftOfLast(beanClass, "controller");
 
-            String url = (urlPrefix + beanClass).replace("//", "/");
+            String url = RoutePattern.join(urlPrefix, beanClass).toString();
 
             // FIXME - for multi-action controller, append "*"
 
@@ -178,7 +177,7 @@ public class BeanInspector
             }
 
             logger.debug("name-mapped bean: " + bean.getBeanId() + " = " + beanName);
-            String url = urlPrefix + beanName;
+            String url = RoutePattern.join(urlPrefix, beanName).toString();
 
             // FIXME - for multi-action controller, append "*"
 
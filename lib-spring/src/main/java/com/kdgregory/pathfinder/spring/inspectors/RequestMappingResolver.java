@@ -0,0 +1,286 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.spring.inspectors;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.bcel.Constants;
+import org.apache.bcel.classfile.JavaClass;
+import org.apache.bcel.classfile.Method;
+import org.apache.log4j.Logger;
+
+import com.kdgregory.bcelx.classfile.Annotation;
+import com.kdgregory.bcelx.parser.AnnotationParser;
+import com.kdgregory.pathfinder.core.WarMachine;
+import com.kdgregory.pathfinder.spring.context.SpringConstants;
+
+
+/**
+ *  Determines the effective <code>@RequestMapping</code>s for a class, including
+ *  those declared on its superclasses and interfaces. This follows Spring's rules:
+ *  a class without its own mapping uses the nearest inherited mapping, and a method
+ *  that overrides a mapped method inherits that method's mapping.
+ *  <p>
+ *  Results are memoized by classname, so a base class shared by many controllers is
+ *  loaded and merged exactly once. Instances are intended to be shared by all of the
+ *  {@link AnnotationInspector}s created for a single WAR, and are safe for use by
+ *  concurrent threads.
+ */
+public class RequestMappingResolver
+{
+    private Logger logger = Logger.getLogger(getClass());
+
+    private WarMachine war;
+    private boolean prepareParameters;
+    private Map<String,ResolvedClass> resolved = new HashMap<String,ResolvedClass>();
+
+
+    public RequestMappingResolver(WarMachine war)
+    {
+        this(war, true);
+    }
+
+
+    /**
+     *  Constructs an instance that optionally skips preparing the parsers' parameter
+     *  annotations. Pass <code>false</code> if the caller will never examine method
+     *  parameters.
+     */
+    public RequestMappingResolver(WarMachine war, boolean prepareParameters)
+    {
+        this.war = war;
+        this.prepareParameters = prepareParameters;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Public Methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Returns the resolved mappings for the named class, loading the class and
+     *  its ancestors from the WAR as needed. Classes that can't be found on the
+     *  WAR's classpath (eg, <code>java.lang.Object</code>) have no mappings.
+     */
+    public ResolvedClass resolve(String className)
+    {
+        return resolve(className, null);
+    }
+
+
+    /**
+     *  Returns the resolved mappings for the class wrapped by the passed parser.
+     *  This variant is used for scanned beans, which have already been parsed.
+     */
+    public ResolvedClass resolve(AnnotationParser ap)
+    {
+        return resolve(ap.getParsedClass().getClassName(), ap);
+    }
+
+
+    /**
+     *  Returns the number of classes that have been resolved by this instance.
+     *  Exposed for testing.
+     */
+    public synchronized int getResolvedClassCount()
+    {
+        return resolved.size();
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    private synchronized ResolvedClass resolve(String className, AnnotationParser ap)
+    {
+        ResolvedClass result = resolved.get(className);
+        if (result != null)
+            return result;
+
+        if (ap == null)
+        {
+            JavaClass klass = className.startsWith("java.") ? null : war.loadClass(className);
+            ap = (klass == null) ? null : new AnnotationParser(klass);
+        }
+
+        result = (ap == null) ? ResolvedClass.EMPTY : merge(ap);
+        resolved.put(className, result);
+        return result;
+    }
+
+
+    private ResolvedClass merge(AnnotationParser ap)
+    {
+        JavaClass klass = ap.getParsedClass();
+        logger.debug("resolving mappings for " + klass.getClassName());
+
+        ResolvedClass superclass = klass.isInterface()
+                                 ? ResolvedClass.EMPTY
+                                 : resolve(klass.getSuperclassName());
+        String[] interfaceNames = klass.getInterfaceNames();
+        ResolvedClass[] interfaces = new ResolvedClass[interfaceNames.length];
+        for (int ii = 0 ; ii < interfaceNames.length ; ii++)
+            interfaces[ii] = resolve(interfaceNames[ii]);
+
+        // class-level mapping: our own, the superclass', then the first interface with one
+
+        Annotation classMapping = ap.getClassAnnotation(SpringConstants.ANNO_REQUEST_MAPPING);
+        if (classMapping == null)
+            classMapping = superclass.getClassMapping();
+        for (int ii = 0 ; (classMapping == null) && (ii < interfaces.length) ; ii++)
+            classMapping = interfaces[ii].getClassMapping();
+
+        // method-level mappings: interfaces are overridden by the superclass, which
+        // is overridden by whatever is declared in this class
+
+        Map<String,MappedMethod> inherited = new LinkedHashMap<String,MappedMethod>();
+        for (ResolvedClass intf : interfaces)
+            putAll(inherited, intf);
+        putAll(inherited, superclass);
+
+        Map<String,MappedMethod> methods = new LinkedHashMap<String,MappedMethod>(inherited);
+        for (Method method : klass.getMethods())
+        {
+            if (!isHandlerCandidate(method))
+                continue;
+
+            String key = methodKey(method);
+            Annotation mapping = ap.getMethodAnnotation(method, SpringConstants.ANNO_REQUEST_MAPPING);
+            if (mapping == null)
+            {
+                MappedMethod overridden = inherited.get(key);
+                if (overridden == null)
+                    continue;
+                mapping = overridden.getMapping();
+                logger.debug(klass.getClassName() + "." + method.getName() + "() inherits mapping");
+            }
+
+            // AnnotationParser builds its tables lazily; do that here, under our lock,
+            // because the parser will be shared with any thread that resolves this class
+            if (prepareParameters)
+                ap.getParameterAnnotatons(method);
+
+            // an override replaces the inherited entry but keeps its position
+            methods.put(key, new MappedMethod(method, ap, mapping));
+        }
+
+        return new ResolvedClass(classMapping, methods.values());
+    }
+
+
+    private static void putAll(Map<String,MappedMethod> map, ResolvedClass resolved)
+    {
+        for (MappedMethod method : resolved.getMethods())
+            map.put(methodKey(method.getMethod()), method);
+    }
+
+
+    private static boolean isHandlerCandidate(Method method)
+    {
+        if (method.isStatic() || method.isPrivate())
+            return false;
+        if ((method.getAccessFlags() & (Constants.ACC_BRIDGE | Constants.ACC_SYNTHETIC)) != 0)
+            return false;
+        return !method.getName().startsWith("<");
+    }
+
+
+    private static String methodKey(Method method)
+    {
+        return method.getName() + method.getSignature();
+    }
+
+
+//----------------------------------------------------------------------------
+//  Supporting classes
+//----------------------------------------------------------------------------
+
+    /**
+     *  The merged mappings for a single class. Instances are immutable.
+     */
+    public static class ResolvedClass
+    {
+        public final static ResolvedClass EMPTY
+            = new ResolvedClass(null, Collections.<MappedMethod>emptyList());
+
+        private Annotation classMapping;
+        private Collection<MappedMethod> methods;
+
+        private ResolvedClass(Annotation classMapping, Collection<MappedMethod> methods)
+        {
+            this.classMapping = classMapping;
+            this.methods = Collections.unmodifiableList(new ArrayList<MappedMethod>(methods));
+        }
+
+        /**
+         *  Returns the effective class-level mapping, <code>null</code> if
+         *  neither the class nor its ancestors have one.
+         */
+        public Annotation getClassMapping()
+        {
+            return classMapping;
+        }
+
+        /**
+         *  Returns all mapped methods: those declared by this class and those
+         *  inherited from ancestors.
+         */
+        public Collection<MappedMethod> getMethods()
+        {
+            return methods;
+        }
+    }
+
+
+    /**
+     *  A handler method and its effective mapping. The method (and the parser
+     *  that can be used to examine its parameters) is the most-derived version;
+     *  the mapping may come from an ancestor.
+     */
+    public static class MappedMethod
+    {
+        private Method method;
+        private AnnotationParser parser;
+        private Annotation mapping;
+
+        private MappedMethod(Method method, AnnotationParser parser, Annotation mapping)
+        {
+            this.method = method;
+            this.parser = parser;
+            this.mapping = mapping;
+        }
+
+        public Method getMethod()
+        {
+            return method;
+        }
+
+        public AnnotationParser getParser()
+        {
+            return parser;
+        }
+
+        public Annotation getMapping()
+        {
+            return mapping;
+        }
+    }
+}
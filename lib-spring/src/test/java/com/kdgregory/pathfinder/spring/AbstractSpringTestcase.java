@@ -14,6 +14,9 @@
 
 package com.kdgregory.pathfinder.spring;
 
+import java.util.Map;
+
+import com.kdgregory.pathfinder.core.InvocationOptions;
 import com.kdgregory.pathfinder.core.PathRepo;
 import com.kdgregory.pathfinder.core.WarMachine;
 import com.kdgregory.pathfinder.core.impl.PathRepoImpl;
@@ -36,11 +39,18 @@ public abstract class AbstractSpringTestcase
 
     protected void processWar(String warName)
     throws Exception
+    {
+        processWar(warName, InvocationOptions.showAll());
+    }
+
+
+    protected void processWar(String warName, Map<InvocationOptions,Boolean> options)
+    throws Exception
     {
         machine = TestHelpers.createWarMachine(warName);
         pathRepo = new PathRepoImpl();
-        new ServletInspector().inspect(machine, pathRepo);
-        new SpringInspector().inspect(machine, pathRepo);
+        new ServletInspector(options).inspect(machine, pathRepo);
+        new SpringInspector(options).inspect(machine, pathRepo);
     }
 
 }
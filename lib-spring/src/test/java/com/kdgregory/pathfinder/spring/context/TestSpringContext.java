@@ -233,4 +233,60 @@ public class TestSpringContext
         assertEquals("@Controller #2",  "com.kdgregory.pathfinder.test.scan.controller.ControllerB",
                                         ctx.getBean("controllerB").getBeanClass());
     }
+
+
+    @Test
+    public void testComponentScanWithFilters() throws Exception
+    {
+        WarMachine war = TestHelpers.createWarMachine(WarNames.SPRING_SCAN);
+        SpringContext ctx = new SpringContext(war, "/WEB-INF/spring/filteredContext1.xml");
+
+        // default filters, plus assignable and aspectj includes, minus regex and annotation excludes
+
+        assertEquals("number of beans", 4, ctx.getBeans().size());
+        assertEquals("explicit bean",   "org.springframework.web.servlet.view.UrlBasedViewResolver",
+                                        ctx.getBean("viewResolver").getBeanClass());
+        assertEquals("@Controller #1",  "com.kdgregory.pathfinder.test.scan.controller.ControllerA",
+                                        ctx.getBean("myController").getBeanClass());
+        assertEquals("assignable",      "com.kdgregory.pathfinder.test.scan.service.ServiceA",
+                                        ctx.getBean("serviceA").getBeanClass());
+        assertEquals("aspectj",         "com.kdgregory.pathfinder.test.scan.repo.RepositoryA",
+                                        ctx.getBean("repositoryA").getBeanClass());
+        assertNull("regex exclude",     ctx.getBean("controllerB"));
+        assertNull("annotation exclude", ctx.getBean("myComponent"));
+        assertNull("interface ignored", ctx.getBean("auditable"));
+    }
+
+
+    @Test
+    public void testComponentScanWithoutDefaultFilters() throws Exception
+    {
+        WarMachine war = TestHelpers.createWarMachine(WarNames.SPRING_SCAN);
+        SpringContext ctx = new SpringContext(war, "/WEB-INF/spring/filteredContext2.xml");
+
+        // only the aspectj include applies; the custom filter is ignored
+
+        assertEquals("number of beans", 3, ctx.getBeans().size());
+        assertEquals("explicit bean",   "org.springframework.web.servlet.view.UrlBasedViewResolver",
+                                        ctx.getBean("viewResolver").getBeanClass());
+        assertEquals("aspectj subtype", "com.kdgregory.pathfinder.test.scan.service.ServiceA",
+                                        ctx.getBean("serviceA").getBeanClass());
+        assertEquals("aspectj name",    "com.kdgregory.pathfinder.test.scan.controller.ControllerA",
+                                        ctx.getBean("myController").getBeanClass());
+    }
+
+
+    @Test
+    public void testComponentScanWithoutIncludeFilters() throws Exception
+    {
+        WarMachine war = TestHelpers.createWarMachine(WarNames.SPRING_SCAN);
+        SpringContext ctx = new SpringContext(war, "/WEB-INF/spring/filteredContext3.xml");
+
+        // one scan has only an exclude filter, the other only an unsupported include;
+        // without default filters, neither selects anything
+
+        assertEquals("number of beans", 1, ctx.getBeans().size());
+        assertEquals("explicit bean",   "org.springframework.web.servlet.view.UrlBasedViewResolver",
+                                        ctx.getBean("viewResolver").getBeanClass());
+    }
 }
@@ -21,6 +21,7 @@ import org.junit.Test;
 import static org.junit.Assert.*;
 
 import com.kdgregory.pathfinder.core.HttpMethod;
+import com.kdgregory.pathfinder.core.InvocationOptions;
 import com.kdgregory.pathfinder.spring.AbstractSpringTestcase;
 import com.kdgregory.pathfinder.spring.SpringDestination;
 import com.kdgregory.pathfinder.spring.SpringDestination.RequestParameter;
@@ -178,6 +179,17 @@ extends AbstractSpringTestcase
     }
 
 
+    @Test
+    public void testRequestParametersNotDecodedWhenHidden() throws Exception
+    {
+        processWar(WarNames.SPRING_ANNO, InvocationOptions.parseCli("--hideRequestParams"));
+
+        SpringDestination dest = (SpringDestination)pathRepo.get("/servlet/E1", HttpMethod.GET);
+        assertNotNull("mapping still exists", dest);
+        assertEquals("#/params", 0, dest.getParams().size());
+    }
+
+
     @Test
     public void testExplicitControllerDefs() throws Exception
     {
@@ -190,4 +202,68 @@ extends AbstractSpringTestcase
         assertEquals("controller ID",    "controllerB", dest.getBeanId());
         assertEquals("controller class", "com.kdgregory.pathfinder.test.spring3.pkg1.ControllerB", dest.getBeanClass());
     }
+
+
+    @Test
+    public void testInheritedMethodMappings() throws Exception
+    {
+        processWar(WarNames.SPRING_INHERIT);
+
+        SpringDestination dest1 = (SpringDestination)pathRepo.get("/servlet/orders/list", HttpMethod.GET);
+        assertNotNull("mapping from superclass", dest1);
+        assertEquals("class",   "com.kdgregory.pathfinder.test.inherit.OrderController", dest1.getBeanClass());
+        assertEquals("method",  "list", dest1.getMethodName());
+        assertEquals("params",  1, dest1.getParams().size());
+
+        SpringDestination dest2 = (SpringDestination)pathRepo.get("/servlet/orders/{id}", HttpMethod.DELETE);
+        assertNotNull("second mapping from superclass", dest2);
+        assertNull("superclass request method honored", pathRepo.get("/servlet/orders/{id}", HttpMethod.GET));
+
+        SpringDestination dest3 = (SpringDestination)pathRepo.get("/servlet/orders/ping", HttpMethod.GET);
+        assertNotNull("mapping from interface", dest3);
+        assertEquals("interface method", "ping", dest3.getMethodName());
+
+        // the overriding method doesn't redeclare the mapping, or the parameter annotation
+        SpringDestination dest4 = (SpringDestination)pathRepo.get("/servlet/users/list", HttpMethod.GET);
+        assertNotNull("mapping from overridden method", dest4);
+        assertEquals("class",   "com.kdgregory.pathfinder.test.inherit.UserController", dest4.getBeanClass());
+        assertEquals("params",  0, dest4.getParams().size());
+
+        SpringDestination dest5 = (SpringDestination)pathRepo.get("/servlet/users/me", HttpMethod.GET);
+        assertNotNull("subclass still has its own mappings", dest5);
+        assertEquals("method",  "me", dest5.getMethodName());
+
+        assertNull("abstract base isn't a controller", pathRepo.get("/servlet/list", HttpMethod.GET));
+    }
+
+
+    @Test
+    public void testInheritedClassMapping() throws Exception
+    {
+        processWar(WarNames.SPRING_INHERIT);
+
+        SpringDestination dest = (SpringDestination)pathRepo.get("/servlet/prefixed/info", HttpMethod.GET);
+        assertNotNull("mapping with inherited prefix", dest);
+        assertEquals("class",   "com.kdgregory.pathfinder.test.inherit.InfoController", dest.getBeanClass());
+        assertNull("no mapping without prefix", pathRepo.get("/servlet/info", HttpMethod.GET));
+    }
+
+
+    @Test
+    public void testResolverMemoizesBaseClasses() throws Exception
+    {
+        processWar(WarNames.SPRING_INHERIT);
+
+        RequestMappingResolver resolver = new RequestMappingResolver(machine);
+        resolver.resolve("com.kdgregory.pathfinder.test.inherit.UserController");
+        int count = resolver.getResolvedClassCount();
+
+        // Order shares its superclass with User, so should only add itself and its interface
+        resolver.resolve("com.kdgregory.pathfinder.test.inherit.OrderController");
+        assertEquals("classes resolved", count + 2, resolver.getResolvedClassCount());
+
+        assertSame("base class resolved once",
+                   resolver.resolve("com.kdgregory.pathfinder.test.inherit.AbstractCrudController"),
+                   resolver.resolve("com.kdgregory.pathfinder.test.inherit.AbstractCrudController"));
+    }
 }
@@ -26,6 +26,7 @@ import com.kdgregory.pathfinder.core.impl.PathRepoImpl;
 import com.kdgregory.pathfinder.servlet.ServletInspector;
 import com.kdgregory.pathfinder.spring.AbstractSpringTestcase;
 import com.kdgregory.pathfinder.spring.SpringDestination;
+import com.kdgregory.pathfinder.spring.SpringInspector;
 import com.kdgregory.pathfinder.spring.SpringDestination.RequestParameter;
 import com.kdgregory.pathfinder.test.WarNames;
 import com.kdgregory.pathfinder.util.TestHelpers;
@@ -56,4 +57,47 @@ extends AbstractSpringTestcase
         assertEquals("com.kdgregory.pathfinder.test.spring3.ControllerA", dest.getBeanClass());
     }
 
+
+    @Test
+    public void testMultipleDispatchers() throws Exception
+    {
+        // the dispatchers are inspected concurrently, so run several times to
+        // give any ordering problems a chance to show themselves
+        for (int ii = 0 ; ii < 5 ; ii++)
+        {
+            processWar(WarNames.SPRING_MULTI_DISPATCH);
+
+            SpringDestination dest1 = (SpringDestination)pathRepo.get("/alpha", HttpMethod.GET);
+            assertEquals("first dispatcher", "com.kdgregory.pathfinder.test.multi.alpha.AlphaController", dest1.getBeanClass());
+
+            SpringDestination dest2 = (SpringDestination)pathRepo.get("/b/beta", HttpMethod.GET);
+            assertEquals("second dispatcher", "com.kdgregory.pathfinder.test.multi.beta.BetaController", dest2.getBeanClass());
+
+            // both dispatchers map this URL; the second (by mapping order) wins
+            SpringDestination dest3 = (SpringDestination)pathRepo.get("/b/foo", HttpMethod.GET);
+            assertEquals("overlapping mapping", "com.kdgregory.pathfinder.test.multi.beta.BetaController", dest3.getBeanClass());
+
+            // root context beans are visible to both dispatchers
+            assertNotNull("root bean, first dispatcher",  pathRepo.get("/shared/info", HttpMethod.GET));
+            assertNotNull("root bean, second dispatcher", pathRepo.get("/b/shared/info", HttpMethod.GET));
+        }
+    }
+
+
+    @Test
+    public void testMultipleDispatchersSingleThread() throws Exception
+    {
+        machine = TestHelpers.createWarMachine(WarNames.SPRING_MULTI_DISPATCH);
+        pathRepo = new PathRepoImpl();
+        new ServletInspector().inspect(machine, pathRepo);
+        SpringInspector inspector = new SpringInspector();
+        inspector.setMaxThreads(1);
+        inspector.inspect(machine, pathRepo);
+
+        SpringDestination dest1 = (SpringDestination)pathRepo.get("/alpha", HttpMethod.GET);
+        assertEquals("first dispatcher", "com.kdgregory.pathfinder.test.multi.alpha.AlphaController", dest1.getBeanClass());
+
+        SpringDestination dest3 = (SpringDestination)pathRepo.get("/b/foo", HttpMethod.GET);
+        assertEquals("overlapping mapping", "com.kdgregory.pathfinder.test.multi.beta.BetaController", dest3.getBeanClass());
+    }
 }
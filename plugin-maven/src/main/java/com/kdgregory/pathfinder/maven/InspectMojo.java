@@ -0,0 +1,273 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.maven;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.apache.log4j.varia.NullAppender;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+import net.sf.kdgcommons.io.IOUtil;
+
+import com.kdgregory.pathfinder.core.InvocationOptions;
+import com.kdgregory.pathfinder.core.PathRepo;
+import com.kdgregory.pathfinder.embed.ManifestEmbedder;
+import com.kdgregory.pathfinder.embed.PathFinder;
+import com.kdgregory.pathfinder.util.RouteDiff;
+import com.kdgregory.pathfinder.util.RouteSnapshot;
+
+
+/**
+ *  Inspects the project's WAR, after it's packaged, and writes its paths as a
+ *  route snapshot (see {@link RouteSnapshot}). The inspection runs within the
+ *  build JVM, so doesn't pay for JVM startup, and library JARs that are shared
+ *  by several WARs in the same build are only read once.
+ *  <p>
+ *  If given a baseline snapshot (eg, one that's checked into source control),
+ *  compares the paths to it and reports the paths that were added, removed, or
+ *  changed destination; with <code>failOnChange</code>, those changes fail the
+ *  build.
+ *  <p>
+ *  Optionally embeds the paths into the WAR (see {@link ManifestEmbedder}), so
+ *  that later runs of PathFinder don't need to inspect it.
+ */
+@Mojo(name="inspect", defaultPhase=LifecyclePhase.PACKAGE, threadSafe=true)
+public class InspectMojo
+extends AbstractMojo
+{
+    /**
+     *  The WAR to inspect.
+     */
+    @Parameter(defaultValue="${project.build.directory}/${project.build.finalName}.war")
+    private File warFile;
+
+    /**
+     *  Where to write the snapshot.
+     */
+    @Parameter(defaultValue="${project.build.directory}/pathfinder-routes.txt")
+    private File outputFile;
+
+    /**
+     *  A snapshot to compare with the inspected paths. Not compared if omitted.
+     *  If given but it doesn't exist, the build fails when <code>failOnChange</code>
+     *  is set, and warns otherwise.
+     */
+    @Parameter
+    private File baseline;
+
+    /**
+     *  If true, and there's a baseline, any difference fails the build.
+     */
+    @Parameter(defaultValue="false")
+    private boolean failOnChange;
+
+    /**
+     *  If true, embeds the paths into the WAR.
+     */
+    @Parameter(defaultValue="false")
+    private boolean embedManifest;
+
+    /**
+     *  Invocation options, as given on the PathFinder command line (eg,
+     *  <code>--showStatic</code>). These should be the same as were used
+     *  to write the baseline.
+     */
+    @Parameter
+    private List<String> options;
+
+    @Parameter(property="pathfinder.skip", defaultValue="false")
+    private boolean skip;
+
+    @Parameter(defaultValue="${project.packaging}", readonly=true)
+    private String packaging;
+
+
+//----------------------------------------------------------------------------
+//  Mojo implementation
+//----------------------------------------------------------------------------
+
+    @Override
+    public void execute()
+    throws MojoExecutionException, MojoFailureException
+    {
+        if (skip)
+        {
+            getLog().info("skipping PathFinder");
+            return;
+        }
+
+        if (!warFile.isFile())
+        {
+            if ("war".equals(packaging))
+                throw new MojoExecutionException("WAR doesn't exist: " + warFile);
+            getLog().info("no WAR to inspect: " + warFile);
+            return;
+        }
+
+        if ((baseline != null) && !baseline.isFile())
+        {
+            // a missing baseline would otherwise mean that nothing is compared
+            if (failOnChange)
+                throw new MojoFailureException("baseline doesn't exist: " + baseline);
+            getLog().warn("baseline doesn't exist, not comparing: " + baseline);
+        }
+
+        configureLogging();
+        Map<InvocationOptions,Boolean> invocationOptions = (options == null)
+                                                         ? InvocationOptions.parseCli()
+                                                         : InvocationOptions.parseCli(options.toArray(new String[options.size()]));
+
+        List<String> changes;
+        try
+        {
+            long start = System.currentTimeMillis();
+            PathRepo repo = inspect(invocationOptions);
+            writeSnapshot(repo, invocationOptions);
+            getLog().info("wrote " + repo.urlCount() + " paths to " + outputFile
+                          + " (" + (System.currentTimeMillis() - start) + " ms)");
+
+            changes = compareToBaseline(repo, invocationOptions);
+
+            if (embedManifest)
+            {
+                new ManifestEmbedder(invocationOptions).embed(warFile, repo);
+                getLog().info("embedded route manifest in " + warFile);
+            }
+        }
+        catch (Exception ex)
+        {
+            throw new MojoExecutionException("unable to inspect " + warFile + ": " + ex.getMessage(), ex);
+        }
+
+        if (changes.isEmpty())
+            return;
+
+        for (String change : changes)
+            getLog().warn(change);
+        String message = changes.size() + " path(s) differ from baseline " + baseline;
+        if (failOnChange)
+            throw new MojoFailureException(message);
+        getLog().warn(message);
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    /**
+     *  The inspectors log via Log4J; unless the build has configured it, we
+     *  discard that output rather than let Log4J complain about it.
+     */
+    private void configureLogging()
+    {
+        Logger rootLogger = Logger.getRootLogger();
+        if (!rootLogger.getAllAppenders().hasMoreElements())
+            rootLogger.addAppender(new NullAppender());
+    }
+
+
+    /**
+     *  Inspects the WAR, and closes it before returning (so that it may be
+     *  replaced by the embedder).
+     */
+    private PathRepo inspect(Map<InvocationOptions,Boolean> invocationOptions)
+    throws IOException
+    {
+        return new PathFinder(invocationOptions).inspect(warFile).getPaths();
+    }
+
+
+    private void writeSnapshot(PathRepo repo, Map<InvocationOptions,Boolean> invocationOptions)
+    throws Exception
+    {
+        File dir = outputFile.getAbsoluteFile().getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs())
+            throw new IllegalArgumentException("unable to create directory: " + dir);
+
+        Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outputFile), "UTF-8"));
+        try
+        {
+            RouteSnapshot.write(repo, invocationOptions, out);
+        }
+        finally
+        {
+            IOUtil.closeQuietly(out);
+        }
+    }
+
+
+    /**
+     *  Returns a description of each difference between the inspected paths and
+     *  the baseline, empty if there's no baseline.
+     */
+    private List<String> compareToBaseline(PathRepo repo, Map<InvocationOptions,Boolean> invocationOptions)
+    throws Exception
+    {
+        final List<String> changes = new ArrayList<String>();
+        if ((baseline == null) || !baseline.isFile())
+            return changes;
+
+        BufferedReader in = new BufferedReader(new InputStreamReader(IOUtil.openFile(baseline), "UTF-8"));
+        try
+        {
+            Iterator<RouteSnapshot.Entry> oldRoutes = RouteSnapshot.read(in);
+            Iterator<RouteSnapshot.Entry> newRoutes = RouteSnapshot.iterate(repo, invocationOptions);
+            RouteDiff.diff(oldRoutes, newRoutes, new RouteDiff.Listener()
+            {
+                @Override
+                public void added(RouteSnapshot.Entry newEntry)
+                {
+                    changes.add("added:   " + newEntry);
+                }
+
+                @Override
+                public void removed(RouteSnapshot.Entry oldEntry)
+                {
+                    changes.add("removed: " + oldEntry);
+                }
+
+                @Override
+                public void changed(RouteSnapshot.Entry oldEntry, RouteSnapshot.Entry newEntry)
+                {
+                    changes.add("changed: " + newEntry + " (was " + oldEntry.getDestination() + ")");
+                }
+            });
+        }
+        finally
+        {
+            IOUtil.closeQuietly(in);
+        }
+        return changes;
+    }
+}
@@ -0,0 +1,214 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.maven;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.jar.JarFile;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+
+import net.sf.kdgcommons.io.IOUtil;
+
+import com.kdgregory.pathfinder.test.WarNames;
+import com.kdgregory.pathfinder.util.EmbeddedManifest;
+
+
+public class TestInspectMojo
+{
+//----------------------------------------------------------------------------
+//  Support Code
+//----------------------------------------------------------------------------
+
+    private static File createDir()
+    throws Exception
+    {
+        File dir = IOUtil.createTempFile("TestInspectMojo", 0);
+        dir.delete();
+        dir.mkdirs();
+        return dir;
+    }
+
+
+    private static File extractWar(String warName, File dir)
+    throws Exception
+    {
+        File file = new File(dir, warName);
+        InputStream in = TestInspectMojo.class.getClassLoader().getResourceAsStream(warName);
+        FileOutputStream out = new FileOutputStream(file);
+        try
+        {
+            IOUtil.copy(in, out);
+        }
+        finally
+        {
+            IOUtil.closeQuietly(in);
+            IOUtil.closeQuietly(out);
+        }
+        return file;
+    }
+
+
+    private static String read(File file)
+    throws Exception
+    {
+        InputStream in = IOUtil.openFile(file);
+        try
+        {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            IOUtil.copy(in, out);
+            return new String(out.toByteArray(), "UTF-8");
+        }
+        finally
+        {
+            IOUtil.closeQuietly(in);
+        }
+    }
+
+
+    /**
+     *  Creates a mojo with the configuration that Maven would inject.
+     */
+    private static InspectMojo createMojo(File warFile, File outputFile, Object... params)
+    throws Exception
+    {
+        InspectMojo mojo = new InspectMojo();
+        setField(mojo, "warFile", warFile);
+        setField(mojo, "outputFile", outputFile);
+        setField(mojo, "packaging", "war");
+        for (int ii = 0 ; ii < params.length ; ii += 2)
+            setField(mojo, (String)params[ii], params[ii + 1]);
+        return mojo;
+    }
+
+
+    private static void setField(InspectMojo mojo, String name, Object value)
+    throws Exception
+    {
+        Field field = InspectMojo.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(mojo, value);
+    }
+
+
+//----------------------------------------------------------------------------
+//  TestCases
+//----------------------------------------------------------------------------
+
+    @Test
+    public void testInspectAndCompare() throws Exception
+    {
+        File dir = createDir();
+        File war = extractWar(WarNames.SPRING_ANNO, dir);
+        File snapshot = new File(dir, "target/pathfinder-routes.txt");
+
+        createMojo(war, snapshot).execute();
+        String content = read(snapshot);
+        assertTrue("snapshot written", content.contains("/servlet/C\tGET\tcom.kdgregory.pathfinder.test.spring3.pkg2.ControllerC.getC()"));
+
+        // comparing to itself is not a change
+        File output2 = new File(dir, "routes2.txt");
+        createMojo(war, output2, "baseline", snapshot, "failOnChange", Boolean.TRUE).execute();
+        assertEquals("same output", content, read(output2));
+
+        // a different WAR is reported, but only fails when asked
+        File otherWar = extractWar(WarNames.SERVLET, dir);
+        createMojo(otherWar, new File(dir, "routes3.txt"), "baseline", snapshot).execute();
+        try
+        {
+            createMojo(otherWar, new File(dir, "routes4.txt"), "baseline", snapshot, "failOnChange", Boolean.TRUE).execute();
+            fail("should have failed on change");
+        }
+        catch (MojoFailureException ex)
+        {
+            assertTrue("exception message: " + ex.getMessage(), ex.getMessage().contains("differ from baseline"));
+        }
+    }
+
+
+    @Test
+    public void testOptionsAndEmbed() throws Exception
+    {
+        File dir = createDir();
+        File war = extractWar(WarNames.SERVLET, dir);
+        File snapshot = new File(dir, "routes.txt");
+
+        createMojo(war, snapshot, "options", Arrays.asList("--hideJSP"), "embedManifest", Boolean.TRUE).execute();
+        String content = read(snapshot);
+        assertTrue("servlet in snapshot", content.contains("/servlet\tALL\tcom.example.servlet.SomeServlet"));
+        assertFalse("options were applied", content.contains("index.jsp"));
+
+        JarFile jar = new JarFile(war);
+        try
+        {
+            assertNotNull("manifest embedded", jar.getEntry(EmbeddedManifest.MANIFEST_ENTRY));
+        }
+        finally
+        {
+            jar.close();
+        }
+    }
+
+
+    @Test
+    public void testMissingBaseline() throws Exception
+    {
+        File dir = createDir();
+        File war = extractWar(WarNames.SERVLET, dir);
+        File baseline = new File(dir, "misspelled-routes.txt");
+
+        createMojo(war, new File(dir, "routes.txt"), "baseline", baseline).execute();
+        try
+        {
+            createMojo(war, new File(dir, "routes.txt"), "baseline", baseline, "failOnChange", Boolean.TRUE).execute();
+            fail("should have failed for missing baseline");
+        }
+        catch (MojoFailureException ex)
+        {
+            assertTrue("exception message: " + ex.getMessage(), ex.getMessage().contains("baseline doesn't exist"));
+        }
+    }
+
+
+    @Test
+    public void testMissingWar() throws Exception
+    {
+        File dir = createDir();
+        File war = new File(dir, "missing.war");
+
+        try
+        {
+            createMojo(war, new File(dir, "routes.txt")).execute();
+            fail("should have failed for WAR project");
+        }
+        catch (MojoExecutionException ex)
+        {
+            // success
+        }
+
+        createMojo(war, new File(dir, "routes.txt"), "packaging", "jar").execute();
+        assertFalse("no output for non-WAR project", new File(dir, "routes.txt").exists());
+
+        createMojo(war, new File(dir, "routes.txt"), "skip", Boolean.TRUE).execute();
+    }
+}
@@ -0,0 +1,41 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pathfinder.test.inherit;
+
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+
+
+/**
+ *  Base class for controllers: it has method-level mappings, but no class-level
+ *  mapping (that's provided by the subclasses).
+ */
+public abstract class AbstractCrudController
+{
+    @RequestMapping(value="/list", method=RequestMethod.GET)
+    public String list(@RequestParam(value="page", required=false) Integer page)
+    {
+        return "simple";
+    }
+
+
+    @RequestMapping(value="/{id}", method=RequestMethod.DELETE)
+    public String delete(@PathVariable("id") String id)
+    {
+        return "simple";
+    }
+}
@@ -19,6 +19,7 @@ import org.springframework.stereotype.Service;
 
 @Service
 public class ServiceA
+implements Auditable
 {
     // nothing here, just testing that we find the class in a scan
 }